@@ -1,19 +1,54 @@
 package com.ex.final22c;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
 @Configuration
 public class AiClientConfig {
+
+    // DeepSeek 전용 커넥션 풀 (기본 공유 풀과 분리해서 다른 WebClient 호출에 영향 없도록)
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider aiConnectionProvider(
+        @Value("${deepseek.client.pool.max-connections:16}") int maxConnections,
+        @Value("${deepseek.client.pool.pending-acquire-max:64}") int pendingAcquireMax,
+        @Value("${deepseek.client.pool.pending-acquire-timeout-ms:5000}") long pendingAcquireTimeoutMs,
+        @Value("${deepseek.client.pool.max-idle-ms:30000}") long maxIdleMs) {
+    return ConnectionProvider.builder("deepseek")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMax)
+            .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+            .maxIdleTime(Duration.ofMillis(maxIdleMs))   // 서버가 먼저 끊은 유휴 커넥션 재사용 방지
+            .maxLifeTime(Duration.ofMinutes(5))
+            .evictInBackground(Duration.ofSeconds(30))
+            .build();
+    }
+
     @Bean
     WebClient aiWebClient(
         @Value("${deepseek.api.base-url}") String baseUrl,
-        @Value("${deepseek.api.key}") String apiKey) {
+        @Value("${deepseek.api.key}") String apiKey,
+        ConnectionProvider aiConnectionProvider,
+        @Value("${deepseek.client.connect-timeout-ms:3000}") int connectTimeoutMs,
+        @Value("${deepseek.client.response-timeout-ms:90000}") long responseTimeoutMs) {
+    // responseTimeout: 응답 읽기 사이 최대 공백 (스트리밍도 고려해 넉넉히, 호출별 상한은 ChatService에서)
+    HttpClient httpClient = HttpClient.create(aiConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+            .compress(true);
     return WebClient.builder()
             .baseUrl(baseUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
             .defaultHeader("Authorization", "Bearer " + apiKey)
             .build();
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package com.ex.final22c;
 
 import java.util.concurrent.Executor;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -21,4 +22,44 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    // 관리자 AI 채팅 SSE 스트리밍 전용 (Tomcat 스레드를 LLM/SQL 대기에서 분리)
+    @Bean(name = "aiStreamExecutor")
+    public Executor aiStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("AiStream-");
+        executor.initialize();
+        return executor;
+    }
+
+    // AI 분석 비동기 작업(/api/ai/jobs) 전용 — 추천용 taskExecutor 와 분리, 큐가 차면 거절(503)
+    @Bean(name = "aiJobExecutor")
+    public ThreadPoolTaskExecutor aiJobExecutor(@Value("${ai.job.pool.core:4}") int core,
+                                                @Value("${ai.job.pool.max:12}") int max,
+                                                @Value("${ai.job.pool.queue:100}") int queue) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(max);
+        executor.setQueueCapacity(queue);
+        executor.setThreadNamePrefix("AiJob-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    // 회원별 개인화 추천 사전 계산 전용 (한 번에 한 실행, 요청 처리/LLM 풀과 분리)
+    @Bean(name = "personalRecoExecutor")
+    public Executor personalRecoExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("PersonalReco-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
 }
\ No newline at end of file
@@ -41,6 +41,8 @@ public class SecurityConfig {
 
                 // --- 역할 보호 구간 ---
                 .requestMatchers("/admin/**").hasRole("ADMIN")
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").hasRole("ADMIN")
                 .requestMatchers("/mypage/**").hasRole("USER")
 
                 // --- 그 외 ---
@@ -0,0 +1,173 @@
+package com.ex.final22c.controller.admin;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.ex.final22c.service.ai.QueryResultCache;
+import com.ex.final22c.service.ai.SqlCostGuard;
+import com.ex.final22c.service.chat.AiJobService;
+import com.ex.final22c.service.chat.AnalyticsCatalog;
+import com.ex.final22c.service.chat.ConversationStore;
+import com.ex.final22c.service.chat.LlmBulkhead;
+import com.ex.final22c.service.chat.LlmResponseCache;
+import com.ex.final22c.service.chat.LlmUsageMeter;
+import com.ex.final22c.service.chat.ProductCandidateIndex;
+import com.ex.final22c.service.chat.RecommendationPreRanker;
+import com.ex.final22c.service.chat.RequestCoalescer;
+import com.ex.final22c.service.chat.ResultSummarizer;
+import com.ex.final22c.service.chat.RouteService;
+import com.ex.final22c.service.chat.SchemaPromptBuilder;
+import com.ex.final22c.service.chat.SqlSpeculator;
+import com.ex.final22c.service.chat.SurveyRecommendationCache;
+import com.ex.final22c.service.chat.SqlPlanCache;
+import com.ex.final22c.service.product.PersonalRecommendationRefresher;
+import com.ex.final22c.service.product.PersonalRecommendationStore;
+import com.ex.final22c.service.product.ScentSimilarityIndex;
+import com.ex.final22c.sql.SchemaCatalog;
+import com.ex.final22c.sql.SqlValidator;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 관리자 AI 파이프라인 운영 지표 (/admin/** → ADMIN 권한)
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/admin/ai/")
+public class AiMetricsController {
+
+	private final SqlPlanCache planCache;
+	private final QueryResultCache resultCache;
+	private final LlmBulkhead llmBulkhead;
+	private final RouteService routeService;
+	private final SqlValidator sqlValidator;
+	private final SqlCostGuard costGuard;
+	private final AnalyticsCatalog catalog;
+	private final SchemaCatalog schemaCatalog;
+	private final SchemaPromptBuilder schemaPrompt;
+	private final LlmUsageMeter llmUsage;
+	private final LlmResponseCache llmCache;
+	private final SqlSpeculator speculator;
+	private final ResultSummarizer resultSummarizer;
+	private final RequestCoalescer coalescer;
+	private final AiJobService aiJobs;
+	private final ConversationStore conversations;
+	private final ProductCandidateIndex candidateIndex;
+	private final SurveyRecommendationCache surveyCache;
+	private final ScentSimilarityIndex similarityIndex;
+	private final RecommendationPreRanker preRanker;
+	private final PersonalRecommendationStore personalRecs;
+	private final PersonalRecommendationRefresher personalRefresher;
+
+	// ====== 지표 조회 ======
+	@GetMapping("metrics")
+	public Map<String, Object> metrics() {
+		Map<String, Object> out = new LinkedHashMap<>();
+		out.put("planCache", planCache.stats());
+		out.put("resultCache", resultCache.stats());
+		out.put("llmBulkhead", llmBulkhead.stats());
+		out.put("router", routeService.stats());
+		out.put("sqlValidator", sqlValidator.stats());
+		out.put("costGuard", costGuard.stats());
+		out.put("catalog", catalog.stats());
+		out.put("schema", schemaCatalog.stats());
+		out.put("schemaSlice", schemaPrompt.stats());
+		out.put("llmUsage", llmUsage.stats());
+		out.put("llmCache", llmCache.stats());
+		out.put("speculation", speculator.stats());
+		out.put("summary", resultSummarizer.stats());
+		out.put("coalesce", coalescer.stats());
+		out.put("jobs", aiJobs.stats());
+		out.put("conversation", conversations.stats());
+		out.put("recoIndex", candidateIndex.stats());
+		out.put("surveyCache", surveyCache.stats());
+		out.put("similarity", similarityIndex.stats());
+		out.put("prerank", preRanker.stats());
+		out.put("personal", Map.of("store", personalRecs.stats(), "pipeline", personalRefresher.stats()));
+		return out;
+	}
+
+	// ====== SQL 플랜 캐시 비우기 (스키마/프롬프트 변경 후) ======
+	@PostMapping("plan-cache/clear")
+	public Map<String, Object> clearPlanCache() {
+		planCache.clear();
+		return Map.of("ok", true);
+	}
+
+	// ====== 쿼리 결과 캐시 비우기 (수동 데이터 보정 후) ======
+	@PostMapping("result-cache/clear")
+	public Map<String, Object> clearResultCache() {
+		resultCache.clear();
+		return Map.of("ok", true);
+	}
+
+	@PostMapping("llm-cache/clear")
+	public Map<String, Object> clearLlmCache() {
+		llmCache.clear();
+		return Map.of("ok", true);
+	}
+
+	// ====== MYTYPE 설문 조합 캐시 비우기 (프롬프트 변경 후, 백그라운드에서 다시 채움) ======
+	@PostMapping("survey-cache/clear")
+	public Map<String, Object> clearSurveyCache() {
+		surveyCache.clear();
+		return Map.of("ok", true);
+	}
+
+	// ====== 비슷한 향 인덱스 전체 재계산 (노트 일괄 수정 후, IDF 재보정) ======
+	@PostMapping("similarity/rebuild")
+	public ScentSimilarityIndex.Stats rebuildSimilarity() {
+		similarityIndex.rebuildAll();
+		return similarityIndex.stats();
+	}
+
+	// ====== 회원 개인화 추천 전체 재계산 (가중치/설정 변경 후, 다음 주기를 기다리지 않고) ======
+	@PostMapping("personal/rebuild")
+	public PersonalRecommendationRefresher.Stats rebuildPersonal() {
+		return personalRefresher.rebuildAll();
+	}
+
+	// ====== 최근 실행 쿼리 (예상 비용/행 vs 실제 시간/행) ======
+	@GetMapping("cost-guard/recent")
+	public List<SqlCostGuard.Sample> costGuardRecent() {
+		return costGuard.recent();
+	}
+
+	// ====== EXPLAIN 플랜 기억 비우기 (통계 수집/인덱스 변경 후) ======
+	@PostMapping("cost-guard/clear")
+	public Map<String, Object> clearCostGuard() {
+		costGuard.clear();
+		return Map.of("ok", true);
+	}
+
+	// ====== 분석 템플릿 카탈로그 (템플릿별 바인드/결과 컬럼/사용 횟수) ======
+	@GetMapping("catalog")
+	public List<AnalyticsCatalog.Entry> catalog() {
+		return catalog.entries();
+	}
+
+	// ====== 스키마 카탈로그 (테이블 줄 = schema-fallback.txt 표기, LLM 스키마 문서) ======
+	@GetMapping("schema")
+	public Map<String, Object> schema() {
+		Map<String, Object> out = new LinkedHashMap<>();
+		out.put("stats", schemaCatalog.stats());
+		out.put("tables", schemaCatalog.tableLines());
+		out.put("doc", schemaCatalog.doc());
+		return out;
+	}
+
+	// ====== 스키마 메타데이터 다시 읽기 (DDL 변경 후). 이전 스키마로 만든 SQL 플랜도 비움 ======
+	@PostMapping("schema/refresh")
+	public SchemaCatalog.Stats refreshSchema() {
+		long before = schemaCatalog.snapshot().version();
+		SchemaCatalog.Stats stats = schemaCatalog.refresh();
+		if (stats.version() != before) planCache.clear();
+		return stats;
+	}
+}
@@ -5,6 +5,7 @@ package com.ex.final22c.controller.api;
 import com.ex.final22c.service.chat.HybridRecommendationService;
 import com.ex.final22c.service.product.ProductService;
 import com.ex.final22c.data.product.Product;
+import com.ex.final22c.data.recommendation.RecommendedProduct;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +14,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.security.Principal;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -104,4 +106,44 @@ public class RecommendationController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(List.of());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * ✅ 비슷한 향 상품 (노트 벡터 유사도, LLM 호출 없음)
+     * @param id 기준 상품 ID
+     * @param size 개수 (1~20)
+     * @return [{id, name, brandName, price, imgUrl, score(%)}] 유사도 높은 순, 판매 가능 상품만
+     */
+    @GetMapping("/similar/{id}")
+    public ResponseEntity<List<Map<String, Object>>> getSimilar(@PathVariable("id") Long id,
+            @RequestParam(name = "size", defaultValue = "8") int size) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Object[] row : productService.getSimilarScentRecommendations(id, size)) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", row[0]);
+            m.put("name", row[1]);
+            m.put("brandName", row[2] != null ? row[2] : "");
+            m.put("price", row[6]);
+            String path = row[3] == null ? "" : row[3].toString().trim();
+            String name = row[4] == null ? "" : row[4].toString().trim();
+            if (!path.isEmpty() && !path.endsWith("/")) path += "/";
+            m.put("imgUrl", path.isEmpty() || name.isEmpty() ? "/img/noimg.png" : path + name);
+            m.put("score", row[7]);
+            out.add(m);
+        }
+        return ResponseEntity.ok(out);
+    }
+
+    /**
+     * ✅ 내 맞춤 추천 (찜/구매/리뷰 기반, 백그라운드에서 미리 계산된 결과를 키 조회만)
+     * @param size 개수 (1~20)
+     * @return [{productId, name, brandName, price, reason, imageUrl}] 비로그인은 401, 계산 전/활동 없음은 빈 리스트
+     */
+    @GetMapping("/personal")
+    public ResponseEntity<List<RecommendedProduct>> getPersonal(Principal principal,
+            @RequestParam(name = "size", defaultValue = "8") int size) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(List.of());
+        }
+        return ResponseEntity.ok(productService.getPersonalRecommendations(principal.getName(), size));
+    }
+}
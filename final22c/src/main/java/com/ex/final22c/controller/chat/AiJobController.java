@@ -0,0 +1,89 @@
+package com.ex.final22c.controller.chat;
+
+import com.ex.final22c.service.chat.AiJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * AI 분석 비동기 작업 API
+ * - POST   /api/ai/jobs              {message} → 202 {jobId, status, ...} (바로 반환)
+ * - GET    /api/ai/jobs/{id}         상태 폴링, DONE 이면 result(AiResult) 포함
+ * - GET    /api/ai/jobs/{id}/events  SSE: 지난 단계 이벤트 재생 후 이어서 전달, 마지막 done | error | canceled
+ * - DELETE /api/ai/jobs/{id}         취소
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/ai/jobs")
+public class AiJobController {
+
+    private static final Set<String> TERMINAL = Set.of("done", "error", "canceled");
+
+    private final AiJobService jobs;
+
+    @Value("${ai.stream.emitter-timeout-ms:120000}")
+    private long emitterTimeoutMs;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AiJobService.JobView> submit(@RequestBody ChatApiController.ChatRequest req, Principal principal) {
+        if (req.message() == null || req.message().isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "message 가 비어 있습니다.");
+        }
+        try {
+            AiJobService.JobView job = jobs.submit(req.message(), principal);
+            return ResponseEntity.accepted()
+                    .header("Location", "/api/ai/jobs/" + job.jobId())
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "요청이 많아 잠시 후 다시 시도해주세요.");
+        }
+    }
+
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public AiJobService.JobView status(@PathVariable("id") String id, Principal principal) {
+        AiJobService.JobView job = jobs.get(id, principal);
+        if (job == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "작업이 없거나 만료되었습니다.");
+        return job;
+    }
+
+    @DeleteMapping("/{id}")
+    public Map<String, Object> cancel(@PathVariable("id") String id, Principal principal) {
+        if (jobs.get(id, principal) == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "작업이 없거나 만료되었습니다.");
+        return Map.of("jobId", id, "canceled", jobs.cancel(id, principal));
+    }
+
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable("id") String id, Principal principal) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Consumer<AiJobService.Event> listener = e -> {
+            try {
+                emitter.send(SseEmitter.event().name(e.name()).data(e.data() == null ? Map.of() : e.data(), MediaType.APPLICATION_JSON));
+                if (TERMINAL.contains(e.name())) emitter.complete();
+            } catch (IOException | IllegalStateException ex) {
+                // 클라이언트가 끊김 → onError 에서 구독 해제 (작업은 계속, 폴링으로 결과 조회 가능)
+                emitter.completeWithError(ex);
+            }
+        };
+        Boolean live = jobs.subscribe(id, principal, listener);
+        if (live == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "작업이 없거나 만료되었습니다.");
+        }
+        Runnable detach = () -> jobs.unsubscribe(id, listener);
+        emitter.onCompletion(detach);
+        emitter.onTimeout(detach);
+        emitter.onError(e -> detach.run());
+        return emitter;
+    }
+}
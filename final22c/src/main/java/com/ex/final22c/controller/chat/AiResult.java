@@ -9,8 +9,17 @@ public record AiResult(
 	    String answer,
 	    String sql,
 	    List<Map<String,Object>> rows,
-	    ChartPayload chart
+	    ChartPayload chart,
+	    String traceId        // 요청 추적 id (로그의 [ai-trace] 단계 분해와 연결)
 	) {
+	    public AiResult(String answer, String sql, List<Map<String,Object>> rows, ChartPayload chart) {
+	        this(answer, sql, rows, chart, null);
+	    }
+
+	    public AiResult withTraceId(String traceId) {
+	        return new AiResult(answer, sql, rows, chart, traceId);
+	    }
+
 	    public record ChartPayload(
 	        List<String> labels,
 	        List<Number> values,
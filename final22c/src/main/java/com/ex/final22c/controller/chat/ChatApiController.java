@@ -1,27 +1,129 @@
 package com.ex.final22c.controller.chat;
 
+import com.ex.final22c.service.chat.AiStreamSink;
 import com.ex.final22c.service.chat.ChatOrchestratorService;
-import lombok.RequiredArgsConstructor;
+import com.ex.final22c.service.chat.ConversationStore;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+@Slf4j
 @RestController
-@RequiredArgsConstructor
 @RequestMapping("/api") // 공통 prefix
 public class ChatApiController {
 
     private final ChatOrchestratorService orchestrator;
+    private final Executor aiStreamExecutor;
+    private final ConversationStore conversations;
+
+    @Value("${ai.stream.emitter-timeout-ms:120000}")
+    private long emitterTimeoutMs;
+
+    public ChatApiController(ChatOrchestratorService orchestrator,
+                             @Qualifier("aiStreamExecutor") Executor aiStreamExecutor,
+                             ConversationStore conversations) {
+        this.orchestrator = orchestrator;
+        this.aiStreamExecutor = aiStreamExecutor;
+        this.conversations = conversations;
+    }
 
     @PostMapping(
         path = {"/chat", "/ai/query"},         // ← 두 경로 모두 허용
         consumes = MediaType.APPLICATION_JSON_VALUE,
         produces = MediaType.APPLICATION_JSON_VALUE
     )
-    public AiResult ask(@RequestBody ChatRequest req, Principal principal) {
-        return orchestrator.handle(req.message(), principal); // 내부 라우팅 그대로
+    public AiResult ask(@RequestBody ChatRequest req, Principal principal, HttpSession session) {
+        // 세션 단위 대화 맥락 ("그럼 지난달은?" 같은 후속 질문)
+        return orchestrator.handle(req.message(), principal, AiStreamSink.NOOP, session.getId());
+    }
+
+    /** 대화 맥락 초기화 (새 대화 시작) */
+    @DeleteMapping("/chat/context")
+    public Map<String, Object> resetContext(HttpSession session) {
+        conversations.clear(session.getId());
+        return Map.of("cleared", true);
+    }
+
+    /**
+     * SSE 버전 (/api/chat/stream, /api/ai/query/stream)
+     * 이벤트: routed → sql-ready → rows-ready → (chart-ready) → token... → done | error
+     * done 데이터는 일반 응답과 같은 AiResult (요약 후처리 포함 최종본)
+     */
+    @PostMapping(
+        path = {"/chat/stream", "/ai/query/stream"},
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.TEXT_EVENT_STREAM_VALUE
+    )
+    public SseEmitter askStream(@RequestBody ChatRequest req, Principal principal, HttpSession session) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        String conversationId = session.getId();   // 작업 스레드에선 세션 접근 불가 → 미리 꺼내 둠
+        try {
+            aiStreamExecutor.execute(() -> {
+                try {
+                    AiResult result = orchestrator.handle(req.message(), principal, new EmitterSink(emitter), conversationId);
+                    emitter.send(SseEmitter.event().name("done").data(result, MediaType.APPLICATION_JSON));
+                    emitter.complete();
+                } catch (Exception e) {
+                    log.warn("[AI SSE] 처리 실패: {}", e.toString());
+                    sendError(emitter, "죄송합니다. 서버 오류가 발생했습니다. 다시 시도해주세요.");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sendError(emitter, "요청이 많아 잠시 후 다시 시도해주세요.");
+        }
+        return emitter;
+    }
+
+    private static void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("message", message), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /** 오케스트레이터 이벤트 → SSE 이벤트 (클라이언트가 끊기면 이후 전송은 무시) */
+    private static final class EmitterSink implements AiStreamSink {
+        private final SseEmitter emitter;
+        private volatile boolean closed = false;
+
+        EmitterSink(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(() -> closed = true);
+            emitter.onTimeout(() -> closed = true);
+            emitter.onError(e -> closed = true);
+        }
+
+        @Override
+        public void stage(String name, Object data) {
+            send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void token(String text) {
+            send(SseEmitter.event().name("token").data(Map.of("text", text), MediaType.APPLICATION_JSON));
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) {
+            if (closed) return;
+            try {
+                emitter.send(event);
+            } catch (IOException | IllegalStateException e) {
+                closed = true;
+            }
+        }
     }
 
     public record ChatRequest(String message) {}
-}
\ No newline at end of file
+}
@@ -1,6 +1,8 @@
 package com.ex.final22c.controller.chat;
 
+import com.ex.final22c.service.chat.AiStreamSink;
 import com.ex.final22c.service.chat.ChatOrchestratorService;
+import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
@@ -27,8 +29,9 @@ public class ChatController {
         produces = MediaType.APPLICATION_JSON_VALUE
     )
     @ResponseBody
-    public AiResult ask(@RequestBody ChatReq req, Principal principal) {
-        return orchestrator.handle(req.message(), principal); // ★ 오케스트레이터가 AiResult 반환
+    public AiResult ask(@RequestBody ChatReq req, Principal principal, HttpSession session) {
+        // ★ 오케스트레이터가 AiResult 반환 (세션 단위 대화 맥락으로 후속 질문 해석)
+        return orchestrator.handle(req.message(), principal, AiStreamSink.NOOP, session.getId());
     }
 
     public record ChatReq(String message) {}
@@ -64,7 +64,7 @@ public class ProductController {
     }
 
     @GetMapping("")
-    public String main(Model model) {
+    public String main(@AuthenticationPrincipal UserDetails principal, Model model) {
 
         // 배너(이미지 경로는 필요 시 변경)
         model.addAttribute("bannerUrl", "/img/banner/main-banner.jpg");
@@ -79,6 +79,10 @@ public class ProductController {
         model.addAttribute("womanBest", productService.getGenderBest("F", 10)); // ✅ 여성 = F
         model.addAttribute("manBest", productService.getGenderBest("M", 10)); // ✅ 남성 = M
 
+        // 로그인 회원 맞춤 추천(미리 계산된 결과, 없으면 빈 리스트 → 섹션 숨김)
+        model.addAttribute("personalRecs",
+                principal == null ? List.of() : productService.getPersonalRecommendations(principal.getUsername(), 10));
+
         return "main/main";
     }
 
@@ -129,6 +133,7 @@ public class ProductController {
 
         // 2) 관련/추천
         List<Object[]> brandRecs = productService.getSameBrandRecommendations(id, 8);
+        List<Object[]> similarRecs = productService.getSimilarScentRecommendations(id, 8); // 비슷한 향 (노트 유사도)
 
         // 최근 7일 TOP 8 시도
         List<Object[]> recentTop8 = productService.getRecentTopSold(8, id); // 현재 상품 제외
@@ -141,6 +146,7 @@ public class ProductController {
         }
 
         model.addAttribute("brandRecs", brandRecs);
+        model.addAttribute("similarRecs", similarRecs);
         model.addAttribute("recentTop8", recentTop8);
         model.addAttribute("recentTopIsFallback", recentTopIsFallback);
 
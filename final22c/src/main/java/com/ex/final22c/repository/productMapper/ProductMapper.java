@@ -1,5 +1,6 @@
 package com.ex.final22c.repository.productMapper;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -73,4 +74,19 @@ public interface ProductMapper {
     	    @Param("gender")      String gender,
     	    @Param("priceRange")  String priceRange
     	);
+
+    // ★ 추천 후보 인메모리 인덱스(ProductCandidateIndex) 빌드용: 필터 없이 전 상품 + 필터 키(gradeNo/mainNoteNo)
+    List<Map<String, Object>> selectRecommendationIndexRows();
+
+    // ★ 추천 후보 인덱스 정렬용: 상품별·구매자 성별 판매량 (selectProductsForRecommendation 의 genderSales 와 같은 기준)
+    List<Map<String, Object>> selectRecommendationSalesByGender();
+
+    // ★ 비슷한 향 유사도 엔진(ScentSimilarityIndex)용: 노트/메인노트/등급 + 캐러셀 표시 항목 (ids 가 null 이면 전 상품)
+    List<Map<String, Object>> selectSimilarityRows(@Param("ids") List<Long> ids);
+
+    // ★ 개인화 추천 사전 계산(PersonalRecommendationRefresher)용: since 이후 찜/리뷰/주문이 있는 활성 회원 (since 가 null 이면 활동 있는 전체)
+    List<Map<String, Object>> selectPersonalRecoUsers(@Param("since") LocalDateTime since);
+
+    // ★ 회원별 활동 신호: 찜(Z) / 구매확정 수량(B) / 리뷰 평점(R), 상품 id·최근 시각
+    List<Map<String, Object>> selectPersonalRecoSignals(@Param("userNos") List<Long> userNos);
 }
@@ -69,7 +69,10 @@ import com.ex.final22c.repository.qna.AnswerRepository;
 import com.ex.final22c.repository.qna.QuestionRepository;
 import com.ex.final22c.repository.refund.RefundRepository;
 import com.ex.final22c.repository.user.UserRepository;
+import com.ex.final22c.service.ai.QueryResultCache;
+import com.ex.final22c.service.chat.ProductCandidateIndex;
 import com.ex.final22c.service.product.RestockNotifyService;
+import com.ex.final22c.service.product.ScentSimilarityIndex;
 
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
@@ -101,6 +104,9 @@ public class AdminService {
     private final RestockNotifyService restockNotifyService;
     private final QuestionRepository questionRepository;
     private final AnswerRepository answerRepository;
+    private final QueryResultCache resultCache;
+    private final ProductCandidateIndex candidateIndex;
+    private final ScentSimilarityIndex similarityIndex;
     ProductForm productForm;
 
     public Map<String, Object> buildDashboardKpis() {
@@ -507,7 +513,11 @@ public class AdminService {
         }
         // 수정 모드에서 파일 안 올리면 기존 이미지 그대로 유지
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        resultCache.invalidateAfterCommit("PRODUCT"); // 상품 집계용 AI 결과 캐시 무효화 (커밋 후)
+        candidateIndex.markDirtyAfterCommit(); // 추천 후보 인덱스 재빌드 예약
+        similarityIndex.markDirtyAfterCommit(saved.getId()); // 비슷한 향 벡터/이웃 증분 갱신
+        return saved;
     }
 
     // 관리자 픽
@@ -517,6 +527,7 @@ public class AdminService {
         if (pro.isPresent()) {
             Product product = pro.get();
             product.setIsPicked(isPicked);
+            resultCache.invalidateAfterCommit("PRODUCT");
         }
     }
 
@@ -527,6 +538,9 @@ public class AdminService {
             Product product = productOpt.get();
             product.setStatus(status); // 'active' 또는 'wait'
             productRepository.save(product);
+            resultCache.invalidateAfterCommit("PRODUCT");
+            candidateIndex.markDirtyAfterCommit();
+            similarityIndex.markDirtyAfterCommit(id);
         }
     }
 
@@ -779,6 +793,8 @@ public class AdminService {
 
         // 알림 대상(0→양수 전환된 상품)
         Set<Long> toNotify = new LinkedHashSet<>();
+        // 재고가 바뀐 상품 (비슷한 향 카드의 품절 여부 갱신용)
+        Set<Long> restocked = new LinkedHashSet<>();
 
         // ===== 2) 발주 상세 생성 + 재고 증가 =====
         for (Map<String, Object> item : items) {
@@ -808,6 +824,7 @@ public class AdminService {
             int now = prev + qty;
             product.setCount(now);
             productRepository.save(product);
+            restocked.add(productId);
 
             // 총금액/품목수 집계
             totalPrice += product.getCostPrice() * qty;
@@ -838,6 +855,13 @@ public class AdminService {
                 }
             }
         );
+
+        // ===== 6) 재고/발주 집계용 AI 결과 캐시 무효화 (커밋 후) =====
+        resultCache.invalidateAfterCommit("PRODUCT", "PURCHASE", "PURCHASEDETAIL");
+
+        // ===== 7) 추천 후보 인덱스 재고 비트 / 비슷한 향 카드 갱신 (커밋 후) =====
+        candidateIndex.markDirtyAfterCommit();
+        similarityIndex.markDirtyAfterCommit(restocked);
     }
 
     // 발주 목록
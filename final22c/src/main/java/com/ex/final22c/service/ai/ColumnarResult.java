@@ -0,0 +1,433 @@
+package com.ex.final22c.service.ai;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * AI SQL 결과 컬럼형 보관
+ * - 컬럼 메타(이름/타입)는 한 번만, 값은 컬럼별 배열 (숫자는 long[]/double[] + null 비트셋)
+ * - ResultSet에서 행 Map 없이 바로 채우고, JSON은 ColumnarResultSerializer가 배열에서 바로 씀
+ * - 기존 List<Map> 호출부는 asRows() 읽기 전용 뷰로 그대로 사용 (행마다 키를 복제하지 않음)
+ */
+@JsonSerialize(using = ColumnarResultSerializer.class)
+public final class ColumnarResult {
+
+    public enum Type { LONG, DOUBLE, STRING, OBJECT }
+
+    public record Column(String name, Type type) {}
+
+    private static final double MAX_EXACT_LONG = 9.007199254740992E15; // 2^53
+
+    private final List<Column> columns;
+    private final Object[] data;     // 컬럼별 long[] | double[] | Object[]
+    private final BitSet[] nulls;    // 숫자 컬럼의 null 위치 (문자/객체 컬럼은 배열의 null)
+    private final int rowCount;
+    private final Map<String, Integer> index = new HashMap<>();
+    private RowList rows;
+
+    private ColumnarResult(List<Column> columns, Object[] data, BitSet[] nulls, int rowCount) {
+        this.columns = columns;
+        this.data = data;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+        for (int c = columns.size() - 1; c >= 0; c--) {
+            String name = columns.get(c).name();
+            index.put(name.toUpperCase(Locale.ROOT), c);
+            index.put(name, c);
+        }
+    }
+
+    /* ===== 생성 ===== */
+
+    /** ResultSet 전체를 컬럼 배열로 읽음 (행 Map 생성 없음) */
+    public static ColumnarResult read(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        int n = md.getColumnCount();
+        Builder b = new Builder(n);
+        int[] sqlTypes = new int[n];
+        for (int c = 0; c < n; c++) {
+            sqlTypes[c] = md.getColumnType(c + 1);
+            int scale = md.getScale(c + 1);
+            Type type = typeOf(sqlTypes[c], md.getPrecision(c + 1), scale);
+            boolean numberExpr = (sqlTypes[c] == Types.NUMERIC || sqlTypes[c] == Types.DECIMAL) && scale <= 0;
+            b.column(c, md.getColumnLabel(c + 1), type, type == Type.DOUBLE && numberExpr);
+        }
+        while (rs.next()) {
+            for (int c = 0; c < n; c++) {
+                int i = c + 1;
+                switch (b.types[c]) {
+                    case LONG -> {
+                        long v = rs.getLong(i);
+                        if (rs.wasNull()) b.setNull(c); else b.setLong(c, v);
+                    }
+                    case DOUBLE -> {
+                        double v = rs.getDouble(i);
+                        if (rs.wasNull()) b.setNull(c); else b.setDouble(c, v);
+                    }
+                    case STRING -> {
+                        Object v = isTemporal(sqlTypes[c]) ? normalize(rs.getObject(i)) : rs.getString(i);
+                        b.setObject(c, v == null ? null : v.toString());
+                    }
+                    default -> b.setObject(c, normalize(rs.getObject(i)));
+                }
+            }
+            b.endRow();
+        }
+        return b.build();
+    }
+
+    /** List<Map> → 컬럼형. asRows() 뷰면 원본을 그대로 돌려줌 */
+    public static ColumnarResult of(List<Map<String, Object>> rows) {
+        if (rows instanceof RowList rl) return rl.table();
+        if (rows == null || rows.isEmpty()) return new Builder(0).build();
+
+        List<String> names = new ArrayList<>(rows.get(0).keySet());
+        Builder b = new Builder(names.size());
+        for (int c = 0; c < names.size(); c++) b.column(c, names.get(c), inferType(rows, names.get(c)), false);
+        for (Map<String, Object> r : rows) {
+            for (int c = 0; c < names.size(); c++) {
+                Object v = r.get(names.get(c));
+                if (v == null) b.setNull(c);
+                else if (b.types[c] == Type.LONG) b.setLong(c, ((Number) v).longValue());
+                else if (b.types[c] == Type.DOUBLE) b.setDouble(c, ((Number) v).doubleValue());
+                else b.setObject(c, v);
+            }
+            b.endRow();
+        }
+        return b.build();
+    }
+
+    /* ===== 조회 ===== */
+
+    public List<Column> columns() { return columns; }
+
+    public List<String> columnNames() {
+        List<String> out = new ArrayList<>(columns.size());
+        for (Column c : columns) out.add(c.name());
+        return out;
+    }
+
+    public int columnCount() { return columns.size(); }
+
+    public int rowCount() { return rowCount; }
+
+    /** 컬럼 번호 (정확히 → 대문자 순), 없으면 -1 */
+    public int indexOf(String name) {
+        if (name == null) return -1;
+        Integer i = index.get(name);
+        if (i == null) i = index.get(name.toUpperCase(Locale.ROOT));
+        return i == null ? -1 : i;
+    }
+
+    public boolean isNull(int col, int row) {
+        return nulls[col] != null ? nulls[col].get(row) : ((Object[]) data[col])[row] == null;
+    }
+
+    /** 박싱된 값 (LONG → Long, DOUBLE → Double) */
+    public Object get(int col, int row) {
+        return switch (columns.get(col).type()) {
+            case LONG -> nulls[col].get(row) ? null : ((long[]) data[col])[row];
+            case DOUBLE -> nulls[col].get(row) ? null : ((double[]) data[col])[row];
+            default -> ((Object[]) data[col])[row];
+        };
+    }
+
+    public long getLong(int col, int row) { return ((long[]) data[col])[row]; }
+
+    public double getDouble(int col, int row) { return ((double[]) data[col])[row]; }
+
+    /** 숫자로 읽기 (null/숫자 아님 → 0) */
+    public double number(int col, int row) {
+        switch (columns.get(col).type()) {
+            case LONG: return nulls[col].get(row) ? 0 : ((long[]) data[col])[row];
+            case DOUBLE: return nulls[col].get(row) ? 0 : ((double[]) data[col])[row];
+            default:
+                Object v = ((Object[]) data[col])[row];
+                if (v instanceof Number n) return n.doubleValue();
+                if (v == null) return 0;
+                try { return Double.parseDouble(v.toString()); } catch (NumberFormatException e) { return 0; }
+        }
+    }
+
+    /** 컬럼의 첫 non-null 값 (타입 추정용) */
+    public Object firstNonNull(int col) {
+        for (int r = 0; r < rowCount; r++) if (!isNull(col, r)) return get(col, r);
+        return null;
+    }
+
+    /** 행 Map 인터페이스 뷰 (읽기 전용, 값은 배열에서 바로 읽음) */
+    public List<Map<String, Object>> asRows() {
+        if (rows == null) rows = new RowList();
+        return rows;
+    }
+
+    /* ===== 변형 ===== */
+
+    /** 주어진 행 번호 순서대로 부분 결과 */
+    public ColumnarResult select(int[] rowIdx) {
+        Object[] d = new Object[columns.size()];
+        BitSet[] nb = new BitSet[columns.size()];
+        for (int c = 0; c < columns.size(); c++) {
+            switch (columns.get(c).type()) {
+                case LONG -> {
+                    long[] src = (long[]) data[c], dst = new long[rowIdx.length];
+                    for (int i = 0; i < rowIdx.length; i++) dst[i] = src[rowIdx[i]];
+                    d[c] = dst;
+                }
+                case DOUBLE -> {
+                    double[] src = (double[]) data[c], dst = new double[rowIdx.length];
+                    for (int i = 0; i < rowIdx.length; i++) dst[i] = src[rowIdx[i]];
+                    d[c] = dst;
+                }
+                default -> {
+                    Object[] src = (Object[]) data[c], dst = new Object[rowIdx.length];
+                    for (int i = 0; i < rowIdx.length; i++) dst[i] = src[rowIdx[i]];
+                    d[c] = dst;
+                }
+            }
+            if (nulls[c] != null) {
+                nb[c] = new BitSet(rowIdx.length);
+                for (int i = 0; i < rowIdx.length; i++) if (nulls[c].get(rowIdx[i])) nb[c].set(i);
+            }
+        }
+        return new ColumnarResult(columns, d, nb, rowIdx.length);
+    }
+
+    /** col 값 내림차순 상위 n행 (동률은 원래 순서 유지). 전체 정렬 대신 크기 n 힙 */
+    public ColumnarResult topN(int col, int n) {
+        int k = Math.min(n, rowCount);
+        if (k <= 0) return select(new int[0]);
+        Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(r -> number(col, r))
+                .thenComparing(Comparator.<Integer>naturalOrder().reversed());
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k + 1, worstFirst);
+        for (int r = 0; r < rowCount; r++) {
+            heap.add(r);
+            if (heap.size() > k) heap.poll();
+        }
+        int[] idx = new int[heap.size()];
+        for (int i = idx.length - 1; i >= 0; i--) idx[i] = heap.poll();
+        return select(idx);
+    }
+
+    /** 캐시 용량 계산용 대략적 바이트 수 */
+    public long estimateBytes() {
+        long total = 64L;
+        for (int c = 0; c < columns.size(); c++) {
+            total += 32L + columns.get(c).name().length() * 2L;
+            switch (columns.get(c).type()) {
+                case LONG, DOUBLE -> total += 8L * rowCount + rowCount / 8 + 16L;
+                default -> {
+                    for (Object v : (Object[]) data[c]) {
+                        total += 8L;
+                        if (v instanceof CharSequence cs) total += 40L + cs.length() * 2L;
+                        else if (v != null) total += 24L;
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /* ===== 행 뷰 ===== */
+
+    @JsonSerialize(using = ColumnarResultSerializer.Rows.class)
+    public final class RowList extends AbstractList<Map<String, Object>> implements RandomAccess {
+        public ColumnarResult table() { return ColumnarResult.this; }
+
+        @Override public Map<String, Object> get(int row) {
+            if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException(row);
+            return new RowView(row);
+        }
+
+        @Override public int size() { return rowCount; }
+    }
+
+    private final class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowView(int row) { this.row = row; }
+
+        @Override public Object get(Object key) {
+            int c = key instanceof String s ? indexOf(s) : -1;
+            return c < 0 ? null : ColumnarResult.this.get(c, row);
+        }
+
+        @Override public boolean containsKey(Object key) {
+            return key instanceof String s && indexOf(s) >= 0;
+        }
+
+        @Override public int size() { return columns.size(); }
+
+        @Override public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override public int size() { return columns.size(); }
+
+                @Override public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        int c = 0;
+                        @Override public boolean hasNext() { return c < columns.size(); }
+                        @Override public Entry<String, Object> next() {
+                            if (c >= columns.size()) throw new NoSuchElementException();
+                            int i = c++;
+                            return new SimpleImmutableEntry<>(columns.get(i).name(), ColumnarResult.this.get(i, row));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    /* ===== helpers ===== */
+
+    private static Type typeOf(int sqlType, int precision, int scale) {
+        return switch (sqlType) {
+            case Types.BIGINT, Types.INTEGER, Types.SMALLINT, Types.TINYINT -> Type.LONG;
+            case Types.FLOAT, Types.DOUBLE, Types.REAL -> Type.DOUBLE;
+            // Oracle NUMBER: 정수 자릿수가 확정이면 LONG, 소수 있으면 DOUBLE,
+            // 식(COUNT/SUM 등)처럼 precision 0 이면 일단 DOUBLE로 읽고 build 시 전부 정수면 LONG
+            case Types.NUMERIC, Types.DECIMAL -> (scale == 0 && precision > 0 && precision <= 18) ? Type.LONG : Type.DOUBLE;
+            case Types.CHAR, Types.VARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGVARCHAR, Types.LONGNVARCHAR,
+                 Types.CLOB, Types.NCLOB -> Type.STRING;
+            default -> isTemporal(sqlType) ? Type.STRING : Type.OBJECT;
+        };
+    }
+
+    private static boolean isTemporal(int sqlType) {
+        return sqlType == Types.DATE || sqlType == Types.TIMESTAMP || sqlType == Types.TIME
+                || sqlType == Types.TIMESTAMP_WITH_TIMEZONE || sqlType == -101 || sqlType == -102; // Oracle TIMESTAMPTZ/LTZ
+    }
+
+    private static Type inferType(List<Map<String, Object>> rows, String col) {
+        boolean any = false, numbers = true, strings = true, integral = true;
+        for (Map<String, Object> r : rows) {
+            Object v = r.get(col);
+            if (v == null) continue;
+            any = true;
+            if (!(v instanceof String)) strings = false;
+            // BigDecimal/BigInteger 는 double 로 바꾸면 자릿수/스케일("129000.50")이 달라지므로 OBJECT 그대로
+            if (v instanceof Double || v instanceof Float) integral = false;
+            else if (!(v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte)) numbers = false;
+        }
+        if (!any) return Type.OBJECT;
+        if (strings) return Type.STRING;
+        if (!numbers) return Type.OBJECT;
+        return integral ? Type.LONG : Type.DOUBLE;
+    }
+
+    /** 드라이버가 주는 타입을 화면/JSON 친화적으로 정리 */
+    static Object normalize(Object v) {
+        if (v == null) return null;
+        if (v instanceof Timestamp ts) {
+            // Oracle TIMESTAMP를 ISO 문자열로
+            return OffsetDateTime.ofInstant(ts.toInstant(), ZoneId.systemDefault()).toString();
+        }
+        if (v instanceof byte[] b) {
+            // BLOB 등은 길이만
+            return "(bytes:" + b.length + ")";
+        }
+        return v;
+    }
+
+    /** 컬럼 배열을 행 단위로 채움 (배열은 2배씩 늘리고 build 때 크기에 맞춤) */
+    private static final class Builder {
+        final String[] names;
+        final Type[] types;
+        final boolean[] integral;   // 자릿수 미확정 NUMBER 컬럼 값이 아직 전부 정수인지 (false면 DOUBLE 유지)
+        final Object[] data;
+        final BitSet[] nulls;
+        int size = 0;
+        int cap = 64;
+
+        Builder(int n) {
+            names = new String[n];
+            types = new Type[n];
+            integral = new boolean[n];
+            data = new Object[n];
+            nulls = new BitSet[n];
+        }
+
+        void column(int c, String name, Type type, boolean inferIntegral) {
+            names[c] = name;
+            types[c] = type;
+            integral[c] = inferIntegral;
+            switch (type) {
+                case LONG -> { data[c] = new long[cap]; nulls[c] = new BitSet(); }
+                case DOUBLE -> { data[c] = new double[cap]; nulls[c] = new BitSet(); }
+                default -> data[c] = new Object[cap];
+            }
+        }
+
+        void setLong(int c, long v) { ((long[]) data[c])[size] = v; }
+
+        void setDouble(int c, double v) {
+            ((double[]) data[c])[size] = v;
+            if (integral[c] && (v != Math.rint(v) || Math.abs(v) > MAX_EXACT_LONG)) integral[c] = false;
+        }
+
+        void setObject(int c, Object v) { ((Object[]) data[c])[size] = v; }
+
+        void setNull(int c) {
+            if (nulls[c] != null) nulls[c].set(size);
+            else ((Object[]) data[c])[size] = null;
+        }
+
+        void endRow() {
+            size++;
+            if (size < cap) return;
+            cap *= 2;
+            for (int c = 0; c < data.length; c++) {
+                switch (types[c]) {
+                    case LONG -> data[c] = Arrays.copyOf((long[]) data[c], cap);
+                    case DOUBLE -> data[c] = Arrays.copyOf((double[]) data[c], cap);
+                    default -> data[c] = Arrays.copyOf((Object[]) data[c], cap);
+                }
+            }
+        }
+
+        ColumnarResult build() {
+            List<Column> cols = new ArrayList<>(names.length);
+            for (int c = 0; c < names.length; c++) {
+                switch (types[c]) {
+                    case LONG -> data[c] = Arrays.copyOf((long[]) data[c], size);
+                    case DOUBLE -> {
+                        double[] d = (double[]) data[c];
+                        if (integral[c]) {
+                            long[] l = new long[size];
+                            for (int r = 0; r < size; r++) l[r] = (long) d[r];
+                            data[c] = l;
+                            types[c] = Type.LONG;
+                        } else {
+                            data[c] = Arrays.copyOf(d, size);
+                        }
+                    }
+                    default -> data[c] = Arrays.copyOf((Object[]) data[c], size);
+                }
+                cols.add(new Column(names[c], types[c]));
+            }
+            return new ColumnarResult(List.copyOf(cols), data, nulls, size);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ex.final22c.service.ai;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * ColumnarResult → JSON 행 배열 [{"COL":v,...}, ...]
+ * - 기존 List<Map> 응답과 같은 모양, 단 행 Map/박싱 없이 컬럼 배열에서 바로 씀
+ * - 컬럼명은 한 번만 이스케이프(SerializedString)해서 모든 행에 재사용
+ */
+public class ColumnarResultSerializer extends StdSerializer<ColumnarResult> {
+
+    public ColumnarResultSerializer() {
+        super(ColumnarResult.class);
+    }
+
+    @Override
+    public void serialize(ColumnarResult t, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        List<ColumnarResult.Column> cols = t.columns();
+        int n = cols.size();
+        SerializedString[] names = new SerializedString[n];
+        for (int c = 0; c < n; c++) names[c] = new SerializedString(cols.get(c).name());
+
+        gen.writeStartArray(t, t.rowCount());
+        for (int r = 0; r < t.rowCount(); r++) {
+            gen.writeStartObject();
+            for (int c = 0; c < n; c++) {
+                gen.writeFieldName(names[c]);
+                if (t.isNull(c, r)) {
+                    gen.writeNull();
+                    continue;
+                }
+                switch (cols.get(c).type()) {
+                    case LONG -> gen.writeNumber(t.getLong(c, r));
+                    case DOUBLE -> gen.writeNumber(t.getDouble(c, r));
+                    case STRING -> gen.writeString((String) t.get(c, r));
+                    default -> provider.defaultSerializeValue(t.get(c, r), gen);
+                }
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    /** asRows() 뷰도 같은 방식으로 (채팅 AiResult.rows 등 List<Map> 타입 필드) */
+    public static class Rows extends StdSerializer<ColumnarResult.RowList> {
+        private final ColumnarResultSerializer delegate = new ColumnarResultSerializer();
+
+        public Rows() {
+            super(ColumnarResult.RowList.class);
+        }
+
+        @Override
+        public void serialize(ColumnarResult.RowList rows, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            delegate.serialize(rows.table(), gen, provider);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.ex.final22c.service.ai;
+
+import com.ex.final22c.sql.SqlGuard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 분석 쿼리 결과 캐시
+ * - 키: (SQL 원문, 바인드 맵)
+ * - TTL: SQL이 읽는 테이블별 TTL 중 가장 짧은 값
+ * - 무효화: 쓰기 서비스(결제/환불/발주)가 건드린 테이블을 읽는 항목을 커밋 후 제거
+ * - 상한: 항목 수 + 추정 메모리(바이트) 둘 다 LRU로 제한
+ */
+@Slf4j
+@Component
+public class QueryResultCache {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long defaultTtlMillis;
+    private final Map<String, Long> tableTtlMillis = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private long bytes = 0L; // cache 모니터로 보호
+
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(128, 0.75f, true);
+
+    private record Entry(List<Map<String,Object>> rows, Set<String> tables, long expiresAt, long bytes) {}
+
+    public record Stats(long hits, long misses, double hitRatio, long invalidations,
+                        int size, int maxEntries, long bytes, long maxBytes) {}
+
+    public QueryResultCache(
+            @Value("${ai.result-cache.max-entries:300}") int maxEntries,
+            @Value("${ai.result-cache.max-bytes:33554432}") long maxBytes,
+            @Value("${ai.result-cache.default-ttl-seconds:120}") long defaultTtlSeconds,
+            @Value("${ai.result-cache.table-ttl-seconds:}") String tableTtls) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.defaultTtlMillis = defaultTtlSeconds * 1000L;
+        // 예) ORDERS:60,ORDERDETAIL:60,PRODUCT:300
+        if (tableTtls != null && !tableTtls.isBlank()) {
+            for (String pair : tableTtls.split(",")) {
+                String[] kv = pair.trim().split(":");
+                if (kv.length != 2) continue;
+                try {
+                    tableTtlMillis.put(kv[0].trim().toUpperCase(Locale.ROOT), Long.parseLong(kv[1].trim()) * 1000L);
+                } catch (NumberFormatException e) {
+                    log.warn("잘못된 테이블 TTL 설정 무시: {}", pair);
+                }
+            }
+        }
+    }
+
+    public static String keyOf(String sql, Map<String,Object> params) {
+        // 바인드 순서와 무관하게 같은 키가 나오도록 정렬
+        Map<String,Object> sorted = (params == null) ? Map.of() : new TreeMap<>(params);
+        return sql + "\u0000" + sorted;
+    }
+
+    public List<Map<String,Object>> get(String key) {
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            if (e != null && e.expiresAt() < System.currentTimeMillis()) {
+                removeLocked(key);
+                e = null;
+            }
+            if (e == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return e.rows();
+        }
+    }
+
+    public void put(String key, String sql, List<Map<String,Object>> rows) {
+        if (rows == null) return;
+        Set<String> tables = SqlGuard.referencedTables(sql);
+        if (tables.isEmpty()) return; // 어느 테이블을 읽는지 모르면 무효화할 수 없으므로 캐시하지 않음
+
+        long ttl = defaultTtlMillis;
+        for (String t : tables) ttl = Math.min(ttl, tableTtlMillis.getOrDefault(t, defaultTtlMillis));
+        if (ttl <= 0) return;
+
+        // 호출자가 결과를 수정해도 캐시가 오염되지 않도록 읽기 전용으로 보관 (컬럼형 뷰는 이미 읽기 전용)
+        List<Map<String,Object>> frozen;
+        long size;
+        if (rows instanceof ColumnarResult.RowList view) {
+            frozen = view;
+            size = 64L + key.length() * 2L + view.table().estimateBytes();
+        } else {
+            List<Map<String,Object>> copy = new ArrayList<>(rows.size());
+            for (Map<String,Object> r : rows) copy.add(Collections.unmodifiableMap(new LinkedHashMap<>(r)));
+            frozen = Collections.unmodifiableList(copy);
+            size = estimateBytes(key, frozen);
+        }
+        if (size > maxBytes) return;
+
+        synchronized (cache) {
+            removeLocked(key);
+            cache.put(key, new Entry(frozen, tables,
+                    System.currentTimeMillis() + ttl, size));
+            bytes += size;
+            Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+            while ((cache.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+                bytes -= it.next().getValue().bytes();
+                it.remove();
+            }
+        }
+    }
+
+    /** 주어진 테이블 중 하나라도 읽는 항목 제거 */
+    public int invalidateTables(String... tables) {
+        Set<String> targets = new HashSet<>();
+        for (String t : tables) targets.add(t.toUpperCase(Locale.ROOT));
+        int removed = 0;
+        synchronized (cache) {
+            Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next().getValue();
+                if (!Collections.disjoint(e.tables(), targets)) {
+                    bytes -= e.bytes();
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        if (removed > 0) {
+            invalidations.addAndGet(removed);
+            log.debug("[RESULT CACHE] invalidated {} entries for {}", removed, targets);
+        }
+        return removed;
+    }
+
+    /**
+     * 트랜잭션 안에서 호출되면 커밋 후 무효화(롤백 시 유지), 밖이면 즉시 무효화.
+     * 커밋 전에 지우면 그 사이 다른 요청이 옛 데이터로 다시 채울 수 있기 때문.
+     */
+    public void invalidateAfterCommit(String... tables) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        invalidateTables(tables);
+                    }
+                }
+            );
+        } else {
+            invalidateTables(tables);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+            bytes = 0L;
+        }
+    }
+
+    public Stats stats() {
+        long h = hits.get(), m = misses.get();
+        synchronized (cache) {
+            return new Stats(h, m, (h + m) == 0 ? 0d : (double) h / (h + m), invalidations.get(),
+                    cache.size(), maxEntries, bytes, maxBytes);
+        }
+    }
+
+    private void removeLocked(String key) {
+        Entry old = cache.remove(key);
+        if (old != null) bytes -= old.bytes();
+    }
+
+    /** 대략적인 힙 사용량 추정 (문자열 2바이트/문자 + 객체/엔트리 오버헤드) */
+    private static long estimateBytes(String key, List<Map<String,Object>> rows) {
+        long total = 64L + key.length() * 2L;
+        for (Map<String,Object> r : rows) {
+            total += 48L;
+            for (Map.Entry<String,Object> e : r.entrySet()) {
+                total += 32L + e.getKey().length() * 2L;
+                Object v = e.getValue();
+                if (v == null) continue;
+                if (v instanceof CharSequence cs) total += 40L + cs.length() * 2L;
+                else total += 24L;
+            }
+        }
+        return total;
+    }
+}
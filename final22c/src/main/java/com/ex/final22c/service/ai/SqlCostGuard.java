@@ -0,0 +1,253 @@
+package com.ex.final22c.service.ai;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.ex.final22c.sql.SqlParser;
+import com.ex.final22c.sql.SqlRewriter;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * LLM SQL 실행 전 비용 가드 (Oracle EXPLAIN PLAN)
+ * - 실행 직전에 행 상한(FETCH FIRST n ROWS ONLY)이 없으면 주입
+ * - EXPLAIN PLAN → PLAN_TABLE에서 루트 비용/카디널리티, 단계별 최대 카디널리티를 읽음
+ * - 비용 또는 중간 카디널리티가 상한을 넘으면 CostLimitException (실행하지 않음)
+ * - 바인드 값은 EXPLAIN에 쓰이지 않으므로 플랜은 SQL 문자열 기준으로 TTL 동안 기억
+ * - 실행 후 예상 비용 / 실제 시간 / 실제 행 수를 최근 N건 보관 (관리자 지표)
+ * plan-table 을 바꾸면 같은 컬럼(STATEMENT_ID, ID, COST, CARDINALITY)을 가진 대체 테이블로도 동작
+ */
+@Slf4j
+@Component
+public class SqlCostGuard {
+
+    private static final Pattern IDENT = Pattern.compile("[A-Za-z_][\\w$#]*(\\.[A-Za-z_][\\w$#]*)?");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final boolean failOpen;
+    private final double maxCost;
+    private final double maxCardinality;
+    private final int maxRows;
+    private final String planTable;
+    private final long planTtlMs;
+    private final int planCacheSize;
+    private final long slowMs;
+    private final int recentSize;
+
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicLong explained = new AtomicLong();
+    private final AtomicLong planHits = new AtomicLong();
+    private final AtomicLong capped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong explainErrors = new AtomicLong();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong slow = new AtomicLong();
+    private final AtomicLong totalElapsedMs = new AtomicLong();
+
+    private final LinkedHashMap<String, Checked> plans = new LinkedHashMap<>(128, 0.75f, true);
+    private final ArrayDeque<Sample> recent = new ArrayDeque<>();   // synchronized(recent)
+
+    /** EXPLAIN 결과. cost/cardinality 는 루트(ID=0), maxStepCardinality 는 전 단계 최대값 */
+    public record Plan(double cost, double cardinality, double maxStepCardinality) {}
+
+    /** 실행할 SQL (행 상한 주입 후) + 플랜(EXPLAIN 실패/비활성이면 null) */
+    public record Checked(String sql, Plan plan, boolean capped, long expiresAt) {}
+
+    public record Sample(long at, String sql, Double estCost, Double estRows, long elapsedMs, int rows) {}
+
+    public record Stats(boolean enabled, double maxCost, double maxCardinality, int maxRows,
+                        long explained, long planHits, long capped, long rejected, long explainErrors,
+                        long executed, long slow, double avgElapsedMs) {}
+
+    public static class CostLimitException extends IllegalArgumentException {
+        public CostLimitException(String message) { super(message); }
+    }
+
+    public SqlCostGuard(JdbcTemplate jdbcTemplate,
+                        @Value("${ai.cost-guard.enabled:true}") boolean enabled,
+                        @Value("${ai.cost-guard.fail-open:true}") boolean failOpen,
+                        @Value("${ai.cost-guard.max-cost:200000}") double maxCost,
+                        @Value("${ai.cost-guard.max-cardinality:5000000}") double maxCardinality,
+                        @Value("${ai.cost-guard.max-rows:2000}") int maxRows,
+                        @Value("${ai.cost-guard.plan-table:PLAN_TABLE}") String planTable,
+                        @Value("${ai.cost-guard.plan-ttl-seconds:600}") long planTtlSeconds,
+                        @Value("${ai.cost-guard.plan-cache-size:512}") int planCacheSize,
+                        @Value("${ai.cost-guard.slow-ms:1000}") long slowMs,
+                        @Value("${ai.cost-guard.recent-size:50}") int recentSize) {
+        if (!IDENT.matcher(planTable).matches()) {
+            throw new IllegalArgumentException("ai.cost-guard.plan-table 형식 오류: " + planTable);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.failOpen = failOpen;
+        this.maxCost = maxCost;
+        this.maxCardinality = maxCardinality;
+        this.maxRows = maxRows;
+        this.planTable = planTable;
+        this.planTtlMs = planTtlSeconds * 1000L;
+        this.planCacheSize = Math.max(1, planCacheSize);
+        this.slowMs = slowMs;
+        this.recentSize = Math.max(0, recentSize);
+    }
+
+    /**
+     * 실행 전 검사. 통과하면 실제로 실행할 SQL(행 상한 주입본)을 돌려줌
+     * @throws CostLimitException 예상 비용/카디널리티 초과
+     */
+    public Checked check(String sql) {
+        Checked c = lookup(sql);
+        if (c == null) {
+            c = compute(sql);
+            // fail-open 으로 EXPLAIN 없이 통과한 결과는 기억하지 않음 (다음 호출에서 다시 EXPLAIN)
+            if (c.plan() != null || !enabled) store(sql, c);
+        }
+        Plan p = c.plan();
+        if (p != null && p.cost() > maxCost) {
+            rejected.incrementAndGet();
+            log.warn("[cost-guard] 거절 cost={} (상한 {}) sql={}", (long) p.cost(), (long) maxCost, oneLine(sql));
+            throw new CostLimitException("예상 실행 비용이 너무 큽니다. 기간을 좁히거나 조건을 추가해 주세요.");
+        }
+        if (p != null && p.maxStepCardinality() > maxCardinality) {
+            rejected.incrementAndGet();
+            log.warn("[cost-guard] 거절 cardinality={} (상한 {}) sql={}",
+                    (long) p.maxStepCardinality(), (long) maxCardinality, oneLine(sql));
+            throw new CostLimitException("처리해야 할 데이터가 너무 많습니다. 기간을 좁히거나 조건을 추가해 주세요.");
+        }
+        return c;
+    }
+
+    /** 실행 후 실제 시간/행 수 기록 */
+    public void record(Checked c, long elapsedMs, int rows) {
+        executed.incrementAndGet();
+        totalElapsedMs.addAndGet(elapsedMs);
+        Plan p = c.plan();
+        if (elapsedMs >= slowMs) {
+            slow.incrementAndGet();
+            log.warn("[cost-guard] 느린 쿼리 {}ms rows={} estCost={} estRows={} sql={}", elapsedMs, rows,
+                    p == null ? "-" : (long) p.cost(), p == null ? "-" : (long) p.cardinality(), oneLine(c.sql()));
+        }
+        if (recentSize == 0) return;
+        Sample s = new Sample(System.currentTimeMillis(), c.sql(),
+                p == null ? null : p.cost(), p == null ? null : p.cardinality(), elapsedMs, rows);
+        synchronized (recent) {
+            recent.addFirst(s);
+            while (recent.size() > recentSize) recent.removeLast();
+        }
+    }
+
+    public List<Sample> recent() {
+        synchronized (recent) { return new ArrayList<>(recent); }
+    }
+
+    public Stats stats() {
+        long n = executed.get();
+        return new Stats(enabled, maxCost, maxCardinality, maxRows,
+                explained.get(), planHits.get(), capped.get(), rejected.get(), explainErrors.get(),
+                n, slow.get(), n == 0 ? 0d : (double) totalElapsedMs.get() / n);
+    }
+
+    public void clear() {
+        synchronized (plans) { plans.clear(); }
+    }
+
+    /* helpers */
+
+    private Checked compute(String sql) {
+        String run = sql;
+        if (maxRows > 0) {
+            try {
+                run = SqlRewriter.ensureRowLimit(SqlParser.parse(sql), maxRows).toSql();
+            } catch (IllegalArgumentException e) {
+                run = sql; // 파서가 못 읽는 SQL은 가드 단계에서 이미 걸러짐, 여기선 원문 실행
+            }
+        }
+        boolean wasCapped = !run.equals(sql);
+        if (wasCapped) capped.incrementAndGet();
+
+        Plan plan = enabled ? explain(run) : null;
+        return new Checked(run, plan, wasCapped, System.currentTimeMillis() + planTtlMs);
+    }
+
+    /** EXPLAIN PLAN 은 실행하지 않으므로 :start 같은 바인드가 비어 있어도 된다. 같은 커넥션에서 읽고 지움 */
+    private Plan explain(String sql) {
+        String id = "AI" + Long.toString(System.nanoTime(), 36) + seq.incrementAndGet();
+        try {
+            Plan plan = jdbcTemplate.execute((ConnectionCallback<Plan>) con -> {
+                try (Statement st = con.createStatement()) {
+                    st.setEscapeProcessing(false);
+                    st.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + id + "' FOR " + sql);
+                }
+                double cost = 0, card = 0, maxCard = 0;
+                try (PreparedStatement ps = con.prepareStatement(
+                        "SELECT ID, COST, CARDINALITY FROM " + planTable + " WHERE STATEMENT_ID = ?")) {
+                    ps.setString(1, id);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            double c = rs.getDouble(3);
+                            if (rs.getInt(1) == 0) {
+                                cost = rs.getDouble(2);
+                                card = c;
+                            }
+                            maxCard = Math.max(maxCard, c);
+                        }
+                    }
+                } finally {
+                    try (PreparedStatement del = con.prepareStatement(
+                            "DELETE FROM " + planTable + " WHERE STATEMENT_ID = ?")) {
+                        del.setString(1, id);
+                        del.executeUpdate();
+                    }
+                }
+                return new Plan(cost, card, maxCard);
+            });
+            explained.incrementAndGet();
+            return plan;
+        } catch (RuntimeException e) {
+            explainErrors.incrementAndGet();
+            if (!failOpen) throw new CostLimitException("실행 계획을 확인하지 못해 쿼리를 실행하지 않았습니다.");
+            log.warn("[cost-guard] EXPLAIN 실패 → 검사 없이 실행: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Checked lookup(String sql) {
+        synchronized (plans) {
+            Checked c = plans.get(sql);
+            if (c == null) return null;
+            if (c.expiresAt() < System.currentTimeMillis()) {
+                plans.remove(sql);
+                return null;
+            }
+            planHits.incrementAndGet();
+            return c;
+        }
+    }
+
+    private void store(String sql, Checked c) {
+        synchronized (plans) {
+            plans.put(sql, c);
+            if (plans.size() > planCacheSize) {
+                var it = plans.entrySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private static String oneLine(String sql) {
+        String s = sql.replaceAll("\\s+", " ").trim();
+        return s.length() > 300 ? s.substring(0, 300) + "…" : s;
+    }
+}
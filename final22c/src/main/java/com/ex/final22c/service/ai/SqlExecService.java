@@ -2,14 +2,12 @@ package com.ex.final22c.service.ai;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.sql.PreparedStatement;
-import java.sql.Timestamp;
-import java.time.OffsetDateTime;
-import java.time.ZoneId;
 import java.util.*;
 
 @Service
@@ -18,43 +16,52 @@ public class SqlExecService {
 
     private final JdbcTemplate jdbcTemplate;
     private final NamedParameterJdbcTemplate namedJdbcTemplate; // ⬅️ 추가
+    private final QueryResultCache resultCache;
+    private final SqlCostGuard costGuard;
+
+    // 행 Map 대신 컬럼 배열로 읽음 (호출부엔 asRows() 읽기 전용 뷰)
+    private static final ResultSetExtractor<ColumnarResult> COLUMNAR = ColumnarResult::read;
 
     /** 순수 SQL(바인딩 없음) 실행 */
     public List<Map<String,Object>> runSelect(String sql) {
+        String key = QueryResultCache.keyOf(sql, null);
+        var cached = resultCache.get(key);
+        if (cached != null) return cached;
+
+        var checked = costGuard.check(sql);   // EXPLAIN 비용 검사 + 행 상한 주입
+        long t0 = System.nanoTime();
+        var rows = querySelect(checked.sql());
+        costGuard.record(checked, (System.nanoTime() - t0) / 1_000_000, rows.size());
+        resultCache.put(key, sql, rows);
+        return rows;
+    }
+
+    private List<Map<String,Object>> querySelect(String sql) {
         return jdbcTemplate.query(con -> {
             PreparedStatement ps = con.prepareStatement(sql);
             ps.setQueryTimeout(5);     // 5초 타임아웃(데모)
             ps.setFetchSize(200);      // 네트워크 왕복 줄이기(옵션)
             return ps;
-        }, rs -> {
-            var md = rs.getMetaData();
-            int cols = md.getColumnCount();
-            var out = new ArrayList<Map<String,Object>>();
-            while (rs.next()) {
-                var row = new LinkedHashMap<String,Object>();
-                for (int i=1; i<=cols; i++) {
-                    Object v = rs.getObject(i);
-                    row.put(md.getColumnLabel(i), normalize(v));
-                }
-                out.add(row);
-            }
-            return out;
-        });
+        }, COLUMNAR).asRows();
     }
 
     /** 네임드 파라미터(:userNo, :limit ...) 바인딩 실행 */
     public List<Map<String,Object>> runSelectNamed(String sql, Map<String,Object> params){
+        String key = QueryResultCache.keyOf(sql, params);
+        var cached = resultCache.get(key);
+        if (cached != null) return cached;
+
+        var checked = costGuard.check(sql);
+        long t0 = System.nanoTime();
+        var rows = querySelectNamed(checked.sql(), params);
+        costGuard.record(checked, (System.nanoTime() - t0) / 1_000_000, rows.size());
+        resultCache.put(key, sql, rows);
+        return rows;
+    }
+
+    private List<Map<String,Object>> querySelectNamed(String sql, Map<String,Object> params){
         var src = new MapSqlParameterSource(params == null ? Map.of() : params);
-        return namedJdbcTemplate.query(sql, src, (rs, rn) -> {
-            var md = rs.getMetaData();
-            int cols = md.getColumnCount();
-            var row = new LinkedHashMap<String,Object>();
-            for (int i=1; i<=cols; i++) {
-                Object v = rs.getObject(i);
-                row.put(md.getColumnLabel(i), normalize(v));
-            }
-            return row;
-        });
+        return namedJdbcTemplate.query(sql, src, COLUMNAR).asRows();
     }
 
     /** 마크다운 표 (데모용) */
@@ -76,18 +83,4 @@ public class SqlExecService {
         }
         return sb.toString();
     }
-
-    /** 드라이버가 주는 타입을 화면/JSON 친화적으로 정리 */
-    private Object normalize(Object v){
-        if (v == null) return null;
-        if (v instanceof Timestamp ts) {
-            // Oracle TIMESTAMP를 ISO 문자열로
-            return OffsetDateTime.ofInstant(ts.toInstant(), ZoneId.systemDefault()).toString();
-        }
-        if (v instanceof byte[] b) {
-            // BLOB 등은 길이만
-            return "(bytes:" + b.length + ")";
-        }
-        return v;
-    }
 }
@@ -0,0 +1,318 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.controller.chat.AiResult;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * AI 분석 비동기 작업 (POST 즉시 jobId 반환 → 폴링 또는 SSE 구독)
+ * - 파이프라인은 aiJobExecutor(AsyncConfig) 에서 실행 → Tomcat 스레드는 10~30초 LLM/SQL 대기에 묶이지 않음
+ * - 진행 단계(routed / sql-ready / rows-ready ...)는 작업에 쌓아 두고 늦게 구독해도 처음부터 재생
+ * - 끝난 작업은 ai.job.retention-minutes 동안 결과 보관, 보관 개수 상한(max-retained) 넘으면 오래된 것부터 정리
+ * - 제출한 사용자만 조회/구독/취소 가능 (비로그인 제출은 jobId 를 아는 쪽이면 누구나)
+ */
+@Slf4j
+@Service
+public class AiJobService {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELED }
+
+    /** 단계 이벤트 (name = routed / sql-ready / rows-ready / chart-ready, 끝나면 done / error / canceled) */
+    public record Event(String name, Object data) {}
+
+    /** 조회 응답 (result 는 DONE 일 때만) */
+    public record JobView(String jobId, Status status, String message, LocalDateTime createdAt,
+                          LocalDateTime startedAt, LocalDateTime finishedAt, Long elapsedMs,
+                          String lastStage, AiResult result, String error) {}
+
+    public record Stats(int retained, long submitted, long rejected, long completed, long failed, long canceled,
+                        int running, int queued, int poolSize, int maxPoolSize, long retentionMinutes) {}
+
+    private final ChatOrchestratorService orchestrator;
+    private final ThreadPoolTaskExecutor executor;
+    private final long retentionMillis;
+    private final int maxRetained;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong canceled = new AtomicLong();
+
+    public AiJobService(ChatOrchestratorService orchestrator,
+                        @Qualifier("aiJobExecutor") ThreadPoolTaskExecutor executor,
+                        @Value("${ai.job.retention-minutes:10}") long retentionMinutes,
+                        @Value("${ai.job.max-retained:500}") int maxRetained) {
+        this.orchestrator = orchestrator;
+        this.executor = executor;
+        this.retentionMillis = retentionMinutes * 60_000L;
+        this.maxRetained = Math.max(1, maxRetained);
+    }
+
+    /**
+     * 구독자 하나: 전달할 이벤트 대기열 + 전송 중 표시 (synchronized(this), 작업 락과 별개)
+     * 먼저 전송을 맡은 스레드가 대기열이 빌 때까지 순서대로 보냄 → 재생 중 들어온 이벤트도 재생 뒤에 이어서
+     */
+    private static final class Subscriber {
+        final Consumer<Event> target;
+        private final ArrayDeque<Event> queue;
+        private boolean draining;
+
+        /** replay = 구독 시점까지의 이벤트 (등록과 동시에 전송 중 상태로 시작, 구독 스레드가 drain) */
+        Subscriber(Consumer<Event> target, List<Event> replay) {
+            this.target = target;
+            this.queue = new ArrayDeque<>(replay);
+            this.draining = true;
+        }
+
+        void offer(Event e) {
+            synchronized (this) {
+                queue.add(e);
+                if (draining) return;   // 다른 스레드가 보내는 중 → 그 스레드가 이어서 보냄
+                draining = true;
+            }
+            drain();
+        }
+
+        void drain() {
+            while (true) {
+                Event e;
+                synchronized (this) {
+                    e = queue.poll();
+                    if (e == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    target.accept(e);
+                } catch (RuntimeException ex) {   // 끊긴 구독자는 컨트롤러 쪽에서 구독 해제
+                    log.debug("[ai-job] 구독자 전송 실패: {}", ex.toString());
+                }
+            }
+        }
+    }
+
+    /** 작업 하나 (상태 변경/이벤트 추가/구독 등록은 synchronized(job), 구독자 전송은 락 밖) */
+    private final class Job implements AiStreamSink {
+        final String id = UUID.randomUUID().toString().replace("-", "");
+        final String message;
+        final String owner;
+        final LocalDateTime createdAt = LocalDateTime.now();
+        final List<Event> events = new ArrayList<>();
+        final List<Subscriber> listeners = new ArrayList<>();
+        volatile Status status = Status.QUEUED;
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile long finishedAtMillis;
+        volatile AiResult result;
+        volatile String error;
+        volatile Future<?> future;
+
+        Job(String message, String owner) {
+            this.message = message;
+            this.owner = owner;
+        }
+
+        @Override
+        public void stage(String name, Object data) {
+            publish(new Event(name, data));
+        }
+
+        @Override
+        public void token(String text) {}
+
+        /** 요약은 블로킹 호출 (토큰 단위 이벤트는 보관하지 않음) */
+        @Override
+        public boolean streaming() { return false; }
+
+        /**
+         * 이벤트 보관 + 그 시점 구독자 목록 스냅샷은 락 안에서, 전송(SSE 쓰기)은 락 밖에서
+         * → 느린 구독자가 파이프라인 스레드의 다음 단계 기록이나 상태 조회를 막지 않음
+         * 스냅샷에 없는 구독자는 등록 시점의 재생 목록에 이 이벤트가 들어 있음 (누락/중복 없음)
+         */
+        void publish(Event e) {
+            List<Subscriber> targets;
+            synchronized (this) {
+                events.add(e);
+                targets = List.copyOf(listeners);
+            }
+            deliver(targets, e);
+        }
+
+        /** 종료 상태는 한 번만 (취소와 완료가 겹쳐도) */
+        boolean finish(Status s, AiResult r, String err) {
+            Event last;
+            List<Subscriber> targets;
+            synchronized (this) {
+                if (isFinished()) return false;
+                status = s;
+                result = r;
+                error = err;
+                finishedAt = LocalDateTime.now();
+                finishedAtMillis = System.currentTimeMillis();
+                last = switch (s) {
+                    case DONE -> new Event("done", r);
+                    case CANCELED -> new Event("canceled", Map.of("jobId", id));
+                    default -> new Event("error", Map.of("message", String.valueOf(err)));
+                };
+                events.add(last);
+                targets = List.copyOf(listeners);
+                listeners.clear();
+            }
+            deliver(targets, last);
+            return true;
+        }
+
+        private void deliver(List<Subscriber> targets, Event e) {
+            for (Subscriber sub : targets) sub.offer(e);
+        }
+
+        boolean isFinished() {
+            Status s = status;
+            return s == Status.DONE || s == Status.FAILED || s == Status.CANCELED;
+        }
+
+        synchronized String lastStage() {
+            return events.isEmpty() ? null : events.get(events.size() - 1).name();
+        }
+
+        JobView view() {
+            LocalDateTime s = startedAt, f = finishedAt;
+            Long elapsed = s == null ? null
+                    : Duration.between(s, f != null ? f : LocalDateTime.now()).toMillis();
+            return new JobView(id, status, message, createdAt, s, f, elapsed, lastStage(),
+                    status == Status.DONE ? result : null, error);
+        }
+    }
+
+    /** 작업 제출, 풀/큐가 가득 차면 RejectedExecutionException */
+    public JobView submit(String message, Principal principal) {
+        if (jobs.size() >= maxRetained) evictOldestFinished();
+        Job job = new Job(message, principal == null ? null : principal.getName());
+        jobs.put(job.id, job);
+        try {
+            job.future = executor.submit(() -> run(job, principal));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            rejected.incrementAndGet();
+            throw e;
+        }
+        submitted.incrementAndGet();
+        return job.view();
+    }
+
+    private void run(Job job, Principal principal) {
+        synchronized (job) {
+            if (job.isFinished()) return;   // 대기 중 취소됨
+            job.status = Status.RUNNING;
+            job.startedAt = LocalDateTime.now();
+        }
+        try {
+            AiResult r = orchestrator.handle(job.message, principal, job);
+            if (job.finish(Status.DONE, r, null)) completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted() || job.status == Status.CANCELED) return;
+            log.warn("[ai-job] {} 실패: {}", job.id, e.toString());
+            if (job.finish(Status.FAILED, null, "죄송합니다. 서버 오류가 발생했습니다. 다시 시도해주세요.")) failed.incrementAndGet();
+        }
+    }
+
+    /** 상태/결과 조회 (없거나 다른 사용자 작업이면 null) */
+    public JobView get(String id, Principal principal) {
+        Job job = find(id, principal);
+        return job == null ? null : job.view();
+    }
+
+    /** 취소 (이미 끝났으면 false), 실행 중이면 인터럽트로 LLM/DB 대기를 끊음 */
+    public boolean cancel(String id, Principal principal) {
+        Job job = find(id, principal);
+        if (job == null || !job.finish(Status.CANCELED, null, null)) return false;
+        canceled.incrementAndGet();
+        Future<?> f = job.future;
+        if (f != null) f.cancel(true);
+        return true;
+    }
+
+    /**
+     * 이벤트 구독: 지금까지의 이벤트를 먼저 재생하고 이후 이벤트를 이어서 전달 (마지막은 done / error / canceled)
+     * 락 안에서는 이벤트 복사 + 등록만, 재생(SSE 쓰기)은 락 밖에서 → 느린 클라이언트가 파이프라인/상태 조회를 막지 않음
+     * 반환: null = 작업 없음, false = 이미 끝나서 재생만 함, true = 구독 중
+     */
+    public Boolean subscribe(String id, Principal principal, Consumer<Event> listener) {
+        Job job = find(id, principal);
+        if (job == null) return null;
+        Subscriber sub;
+        boolean live;
+        synchronized (job) {
+            // 복사한 이벤트 = 재생 경계, 이후 publish 는 등록된 sub 의 대기열로 → 재생 뒤에 순서대로
+            sub = new Subscriber(listener, job.events);
+            live = !job.isFinished();
+            if (live) job.listeners.add(sub);
+        }
+        sub.drain();
+        return live;
+    }
+
+    public void unsubscribe(String id, Consumer<Event> listener) {
+        Job job = jobs.get(id);
+        if (job != null) {
+            synchronized (job) {
+                job.listeners.removeIf(sub -> sub.target == listener);
+            }
+        }
+    }
+
+    private Job find(String id, Principal principal) {
+        Job job = id == null ? null : jobs.get(id);
+        if (job == null) return null;
+        if (job.owner != null && (principal == null || !Objects.equals(job.owner, principal.getName()))) return null;
+        return job;
+    }
+
+    /** 보관 기간 지난 작업 정리 */
+    @Scheduled(fixedDelayString = "${ai.job.sweep-ms:60000}")
+    public void sweep() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(j -> j.isFinished() && j.finishedAtMillis < cutoff);
+    }
+
+    private void evictOldestFinished() {
+        jobs.values().stream()
+                .filter(Job::isFinished)
+                .sorted(Comparator.comparingLong(j -> j.finishedAtMillis))
+                .limit(Math.max(1, jobs.size() - maxRetained + 1))
+                .toList()
+                .forEach(j -> jobs.remove(j.id));
+    }
+
+    public Stats stats() {
+        var pool = executor.getThreadPoolExecutor();
+        return new Stats(jobs.size(), submitted.get(), rejected.get(), completed.get(), failed.get(), canceled.get(),
+                pool.getActiveCount(), pool.getQueue().size(), pool.getPoolSize(), pool.getMaximumPoolSize(),
+                retentionMillis / 60_000L);
+    }
+}
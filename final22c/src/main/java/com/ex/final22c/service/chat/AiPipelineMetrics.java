@@ -0,0 +1,91 @@
+package com.ex.final22c.service.chat;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 분석 파이프라인 단계별 지표 (Micrometer → /actuator/metrics)
+ * - ai.pipeline.stage{stage}      : 단계별 소요 시간 (route / sql-gen / guard / exec / summarize / chart-* ...)
+ * - ai.pipeline.request{path}     : 요청 전체 시간 (sql / chat / chart / error)
+ * - ai.pipeline.rows              : 결과 행 수
+ * - ai.pipeline.tokens{type}      : 요청당 LLM 토큰 (prompt / completion)
+ * - ai.pipeline.event{event}      : 폴백/보정 횟수 (fallback-query, status-coerced, summary-llm, coalesced ...)
+ * 백분위/히스토그램은 management.metrics.distribution.* (application.properties) 로 켬
+ * 느린 요청(ai.trace.slow-ms 이상)은 traceId 와 단계 분해를 INFO 로 남김
+ */
+@Slf4j
+@Component
+public class AiPipelineMetrics {
+
+    private final MeterRegistry registry;
+    private final long slowMs;
+
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> eventCounters = new ConcurrentHashMap<>();
+    private final DistributionSummary rows;
+    private final DistributionSummary promptTokens;
+    private final DistributionSummary completionTokens;
+
+    public AiPipelineMetrics(MeterRegistry registry, @Value("${ai.trace.slow-ms:3000}") long slowMs) {
+        this.registry = registry;
+        this.slowMs = slowMs;
+        this.rows = DistributionSummary.builder("ai.pipeline.rows").description("AI 조회 결과 행 수").register(registry);
+        this.promptTokens = DistributionSummary.builder("ai.pipeline.tokens").tag("type", "prompt")
+                .description("요청당 LLM 토큰").register(registry);
+        this.completionTokens = DistributionSummary.builder("ai.pipeline.tokens").tag("type", "completion")
+                .description("요청당 LLM 토큰").register(registry);
+    }
+
+    /** 요청 시작 (호출 측이 AiTrace.attach 로 스레드에 붙임) */
+    public AiTrace begin() {
+        return new AiTrace();
+    }
+
+    /** trace 밖에서 생기는 이벤트 (예: 합쳐진 중복 요청 coalesced) */
+    public void event(String event) {
+        eventCounter(event).increment();
+    }
+
+    private Counter eventCounter(String event) {
+        return eventCounters.computeIfAbsent(event, e -> Counter.builder("ai.pipeline.event").tag("event", e)
+                .description("AI 분석 폴백/보정 횟수").register(registry));
+    }
+
+    /** 요청 종료: 히스토그램 기록, 느리면 단계 분해 로그 */
+    public void finish(AiTrace t) {
+        long total = t.elapsedNanos();
+        requestTimers.computeIfAbsent(t.path(), p -> Timer.builder("ai.pipeline.request").tag("path", p)
+                .description("AI 분석 요청 전체 시간").register(registry)).record(total, TimeUnit.NANOSECONDS);
+        Map<String, Long> stages = t.stageNanos();
+        stages.forEach((stage, nanos) -> stageTimers.computeIfAbsent(stage, s -> Timer.builder("ai.pipeline.stage").tag("stage", s)
+                .description("AI 분석 단계별 시간").register(registry)).record(nanos, TimeUnit.NANOSECONDS));
+        Map<String, Integer> events = t.events();
+        events.forEach((event, n) -> eventCounter(event).increment(n));
+        if (t.rows() >= 0) rows.record(t.rows());
+        if (t.promptTokens() > 0 || t.completionTokens() > 0) {
+            promptTokens.record(t.promptTokens());
+            completionTokens.record(t.completionTokens());
+        }
+
+        long ms = total / 1_000_000;
+        if (ms >= slowMs || log.isDebugEnabled()) {
+            StringJoiner sj = new StringJoiner(" ");
+            stages.forEach((stage, nanos) -> sj.add(stage + "=" + nanos / 1_000_000 + "ms"));
+            String line = "[ai-trace] id=%s path=%s total=%dms %s rows=%d tokens=%d/%d events=%s".formatted(
+                    t.id(), t.path(), ms, sj, t.rows(), t.promptTokens(), t.completionTokens(), events);
+            if (ms >= slowMs) log.info(line);
+            else log.debug(line);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.ex.final22c.service.chat;
+
+/**
+ * ChatOrchestratorService.handle 진행 이벤트 수신자
+ * - stage: routed / sql-ready / rows-ready / chart-ready 등 단계 이벤트
+ * - token: LLM 답변/요약 토큰(스트리밍 모드일 때만)
+ */
+public interface AiStreamSink {
+
+    void stage(String name, Object data);
+
+    void token(String text);
+
+    /** false면 LLM을 일반(블로킹) 호출로 사용 */
+    default boolean streaming() { return true; }
+
+    /** 일반 JSON 응답용: 아무것도 하지 않음 */
+    AiStreamSink NOOP = new AiStreamSink() {
+        @Override public void stage(String name, Object data) {}
+        @Override public void token(String text) {}
+        @Override public boolean streaming() { return false; }
+    };
+}
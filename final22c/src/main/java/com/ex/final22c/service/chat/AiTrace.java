@@ -0,0 +1,113 @@
+package com.ex.final22c.service.chat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 분석 요청 1건의 단계별 소요 시간/토큰/행 수/보정 이벤트
+ * - 요청 스레드에 붙여 두고(attach) ChatService/SqlSpeculator 가 current() 로 찾아 토큰을 더함
+ * - 종료 시 AiPipelineMetrics.finish 가 Micrometer 히스토그램으로 내보냄
+ * - id 는 AiResult.traceId 로 응답에 실려서 느린 응답 ↔ 로그의 단계 분해를 연결
+ */
+public final class AiTrace {
+
+    private static final ThreadLocal<AiTrace> CURRENT = new ThreadLocal<>();
+
+    private final String id;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();   // synchronized(this)
+    private final Map<String, Integer> events = new LinkedHashMap<>();    // synchronized(this)
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private volatile int rows = -1;
+    private volatile String path = "sql";
+
+    AiTrace() {
+        this.id = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16);
+    }
+
+    /** 구간 측정 (try-with-resources), 같은 이름이 여러 번이면 합산 */
+    public final class Span implements AutoCloseable {
+        private final String stage;
+        private final long t0 = System.nanoTime();
+
+        private Span(String stage) { this.stage = stage; }
+
+        @Override
+        public void close() {
+            long d = System.nanoTime() - t0;
+            synchronized (AiTrace.this) {
+                stageNanos.merge(stage, d, Long::sum);
+            }
+        }
+    }
+
+    /** 현재 스레드의 trace 교체, close 하면 이전 값 복원 */
+    public static final class Scope implements AutoCloseable {
+        private final AiTrace previous;
+
+        private Scope(AiTrace previous) { this.previous = previous; }
+
+        @Override
+        public void close() {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /** 현재 스레드에 붙은 trace (없으면 null) */
+    public static AiTrace current() {
+        return CURRENT.get();
+    }
+
+    /** 다른 스레드(가상 스레드 등)로 넘길 때 사용, trace 가 null 이어도 됨 */
+    public static Scope attach(AiTrace trace) {
+        AiTrace prev = CURRENT.get();
+        if (trace == null) CURRENT.remove();
+        else CURRENT.set(trace);
+        return new Scope(prev);
+    }
+
+    /** current() 가 없을 때도 안전하게 쓰는 구간 측정 */
+    public static Span time(String stage) {
+        AiTrace t = CURRENT.get();
+        return t == null ? null : t.stage(stage);
+    }
+
+    /** current() 에 보정/폴백 이벤트 기록 */
+    public static void mark(String event) {
+        AiTrace t = CURRENT.get();
+        if (t != null) t.count(event);
+    }
+
+    public Span stage(String stage) {
+        return new Span(stage);
+    }
+
+    public synchronized void count(String event) {
+        events.merge(event, 1, Integer::sum);
+    }
+
+    public void tokens(long prompt, long completion) {
+        promptTokens.addAndGet(prompt);
+        completionTokens.addAndGet(completion);
+    }
+
+    public void rows(int n) { this.rows = n; }
+
+    /** 응답 경로: sql / chat / chart / error */
+    public void path(String path) { this.path = path; }
+
+    public String id() { return id; }
+    public String path() { return path; }
+    public int rows() { return rows; }
+    public long promptTokens() { return promptTokens.get(); }
+    public long completionTokens() { return completionTokens.get(); }
+    public long elapsedNanos() { return System.nanoTime() - startNanos; }
+
+    public synchronized Map<String, Long> stageNanos() { return new LinkedHashMap<>(stageNanos); }
+
+    public synchronized Map<String, Integer> events() { return new LinkedHashMap<>(events); }
+}
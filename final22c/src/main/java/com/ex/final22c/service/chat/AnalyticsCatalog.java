@@ -0,0 +1,220 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 관리자 분석 템플릿 카탈로그 (매칭되면 LLM SQL 생성 생략)
+ * - SQL 본문: classpath:ai/templates/{id}.sql  (머리 주석 "-- title:", "-- columns:" 로 제목/결과 컬럼 선언)
+ * - 등록 순서 = 우선순위 (먼저 등록된 템플릿이 이김)
+ * - 바인드 목록은 SQL에서 추출, 값은 기존 buildFlexibleParams 규칙으로 채움
+ * - SQL 문자열이 템플릿마다 고정이라 드라이버 문장 캐시/SqlValidator 메모/NamedParameter 파싱 캐시에 그대로 걸림
+ * 새 템플릿 = .sql 파일 1개 + register 1줄
+ */
+@Slf4j
+@Component
+public class AnalyticsCatalog {
+
+    private static final String DIR = "ai/templates/";
+
+    /**
+     * 실행/요약 방식
+     * - 비교/YoY/MoM: 기간·상태 조건이 들어 있는 신뢰 템플릿 (교정 없이 가드만)
+     * - REWRITE: LLM SQL과 같은 교정 경로(기간 보정/조인 교정)를 거침
+     */
+    public enum Kind {
+        COMPARE_SALES, COMPARE_REFUND, COMPARE_REVIEW, YOY, MOM, REWRITE;
+
+        public boolean trusted() { return this != REWRITE; }
+        public boolean compare() { return this == COMPARE_SALES || this == COMPARE_REFUND || this == COMPARE_REVIEW; }
+    }
+
+    public record Template(String id, String title, Kind kind, String sql,
+                           List<String> params, List<String> columns,
+                           Predicate<IntentFrame> when) {}
+
+    public record Entry(String id, String title, Kind kind, List<String> params, List<String> columns, long hits) {}
+
+    public record Stats(int templates, long matched, long missed, double matchRatio, long shapeMismatches) {}
+
+    private final List<Template> templates = new ArrayList<>();
+    private final Map<String, AtomicLong> hits = new ConcurrentHashMap<>();
+    private final Set<String> warnedShape = ConcurrentHashMap.newKeySet();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+    private final AtomicLong shapeMismatches = new AtomicLong();
+
+    public AnalyticsCatalog() {
+        // 브랜드 랭킹 (다른 템플릿보다 우선: 기존 분기에서도 마지막에 덮어씀)
+        register("brand-sales-review", Kind.REWRITE, f -> brandRanking(f) && containsAny(f.message(), "리뷰", "점수", "평점"));
+        register("brand-sales", Kind.REWRITE, AnalyticsCatalog::brandRanking);
+
+        // 상품 통계
+        register("top-rated-products", Kind.REWRITE, f -> !yoyProduct(f) && !f.hasCompareProducts() && f.wantsTopRated());
+        register("product-stats-sales", Kind.REWRITE, f -> productStats(f) && f.asksSales());
+        register("product-stats-qty", Kind.REWRITE, f -> productStats(f) && (f.asksRefund() || f.asksReview()));
+
+        // 회원 분석
+        register("vip-customers", Kind.REWRITE,
+                f -> f.message().contains("VIP") || (f.message().contains("100만원") && f.message().contains("이상")));
+        register("repurchase-ratio", Kind.REWRITE,
+                f -> containsAny(f.message(), "재구매", "일회성") && f.message().contains("고객"));
+        register("first-purchase-lead-time", Kind.REWRITE,
+                f -> f.message().contains("첫 구매") && containsAny(f.message(), "기간", "시간"));
+
+        // 기간 비교 / 두 상품 비교
+        register("yoy-product-sales", Kind.YOY, AnalyticsCatalog::yoyProduct);
+        register("compare-refund", Kind.COMPARE_REFUND,
+                f -> f.hasCompareProducts() && (containsAny(f.message(), "환불률", "환불 비율") || lower(f).contains("refund rate")));
+        register("compare-review", Kind.COMPARE_REVIEW,
+                f -> f.hasCompareProducts() && (containsAny(f.message(), "리뷰", "평점") || lower(f).contains("rating")));
+        register("compare-sales", Kind.COMPARE_SALES, IntentFrame::hasCompareProducts);
+        register("mom-orders-sales", Kind.MOM, f -> f.mom() && !f.twoProductCompare());
+    }
+
+    /** 우선순위대로 첫 매칭 템플릿 (없으면 null → LLM). 매칭/미스 집계 */
+    public Template match(IntentFrame f) {
+        Template t = find(f);
+        if (t == null) {
+            missed.incrementAndGet();
+            return null;
+        }
+        matched.incrementAndGet();
+        hits.get(t.id()).incrementAndGet();
+        return t;
+    }
+
+    /** 집계 없는 조회 (코퍼스 평가용) */
+    public Template find(IntentFrame f) {
+        for (Template t : templates) {
+            if (t.when().test(f)) return t;
+        }
+        return null;
+    }
+
+    public Template get(String id) {
+        for (Template t : templates) if (t.id().equals(id)) return t;
+        return null;
+    }
+
+    /** 실행 결과 컬럼이 선언과 다르면 템플릿당 1회 경고 (스키마 변경 감지) */
+    public void checkShape(String id, List<Map<String, Object>> rows) {
+        Template t = id == null ? null : get(id);
+        if (t == null || rows == null || rows.isEmpty() || t.columns().isEmpty()) return;
+        List<String> actual = new ArrayList<>();
+        for (String k : rows.get(0).keySet()) actual.add(k.toUpperCase(Locale.ROOT));
+        if (actual.equals(t.columns())) return;
+        shapeMismatches.incrementAndGet();
+        if (warnedShape.add(id)) {
+            log.warn("[catalog] {} 결과 컬럼이 선언과 다릅니다. declared={} actual={}", id, t.columns(), actual);
+        }
+    }
+
+    public List<Entry> entries() {
+        List<Entry> out = new ArrayList<>(templates.size());
+        for (Template t : templates) {
+            out.add(new Entry(t.id(), t.title(), t.kind(), t.params(), t.columns(), hits.get(t.id()).get()));
+        }
+        return out;
+    }
+
+    public Stats stats() {
+        long m = matched.get(), x = missed.get();
+        return new Stats(templates.size(), m, x, (m + x) == 0 ? 0d : (double) m / (m + x), shapeMismatches.get());
+    }
+
+    /* ===== 등록 ===== */
+
+    private void register(String id, Kind kind, Predicate<IntentFrame> when) {
+        String text = load(id);
+        String title = id;
+        List<String> columns = List.of();
+        StringBuilder sql = new StringBuilder(text.length());
+        for (String line : text.split("\n", -1)) {
+            String s = line.strip();
+            if (s.startsWith("-- title:")) { title = s.substring(9).strip(); continue; }
+            if (s.startsWith("-- columns:")) {
+                columns = Arrays.stream(s.substring(11).split(","))
+                        .map(c -> c.strip().toUpperCase(Locale.ROOT)).filter(c -> !c.isEmpty()).toList();
+                continue;
+            }
+            sql.append(line).append('\n');
+        }
+        String body = sql.toString().strip();
+        templates.add(new Template(id, title, kind, body, bindNames(body), columns, when));
+        hits.put(id, new AtomicLong());
+    }
+
+    private static String load(String id) {
+        try {
+            return new String(new ClassPathResource(DIR + id + ".sql").getInputStream().readAllBytes(),
+                    StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("분석 템플릿을 읽지 못했습니다: " + DIR + id + ".sql", e);
+        }
+    }
+
+    /** :name 바인드 목록 (문자열 리터럴/주석 안은 제외 → 'HH24:MI:SS' 등 무시) */
+    static List<String> bindNames(String sql) {
+        Set<String> out = new LinkedHashSet<>();
+        int n = sql.length();
+        for (int i = 0; i < n; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = sql.indexOf('\'', i + 1);
+                if (i < 0) break;
+            } else if (c == '-' && i + 1 < n && sql.charAt(i + 1) == '-') {
+                i = sql.indexOf('\n', i);
+                if (i < 0) break;
+            } else if (c == ':' && i + 1 < n && Character.isLetter(sql.charAt(i + 1))
+                    && (i == 0 || sql.charAt(i - 1) != ':')) {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) j++;
+                out.add(sql.substring(i + 1, j));
+                i = j - 1;
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(out));
+    }
+
+    /* ===== 매칭 조건 (기존 buildSqlPlan 분기와 동일) ===== */
+
+    private static boolean brandRanking(IntentFrame f) {
+        String msg = f.message();
+        return !f.wantsTopRated() && (msg.contains("브랜드별")
+                || (msg.contains("브랜드") && containsAny(msg, "매출", "판매", "점수")));
+    }
+
+    private static boolean yoyProduct(IntentFrame f) {
+        return f.yoy() && !f.twoProductCompare() && f.productQuery() != null;
+    }
+
+    private static boolean productStats(IntentFrame f) {
+        return !yoyProduct(f) && !f.hasCompareProducts() && f.productStats();
+    }
+
+    private static boolean containsAny(String s, String... keys) {
+        for (String k : keys) if (s.contains(k)) return true;
+        return false;
+    }
+
+    private static String lower(IntentFrame f) {
+        return f.message().toLowerCase(Locale.ROOT);
+    }
+}
@@ -6,16 +6,24 @@ import com.ex.final22c.sql.PeriodResolver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
 
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -25,9 +33,46 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class ChatService {
 
     private final WebClient aiWebClient;
+    private final LlmBulkhead bulkhead;
+    private final LlmUsageMeter usage;
+    private final LlmResponseCache responseCache;
 
-    public ChatService(@Qualifier("aiWebClient") WebClient aiWebClient) {
+    public ChatService(@Qualifier("aiWebClient") WebClient aiWebClient, LlmBulkhead bulkhead,
+                       LlmUsageMeter usage, LlmResponseCache responseCache) {
         this.aiWebClient = aiWebClient;
+        this.bulkhead = bulkhead;
+        this.usage = usage;
+        this.responseCache = responseCache;
+    }
+
+    /** 호출 종류별 타임아웃 구분 (대기열 대기 시간 포함) */
+    private enum Op { ASK, SQL, CHART_SPEC, SUMMARIZE, PRODUCT_DESC, PERSONA, SURVEY }
+
+    @Value("${deepseek.client.timeout.ask-ms:15000}")
+    private long askTimeoutMs;
+    @Value("${deepseek.client.timeout.sql-ms:30000}")
+    private long sqlTimeoutMs;
+    @Value("${deepseek.client.timeout.chart-spec-ms:30000}")
+    private long chartSpecTimeoutMs;
+    @Value("${deepseek.client.timeout.summarize-ms:15000}")
+    private long summarizeTimeoutMs;
+    @Value("${deepseek.client.timeout.product-desc-ms:60000}")
+    private long productDescTimeoutMs;
+    @Value("${deepseek.client.timeout.persona-ms:30000}")
+    private long personaTimeoutMs;
+    @Value("${deepseek.client.timeout.survey-ms:15000}")
+    private long surveyTimeoutMs;
+
+    private Duration timeout(Op op) {
+        return Duration.ofMillis(switch (op) {
+            case ASK -> askTimeoutMs;
+            case SQL -> sqlTimeoutMs;
+            case CHART_SPEC -> chartSpecTimeoutMs;
+            case SUMMARIZE -> summarizeTimeoutMs;
+            case PRODUCT_DESC -> productDescTimeoutMs;
+            case PERSONA -> personaTimeoutMs;
+            case SURVEY -> surveyTimeoutMs;
+        });
     }
 
     @Value("${deepseek.api.model:deepseek-chat}")
@@ -36,6 +81,12 @@ public class ChatService {
     @Value("${deepseek.api.path:/chat/completions}")
     private String path;
 
+    @Value("${ai.stream.timeout-ms:60000}")
+    private long streamTimeoutMs;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+        new ParameterizedTypeReference<>() {};
+
     private final ObjectMapper om = new ObjectMapper()
         .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
@@ -43,24 +94,124 @@ public class ChatService {
     private EntityManager em;
 
     /* -------------------- 공통 호출 -------------------- */
-    private Map call(Map<String, Object> body) {
-        try {
-            return aiWebClient.post().uri(path)
+    /**
+     * 논블로킹 호출: 벌크헤드 슬롯 확보 → 요청 → op별 타임아웃.
+     * 실패해도 에러를 던지지 않고 {"error": ...} 맵으로 끝난다 (extract()가 처리)
+     * 응답 usage(토큰)/지연은 LlmUsageMeter 에 op별로 기록
+     * 결정적 요청(temperature 낮음)은 LlmResponseCache 디스크 캐시를 먼저 봄
+     */
+    private Mono<Map> callMono(Map<String, Object> body, Op op) {
+        return Mono.defer(() -> {
+            AiTrace trace = AiTrace.current();   // 구독(호출) 스레드의 요청 trace
+            String key = responseCache.keyOf(body);
+            Map hit = responseCache.get(key, op.name());
+            if (hit != null) {
+                if (trace != null) trace.count("llm-cache-hit");
+                return Mono.just(hit);
+            }
+            long t0 = System.nanoTime();
+            return callOnce(body, op)
+                .doOnNext(resp -> {
+                    usage.record(op.name(), resp, (System.nanoTime() - t0) / 1_000_000, trace);
+                    responseCache.put(key, resp);
+                });
+        });
+    }
+
+    private Mono<Map> callOnce(Map<String, Object> body, Op op) {
+        return bulkhead.submit(() -> aiWebClient.post().uri(path)
                 .header("Content-Type", "application/json")
                 .bodyValue(body)
                 .retrieve()
                 .onStatus(s -> s.value() >= 400, r -> r.bodyToMono(String.class)
                     .map(msg -> new RuntimeException("DeepSeek HTTP " + r.statusCode() + ": " + msg)))
-                .bodyToMono(Map.class)
-                .block();
+                .bodyToMono(Map.class))
+            .timeout(timeout(op))
+            .onErrorResume(e -> {
+                log.error("[AI CALL FAIL] op={} {}", op, e.toString());
+                return Mono.just(Map.of("error", String.valueOf(e.getMessage())));
+            });
+    }
+
+    /** 블로킹 호출 (기존 동기 호출부용) — 타임아웃/벌크헤드는 callMono와 동일 */
+    private Map call(Map<String, Object> body, Op op) {
+        return callMono(body, op).block();
+    }
+
+    /**
+     * 스트리밍 호출(stream=true): delta 토큰이 올 때마다 onToken 호출, 누적 전문 반환.
+     * 실패 시 extract()와 같은 "(API 오류) ..." 형식 문자열 반환
+     * 캐시 히트면 전문을 토큰 한 번으로 흘려보냄, 끝까지 받은 응답만 캐시에 저장
+     */
+    private String callStream(Map<String, Object> body, Op op, Consumer<String> onToken) {
+        String key = responseCache.keyOf(body);
+        Map hit = responseCache.get(key, op.name());
+        if (hit != null) {
+            AiTrace.mark("llm-cache-hit");
+            String content = extract(hit);
+            onToken.accept(content);
+            return content;
+        }
+        var streamBody = new LinkedHashMap<String, Object>(body);
+        streamBody.put("stream", true);
+        StringBuilder acc = new StringBuilder();
+        AtomicBoolean done = new AtomicBoolean();   // [DONE] 까지 받은 응답만 캐시 (중간에 끊긴 응답 제외)
+        try {
+            bulkhead.submit(() -> aiWebClient.post().uri(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(streamBody)
+                .retrieve()
+                .onStatus(s -> s.value() >= 400, r -> r.bodyToMono(String.class)
+                    .map(msg -> new RuntimeException("DeepSeek HTTP " + r.statusCode() + ": " + msg)))
+                .bodyToFlux(SSE_TYPE)
+                .mapNotNull(ServerSentEvent::data)
+                .takeWhile(data -> {
+                    if (!"[DONE]".equals(data.trim())) return true;
+                    done.set(true);
+                    return false;
+                })
+                .map(this::extractDelta)
+                .filter(t -> !t.isEmpty())
+                .doOnNext(t -> {
+                    acc.append(t);
+                    onToken.accept(t);
+                })
+                .then())
+                .block(Duration.ofMillis(streamTimeoutMs));
         } catch (Exception e) {
-            log.error("[AI CALL FAIL] {}", e.toString(), e);
-            return Map.of("error", e.getMessage());
+            log.error("[AI STREAM FAIL] {}", e.toString(), e);
+            if (acc.isEmpty()) return "(API 오류) " + e.getMessage();
+            return acc.toString();
         }
+        String content = acc.toString();
+        if (content.isBlank()) return "(빈 응답)";
+        if (done.get()) responseCache.put(key, Map.of("choices", List.of(Map.of(
+            "message", Map.of("role", "assistant", "content", content), "finish_reason", "stop"))));
+        return content;
     }
 
     public String ask(String userMsg) {
-        var body = Map.of(
+        return extract(call(askBody(userMsg), Op.ASK));
+    }
+
+    /** ask()의 논블로킹 버전 */
+    public Mono<String> askMono(String userMsg) {
+        return callMono(askBody(userMsg), Op.ASK).map(this::extract);
+    }
+
+    /** ask()의 스트리밍 버전 */
+    public String askStream(String userMsg, Consumer<String> onToken) {
+        return callStream(askBody(userMsg), Op.ASK, onToken);
+    }
+
+    /** MYTYPE 설문 추천 — ask()와 같은 요청, 토큰/지연만 SURVEY 로 따로 집계 */
+    public String askSurvey(String prompt) {
+        return extract(call(askBody(prompt), Op.SURVEY));
+    }
+
+    private Map<String, Object> askBody(String userMsg) {
+        return Map.of(
             "model", model,
             "messages", List.of(
                 Map.of("role", "system", "content", "간결하게 한국어로 답하세요."),
@@ -68,8 +219,6 @@ public class ChatService {
             ),
             "temperature", 0.3
         );
-        var resp = call(body);
-        return extract(resp);
     }
 
     /* -------------------- 차트 스펙 생성 -------------------- */
@@ -124,7 +273,7 @@ public class ChatService {
             "temperature", 0.1
         );
 
-        var resp = call(body);
+        var resp = call(body, Op.CHART_SPEC);
         String raw = extract(resp);
         String json = stripCodeFence(raw);
 
@@ -138,10 +287,19 @@ public class ChatService {
     }
 
     public String generateSql(String question, String schemaDoc) {
+        return extract(call(generateSqlBody(question, schemaDoc), Op.SQL));
+    }
+
+    /** generateSql()의 논블로킹 버전 (SqlSpeculator 투기 생성) */
+    public Mono<String> generateSqlMono(String question, String schemaDoc) {
+        return callMono(generateSqlBody(question, schemaDoc), Op.SQL).map(this::extract);
+    }
+
+    private Map<String, Object> generateSqlBody(String question, String schemaDoc) {
         var sys = """
             너는 Oracle SQL 생성기다.
             - 단일 SELECT 한 개만. 세미콜론 금지. DML/DDL 금지.
-            - 허용 테이블만 사용: USERS, ORDERS, ORDERDETAIL, PAYMENT, PRODUCT, BRAND, GRADE, MAINNOTE, VOLUME, REFUND, REFUNDDETAIL, CART, CARTDETAIL, REVIEW, PURCHASE, PURCHASEDETAIL.
+            - 스키마 요약에 나온 테이블/컬럼만 사용 (요약에 없는 테이블은 쓰지 말 것).
             - 텍스트 비교는 대소문자 무시(UPPER(...) = UPPER(:v)).
             - 성별 동의어는 'M'/'F'로 정규화 예시 포함.
             - 위치바인드(?, :1 등) 금지. 네임드 바인드만 사용.
@@ -162,7 +320,7 @@ public class ChatService {
             """;
 
         var user = "스키마 요약:\n" + schemaDoc + "\n\n질문:\n" + question + "\n\n반드시 코드블록으로 SQL만 출력.";
-        var body = Map.of(
+        return Map.of(
             "model", model,
             "messages", List.of(
                 Map.of("role", "system", "content", sys),
@@ -170,13 +328,25 @@ public class ChatService {
             ),
             "temperature", 0.1
         );
-        var resp = call(body);
-        return extract(resp);
     }
 
     // 관리자페이지 AI
     public String summarize(String question, String sql, String table) {
-        var body = Map.of(
+        return extract(call(summarizeBody(question, sql, table), Op.SUMMARIZE));
+    }
+
+    /** summarize()의 논블로킹 버전 */
+    public Mono<String> summarizeMono(String question, String sql, String table) {
+        return callMono(summarizeBody(question, sql, table), Op.SUMMARIZE).map(this::extract);
+    }
+
+    /** summarize()의 스트리밍 버전 (관리자 SSE 응답용) */
+    public String summarizeStream(String question, String sql, String table, Consumer<String> onToken) {
+        return callStream(summarizeBody(question, sql, table), Op.SUMMARIZE, onToken);
+    }
+
+    private Map<String, Object> summarizeBody(String question, String sql, String table) {
+        return Map.of(
             "model", model,
             "messages", List.of(
                 Map.of("role", "system", "content",
@@ -191,8 +361,6 @@ public class ChatService {
             ),
             "temperature", 0.3
         );
-        var resp = call(body);
-        return extract(resp);
     }
 
     /* -------------------- AI SQL 실행(표준화 → 가드 → 실행) -------------------- */
@@ -235,6 +403,22 @@ public class ChatService {
         }
     }
 
+    /** 스트리밍 청크 JSON에서 choices[0].delta.content 추출 (없으면 빈 문자열) */
+    @SuppressWarnings("unchecked")
+    private String extractDelta(String chunkJson) {
+        try {
+            Map chunk = om.readValue(chunkJson, Map.class);
+            var choices = (List<Map>) chunk.get("choices");
+            if (choices == null || choices.isEmpty()) return "";
+            var delta = (Map) choices.get(0).get("delta");
+            Object content = (delta == null) ? null : delta.get("content");
+            return (content == null) ? "" : String.valueOf(content);
+        } catch (Exception e) {
+            log.debug("[AI STREAM] 청크 파싱 실패: {}", chunkJson);
+            return "";
+        }
+    }
+
     private String stripCodeFence(String s) {
         if (s == null) return null;
         String t = s.trim();
@@ -276,7 +460,7 @@ public class ChatService {
         );
 
         try {
-            var resp = call(body);
+            var resp = call(body, Op.PRODUCT_DESC);
             String result = extract(resp);
             if (result == null) return null;
 
@@ -344,7 +528,7 @@ public class ChatService {
         );
 
         try {
-            var resp = call(body);
+            var resp = call(body, Op.PERSONA);
             String result = extract(resp);
             if (result == null) return null;
 
@@ -399,7 +583,7 @@ public class ChatService {
                 "temperature", 0.3,
                 "max_tokens", 160
             );
-            var resp = call(body);
+            var resp = call(body, Op.PERSONA);
             String tail = extract(resp);
             if (tail == null) return null;
             return normalizeTextKeep(tail);
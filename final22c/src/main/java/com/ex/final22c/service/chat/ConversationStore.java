@@ -0,0 +1,235 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.sql.PeriodResolver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 멀티턴 관리자 채팅 대화 상태 (세션별)
+ * - 직전 턴의 해석 결과(발화/기간/브랜드/topN/차트 여부)와 검증된 SqlPlan 을 보관
+ * - 후속 질문("그럼 지난달은?", "상위 10개는?", "차트로", "그럼 딥티크는?")은 바뀐 부분만 직전 발화에 덮어써서
+ *   독립된 질문으로 다시 만듦 → 기간만 바뀐 경우는 보관한 플랜에 새 기간만 바인딩(LLM 호출 없음)
+ * - 델타로 못 푼 후속 질문만 압축한 대화 맥락(context-chars 이내)을 붙여 LLM 으로
+ * - 오래된 턴은 "질문 앞부분" 한 줄 요약으로 접고, 세션은 LRU + TTL 로 정리
+ */
+@Slf4j
+@Component
+public class ConversationStore {
+
+    /** 후속 질문 해석 방식 */
+    public enum Kind { NEW, PERIOD, TOP_N, CHART, BRAND, CONTEXT }
+
+    /**
+     * 해석 결과
+     * message = 파이프라인에 넣을 독립 질문, plan = 기간만 바뀐 경우 재사용할 직전 플랜(없으면 null)
+     */
+    public record Resolution(Kind kind, String message, SqlPlan plan) {}
+
+    /** 한 턴에서 남길 것 (원문이 아니라 해석된 독립 질문 기준) */
+    public record Turn(String message, String periodLabel, String brand, boolean chart, SqlPlan plan) {}
+
+    public record Stats(int sessions, int maxSessions, long turns, Map<Kind, Long> resolved,
+                        long compactions, double avgContextChars) {}
+
+    // 후속 질문 머리말/꼬리 (그럼 지난달은? → 지난달)
+    private static final Pattern LEAD = Pattern.compile(
+            "^(?:그럼|그러면|그렇다면|그건|그거|그\\s*중에?서?|이번엔|이번에는|반대로|그리고|혹시|또)\\s*");
+    private static final Pattern TAIL = Pattern.compile(
+            "\\s*(?:은|는|이라면|라면|으로는|로는|으로|로|도|요|의|기준)?\\s*(?:어때|어때요|보여줘|보여 줘|알려줘|그려줘|해줘)?\\s*[?？!.~]*$");
+    private static final Pattern TOP_N_ONLY = Pattern.compile("(?i)^(?:상위|top|탑)?\\s*(\\d{1,3})\\s*(?:개|위|등)?\\s*(?:까지)?$");
+    private static final Pattern TOP_N_IN_MSG = Pattern.compile("(?i)(?:top|상위|탑)\\s*\\d{1,3}\\s*(?:개|위)?|\\d{1,3}\\s*(?:개|위)");
+    private static final Pattern SINGLE_WORD = Pattern.compile("[\\p{L}\\p{N}]{1,20}");
+    // 한 단어 후속 질문 중 브랜드가 아닌 지표/대상 ("그럼 환불은?" → CONTEXT)
+    private static final Pattern METRIC_WORD = Pattern.compile("매출|판매|환불|리뷰|평점|주문|결제|회원|재고|상품|취소|구매|가입");
+    private static final Pattern CHART_ONLY = Pattern.compile("^(?:차트|그래프|막대\\s*그래프|선\\s*그래프|파이\\s*차트)$");
+    private static final Pattern CHART_IN_MSG = Pattern.compile("차트|그래프|시각화");
+
+    private final int maxSessions;
+    private final long ttlMillis;
+    private final int maxTurns;
+    private final int contextChars;
+
+    private final Map<String, Conversation> sessions;
+
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong contextRequests = new AtomicLong();
+    private final AtomicLong contextCharsSum = new AtomicLong();
+    private final Map<Kind, AtomicLong> resolved = new EnumMap<>(Kind.class);
+
+    /** 세션 하나 (synchronized(this)) */
+    private static final class Conversation {
+        final Deque<Turn> recent = new ArrayDeque<>();
+        String digest = "";      // 접힌 옛 턴 요약 ("매출 / 브랜드별 매출 순위 / ...")
+        long lastAccess = System.currentTimeMillis();
+
+        Turn last() {
+            return recent.peekLast();
+        }
+    }
+
+    public ConversationStore(@Value("${ai.conversation.max-sessions:1000}") int maxSessions,
+                             @Value("${ai.conversation.ttl-minutes:30}") long ttlMinutes,
+                             @Value("${ai.conversation.max-turns:4}") int maxTurns,
+                             @Value("${ai.conversation.context-chars:400}") int contextChars) {
+        this.maxSessions = maxSessions;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        this.maxTurns = Math.max(1, maxTurns);
+        this.contextChars = Math.max(80, contextChars);
+        for (Kind k : Kind.values()) resolved.put(k, new AtomicLong());
+        // access-order LinkedHashMap → LRU (SqlPlanCache 와 같은 방식)
+        this.sessions = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                return size() > ConversationStore.this.maxSessions;
+            }
+        };
+    }
+
+    /** 이번 발화를 직전 턴 기준으로 해석 (대화가 없거나 새 질문이면 NEW 로 그대로) */
+    public Resolution resolve(String sessionId, String userMsg) {
+        String msg = userMsg == null ? "" : userMsg.trim();
+        Conversation c = find(sessionId);
+        Resolution r = c == null ? new Resolution(Kind.NEW, msg, null) : resolve(c, msg);
+        resolved.get(r.kind()).incrementAndGet();
+        if (r.kind() != Kind.NEW) log.debug("[conversation] {} → {} \"{}\"", msg, r.kind(), r.message());
+        return r;
+    }
+
+    private Resolution resolve(Conversation c, String msg) {
+        Turn last;
+        String digest;
+        synchronized (c) {
+            last = c.last();
+            digest = c.digest;
+        }
+        if (last == null) return new Resolution(Kind.NEW, msg, null);
+
+        boolean lead = LEAD.matcher(msg).find();
+        String rest = TAIL.matcher(LEAD.matcher(msg).replaceFirst("")).replaceFirst("").trim();
+        if (rest.isEmpty()) return new Resolution(Kind.NEW, msg, null);
+
+        // 1) 기간만: "지난달은?", "그럼 작년은?" → 직전 질문에서 기간 표현만 교체, 플랜 재사용
+        if (PeriodResolver.stripPeriodPhrases(rest).isBlank()) {
+            return new Resolution(Kind.PERIOD, rest + " " + stripPeriods(last.message()), last.chart() ? null : last.plan());
+        }
+        // 2) 개수만: "상위 10개는?", "20위까지"
+        Matcher top = TOP_N_ONLY.matcher(rest);
+        if (top.matches() && (lead || rest.length() <= 8)) {
+            String n = top.group(1);
+            Matcher in = TOP_N_IN_MSG.matcher(last.message());
+            String rewritten = in.find()
+                    ? last.message().substring(0, in.start()) + "상위 " + n + "개" + last.message().substring(in.end())
+                    : last.message() + " 상위 " + n + "개";
+            return new Resolution(Kind.TOP_N, rewritten, null);
+        }
+        // 3) 차트로: "차트로 보여줘", "그래프로"
+        if (CHART_ONLY.matcher(rest).matches() && !CHART_IN_MSG.matcher(last.message()).find()) {
+            return new Resolution(Kind.CHART, last.message() + " 차트로 보여줘", null);
+        }
+        // 4) 브랜드만: "그럼 딥티크는?", "그럼 샤넬 브랜드는?" (직전 질문에 브랜드가 있었을 때만)
+        if (lead && last.brand() != null) {
+            String brand = IntentAnalyzer.extractBrandName(rest);
+            if (brand == null && SINGLE_WORD.matcher(rest).matches() && !METRIC_WORD.matcher(rest).find()) brand = rest;
+            if (brand != null && !brand.equals(last.brand())) {
+                return new Resolution(Kind.BRAND, last.message().replace(last.brand(), brand), null);
+            }
+        }
+        // 5) 머리말은 후속 질문인데 델타로 못 풂 → 압축 맥락 + 직전 질문을 붙여 LLM 으로
+        if (lead) {
+            String context = context(digest, last);
+            contextRequests.incrementAndGet();
+            contextCharsSum.addAndGet(context.length());
+            return new Resolution(Kind.CONTEXT, context + " " + msg, null);
+        }
+        return new Resolution(Kind.NEW, msg, null);
+    }
+
+    /** 처리 끝난 턴 기록 (해석된 독립 질문과 그 프레임 기준), 오래된 턴은 digest 로 접음 */
+    public void record(String sessionId, Resolution r, IntentFrame f, SqlPlan plan) {
+        if (sessionId == null || r == null) return;
+        // CONTEXT 로 만든 질문은 맥락이 섞여 있어 다음 턴의 기준으로 쓰지 않음
+        if (r.kind() == Kind.CONTEXT) return;
+        Turn t = new Turn(r.message(), f.period() == null ? null : f.period().label(), f.brand(), f.chart(), plan);
+        Conversation c;
+        synchronized (sessions) {
+            c = sessions.computeIfAbsent(sessionId, k -> new Conversation());
+        }
+        synchronized (c) {
+            c.recent.addLast(t);
+            c.lastAccess = System.currentTimeMillis();
+            while (c.recent.size() > maxTurns) {
+                compact(c, c.recent.removeFirst());
+            }
+        }
+        turns.incrementAndGet();
+    }
+
+    public void clear(String sessionId) {
+        if (sessionId == null) return;
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    private Conversation find(String sessionId) {
+        if (sessionId == null) return null;
+        synchronized (sessions) {
+            Conversation c = sessions.get(sessionId);
+            if (c != null && System.currentTimeMillis() - c.lastAccess > ttlMillis) {
+                sessions.remove(sessionId);
+                return null;
+            }
+            return c;
+        }
+    }
+
+    /** 밀려난 턴을 "질문 앞부분" 으로 접어 digest 에 붙이고, 길이 상한을 넘으면 앞에서부터 버림 */
+    private void compact(Conversation c, Turn old) {
+        String head = old.message().length() > 30 ? old.message().substring(0, 30) + "…" : old.message();
+        String d = c.digest.isEmpty() ? head : c.digest + " / " + head;
+        int limit = contextChars / 2;
+        while (d.length() > limit && d.contains(" / ")) d = d.substring(d.indexOf(" / ") + 3);
+        c.digest = d.length() > limit ? d.substring(d.length() - limit) : d;
+        compactions.incrementAndGet();
+    }
+
+    /**
+     * LLM 에 넘길 맥락 한 줄 (context-chars 이내)
+     * 기간 표현은 빼고 넣음 → 이번 발화의 기간 해석(analyze)이 옛 턴의 기간에 끌려가지 않게
+     */
+    private String context(String digest, Turn last) {
+        StringBuilder sb = new StringBuilder("(이전 대화");
+        if (!digest.isEmpty()) sb.append(" 요약: ").append(stripPeriods(digest)).append(";");
+        sb.append(" 직전 질문: ").append(stripPeriods(last.message()));
+        String s = sb.append(")").toString();
+        return s.length() > contextChars ? "(" + s.substring(s.length() - contextChars + 1) : s;
+    }
+
+    private static String stripPeriods(String text) {
+        return PeriodResolver.stripPeriodPhrases(text).replaceAll("\\s+", " ").trim();
+    }
+
+    public Stats stats() {
+        int size;
+        synchronized (sessions) {
+            size = sessions.size();
+        }
+        Map<Kind, Long> byKind = new EnumMap<>(Kind.class);
+        resolved.forEach((k, v) -> byKind.put(k, v.get()));
+        long n = contextRequests.get();
+        return new Stats(size, maxSessions, turns.get(), byKind, compactions.get(),
+                n == 0 ? 0d : (double) contextCharsSum.get() / n);
+    }
+}
@@ -1,8 +1,10 @@
 package com.ex.final22c.service.chat;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -17,6 +19,7 @@ import com.ex.final22c.data.recommendation.SituationalRecommendation;
 import com.ex.final22c.repository.productMapper.ProductMapper;
 import com.ex.final22c.repository.user.UserRepository;
 import com.ex.final22c.service.product.ProductService;
+import com.ex.final22c.service.product.ScentSimilarityIndex;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import lombok.RequiredArgsConstructor;
@@ -44,14 +47,18 @@ public class HybridRecommendationService {
     private final ProductMapper productMapper;      // 상품 DB 매퍼
     private final ProductService productService;    // 상품 비즈니스 로직 서비스
     private final ObjectMapper objectMapper;        // JSON 파싱 및 직렬화
+    private final ProductCandidateIndex candidateIndex; // 후보 선별용 인메모리 비트셋 인덱스
+    private final SurveyRecommendationCache surveyCache; // 설문 조합별 검증된 추천 JSON 캐시
+    private final ScentSimilarityIndex similarityIndex; // 폴백 추천용 노트 유사도 이웃
+    private final RecommendationPreRanker preRanker; // 프롬프트에 넣을 후보 로컬 사전 순위
 
     // ===================== 내부 유틸리티 메서드 =====================
     
     /**
      * 설문 기반 후보 상품 선별
      * 
-     * 사용자 설문 답변을 기반으로 DB에서 적합한 후보 상품들을 필터링
-     * 성별, 가격대, 메인노트, 지속력(등급) 조건으로 쿼리 최적화
+     * 사용자 설문 답변을 기반으로 적합한 후보 상품들을 필터링
+     * 성별(정렬), 가격대, 메인노트, 지속력(등급) 조건 - 인메모리 인덱스 우선, 준비 전이면 DB 쿼리
      * 
      * @param survey 사용자 설문 답변 맵
      * @return 필터링된 후보 상품 리스트 (최대 200개 제한)
@@ -68,27 +75,32 @@ public class HybridRecommendationService {
         // 지속력을 등급 ID 리스트로 변환 (예: "오드 퍼퓸" → [3])
         final List<Integer> gradeIds = getGradeIdsByIntensity(survey.get("intensity"));
 
-        // DB에서 조건에 맞는 후보 상품 조회
+        // 인메모리 인덱스로 후보 선별 (비트셋 AND, DB 왕복 없음) - 재고 있는 상품만, 판매량 순
         List<Map<String, Object>> candidates =
-            productMapper.selectProductsForRecommendation(
-                null,          // brandIds - 브랜드 제한 없음
-                gradeIds,      // 지속력 기반 등급 필터
-                mainNoteIds,   // 선호 향 필터
-                null,          // volumeIds - 용량 제한 없음
-                null,          // keyword - 키워드 검색 없음
-                gender,        // 성별 기반 정렬 가중치
-                priceRange     // 가격대 필터
-            )
-            .stream()
-            // 재고가 있는 상품만 필터링 (COUNT > 0)
-            .filter(p -> {
-                Object v = p.get("count");
-                if (v instanceof Number) return ((Number) v).intValue() > 0;
-                if (v != null) try { return Integer.parseInt(String.valueOf(v)) > 0; } catch (Exception ignore) {}
-                return true; // null일 경우 기본적으로 포함
-            })
-            .limit(200)  // AI 프롬프트 크기 제한으로 안정성 확보
-            .collect(Collectors.toList());
+            candidateIndex.select(gender, priceRange, gradeIds, mainNoteIds, 200);
+
+        // 인덱스가 아직 준비 안 됐으면(기동 직후/비활성화) DB에서 조건에 맞는 후보 상품 조회
+        if (candidates == null) {
+            candidates = productMapper.selectProductsForRecommendation(
+                    null,          // brandIds - 브랜드 제한 없음
+                    gradeIds,      // 지속력 기반 등급 필터
+                    mainNoteIds,   // 선호 향 필터
+                    null,          // volumeIds - 용량 제한 없음
+                    null,          // keyword - 키워드 검색 없음
+                    gender,        // 성별 기반 정렬 가중치
+                    priceRange     // 가격대 필터
+                )
+                .stream()
+                // 재고가 있는 상품만 필터링 (COUNT > 0)
+                .filter(p -> {
+                    Object v = p.get("count");
+                    if (v instanceof Number) return ((Number) v).intValue() > 0;
+                    if (v != null) try { return Integer.parseInt(String.valueOf(v)) > 0; } catch (Exception ignore) {}
+                    return true; // null일 경우 기본적으로 포함
+                })
+                .limit(200)  // AI 프롬프트 크기 제한으로 안정성 확보
+                .collect(Collectors.toList());
+        }
 
         // 디버깅용 로그 - 필터링 결과 기록
         log.debug("filteredCandidates gender={}, priceRange={}, gradeIds={}, mainNoteIds={}, size={}",
@@ -102,6 +114,7 @@ public class HybridRecommendationService {
      * 
      * 사용자 설문 답변을 받아 AI 기반 개인화 추천을 생성하는 핵심 메서드
      * 다층 방어 구조로 안정성 확보 (AI 실패 시 폴백 처리)
+     * 설문 조합 캐시에 있으면 AI 호출 없이 바로 응답, 없으면 폴백을 먼저 주고 백그라운드에서 생성
      * 
      * @param surveyAnswers 사용자 설문 답변 (gender, usage, priceRange, notes, intensity)
      * @return JSON 문자열 형태의 추천 결과 (situationalRecommendations 구조)
@@ -112,10 +125,55 @@ public class HybridRecommendationService {
         final Map<String, String> safe =
             (surveyAnswers == null) ? Collections.emptyMap() : surveyAnswers;
 
-        // 2. 설문 기반으로 후보 상품 필터링 (DB 쿼리)
+        // 2. 설문 기반으로 후보 상품 필터링 (인메모리 인덱스, 준비 전이면 DB 쿼리)
         List<Map<String, Object>> candidates = getFilteredCandidates(safe);
 
-        // 3. AI 분석 실행 및 오류 처리
+        // 3. 설문 조합 캐시 조회 - 후보 구성이 바뀌었거나 오래된 값은 그대로 주고 백그라운드 재생성
+        String key = surveyCache.keyOf(safe);
+        if (key != null) {
+            SurveyRecommendationCache.Lookup hit =
+                surveyCache.lookup(key, fingerprint(safe, candidates));
+            if (hit.json() != null) {
+                log.debug("analyzeSurvey 캐시 {} - key={}", hit.outcome(), key);
+                return hit.json();
+            }
+            // 캐시 미스 → 폴백 추천으로 바로 응답 (AI 생성은 SurveyRecommendationRefresher 가 이어서)
+            log.info("analyzeSurvey 캐시 미스 - fallback 응답 후 백그라운드 생성 예약, key={}", key);
+            return buildFallbackJson(safe, candidates);
+        }
+
+        // 4. 캐시 대상이 아닌 설문 → 기존처럼 바로 AI 분석
+        return generate(safe, candidates).json();
+    }
+
+    /** 설문 조합 캐시 백그라운드 생성 (SurveyRecommendationRefresher 에서 호출) */
+    public void regenerate(String key) {
+        Map<String, String> survey = surveyCache.surveyOf(key);
+        List<Map<String, Object>> candidates = getFilteredCandidates(survey);
+        long fingerprint = fingerprint(survey, candidates);   // 폴백이 후보를 섞기 전에
+        Generated g = generate(survey, candidates);
+        surveyCache.put(key, g.json(), fingerprint, g.usedFallback());
+    }
+
+    /** 조합의 현재 후보 지문 (백그라운드 순회에서 후보 구성 변경 감지용) */
+    public long candidateFingerprint(String key) {
+        Map<String, String> survey = surveyCache.surveyOf(key);
+        return fingerprint(survey, getFilteredCandidates(survey));
+    }
+
+    /** 캐시 지문은 AI 에 실제로 보내는 후보(사전 순위 상위) 기준 - 200개 꼬리의 변동으로 재생성하지 않음 */
+    private long fingerprint(Map<String, String> survey, List<Map<String, Object>> candidates) {
+        return SurveyRecommendationCache.fingerprint(preRanker.pick(survey, candidates));
+    }
+
+    /** AI 분석 결과 (usedFallback = AI 실패/무효 응답으로 폴백 사용) */
+    private record Generated(String json, boolean usedFallback) {}
+
+    /**
+     * AI 분석 실행 + 응답 검증/정규화, 실패 시 폴백
+     */
+    private Generated generate(Map<String, String> safe, List<Map<String, Object>> candidates) {
+        // 1. AI 분석 실행 및 오류 처리
         String aiJson;
         boolean usedFallback = false; // 진단용 플래그 - 폴백 사용 여부 추적
         
@@ -128,7 +186,7 @@ public class HybridRecommendationService {
             aiJson = null;
         }
         
-        // 4. AI 응답 검증 및 후처리
+        // 2. AI 응답 검증 및 후처리
         if (aiJson == null || aiJson.isBlank()) {
             // AI 응답이 없는 경우 → 폴백 추천 생성
             usedFallback = true;
@@ -144,9 +202,9 @@ public class HybridRecommendationService {
             }
         }
 
-        // 5. 처리 결과 로깅 (성능 모니터링 및 디버깅용)
+        // 3. 처리 결과 로깅 (성능 모니터링 및 디버깅용)
         log.info("analyzeSurvey 완료 - usedFallback={}, candidatesCount={}", usedFallback, candidates.size());
-        return aiJson;
+        return new Generated(aiJson, usedFallback);
     }
 
     /**
@@ -186,11 +244,14 @@ public class HybridRecommendationService {
                 """;
         };
 
+        // 후보를 설문 적합도로 로컬 사전 순위 → 상위 top-k 만 짧은 번호 표로 (비활성화면 기존 형식 전체)
+        RecommendationPreRanker.Shortlist shortlist = preRanker.shortlist(survey, candidates);
+
         // AI 프롬프트 구성 - 구조화된 지시사항
         StringBuilder prompt = new StringBuilder();
         prompt.append("당신은 전자상거래 향수 추천 시스템입니다.\n")
               .append("반드시 완전한 JSON으로만 응답하세요. 설명/코드펜스 금지.\n")
-              .append("아래 후보들(productId)에서만 고르고, 숫자 타입으로 기입하세요.\n\n")
+              .append(shortlist.idRule()).append("\n")
 
               .append("=== 사용자 설문 ===\n");
         // 설문 답변을 프롬프트에 포함
@@ -203,12 +264,8 @@ public class HybridRecommendationService {
               .append("- 각 제품의 선택 이유에 용도와 설문 요소(노트/강도/가격대)를 반드시 연결해 서술.\n")
 
               .append("\n=== 후보 상품(이 중에서만 선택) ===\n");
-        // 후보 상품 정보를 프롬프트에 포함 (ID, 이름, 브랜드, 가격)
-        candidates.forEach(p -> prompt.append("id=").append(p.get("id"))
-            .append(", name=").append(p.get("name"))
-            .append(", brand=").append(p.get("brandName"))
-            .append(", price=").append(p.get("sellPrice"))
-            .append("\n"));
+        // 후보 상품 표 (번호, 이름, 브랜드, 가격 - 노트 일치도)
+        prompt.append(shortlist.table());
 
         prompt.append("\n=== 필수 출력 형식(예시 스키마, 이 구조만 허용) ===\n")
               .append("{\"situationalRecommendations\":{\"").append(usage).append("\":{")
@@ -220,15 +277,16 @@ public class HybridRecommendationService {
               .append("추가 텍스트 금지. JSON만 반환.\n");
 
         try {
-            // ChatService를 통해 DeepSeek AI 호출
-            String raw = chatService.ask(prompt.toString());
+            // ChatService를 통해 DeepSeek AI 호출 (토큰/지연은 SURVEY op 로 집계)
+            String raw = chatService.askSurvey(prompt.toString());
             String normalized = normalizeJson(raw);
             
             // JSON 구조가 잘못된 경우 텍스트에서 추출 시도
             if (!isValidJson(normalized)) {
                 normalized = extractSituationalRecommendationsFromText(raw, usage);
             }
-            return normalized;
+            // 짧은 번호 → 실제 상품 id (남는 상품이 없으면 null → 폴백)
+            return preRanker.decode(normalized, shortlist);
         } catch (Exception e) {
             log.error("AI 호출 또는 후처리 실패", e);
             throw e; // 상위 메서드에서 폴백 처리
@@ -673,7 +731,8 @@ public class HybridRecommendationService {
      * 폴백 추천 JSON 생성
      * 
      * AI 분석이 실패했을 때 사용할 기본 추천을 생성
-     * 필터링된 후보 상품에서 랜덤하게 선택하여 추천 구성
+     * 유사도 엔진이 준비됐으면 판매 1위 후보를 기준으로 노트가 비슷한 후보를 골라 구성 (결정적),
+     * 아니면 필터링된 후보 상품에서 랜덤하게 선택
      * 
      * @param survey 사용자 설문 답변
      * @param candidates 필터링된 후보 상품 리스트
@@ -686,18 +745,21 @@ public class HybridRecommendationService {
                 return "{\"situationalRecommendations\":{}}";
             }
             
-            // 후보 상품을 랜덤하게 섞고 최대 3개 선택
-            Collections.shuffle(candidates);
-            List<Map<String, Object>> picks = candidates.stream().limit(3).collect(Collectors.toList());
-
             // 사용 용도 추출 (기본값: daily)
             String usage = survey.getOrDefault("usage", "daily");
-            
-            // 선택된 상품들을 추천 형식으로 변환
-            List<Map<String, Object>> prods = picks.stream().map(p -> Map.of(
-                "productId", p.get("id"),
-                "reason", "설문 조건과 유사한 후보에서 추천" // 기본 추천 이유
-            )).collect(Collectors.toList());
+
+            // 유사도 엔진 준비됨 → 기준 상품 + 비슷한 향 후보, 아니면 랜덤 최대 3개
+            List<Map<String, Object>> prods = similarityIndex.ready() ? buildSimilarPicks(candidates) : null;
+            if (prods == null) {
+                Collections.shuffle(candidates);
+                List<Map<String, Object>> picks = candidates.stream().limit(3).collect(Collectors.toList());
+
+                // 선택된 상품들을 추천 형식으로 변환
+                prods = picks.stream().map(p -> Map.of(
+                    "productId", p.get("id"),
+                    "reason", "설문 조건과 유사한 후보에서 추천" // 기본 추천 이유
+                )).collect(Collectors.toList());
+            }
 
             // 상황별 추천 데이터 구성
             Map<String, Object> usageRec = new HashMap<>();
@@ -715,4 +777,48 @@ public class HybridRecommendationService {
             return "{\"situationalRecommendations\":{}}";
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 폴백용 결정적 추천: 후보 1순위(판매량 순)를 기준으로, 후보 안에서 노트가 가장 비슷한 상품 2개
+     * (가능하면 기준 상품과 다른 브랜드 우선, 모자라면 후보 순서대로 채움)
+     * 기준 상품의 이웃 정보가 없으면 null → 호출 측이 랜덤 폴백
+     */
+    private List<Map<String, Object>> buildSimilarPicks(List<Map<String, Object>> candidates) {
+        Map<String, Object> anchor = candidates.get(0);
+        Long anchorId = ScentSimilarityIndex.toLong(anchor.get("id"));
+        if (anchorId == null) return null;
+
+        Map<Long, Map<String, Object>> byId = new HashMap<>();
+        for (Map<String, Object> c : candidates) {
+            Long id = ScentSimilarityIndex.toLong(c.get("id"));
+            if (id != null) byId.putIfAbsent(id, c);
+        }
+        List<ScentSimilarityIndex.Neighbor> near = similarityIndex.neighbors(anchorId, 24);
+        if (near.isEmpty() && candidates.size() > 1) return null;
+
+        List<Map<String, Object>> prods = new ArrayList<>();
+        Set<Long> picked = new HashSet<>(List.of(anchorId));
+        prods.add(Map.of("productId", anchor.get("id"),
+                "reason", "설문 조건에 맞는 후보 중 판매량이 가장 많은 향"));
+
+        // 다른 브랜드 먼저, 그다음 같은 브랜드
+        for (boolean otherBrandOnly : new boolean[] { true, false }) {
+            for (ScentSimilarityIndex.Neighbor n : near) {
+                if (prods.size() >= 3) break;
+                Map<String, Object> c = byId.get(n.id());
+                if (c == null || picked.contains(n.id())) continue;
+                if (otherBrandOnly && Objects.equals(c.get("brandName"), anchor.get("brandName"))) continue;
+                picked.add(n.id());
+                prods.add(Map.of("productId", c.get("id"),
+                        "reason", anchor.get("name") + "와(과) 노트 구성이 비슷한 향 (유사도 " + Math.round(n.score() * 100) + "%)"));
+            }
+        }
+        for (Map<String, Object> c : candidates) {
+            if (prods.size() >= 3) break;
+            Long id = ScentSimilarityIndex.toLong(c.get("id"));
+            if (id == null || !picked.add(id)) continue;
+            prods.add(Map.of("productId", c.get("id"), "reason", "설문 조건과 유사한 후보에서 추천"));
+        }
+        return prods;
+    }
+}
@@ -0,0 +1,389 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.sql.PeriodResolver;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 발화 → IntentFrame (요청 진입점에서 1회)
+ * - 전처리(상품명 따옴표) + 의도 판정 + 추출값 + 기본 기간 규칙
+ * - 오케스트레이터/라우터/코얼레서/대화 저장소는 여기서 만든 프레임을 넘겨받아 씀 (같은 발화를 다시 분석하지 않음)
+ */
+@Slf4j
+public final class IntentAnalyzer {
+    private IntentAnalyzer(){}
+
+    private static final Pattern MOM_KEYWORDS =
+        Pattern.compile("(?i)(전월\\s*대비|MoM|month\\s*over\\s*month|월\\s*대비|달\\s*대비)");
+
+    private static boolean isMoM(String msg){
+        return msg != null && MOM_KEYWORDS.matcher(msg).find();
+    }
+
+    // === 상품명 자동 따옴표 감지 ===
+    private static final Pattern PRODUCT_PHRASE =
+            Pattern.compile("([\\p{L}\\p{N}][\\p{L}\\p{N}\\s\\-·’'()]+?\\s*\\d+\\s*ml)\\b",
+                    Pattern.CASE_INSENSITIVE);
+    private static final Pattern P_KEEP_ML =
+            Pattern.compile("([\\p{L}\\p{N}][\\p{L}\\p{N}\\s\\-·’'()]+?\\s*\\d+\\s*ml)",
+                    Pattern.CASE_INSENSITIVE);
+    private static final Pattern P_HAS_ML = Pattern.compile("\\d+\\s*ml");
+    private static String keepMlPhrase(String s){
+        if (s == null) return "";
+        Matcher m = P_KEEP_ML.matcher(s);
+        return m.find() ? m.group(1).trim() : s.trim();
+    }
+    private static boolean mentionsThisWeek(String msg){
+        return mentionsThisWeekStrict(msg);
+    }
+
+    private static final Pattern TOPN_PATTERN =
+        Pattern.compile("(?i)(?:top\\s*(\\d+)|상위\\s*(\\d+))");
+    private static final Pattern MIN_REVIEW_PATTERN =
+        Pattern.compile("(?:리뷰|후기)\\s*(\\d+)\\s*건\\s*이상");
+
+    private static int extractTopN(String msg, int def) {
+        if (msg == null) return def;
+        Matcher m = TOPN_PATTERN.matcher(msg);
+        if (m.find()) {
+            for (int i=1;i<=m.groupCount();i++) {
+                String g = m.group(i);
+                if (g!=null) try { return Math.max(1, Math.min(Integer.parseInt(g), 100)); } catch (Exception ignore) {}
+            }
+        }
+        return def;
+    }
+    private static int extractMinReviews(String msg, int def) {
+        if (msg == null) return def;
+        Matcher m = MIN_REVIEW_PATTERN.matcher(msg);
+        if (m.find()) try { return Math.max(1, Integer.parseInt(m.group(1))); } catch (Exception ignore) {}
+        return def;
+    }
+
+    private static String autoQuoteProductName(String msg) {
+        if (msg == null) return null;
+        if (msg.contains("\"")) return msg; // 이미 따옴표 있으면 그대로
+        Matcher m = PRODUCT_PHRASE.matcher(msg);
+        StringBuffer sb = new StringBuffer();
+        boolean quoted = false;
+        while (m.find()) {
+            String phrase = m.group(1).trim();
+            if (P_HAS_ML.matcher(phrase).find()) {
+                m.appendReplacement(sb, "\"" + Matcher.quoteReplacement(phrase) + "\"");
+                quoted = true;
+            }
+        }
+        m.appendTail(sb);
+        return quoted ? sb.toString() : msg;
+    }
+
+    private record TwoProducts(String a, String b) {}
+
+    private static final Pattern YOY_KEYWORDS =
+        Pattern.compile("(?i)(전년\\s*동기|전년\\s*동기간|전년\\s*대비|작년\\s*동기|작년\\s*동기간|작년\\s*대비|YoY|year\\s*over\\s*year|yoy)");
+
+    private static boolean isYoY(String msg){
+        return msg != null && YOY_KEYWORDS.matcher(msg).find();
+    }
+
+    // === 상품명 추출 (따옴표 없어도 :q 보장) ===
+    private static final Pattern P_QUOTED_PHRASE = Pattern.compile("\"([^\"]{2,80}?)\"");
+    private static String extractProductQuery(String msg) {
+        if (msg == null) return null;
+        Matcher quoted = P_QUOTED_PHRASE.matcher(msg);
+        if (quoted.find()) return quoted.group(1);
+        Matcher m = PRODUCT_PHRASE.matcher(msg);
+        if (m.find()) return m.group(1);
+        return null;
+    }
+
+    private static final Pattern P_MONTHS = Pattern.compile("(\\d+)개월");
+    private static int extractMonthsFromMessage(String msg) {
+        // "3개월", "6개월" 등에서 숫자 추출
+        Matcher m = P_MONTHS.matcher(msg);
+        if (m.find()) {
+            return Integer.parseInt(m.group(1));
+        }
+        return 3; // 기본값
+    }
+
+    private static final Pattern USERS_RELATED_KEYWORDS =
+        Pattern.compile("(?i)(회원|가입|신규|고객|사용자|마일리지|\\bTOP\\b|\\bVIP\\b|\\bmembers?\\b|\\busers?\\b|\\bcustomers?\\b)");
+
+    private static boolean isUsersRelatedQuery(String userMsg) {
+        if (userMsg != null && USERS_RELATED_KEYWORDS.matcher(userMsg).find()) {
+            log.info("회원 관련 질문 감지: {}", userMsg);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean saysMonthly(String msg){
+        return containsAny(msg, "월별", "monthly", "month");
+    }
+
+    private static final Pattern INTENT_ANY_CHART =
+        Pattern.compile("(차트|그래프|분포|비율|파이|도넛|chart|distribution)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ORDERS_RELATED_KEYWORDS =
+        Pattern.compile("(?i)(매출|주문|결제|판매량|매출액|\\brevenue\\b|\\bsales\\b|\\borders?\\b|\\bpayments?\\b)");
+
+    private static final Pattern ALL_TIME_KEYWORDS =
+            Pattern.compile("(?i)(전체|전체기간|누적|전기간|모든|총|all\\s*time|total|cumulative)");
+
+    private static final Pattern EXPLICIT_PERIOD_KEYWORDS =
+        Pattern.compile("(?i)(오늘|어제|이번|지난|작년|올해|전년|전월|월별|주별|일별|분기|상반기|하반기"
+            + "|최근\\s*\\d+\\s*(일|주|개월|달|년)"
+            + "|(일주일|1주일|한\\s*주|한주)"
+            + "|\\bQ[1-4]\\b|\\d{4}\\s*년|\\d{1,2}\\s*월|this|last|previous)");
+
+    private static final Pattern P_BRAND_BEFORE = Pattern.compile("([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{0,40}?)\\s*브랜드");
+    private static final Pattern P_BRAND_AFTER  = Pattern.compile("브랜드\\s*([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{0,40})");
+    static String extractBrandName(String msg){
+        if (msg == null) return null;
+        Matcher m1 = P_BRAND_BEFORE.matcher(msg);
+        if (m1.find()) return m1.group(1).trim();
+        Matcher m2 = P_BRAND_AFTER.matcher(msg);
+        if (m2.find()) return m2.group(1).trim();
+        return null;
+    }
+
+    private static boolean isAllTimeQuery(String userMsg) {
+        if (userMsg == null) return false;
+        return ALL_TIME_KEYWORDS.matcher(userMsg).find();
+    }
+    private static boolean hasExplicitPeriodWords(String msg){
+        return msg != null && EXPLICIT_PERIOD_KEYWORDS.matcher(msg).find();
+    }
+    private static final Pattern WS = Pattern.compile("\\s+");
+    private static final Pattern P_THIS_WEEK_COMPARE = Pattern.compile("이번\\s*주\\s*(vs|대비|비교)");
+    private static final Pattern P_ABS_DATE_YMD =
+            Pattern.compile("\\d{4}\\s*[-/.년]\\s*\\d{1,2}(\\s*[-/.월]\\s*\\d{1,2}(\\s*일)?)?");
+    private static final Pattern P_ABS_DATE_MD = Pattern.compile("\\d{1,2}\\s*월\\s*\\d{1,2}\\s*일");
+
+    // "이번 주" 단독 의도만 잡기 (주간 비교/복합표현은 제외)
+    private static boolean mentionsThisWeekStrict(String msg){
+        if (msg == null) return false;
+
+        String s = msg.toLowerCase();
+        String sNoSpace = WS.matcher(s).replaceAll("");
+
+        boolean hasThisWeek =
+                s.contains("이번 주") || sNoSpace.contains("이번주")
+             || s.contains("금주")   || s.contains("this week");
+
+        boolean looksLikeWeekCompare =
+                s.contains("지난주") || s.contains("지난 주") || s.contains("전주")
+             || P_THIS_WEEK_COMPARE.matcher(s).find();
+
+        // YYYY-MM-DD, YYYY/MM/DD, "8월 1일" 등 대략적인 절대 날짜 탐지
+        boolean hasAbsoluteDate =
+                P_ABS_DATE_YMD.matcher(s).find()
+             || P_ABS_DATE_MD.matcher(s).find();
+
+        return hasThisWeek && !looksLikeWeekCompare && !hasAbsoluteDate;
+    }
+
+    private static boolean isOrdersRelatedQuery(String userMsg, String generatedSql) {
+        if (generatedSql != null && generatedSql.toUpperCase().contains("ORDERS")) return true;
+        if (userMsg != null && ORDERS_RELATED_KEYWORDS.matcher(userMsg).find()) return true;
+        return false;
+    }
+
+    // === 상품 통계 의도 ===
+    private static final Pattern P_PRODUCT_NAME_WITH_ML =
+            Pattern.compile("(?i)([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{1,80})\\s*([0-9]{1,4})\\s*m\\s*l");
+
+    private static final Pattern P_METRIC_KEYWORDS =
+            Pattern.compile("(?i)(환불|환불률|리뷰|평점|별점|판매|판매량|매출|주문|통계|누적|총계)");
+
+    private static boolean isProductStatsIntent(String msg) {
+        if (msg == null) return false;
+        return P_PRODUCT_NAME_WITH_ML.matcher(msg).find()
+                && P_METRIC_KEYWORDS.matcher(msg).find();
+    }
+
+    // === 비교 의도 & 2개 상품 추출 ===
+    private static final Pattern P_VS =
+            Pattern.compile("(?i)\\s*(?:vs\\.?|대비|비교|그리고|&|/|,)\\s*");
+    private static final Pattern TWO_QUOTED =
+            Pattern.compile("\"([^\"]{2,80})\".*?\"([^\"]{2,80})\"");
+    private static final Pattern TWO_ML =
+            Pattern.compile("([\\p{L}\\p{N} ].*?\\d+\\s*m\\s*l).*?([\\p{L}\\p{N} ].*?\\d+\\s*m\\s*l)",
+                    Pattern.CASE_INSENSITIVE);
+    // 두 상품 비교면 두 상품명, 아니면 null (판정과 추출을 같은 매칭 한 번으로)
+    private static TwoProducts twoProducts(String msg) {
+        Matcher m = TWO_QUOTED.matcher(msg);   // "…ml" "…ml"
+        if (m.find()) return new TwoProducts(keepMlPhrase(m.group(1)), keepMlPhrase(m.group(2)));
+
+        m = TWO_ML.matcher(msg);               // …ml …ml
+        if (m.find()) return new TwoProducts(keepMlPhrase(m.group(1)), keepMlPhrase(m.group(2)));
+
+        // ① 메트릭 나열에 슬래시가 있으면 비교 아님 (상품 패턴이 2개 없으면)
+        if (msg.contains("/") && METRIC_WORDS.matcher(msg).find()
+            && !PRODUCT_PHRASE.matcher(msg).find()) return null;
+
+        // ② VS/대비/쉼표/슬래시로 나눠 보되, 양쪽이 모두 '상품처럼' 보여야만 비교
+        String cleaned = msg.replaceAll("[\"'`]", " ").trim();
+        String[] parts = P_VS.split(cleaned);
+        if (parts.length >= 2) {
+            String a = parts[0].trim(), b = parts[1].trim();
+            if (looksLikeProduct(a) && looksLikeProduct(b)) {
+                return new TwoProducts(keepMlPhrase(a), keepMlPhrase(b));
+            }
+        }
+        return null;
+    }
+    /**
+     * 발화 1회 분석: 전처리(상품명 따옴표) + 의도 판정 + 추출값 + 기본 기간 규칙
+     * 이후 단계는 IntentFrame 값만 사용 (같은 정규식을 단계마다 다시 돌리지 않음)
+     */
+    public static IntentFrame analyze(String userMsg) {
+        // 메시지 전처리
+        String msg = (userMsg == null ? "" : userMsg);
+        msg = autoQuoteProductName(msg);
+        if (!msg.contains("\"")) {
+            Matcher m = P_PRODUCT_NAME_WITH_ML.matcher(msg);
+            if (m.find()) {
+                String phrase = m.group(0).trim();
+                msg = msg.replace(phrase, "\"" + phrase + "\"");
+            }
+        }
+        String lower = msg.toLowerCase(Locale.ROOT);
+
+        boolean ordersRelated = isOrdersRelatedQuery(msg, null);
+        boolean usersRelated  = isUsersRelatedQuery(msg);
+        boolean productStats  = isProductStatsIntent(msg);
+        boolean vip = msg.toUpperCase(Locale.ROOT).contains("VIP")
+                || (msg.contains("누적") && (msg.contains("구매") || msg.contains("구매액")));
+        boolean asksReview = (msg.contains("리뷰") || msg.contains("평점") || msg.contains("별점"));
+        boolean asksRefund = msg.contains("환불");
+        boolean asksSales  = (msg.contains("판매") || msg.contains("매출") || lower.contains("sales"));
+        boolean wantsTopRated = asksReview && (containsAny(msg, "top", "TOP", "상위", "최고", "베스트"));
+
+        TwoProducts tp = twoProducts(msg);
+        boolean twoProductCompare = tp != null;
+
+        boolean monthly  = saysMonthly(msg);
+        boolean thisWeek = mentionsThisWeek(msg);
+        boolean explicitPeriod = hasExplicitPeriodWords(msg);
+
+        // 기간 결정
+        PeriodResolver.ResolvedPeriod period;
+
+        if (vip) {
+            // VIP/누적: 기본 전체 기간 고정 (덮어쓰기 방지 위해 else-if 체인 상단 배치)
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간(VIP)");
+
+        } else if (thisWeek) {
+            // 이번 주 (월요일 00:00 ~ 다음 주 월요일 00:00)
+            var range = weekRangeKST();
+            period = new PeriodResolver.ResolvedPeriod(
+                    range[0].toLocalDateTime(),
+                    range[1].toLocalDateTime(),
+                    "이번 주"
+            );
+
+        } else if (explicitPeriod) {
+            // "지난주/전월/8월 1일~8월 31일/최근 7일" 등 명시적 기간
+            period = PeriodResolver.resolveFromUtterance(msg);
+
+        } else if (isAllTimeQuery(msg)) {
+            // "전체/누적/전기간/total/all time" 등
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간");
+
+        } else if (twoProductCompare) {
+            // 비교 질의 기본: 전체 기간
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간(비교)");
+
+        } else {
+            // 기본값: 주문/회원 관련이면 최근 30일, 그 외 전체기간
+        if ((ordersRelated && !productStats) || usersRelated) {
+                LocalDateTime endTime   = LocalDateTime.now()
+                        .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+                LocalDateTime startTime = endTime.minusDays(30);
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "최근 30일");
+            } else {
+                LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+                LocalDateTime endTime   = LocalDateTime.now()
+                        .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간");
+            }
+
+        }
+        if (usersRelated && monthly) {
+            long days = Duration.between(period.start(), period.end()).toDays();
+            if (days <= 40) { // 1~2개월만 잡힌 경우 보정
+                LocalDate today = LocalDate.now();
+                LocalDateTime startTime = today.minusMonths(11).withDayOfMonth(1).atStartOfDay();
+                LocalDateTime endTime   = today.withDayOfMonth(1).plusMonths(1).atStartOfDay();
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "최근 12개월");
+            }
+        }
+
+        return new IntentFrame(
+                msg, period,
+                ordersRelated, usersRelated, productStats, vip,
+                asksReview, asksRefund, asksSales, wantsTopRated,
+                twoProductCompare, twoProductCompare ? tp.a() : "", twoProductCompare ? tp.b() : "", isMoM(msg), isYoY(msg),
+                isChartIntent(msg), monthly,
+                containsAny(msg, "주별","주간","주 단위","weekly"),
+                containsAny(msg, "일별","daily","일자별"),
+                explicitPeriod, thisWeek, containsAny(msg, "이번주","금주","this week"),
+                extractTopN(msg, 5), extractMinReviews(msg, 3), extractMonthsFromMessage(msg),
+                extractProductQuery(msg), extractBrandName(msg));
+    }
+
+    private static boolean isChartIntent(String msg){
+        if (msg == null) return false;
+        return INTENT_ANY_CHART.matcher(msg).find();
+    }
+
+    static Timestamp[] weekRangeKST() {
+        ZoneId KST = ZoneId.of("Asia/Seoul");
+        LocalDate today = LocalDate.now(KST);
+        WeekFields wf = WeekFields.ISO;
+        LocalDate monday = today.with(wf.dayOfWeek(), 1);
+        LocalDate nextMonday = monday.plusWeeks(1);
+        return new Timestamp[]{
+                Timestamp.valueOf(monday.atStartOfDay()),
+                Timestamp.valueOf(nextMonday.atStartOfDay())
+        };
+    }
+
+    // 추가: 메트릭 단어 목록
+    private static final Pattern METRIC_WORDS =
+        Pattern.compile("(?i)(판매|매출|환불|리뷰|평점|별점|주문|통계|수량|금액|sales?|revenue|refunds?|reviews?|ratings?|orders?)");
+
+    // 추가: 이 토큰이 '상품처럼' 보이는지
+    private static boolean looksLikeProduct(String t){
+        if (t == null) return false;
+        return PRODUCT_PHRASE.matcher(t).find(); // “… 75ml” 같은 패턴
+    }
+
+    static boolean containsAny(String s, String... ks){
+        if (s==null) return false;
+        String t = s.toLowerCase(Locale.ROOT);
+        for (String k: ks) if (t.contains(k.toLowerCase(Locale.ROOT))) return true;
+        return false;
+    }
+}
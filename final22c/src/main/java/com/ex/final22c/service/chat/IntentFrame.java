@@ -0,0 +1,55 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.sql.PeriodResolver;
+
+/**
+ * 사용자 발화 분석 결과 (요청 진입점에서 IntentAnalyzer.analyze 로 1회 생성해 아래 단계로 전달)
+ * - 라우터/플랜 빌더/차트 핸들러/파라미터 바인딩이 같은 판정을 공유해서 정규식 재스캔 방지
+ */
+public record IntentFrame(
+        String message,                        // 상품명 자동 따옴표까지 적용된 발화
+        PeriodResolver.ResolvedPeriod period,  // 기본 기간 규칙까지 적용된 조회 기간
+
+        // 도메인 의도
+        boolean ordersRelated,
+        boolean usersRelated,
+        boolean productStats,
+        boolean vip,
+        boolean asksReview,
+        boolean asksRefund,
+        boolean asksSales,
+        boolean wantsTopRated,
+
+        // 비교
+        boolean twoProductCompare,
+        String compareA,
+        String compareB,
+        boolean mom,
+        boolean yoy,
+
+        // 차트/버킷
+        boolean chart,
+        boolean monthly,
+        boolean weekly,
+        boolean daily,
+        boolean explicitPeriod,                // 지난주/전월/8월/최근 7일 등 기간 표현
+        boolean thisWeek,                      // "이번 주" 단독(비교/절대날짜 제외)
+        boolean thisWeekAny,                   // 이번주/금주/this week 언급
+
+        // 추출값
+        int topN,
+        int minReviews,
+        int inactiveMonths,
+        String productQuery,
+        String brand
+) {
+    /** 두 상품이 모두 추출된 비교 질의 */
+    public boolean hasCompareProducts() {
+        return twoProductCompare && !compareA.isBlank() && !compareB.isBlank();
+    }
+
+    /** LLM 라우터 없이 SQL로 보내도 되는 의도 */
+    public boolean forceSql() {
+        return productStats || usersRelated || twoProductCompare || wantsTopRated;
+    }
+}
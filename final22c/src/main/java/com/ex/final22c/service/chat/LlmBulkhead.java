@@ -0,0 +1,137 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * DeepSeek 동시 호출 상한 (논블로킹 벌크헤드)
+ * - 실행 중 호출이 maxInFlight 이하면 바로 구독
+ * - 넘치면 maxQueue 까지 대기열에 넣고, 앞 호출이 끝날 때 순서대로 시작
+ * - 대기열도 가득 차면 즉시 BulkheadFullException (스레드를 붙잡아 두지 않음)
+ * 대기 시간 상한은 호출 측 timeout()으로 건다 (취소되면 대기열에서 빠짐)
+ */
+@Slf4j
+@Component
+public class LlmBulkhead {
+
+    private final int maxInFlight;
+    private final int maxQueue;
+
+    private final Object lock = new Object();
+    private int inFlight = 0;                               // lock 으로 보호
+    private final ArrayDeque<Waiter<?>> queue = new ArrayDeque<>(); // lock 으로 보호
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public record Stats(int inFlight, int maxInFlight, int queued, int maxQueue, long started, long rejected) {}
+
+    public static class BulkheadFullException extends RuntimeException {
+        public BulkheadFullException(String message) { super(message); }
+    }
+
+    public LlmBulkhead(@Value("${deepseek.client.max-in-flight:8}") int maxInFlight,
+                       @Value("${deepseek.client.max-queue:32}") int maxQueue) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueue = Math.max(0, maxQueue);
+    }
+
+    /** call 은 구독 시점(슬롯 확보 후)에 생성된다 */
+    public <T> Mono<T> submit(Supplier<Mono<T>> call) {
+        return Mono.create(sink -> {
+            Waiter<T> w = new Waiter<>(call, sink);
+            sink.onCancel(() -> {
+                synchronized (lock) {
+                    if (queue.remove(w)) return; // 아직 대기 중이면 빼기만
+                }
+                w.cancel();
+            });
+
+            boolean runNow;
+            synchronized (lock) {
+                if (inFlight < maxInFlight) {
+                    inFlight++;
+                    runNow = true;
+                } else if (queue.size() < maxQueue) {
+                    queue.addLast(w);
+                    runNow = false;
+                } else {
+                    rejected.incrementAndGet();
+                    sink.error(new BulkheadFullException(
+                        "AI 호출 대기열 초과 (inFlight=" + maxInFlight + ", queue=" + maxQueue + ")"));
+                    return;
+                }
+            }
+            if (runNow) w.run();
+        });
+    }
+
+    public Stats stats() {
+        synchronized (lock) {
+            return new Stats(inFlight, maxInFlight, queue.size(), maxQueue, started.get(), rejected.get());
+        }
+    }
+
+    /** 슬롯 반납: 대기자가 있으면 슬롯을 그대로 넘겨서 시작 */
+    private void release() {
+        Waiter<?> next;
+        synchronized (lock) {
+            next = queue.pollFirst();
+            if (next == null) inFlight--;
+        }
+        if (next != null) next.run();
+    }
+
+    private final class Waiter<T> implements Runnable {
+        private final Supplier<Mono<T>> call;
+        private final MonoSink<T> sink;
+        private volatile boolean cancelled = false;
+        private volatile Disposable running;
+        private boolean released = false; // synchronized(this)
+
+        Waiter(Supplier<Mono<T>> call, MonoSink<T> sink) {
+            this.call = call;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) { releaseOnce(); return; }
+            started.incrementAndGet();
+            Mono<T> mono;
+            try {
+                mono = call.get();
+            } catch (Throwable t) {
+                releaseOnce();
+                sink.error(t);
+                return;
+            }
+            running = mono
+                .doFinally(s -> releaseOnce())
+                .subscribe(sink::success, sink::error, sink::success);
+            if (cancelled) running.dispose();
+        }
+
+        void cancel() {
+            cancelled = true;
+            Disposable d = running;
+            if (d != null) d.dispose();
+        }
+
+        private void releaseOnce() {
+            synchronized (this) {
+                if (released) return;
+                released = true;
+            }
+            release();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.ex.final22c.service.chat;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * DeepSeek 응답 디스크 캐시 (재기동/배포 후에도 유지)
+ * - 키: 요청 본문(model, temperature, messages, max_tokens …)을 키 정렬 JSON 으로 만든 SHA-256. stream 플래그는 제외
+ * - temperature <= max-temperature 인 결정적 요청만 (페르소나 추천 같은 창작 호출은 제외)
+ * - 저장: 추가 전용 로그 파일 1개 [MAGIC][키 32B][저장시각][길이][응답 JSON][CRC32]
+ *   기동 시 로그를 훑어 메모리 인덱스(키 → 위치) 재구성, 끝이 깨진 레코드는 잘라냄
+ * - 상한: 살아 있는 바이트가 max-bytes 를 넘으면 LRU 제거, 파일이 살아 있는 양의 2배를 넘으면 압축(LRU 순서로 재기록)
+ * 에러 응답/빈 응답은 저장하지 않는다
+ */
+@Slf4j
+@Component
+public class LlmResponseCache {
+
+    private static final int MAGIC = 0x4C4C4D31;             // "LLM1"
+    private static final int HEADER = 4 + 32 + 8 + 4;       // magic, key, createdAt, length
+    private static final int TRAILER = 4;                    // crc32
+    private static final String FILE = "responses.log";
+
+    private final boolean enabled;
+    private final double maxTemperature;
+    private final long maxBytes;
+    private final long ttlMs;
+    private final Path dir;
+
+    private final ObjectMapper om = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    /** 레코드 위치. length = 응답 JSON 바이트 수 */
+    private record Slot(long offset, int length, long createdAt) {
+        long recordBytes() { return HEADER + length + TRAILER; }
+    }
+
+    public record Stats(boolean enabled, long hits, long misses, double hitRatio, long skipped, long writes,
+                        int entries, long liveBytes, long fileBytes, long evictions, long compactions,
+                        Map<String, Long> callsAvoided) {}
+
+    private final LinkedHashMap<String, Slot> index = new LinkedHashMap<>(256, 0.75f, true); // synchronized(this)
+    private volatile FileChannel ch;                                                          // synchronized(this)
+    private long liveBytes;                                                                   // synchronized(this)
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final Map<String, LongAdder> avoided = new ConcurrentHashMap<>();
+
+    public LlmResponseCache(@Value("${ai.llm-cache.enabled:true}") boolean enabled,
+                            @Value("${ai.llm-cache.dir:var/llm-cache}") String dir,
+                            @Value("${ai.llm-cache.max-temperature:0.3}") double maxTemperature,
+                            @Value("${ai.llm-cache.max-bytes:67108864}") long maxBytes,
+                            @Value("${ai.llm-cache.ttl-hours:168}") long ttlHours) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.maxTemperature = maxTemperature;
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.ttlMs = ttlHours <= 0 ? Long.MAX_VALUE : ttlHours * 3_600_000L;
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        if (!enabled) return;
+        try {
+            Files.createDirectories(dir);
+            ch = FileChannel.open(dir.resolve(FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long valid = scan();
+            if (valid < ch.size()) {
+                log.warn("[llm-cache] 로그 끝 {}바이트가 깨져 잘라냄", ch.size() - valid);
+                ch.truncate(valid);
+            }
+            ch.position(valid);
+            evictOverflow();
+            evictions.set(0);  // 복원 중 다시 걸러진 과거 삭제분은 집계에서 제외
+            log.info("[llm-cache] {} 항목 복원 ({}바이트, 파일 {}바이트)", index.size(), liveBytes, valid);
+        } catch (IOException e) {
+            log.warn("[llm-cache] 캐시 파일을 열지 못해 비활성: {}", e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (ch == null) return;
+        try {
+            ch.force(false);
+        } catch (IOException ignore) {
+        }
+        closeQuietly();
+    }
+
+    /** 캐시 가능한 요청이면 키, 아니면 null (비활성/temperature 초과/직렬화 실패) */
+    public String keyOf(Map<String, Object> body) {
+        if (ch == null) return null;
+        Object t = body.get("temperature");
+        if (!(t instanceof Number n) || n.doubleValue() > maxTemperature) {
+            skipped.incrementAndGet();
+            return null;
+        }
+        Map<String, Object> canonical = new LinkedHashMap<>(body);
+        canonical.remove("stream");
+        try {
+            return HexFormat.of().formatHex(sha256(om.writeValueAsBytes(canonical)));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** 히트면 저장된 응답 맵, 아니면 null. op 는 호출 절감 집계용 */
+    @SuppressWarnings("rawtypes")
+    public Map get(String key, String op) {
+        if (key == null) return null;
+        byte[] json = read(key);
+        if (json == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            Map resp = om.readValue(json, Map.class);
+            hits.incrementAndGet();
+            avoided.computeIfAbsent(op, k -> new LongAdder()).increment();
+            return resp;
+        } catch (IOException e) {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /** 응답 JSON 바이트 (수 KB, LLM 호출 대비 무시할 만해서 락 안에서 읽음) */
+    private synchronized byte[] read(String key) {
+        Slot s = index.get(key);
+        if (s == null || ch == null) return null;
+        if (s.createdAt() + ttlMs < System.currentTimeMillis()) {
+            drop(key, s);
+            return null;
+        }
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(s.length());
+            if (readFully(buf, s.offset() + HEADER) < s.length()) throw new IOException("EOF");
+            return buf.array();
+        } catch (ClosedChannelException e) {
+            // 읽던 스레드가 인터럽트되면 채널이 닫힘 → 다시 열고 이번 건은 미스
+            reopen();
+            return null;
+        } catch (IOException e) {
+            drop(key, s);
+            return null;
+        }
+    }
+
+    /** 정상 응답만 기록 (error 가 없고 choices[0].message.content 가 비어 있지 않을 때) */
+    public void put(String key, Map<?, ?> resp) {
+        if (key == null || !hasContent(resp)) return;
+        byte[] json;
+        try {
+            json = om.writeValueAsBytes(resp);
+        } catch (IOException e) {
+            return;
+        }
+        if (HEADER + json.length + TRAILER > maxBytes) return;
+        synchronized (this) {
+            if (ch == null) return;
+            try {
+                long now = System.currentTimeMillis();
+                long offset = ch.size();
+                ByteBuffer rec = record(key, now, json);
+                while (rec.hasRemaining()) ch.write(rec, offset + rec.position());
+                Slot prev = index.put(key, new Slot(offset, json.length, now));
+                if (prev != null) liveBytes -= prev.recordBytes();
+                liveBytes += HEADER + json.length + TRAILER;
+                writes.incrementAndGet();
+                evictOverflow();
+                if (ch.size() > Math.max(2 * liveBytes, maxBytes / 4)) compact();
+            } catch (ClosedChannelException e) {
+                reopen();
+            } catch (IOException e) {
+                log.warn("[llm-cache] 기록 실패: {}", e.getMessage());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        liveBytes = 0;
+        if (ch == null) return;
+        try {
+            ch.truncate(0);
+        } catch (IOException e) {
+            log.warn("[llm-cache] 비우기 실패: {}", e.getMessage());
+        }
+    }
+
+    public Stats stats() {
+        long h = hits.get(), m = misses.get();
+        int entries;
+        long live, file = 0;
+        synchronized (this) {
+            entries = index.size();
+            live = liveBytes;
+            try {
+                if (ch != null) file = ch.size();
+            } catch (IOException ignore) {
+            }
+        }
+        Map<String, Long> byOp = new LinkedHashMap<>();
+        avoided.forEach((k, v) -> byOp.put(k, v.sum()));
+        return new Stats(ch != null, h, m, (h + m) == 0 ? 0 : (double) h / (h + m), skipped.get(), writes.get(),
+                entries, live, file, evictions.get(), compactions.get(), byOp);
+    }
+
+    /* ===== 로그 파일 ===== */
+
+    /** 로그를 처음부터 읽어 인덱스 재구성. 마지막 정상 레코드 끝 위치 반환 */
+    private long scan() throws IOException {
+        long pos = 0, size = ch.size();
+        ByteBuffer head = ByteBuffer.allocate(HEADER);
+        long now = System.currentTimeMillis();
+        while (pos + HEADER + TRAILER <= size) {
+            head.clear();
+            if (readFully(head, pos) < HEADER) break;
+            head.flip();
+            if (head.getInt() != MAGIC) break;
+            byte[] k = new byte[32];
+            head.get(k);
+            long createdAt = head.getLong();
+            int len = head.getInt();
+            if (len < 0 || pos + HEADER + len + TRAILER > size) break;
+            ByteBuffer body = ByteBuffer.allocate(len + TRAILER);
+            if (readFully(body, pos + HEADER) < len + TRAILER) break;
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, len);
+            if ((int) crc.getValue() != body.getInt(len)) break;
+
+            String key = HexFormat.of().formatHex(k);
+            Slot prev = index.remove(key);
+            if (prev != null) liveBytes -= prev.recordBytes();
+            if (createdAt + ttlMs >= now) {
+                index.put(key, new Slot(pos, len, createdAt));
+                liveBytes += HEADER + len + TRAILER;
+            }
+            pos += HEADER + len + TRAILER;
+        }
+        return pos;
+    }
+
+    /** 살아 있는 항목만 LRU 순서(오래된 것 먼저)로 새 파일에 쓰고 교체 */
+    private void compact() throws IOException {
+        Path tmp = dir.resolve(FILE + ".tmp");
+        LinkedHashMap<String, Slot> moved = new LinkedHashMap<>(index.size() * 2, 0.75f, true);
+        long live = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = 0;
+            List<Map.Entry<String, Slot>> entries = new ArrayList<>(index.entrySet());
+            for (Map.Entry<String, Slot> e : entries) {
+                Slot s = e.getValue();
+                ByteBuffer rec = ByteBuffer.allocate((int) s.recordBytes());
+                if (readFully(rec, s.offset()) < rec.capacity()) continue;
+                rec.flip();
+                while (rec.hasRemaining()) out.write(rec, pos + rec.position());
+                moved.put(e.getKey(), new Slot(pos, s.length(), s.createdAt()));
+                pos += s.recordBytes();
+                live += s.recordBytes();
+            }
+            out.force(false);
+        }
+        ch.close();
+        Files.move(tmp, dir.resolve(FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ch = FileChannel.open(dir.resolve(FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        index.putAll(moved);
+        liveBytes = live;
+        compactions.incrementAndGet();
+    }
+
+    private void evictOverflow() {
+        var it = index.entrySet().iterator();
+        while (liveBytes > maxBytes && it.hasNext()) {
+            liveBytes -= it.next().getValue().recordBytes();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void drop(String key, Slot s) {
+        index.remove(key);
+        liveBytes -= s.recordBytes();
+    }
+
+    private int readFully(ByteBuffer buf, long pos) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int r = ch.read(buf, pos + total);
+            if (r < 0) break;
+            total += r;
+        }
+        return total;
+    }
+
+    private static boolean hasContent(Map<?, ?> resp) {
+        if (resp == null || resp.containsKey("error")) return false;
+        if (!(resp.get("choices") instanceof List<?> choices) || choices.isEmpty()) return false;
+        if (!(choices.get(0) instanceof Map<?, ?> first) || !(first.get("message") instanceof Map<?, ?> msg)) return false;
+        return msg.get("content") instanceof String c && !c.isBlank();
+    }
+
+    private static ByteBuffer record(String key, long createdAt, byte[] json) {
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        ByteBuffer b = ByteBuffer.allocate(HEADER + json.length + TRAILER);
+        b.putInt(MAGIC).put(HexFormat.of().parseHex(key)).putLong(createdAt).putInt(json.length)
+         .put(json).putInt((int) crc.getValue());
+        return b.flip();
+    }
+
+    private static byte[] sha256(byte[] in) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(in);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void reopen() {
+        try {
+            ch = FileChannel.open(dir.resolve(FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            log.warn("[llm-cache] 캐시 파일 재오픈 실패 → 비활성: {}", e.getMessage());
+            ch = null;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (ch != null) ch.close();
+        } catch (IOException ignore) {
+        }
+        ch = null;
+    }
+}
@@ -0,0 +1,68 @@
+package com.ex.final22c.service.chat;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DeepSeek 호출 종류별 토큰/지연 집계 (응답 usage 기준)
+ * - prompt_tokens / completion_tokens / prompt_cache_hit_tokens(있을 때)
+ * - 지연은 벌크헤드 대기 포함 호출 전체 시간
+ * 스키마 축약(SchemaPromptBuilder) 전후 비교는 ai.schema.slice.enabled 를 바꿔 이 지표로 확인
+ */
+@Component
+public class LlmUsageMeter {
+
+    private static final class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder withUsage = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder cacheHitTokens = new LongAdder();
+        final LongAdder elapsedMs = new LongAdder();
+    }
+
+    public record OpStats(long calls, double avgPromptTokens, double avgCompletionTokens,
+                          double cacheHitRatio, double avgElapsedMs) {}
+
+    private final Map<String, Counters> ops = new ConcurrentHashMap<>();
+
+    /** 응답 맵의 usage 를 읽어 기록 (usage 가 없으면 호출 수/지연만) */
+    public void record(String op, Map<?, ?> resp, long elapsedMs) {
+        record(op, resp, elapsedMs, null);
+    }
+
+    /** trace 가 있으면 요청 단위 토큰에도 더함 */
+    public void record(String op, Map<?, ?> resp, long elapsedMs, AiTrace trace) {
+        Counters c = ops.computeIfAbsent(op, k -> new Counters());
+        c.calls.increment();
+        c.elapsedMs.add(elapsedMs);
+        if (resp == null || !(resp.get("usage") instanceof Map<?, ?> usage)) return;
+        long prompt = asLong(usage.get("prompt_tokens")), completion = asLong(usage.get("completion_tokens"));
+        c.withUsage.increment();
+        c.promptTokens.add(prompt);
+        c.completionTokens.add(completion);
+        c.cacheHitTokens.add(asLong(usage.get("prompt_cache_hit_tokens")));
+        if (trace != null) trace.tokens(prompt, completion);
+    }
+
+    public Map<String, OpStats> stats() {
+        Map<String, OpStats> out = new LinkedHashMap<>();
+        ops.forEach((op, c) -> {
+            long n = c.calls.sum(), u = c.withUsage.sum(), p = c.promptTokens.sum();
+            out.put(op, new OpStats(n,
+                    u == 0 ? 0 : (double) p / u,
+                    u == 0 ? 0 : (double) c.completionTokens.sum() / u,
+                    p == 0 ? 0 : (double) c.cacheHitTokens.sum() / p,
+                    n == 0 ? 0 : (double) c.elapsedMs.sum() / n));
+        });
+        return out;
+    }
+
+    private static long asLong(Object v) {
+        return v instanceof Number n ? n.longValue() : 0L;
+    }
+}
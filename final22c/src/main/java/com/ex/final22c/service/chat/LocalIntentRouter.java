@@ -0,0 +1,67 @@
+package com.ex.final22c.service.chat;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * LLM 없이 SQL/CHAT을 가르는 규칙 기반 라우터
+ * - 오케스트레이터가 쓰는 의도 판별(매출/회원/상품통계/MoM/YoY/기간어 등)을 신호로 사용
+ * - 신호별 가중치를 noisy-OR로 합쳐 SQL/CHAT 점수를 만들고, 반대쪽 점수만큼 확신도를 깎는다
+ * - 확신도가 낮으면 RouteService가 LLM 라우터로 넘긴다
+ */
+@Component
+public class LocalIntentRouter {
+
+    public record Decision(RouteService.Mode mode, double confidence, String reason) {}
+
+    // DB 엔티티/집계 어휘 (매출·주문·회원 키워드는 오케스트레이터 패턴 사용)
+    private static final Pattern ENTITY_WORDS =
+            Pattern.compile("(?i)(상품|제품|브랜드|리뷰|후기|평점|별점|환불|재고|발주|입고|노트|용량|장바구니|배송|\\bproducts?\\b|\\bbrands?\\b|\\breviews?\\b|\\brefunds?\\b)");
+    private static final Pattern AGG_WORDS =
+            Pattern.compile("(?i)(몇\\s*(개|명|건|원)|얼마|합계|총합|평균|순위|랭킹|내역|명단|구매액|환불률|휴면|미구매|\\d+\\s*(명|개|건)|\\bTOP\\s*\\d*|상위|하위|건수|개수|추이|집계|조회|목록|리스트|가장\\s*(많|적|높|낮)|\\bcount\\b|\\bsum\\b|\\bavg\\b)");
+
+    // 일반 대화 신호
+    private static final Pattern SMALL_TALK =
+            Pattern.compile("(?i)(안녕|반가|고마|감사|수고|ㅋㅋ|ㅎㅎ|농담|심심|날씨|기분|너는|넌\\s|누구야|이름이|뭐\\s*해|\\bhello\\b|\\bhi\\b|\\bthanks?\\b|\\bjoke\\b|how\\s+are\\s+you)");
+    private static final Pattern OPINION =
+            Pattern.compile("(?i)(어떻게\\s*생각|어떻게\\s*(쓰|하|해)|좋을까|의견|조언|팁|방법|전략|아이디어|왜\\s|설명해|뜻이|의미가|차이가\\s*뭐|마케팅|문구|카피|써\\s*줘|작성해|추천해)");
+
+    /** 규칙 판정 (항상 결과를 돌려주며, 확신도로 신뢰 여부를 판단). 발화는 IntentAnalyzer 로 분석된 프레임 */
+    public Decision classify(IntentFrame f) {
+        String msg = f.message();
+        if (msg.isBlank()) {
+            return new Decision(RouteService.Mode.CHAT, 0.0, "empty");
+        }
+
+        List<String> sqlHits = new ArrayList<>();
+        double sqlMiss = 1.0; // Π(1 - w)
+        if (f.productStats())                        { sqlMiss *= 1 - 0.90; sqlHits.add("productStats"); }
+        if (f.twoProductCompare())                   { sqlMiss *= 1 - 0.85; sqlHits.add("twoProduct"); }
+        if (f.ordersRelated())                       { sqlMiss *= 1 - 0.65; sqlHits.add("orders"); }
+        if (f.usersRelated())                        { sqlMiss *= 1 - 0.50; sqlHits.add("users"); }
+        if (f.mom() || f.yoy())                      { sqlMiss *= 1 - 0.50; sqlHits.add("momYoy"); }
+        if (f.chart())                               { sqlMiss *= 1 - 0.50; sqlHits.add("chart"); }
+        if (f.explicitPeriod() || f.thisWeek())      { sqlMiss *= 1 - 0.30; sqlHits.add("period"); }
+        if (f.monthly())                             { sqlMiss *= 1 - 0.30; sqlHits.add("monthly"); }
+        if (AGG_WORDS.matcher(msg).find())                            { sqlMiss *= 1 - 0.50; sqlHits.add("agg"); }
+        if (ENTITY_WORDS.matcher(msg).find())                         { sqlMiss *= 1 - 0.40; sqlHits.add("entity"); }
+
+        List<String> chatHits = new ArrayList<>();
+        double chatMiss = 1.0;
+        if (SMALL_TALK.matcher(msg).find()) { chatMiss *= 1 - 0.80; chatHits.add("smallTalk"); }
+        if (OPINION.matcher(msg).find())    { chatMiss *= 1 - 0.70; chatHits.add("opinion"); }
+
+        double sql = 1 - sqlMiss;
+        double chat = 1 - chatMiss;
+
+        RouteService.Mode mode = (sql >= chat && sql > 0) ? RouteService.Mode.SQL : RouteService.Mode.CHAT;
+        double confidence = (mode == RouteService.Mode.SQL) ? sql * (1 - chat) : chat * (1 - sql);
+        String reason = "local " + (mode == RouteService.Mode.SQL ? sqlHits : chatHits)
+                + (mode == RouteService.Mode.SQL ? (chatHits.isEmpty() ? "" : " vs " + chatHits)
+                                                 : (sqlHits.isEmpty() ? "" : " vs " + sqlHits));
+        return new Decision(mode, Math.round(confidence * 1000) / 1000.0, reason);
+    }
+}
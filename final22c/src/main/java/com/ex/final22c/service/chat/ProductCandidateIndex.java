@@ -0,0 +1,314 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.repository.productMapper.ProductMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MYTYPE 추천 후보 인메모리 인덱스
+ * - selectProductsForRecommendation 과 같은 결과를 DB 왕복 없이: 재고/등급/메인노트/가격대 조건마다 비트셋 하나,
+ *   설문 한 건은 비트셋 AND 몇 번 + 앞에서부터 limit 개 읽기
+ * - 정렬(해당 성별 구매자 판매량 DESC, ID DESC)은 성별별 순위로 미리 매겨 두고, 비트 위치 = 그 성별의 순위
+ *   → nextSetBit 순서가 곧 쿼리의 ORDER BY 순서
+ * - 스냅샷은 불변, 재빌드 후 참조만 교체 (조회 중인 요청은 옛 스냅샷을 끝까지 사용)
+ * - 상품 등록/상태 변경/재고 증감은 커밋 후 dirty 표시 → rebuild-delay-ms 주기로 모아서 재빌드(판매량은 재사용),
+ *   판매량 순위는 sales-refresh-minutes 마다 다시 집계
+ */
+@Slf4j
+@Component
+public class ProductCandidateIndex {
+
+    public record Stats(boolean enabled, boolean ready, int products, int inStock, int rankings,
+                        long builds, long buildFailures, long lastBuildMs, long queries, double avgQueryMicros,
+                        String builtAt) {}
+
+    private final ProductMapper productMapper;
+    private final boolean enabled;
+    private final long salesRefreshMillis;
+
+    private volatile Snapshot snapshot;                 // null = 아직 빌드 전 → DB 조회로
+    private volatile Map<Long, Map<String, Long>> sales = Map.of();
+    private volatile long salesLoadedAt;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong buildFailures = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+    private volatile long lastBuildMs;
+
+    public ProductCandidateIndex(ProductMapper productMapper,
+                                 @Value("${reco.index.enabled:true}") boolean enabled,
+                                 @Value("${reco.index.sales-refresh-minutes:10}") long salesRefreshMinutes) {
+        this.productMapper = productMapper;
+        this.enabled = enabled;
+        this.salesRefreshMillis = salesRefreshMinutes * 60_000L;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (enabled) rebuild(true);
+    }
+
+    public boolean ready() {
+        return enabled && snapshot != null;
+    }
+
+    /**
+     * 설문 조건으로 후보 선택 (selectProductsForRecommendation 결과와 같은 키/순서, 재고 있는 것만)
+     * 인덱스가 아직 없으면 null → 호출 측에서 DB 조회
+     */
+    public List<Map<String, Object>> select(String gender, String priceRange, Collection<Integer> gradeIds,
+                                            Collection<Integer> mainNoteIds, int limit) {
+        Snapshot s = snapshot;
+        if (!enabled || s == null) return null;
+        long t0 = System.nanoTime();
+        List<Map<String, Object>> out = s.select(gender, priceRange, gradeIds, mainNoteIds, limit);
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - t0);
+        return out;
+    }
+
+    /** 상품/재고 변경 알림: 트랜잭션 안이면 커밋 후(롤백 시 무시), 밖이면 즉시 dirty */
+    public void markDirtyAfterCommit() {
+        if (!enabled) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        dirty.set(true);
+                    }
+                }
+            );
+        } else {
+            dirty.set(true);
+        }
+    }
+
+    /** 변경분 모아서 재빌드 (연속 주문 N건 → 재빌드 1번), 판매량 순위는 주기적으로만 재집계 */
+    @Scheduled(fixedDelayString = "${reco.index.rebuild-delay-ms:2000}")
+    public void refreshIfDirty() {
+        if (!enabled) return;
+        boolean salesDue = System.currentTimeMillis() - salesLoadedAt > salesRefreshMillis;
+        if (dirty.getAndSet(false) || salesDue || snapshot == null) {
+            rebuild(salesDue || snapshot == null);
+        }
+    }
+
+    /** 상품 목록(+필요하면 판매량) 다시 읽어 스냅샷 교체, 실패하면 옛 스냅샷 유지하고 다음 주기에 재시도 */
+    public synchronized void rebuild(boolean reloadSales) {
+        long t0 = System.currentTimeMillis();
+        try {
+            if (reloadSales) {
+                sales = salesByProduct(productMapper.selectRecommendationSalesByGender());
+                salesLoadedAt = System.currentTimeMillis();
+            }
+            snapshot = Snapshot.build(productMapper.selectRecommendationIndexRows(), sales);
+            builds.incrementAndGet();
+            lastBuildMs = System.currentTimeMillis() - t0;
+            log.debug("[reco-index] rebuilt products={} sales={} {}ms", snapshot.size(), reloadSales, lastBuildMs);
+        } catch (RuntimeException e) {
+            buildFailures.incrementAndGet();
+            dirty.set(true);
+            log.warn("[reco-index] 재빌드 실패 (기존 인덱스 유지): {}", e.toString());
+        }
+    }
+
+    /** {productId, gender, qty} 행 → 상품별 {GENDER → 판매량}, "" = 전체 */
+    static Map<Long, Map<String, Long>> salesByProduct(List<Map<String, Object>> rows) {
+        Map<Long, Map<String, Long>> out = new HashMap<>();
+        for (Map<String, Object> r : rows) {
+            Long id = toLong(r.get("productId"));
+            if (id == null) continue;
+            long qty = toLong(r.get("qty")) == null ? 0L : toLong(r.get("qty"));
+            Map<String, Long> byGender = out.computeIfAbsent(id, k -> new HashMap<>());
+            byGender.merge(Snapshot.ALL, qty, Long::sum);
+            Object g = r.get("gender");
+            if (g != null) byGender.merge(String.valueOf(g).toUpperCase(Locale.ROOT), qty, Long::sum);
+        }
+        return out;
+    }
+
+    public Stats stats() {
+        Snapshot s = snapshot;
+        long q = queries.get();
+        return new Stats(enabled, s != null, s == null ? 0 : s.size(), s == null ? 0 : s.inStockCount(),
+                s == null ? 0 : s.rankings.size(), builds.get(), buildFailures.get(), lastBuildMs, q,
+                q == 0 ? 0d : queryNanos.get() / 1000.0 / q, s == null ? null : s.builtAt.toString());
+    }
+
+    static Long toLong(Object v) {
+        if (v instanceof Number n) return n.longValue();
+        if (v != null) try { return Long.parseLong(String.valueOf(v).trim()); } catch (NumberFormatException ignore) {}
+        return null;
+    }
+
+    /**
+     * 불변 인덱스 한 벌 (벤치마크에서 DB 없이 직접 빌드할 수 있게 공개)
+     * rankings: 정렬 기준별("" = 전체, MALE/FEMALE ..., 판매 이력 없는 성별용 NONE) 비트셋 묶음
+     */
+    public static final class Snapshot {
+        static final String ALL = "";
+        static final String NONE = "#NONE";
+
+        private final Row[] rows;
+        private final Map<String, Ranking> rankings;
+        private final LocalDateTime builtAt = LocalDateTime.now();
+
+        /** 상품 한 건: 응답용 맵(쿼리 결과와 같은 키, genderSales 제외) + 필터 키 */
+        private record Row(long id, Map<String, Object> base, Integer gradeNo, Integer mainNoteNo,
+                           Long sellPrice, boolean inStock, Map<String, Long> sales) {
+            long salesOf(String key) {
+                if (NONE.equals(key) || sales == null) return 0L;
+                return sales.getOrDefault(key, 0L);
+            }
+        }
+
+        /** 한 정렬 기준의 비트셋 (비트 위치 = 그 기준의 순위) */
+        private static final class Ranking {
+            final int[] order;                                  // 순위 → rows 인덱스
+            final BitSet inStock;
+            final Map<Integer, BitSet> grade = new HashMap<>();
+            final Map<Integer, BitSet> mainNote = new HashMap<>();
+            final BitSet[] price = { new BitSet(), new BitSet(), new BitSet() };   // low / medium / high
+
+            Ranking(int[] order) {
+                this.order = order;
+                this.inStock = new BitSet(order.length);
+            }
+        }
+
+        private Snapshot(Row[] rows, Map<String, Ranking> rankings) {
+            this.rows = rows;
+            this.rankings = rankings;
+        }
+
+        public int size() {
+            return rows.length;
+        }
+
+        int inStockCount() {
+            Ranking r = rankings.get(ALL);
+            return r == null ? 0 : r.inStock.cardinality();
+        }
+
+        /**
+         * @param products selectRecommendationIndexRows 행 (id, name, brandName, sellPrice, count, gradeName,
+         *                 mainNoteName, gradeNo, mainNoteNo)
+         * @param sales    상품별 {GENDER → 판매량}, "" = 전체
+         */
+        public static Snapshot build(List<Map<String, Object>> products, Map<Long, Map<String, Long>> sales) {
+            List<Row> list = new ArrayList<>(products.size());
+            for (Map<String, Object> p : products) {
+                Long id = toLong(p.get("id"));
+                if (id == null) continue;
+                Map<String, Object> base = new LinkedHashMap<>(p);
+                Long gradeNo = toLong(base.remove("gradeNo"));
+                Long noteNo = toLong(base.remove("mainNoteNo"));
+                Long count = toLong(p.get("count"));
+                list.add(new Row(id, base, gradeNo == null ? null : gradeNo.intValue(),
+                        noteNo == null ? null : noteNo.intValue(), toLong(p.get("sellPrice")),
+                        count != null && count > 0, sales.get(id)));
+            }
+            Row[] rows = list.toArray(Row[]::new);
+
+            // 정렬 기준: 전체 + 판매 이력에 나온 성별 + 이력 없는 성별(NONE)
+            List<String> keys = new ArrayList<>(List.of(ALL, NONE));
+            sales.values().forEach(m -> m.keySet().forEach(k -> { if (!keys.contains(k)) keys.add(k); }));
+
+            Map<String, Ranking> rankings = new HashMap<>();
+            for (String key : keys) rankings.put(key, rank(rows, key));
+            return new Snapshot(rows, rankings);
+        }
+
+        private static Ranking rank(Row[] rows, String key) {
+            Integer[] idx = new Integer[rows.length];
+            for (int i = 0; i < rows.length; i++) idx[i] = i;
+            // ORDER BY NVL(gs.sales_qty, 0) DESC, p.ID DESC
+            Arrays.sort(idx, Comparator.<Integer>comparingLong(i -> rows[i].salesOf(key)).reversed()
+                    .thenComparing(Comparator.<Integer>comparingLong(i -> rows[i].id()).reversed()));
+            int[] order = new int[rows.length];
+            Ranking r = new Ranking(order);
+            for (int pos = 0; pos < idx.length; pos++) {
+                Row row = rows[idx[pos]];
+                order[pos] = idx[pos];
+                if (row.inStock()) r.inStock.set(pos);
+                if (row.gradeNo() != null) r.grade.computeIfAbsent(row.gradeNo(), k -> new BitSet()).set(pos);
+                if (row.mainNoteNo() != null) r.mainNote.computeIfAbsent(row.mainNoteNo(), k -> new BitSet()).set(pos);
+                int bucket = priceBucket(row.sellPrice());
+                if (bucket >= 0) r.price[bucket].set(pos);
+            }
+            return r;
+        }
+
+        /** XML 과 같은 경계: low < 150000 ≤ medium ≤ 300000 < high */
+        private static int priceBucket(Long price) {
+            if (price == null) return -1;
+            if (price < 150_000) return 0;
+            return price <= 300_000 ? 1 : 2;
+        }
+
+        private static int priceBucket(String priceRange) {
+            if (priceRange == null) return -1;
+            return switch (priceRange) {
+                case "low" -> 0;
+                case "medium" -> 1;
+                case "high" -> 2;
+                default -> -1;   // 모르는 값은 XML <choose> 처럼 필터 없음
+            };
+        }
+
+        public List<Map<String, Object>> select(String gender, String priceRange, Collection<Integer> gradeIds,
+                                                Collection<Integer> mainNoteIds, int limit) {
+            // #{gender} IS NULL → 전체 판매량 (Oracle 에선 빈 문자열도 NULL)
+            String key = gender == null || gender.isEmpty() ? ALL : gender.toUpperCase(Locale.ROOT);
+            Ranking r = rankings.getOrDefault(key, rankings.get(NONE));
+
+            BitSet acc = (BitSet) r.inStock.clone();
+            if (gradeIds != null && !gradeIds.isEmpty()) acc.and(union(r.grade, gradeIds));
+            if (mainNoteIds != null && !mainNoteIds.isEmpty()) acc.and(union(r.mainNote, mainNoteIds));
+            int bucket = priceBucket(priceRange);
+            if (bucket >= 0) acc.and(r.price[bucket]);
+
+            List<Map<String, Object>> out = new ArrayList<>(Math.min(limit, acc.cardinality()));
+            for (int pos = acc.nextSetBit(0); pos >= 0 && out.size() < limit; pos = acc.nextSetBit(pos + 1)) {
+                Row row = rows[r.order[pos]];
+                Map<String, Object> m = new LinkedHashMap<>(row.base());
+                m.put("genderSales", row.salesOf(key));
+                out.add(m);
+            }
+            return out;
+        }
+
+        private static BitSet union(Map<Integer, BitSet> byValue, Collection<Integer> values) {
+            BitSet u = new BitSet();
+            for (Integer v : values) {
+                BitSet b = v == null ? null : byValue.get(v);
+                if (b != null) u.or(b);
+            }
+            return u;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.service.product.ScentSimilarityIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MYTYPE 후보 로컬 사전 순위 (DeepSeek 프롬프트 축소)
+ * - 후보(최대 200개, 판매량 순)를 설문 적합도로 점수화: 노트 계열 일치 / 등급(농도) / 가격대 중심과의 거리 / 판매 순위 / 재고
+ * - 상위 top-k 만 (브랜드당 max-per-brand 까지) 프롬프트에 넣음
+ * - 후보 표는 "번호|이름|브랜드|가격(천원)|노트일치%" 한 줄씩, productId 대신 짧은 번호(1..k) → 응답에서 실제 id 로 되돌림
+ * - 비활성화하면 기존 형식(id=..., name=..., brand=..., price=...) 전체 후보 그대로
+ * 전후 토큰/지연 비교는 reco.prerank.enabled 를 바꿔 LlmUsageMeter 의 SURVEY op 지표로 확인 (추정 토큰은 stats)
+ */
+@Slf4j
+@Component
+public class RecommendationPreRanker {
+
+    // 설문 향 계열 → 노트 구절 키워드 (소문자 비교, 너무 짧아 오탐 나는 단어는 제외)
+    private static final Map<String, List<String>> FAMILY_KEYWORDS = Map.of(
+        "citrus", List.of("시트러스", "베르가못", "레몬", "라임", "자몽", "오렌지", "만다린", "유자", "네롤리",
+                "citrus", "bergamot", "lemon", "lime", "grapefruit", "orange", "mandarin", "neroli"),
+        "woody", List.of("우디", "우드", "샌달", "시더", "베티버", "패출리", "캐시미어", "구아이악",
+                "wood", "cedar", "sandal", "vetiver", "oud", "patchouli"),
+        "herbal", List.of("허브", "라벤더", "로즈마리", "바질", "세이지", "민트", "녹차", "홍차", "그린",
+                "herb", "lavender", "rosemary", "basil", "sage", "mint", "tea"),
+        "floral", List.of("플로럴", "장미", "로즈", "자스민", "재스민", "튜베로즈", "아이리스", "바이올렛", "피오니",
+                "작약", "은방울", "목련", "일랑", "프리지아", "rose", "jasmine", "tuberose", "iris", "violet", "peony"),
+        "spicy", List.of("스파이시", "페퍼", "후추", "시나몬", "계피", "카다멈", "정향", "클로브", "넛맥", "진저", "생강", "사프란",
+                "pepper", "cinnamon", "cardamom", "clove", "ginger", "saffron"),
+        "fruity", List.of("프루티", "사과", "복숭아", "피치", "베리", "블랙커런트", "카시스", "라즈베리", "딸기", "무화과",
+                "자두", "리치", "망고", "apple", "pear", "peach", "berry", "cassis", "fig", "plum", "lychee")
+    );
+
+    // 점수 가중치 (합 1.0)
+    private static final double W_NOTE = 0.35, W_POPULAR = 0.25, W_PRICE = 0.15, W_GRADE = 0.15, W_STOCK = 0.10;
+
+    /**
+     * 프롬프트에 넣을 후보 묶음
+     * idRule = productId 기입 규칙 한 줄, table = 후보 표, products = 실제 넣은 후보 (순서 = 짧은 번호 - 1)
+     */
+    public record Shortlist(boolean compact, List<Map<String, Object>> products, String idRule, String table) {}
+
+    public record Stats(boolean enabled, int topK, long calls, double avgCandidates, double avgShortlisted,
+                        double avgLegacyTokens, double avgPromptTokens, double avgRankMicros,
+                        long mappedIds, long droppedIds) {}
+
+    private final ScentSimilarityIndex similarityIndex;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int topK;
+    private final int maxPerBrand;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong candidates = new AtomicLong();
+    private final AtomicLong shortlisted = new AtomicLong();
+    private final AtomicLong legacyTokens = new AtomicLong();
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong rankNanos = new AtomicLong();
+    private final AtomicLong mappedIds = new AtomicLong();
+    private final AtomicLong droppedIds = new AtomicLong();
+
+    public RecommendationPreRanker(ScentSimilarityIndex similarityIndex, ObjectMapper objectMapper,
+                                   @Value("${reco.prerank.enabled:true}") boolean enabled,
+                                   @Value("${reco.prerank.top-k:30}") int topK,
+                                   @Value("${reco.prerank.max-per-brand:3}") int maxPerBrand) {
+        this.similarityIndex = similarityIndex;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.topK = Math.max(3, topK);
+        this.maxPerBrand = Math.max(1, maxPerBrand);
+    }
+
+    /** 후보 → 프롬프트용 묶음 (비활성화면 기존 형식 전체) */
+    public Shortlist shortlist(Map<String, String> survey, List<Map<String, Object>> candidates) {
+        long t0 = System.nanoTime();
+        String legacy = legacyTable(candidates);
+        Shortlist s;
+        if (!enabled) {
+            s = new Shortlist(false, candidates, "아래 후보들(productId)에서만 고르고, 숫자 타입으로 기입하세요.\n", legacy);
+        } else {
+            List<Map<String, Object>> picked = pick(survey, candidates);
+            s = new Shortlist(true, picked,
+                    "아래 후보 표의 번호(1~" + picked.size() + ")에서만 고르고, productId 에 그 번호를 숫자로 기입하세요.\n",
+                    compactTable(survey, picked, similarityIndex));
+        }
+        calls.incrementAndGet();
+        this.candidates.addAndGet(candidates.size());
+        shortlisted.addAndGet(s.products().size());
+        legacyTokens.addAndGet(SchemaPromptBuilder.estimateTokens(legacy));
+        promptTokens.addAndGet(SchemaPromptBuilder.estimateTokens(s.table()));
+        rankNanos.addAndGet(System.nanoTime() - t0);
+        return s;
+    }
+
+    /** 프롬프트에 들어갈 후보만 (표/지표 없이, 설문 캐시 지문용) */
+    public List<Map<String, Object>> pick(Map<String, String> survey, List<Map<String, Object>> candidates) {
+        return enabled ? rank(survey, candidates, topK, maxPerBrand, similarityIndex) : candidates;
+    }
+
+    /**
+     * 응답 JSON 의 productId(짧은 번호) → 실제 상품 id
+     * 번호 범위 밖/모르는 값은 버림, 남는 상품이 하나도 없으면 null (호출 측 폴백)
+     */
+    @SuppressWarnings("unchecked")
+    public String decode(String json, Shortlist s) {
+        if (!s.compact() || json == null) return json;
+        try {
+            Map<String, Object> root = objectMapper.readValue(json, Map.class);
+            if (!(root.get("situationalRecommendations") instanceof Map<?, ?> recs)) return json;
+            Map<String, Object> realIds = new HashMap<>();
+            for (Map<String, Object> p : s.products()) realIds.put(String.valueOf(p.get("id")), p.get("id"));
+            int kept = 0;
+            for (Object usage : recs.values()) {
+                if (!(usage instanceof Map<?, ?> u) || !(u.get("products") instanceof List<?> products)) continue;
+                List<Object> mapped = new ArrayList<>();
+                for (Object o : products) {
+                    if (!(o instanceof Map<?, ?> prod)) continue;
+                    Object real = realId(prod.get("productId"), s, realIds);
+                    if (real == null) {
+                        droppedIds.incrementAndGet();
+                        continue;
+                    }
+                    Map<String, Object> copy = new LinkedHashMap<>((Map<String, Object>) prod);
+                    copy.put("productId", real);
+                    mapped.add(copy);
+                    mappedIds.incrementAndGet();
+                }
+                ((Map<String, Object>) u).put("products", mapped);
+                kept += mapped.size();
+            }
+            return kept == 0 ? null : objectMapper.writeValueAsString(root);
+        } catch (Exception e) {
+            log.debug("[prerank] 응답 id 복원 실패: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static Object realId(Object v, Shortlist s, Map<String, Object> realIds) {
+        Long n = ScentSimilarityIndex.toLong(v);
+        if (n == null) return null;
+        if (n >= 1 && n <= s.products().size()) return s.products().get((int) (n - 1)).get("id");
+        // 번호 대신 실제 id 를 그대로 쓴 경우도 후보 안이면 인정
+        return realIds.get(String.valueOf(n));
+    }
+
+    // ===================== 점수 =====================
+
+    /**
+     * 설문 적합도 상위 limit 개 (브랜드당 maxPerBrand 까지, 모자라면 밀려난 후보로 채움)
+     * candidates 는 판매량 순이라고 가정 (인덱스/DB 모두 그 순서)
+     */
+    public static List<Map<String, Object>> rank(Map<String, String> survey, List<Map<String, Object>> candidates,
+                                                 int limit, int maxPerBrand, ScentSimilarityIndex notes) {
+        int n = candidates.size();
+        List<String> keywords = FAMILY_KEYWORDS.getOrDefault(lower(survey.get("notes")), List.of());
+        double[] score = new double[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            score[i] = score(survey, candidates.get(i), keywords, i, n, notes);
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> -score[i]).thenComparingInt(i -> i));
+
+        List<Map<String, Object>> out = new ArrayList<>(Math.min(limit, n));
+        List<Map<String, Object>> overflow = new ArrayList<>();
+        Map<Object, Integer> perBrand = new HashMap<>();
+        for (int i : order) {
+            if (out.size() >= limit) break;
+            Map<String, Object> c = candidates.get(i);
+            int used = perBrand.merge(String.valueOf(c.get("brandName")), 1, Integer::sum);
+            if (used <= maxPerBrand) out.add(c);
+            else overflow.add(c);
+        }
+        for (Map<String, Object> c : overflow) {
+            if (out.size() >= limit) break;
+            out.add(c);
+        }
+        return out;
+    }
+
+    static double score(Map<String, String> survey, Map<String, Object> c, List<String> keywords,
+                        int salesRank, int total, ScentSimilarityIndex notes) {
+        // 노트 계열 일치 (메인노트는 이미 필터, 여기선 top/middle/base 구절까지) — 인덱스 준비 전이면 중립
+        double note = 0.5;
+        Long id = ScentSimilarityIndex.toLong(c.get("id"));
+        if (notes != null && id != null && !keywords.isEmpty()) {
+            double share = notes.noteShare(id, keywords);
+            if (share >= 0) note = Math.min(1d, 0.3 + share);
+        }
+        // 판매 순위 (후보 순서 = 판매량 순)
+        double popular = total <= 1 ? 1d : 1d - (double) salesRank / (total - 1);
+        // 가격대 중심과의 거리
+        double price = priceFit(lower(survey.get("priceRange")), ScentSimilarityIndex.toLong(c.get("sellPrice")));
+        // 농도: 설문 농도와 등급명이 같으면 1 (기본 등급 묶음 [3,4] 로 넓게 뽑힌 경우 구분)
+        String intensity = survey.get("intensity");
+        Object gradeName = c.get("gradeName");
+        double grade = intensity == null || gradeName == null ? 0.5
+                : String.valueOf(gradeName).replace(" ", "").equalsIgnoreCase(intensity.replace(" ", "")) ? 1d : 0.4;
+        // 재고: 곧 품절될 상품은 감점
+        Long count = ScentSimilarityIndex.toLong(c.get("count"));
+        double stock = count == null ? 0.5 : count >= 5 ? 1d : count > 0 ? 0.5 : 0d;
+        return W_NOTE * note + W_POPULAR * popular + W_PRICE * price + W_GRADE * grade + W_STOCK * stock;
+    }
+
+    /** 가격대(low <15만 / medium 15~30만 / high >30만) 중심에 가까울수록 1 */
+    private static double priceFit(String range, Long price) {
+        if (price == null || range == null) return 0.5;
+        double center, half;
+        switch (range) {
+            case "low" -> { center = 100_000; half = 75_000; }
+            case "medium" -> { center = 225_000; half = 75_000; }
+            case "high" -> { center = 400_000; half = 150_000; }
+            default -> { return 0.5; }
+        }
+        return Math.max(0d, 1d - Math.abs(price - center) / (2 * half));
+    }
+
+    // ===================== 표 =====================
+
+    /** 기존 형식 (비교 기준) */
+    public static String legacyTable(List<Map<String, Object>> candidates) {
+        StringBuilder sb = new StringBuilder();
+        for (Map<String, Object> p : candidates) {
+            sb.append("id=").append(p.get("id"))
+              .append(", name=").append(p.get("name"))
+              .append(", brand=").append(p.get("brandName"))
+              .append(", price=").append(p.get("sellPrice"))
+              .append("\n");
+        }
+        return sb.toString();
+    }
+
+    /** 헤더 한 번 + 행마다 값만 ('|' 구분, 가격은 천원 단위) */
+    public static String compactTable(Map<String, String> survey, List<Map<String, Object>> picked, ScentSimilarityIndex notes) {
+        List<String> keywords = FAMILY_KEYWORDS.getOrDefault(lower(survey.get("notes")), List.of());
+        boolean withNote = notes != null && notes.ready() && !keywords.isEmpty();
+        StringBuilder sb = new StringBuilder(withNote ? "번호|이름|브랜드|가격(천원)|노트일치%\n" : "번호|이름|브랜드|가격(천원)\n");
+        for (int i = 0; i < picked.size(); i++) {
+            Map<String, Object> p = picked.get(i);
+            Long price = ScentSimilarityIndex.toLong(p.get("sellPrice"));
+            sb.append(i + 1).append('|').append(clean(p.get("name")))
+              .append('|').append(clean(p.get("brandName")))
+              .append('|').append(price == null ? "" : String.valueOf(Math.round(price / 1000.0)));
+            if (withNote) {
+                Long id = ScentSimilarityIndex.toLong(p.get("id"));
+                double share = id == null ? -1 : notes.noteShare(id, keywords);
+                sb.append('|').append(share < 0 ? "" : String.valueOf(Math.round(share * 100)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** 추정 토큰 (SchemaPromptBuilder 와 같은 근사) */
+    public static int estimateTokens(String s) {
+        return SchemaPromptBuilder.estimateTokens(s);
+    }
+
+    private static String clean(Object v) {
+        return v == null ? "" : String.valueOf(v).replace('|', '/').replaceAll("\\s+", " ").trim();
+    }
+
+    private static String lower(String s) {
+        return s == null ? null : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public Stats stats() {
+        long n = calls.get();
+        return new Stats(enabled, topK, n,
+                n == 0 ? 0 : (double) candidates.get() / n,
+                n == 0 ? 0 : (double) shortlisted.get() / n,
+                n == 0 ? 0 : (double) legacyTokens.get() / n,
+                n == 0 ? 0 : (double) promptTokens.get() / n,
+                n == 0 ? 0 : rankNanos.get() / 1000.0 / n,
+                mappedIds.get(), droppedIds.get());
+    }
+}
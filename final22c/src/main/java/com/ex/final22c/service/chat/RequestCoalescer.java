@@ -0,0 +1,142 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.controller.chat.AiResult;
+import com.ex.final22c.sql.PeriodResolver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 같은 질문 동시 요청 합치기 (single-flight)
+ * - 키: 요청자 + SqlPlanCache.keyOf(기간 표현 제거한 발화) + 해석된 기간 → 같은 사용자의 "이번달 매출"/"이번 달 매출?" 은 같은 키
+ * - 먼저 온 요청(leader)만 파이프라인을 돌리고, 진행 중에 들어온 같은 키 요청은 그 결과(AiResult)를 그대로 받음
+ * - 끝난 뒤 ai.coalesce.grace-ms 동안은 결과를 재사용 (대시보드 여러 개가 살짝 늦게 열리는 경우)
+ * - 실패한 결과는 대기 중이던 요청에만 전달하고 바로 지움, 대기 상한(wait-ms)을 넘기면 각자 실행
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+
+    private final boolean enabled;
+    private final long graceNanos;
+    private final long waitMs;
+    private final AiPipelineMetrics pipelineMetrics;
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong graceHits = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+
+    public record Stats(boolean enabled, long graceMs, long leaders, long coalesced, long graceHits,
+                        long waitTimeouts, int inflight, double coalesceRatio) {}
+
+    /** 진행 중(또는 grace 중) 계산 하나, doneAt 0 = 아직 진행 중 */
+    private static final class Flight {
+        final CompletableFuture<AiResult> result = new CompletableFuture<>();
+        volatile long doneAt;
+    }
+
+    public RequestCoalescer(AiPipelineMetrics pipelineMetrics,
+                            @Value("${ai.coalesce.enabled:true}") boolean enabled,
+                            @Value("${ai.coalesce.grace-ms:2000}") long graceMs,
+                            @Value("${ai.coalesce.wait-ms:120000}") long waitMs) {
+        this.pipelineMetrics = pipelineMetrics;
+        this.enabled = enabled;
+        this.graceNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, graceMs));
+        this.waitMs = waitMs;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** 합치기 키: 요청자 + 정규화 발화 + 기간 (쿼리 파라미터가 요청자에 따라 달라지므로 사용자끼리는 합치지 않음) */
+    public static String keyOf(IntentFrame f, Principal principal) {
+        PeriodResolver.ResolvedPeriod p = f.period();
+        String period = p == null ? "-" : p.start() + "~" + p.end();
+        String who = principal == null ? "-" : principal.getName();
+        return who + "|" + SqlPlanCache.keyOf(f.message()) + "|" + period;
+    }
+
+    /** 같은 키 계산이 진행 중/grace 중이면 그 결과를, 아니면 compute 를 직접 실행 */
+    public AiResult run(String key, Supplier<AiResult> compute) {
+        if (!enabled) return compute.get();
+
+        Flight mine = new Flight();
+        long now = System.nanoTime();
+        Flight flight = flights.compute(key, (k, cur) -> cur == null || expired(cur, now) ? mine : cur);
+        if (flight != mine) {
+            AiResult shared = await(flight);
+            if (shared != null) return shared;
+            return compute.get();   // 대기 시간 초과 → 각자 실행
+        }
+
+        leaders.incrementAndGet();
+        try {
+            AiResult r = compute.get();
+            mine.result.complete(r);
+            return r;
+        } catch (RuntimeException | Error e) {
+            mine.result.completeExceptionally(e);
+            flights.remove(key, mine);
+            throw e;
+        } finally {
+            mine.doneAt = System.nanoTime();
+            if (graceNanos == 0) flights.remove(key, mine);
+            if (flights.size() > 256) sweep();
+        }
+    }
+
+    private AiResult await(Flight flight) {
+        boolean done = flight.doneAt != 0;
+        try {
+            AiResult r = flight.result.get(waitMs, TimeUnit.MILLISECONDS);
+            coalesced.incrementAndGet();
+            if (done) graceHits.incrementAndGet();
+            pipelineMetrics.event("coalesced");
+            return r;
+        } catch (TimeoutException e) {
+            waitTimeouts.incrementAndGet();
+            log.warn("[coalesce] 선행 요청 대기 {}ms 초과 → 직접 실행", waitMs);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("선행 요청 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            coalesced.incrementAndGet();
+            // 선행 요청과 같은 예외를 그대로 (컨트롤러 에러 처리 동일하게)
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private boolean expired(Flight f, long now) {
+        long doneAt = f.doneAt;
+        return doneAt != 0 && (f.result.isCompletedExceptionally() || now - doneAt > graceNanos);
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        flights.entrySet().removeIf(e -> expired(e.getValue(), now));
+    }
+
+    public Stats stats() {
+        long l = leaders.get(), c = coalesced.get();
+        return new Stats(enabled, TimeUnit.NANOSECONDS.toMillis(graceNanos), l, c, graceHits.get(),
+                waitTimeouts.get(), flights.size(), (l + c) == 0 ? 0d : (double) c / (l + c));
+    }
+}
@@ -0,0 +1,459 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 조회 결과 요약을 LLM 없이 템플릿으로 생성
+ * - 결과 모양(단일 값 / 순위 / 시계열 / 이번·이전 버킷 비교 / 항목 구성 / 목록)을 컬럼명과 값으로 판별
+ * - 지표 컬럼은 METRICS 사전(+ 접미사 규칙)으로 한글 이름/단위를 붙임, 모르는 지표가 있으면 null → LLM 요약
+ * - 두 상품 비교(MATCHED)는 머리말만 만들고 우위 판정은 오케스트레이터의 비교요약이 붙임
+ */
+@Slf4j
+@Component
+public class ResultSummarizer {
+
+    public enum Shape { SCALAR, RANKING, SERIES, PERIOD_COMPARE, PRODUCT_COMPARE, BREAKDOWN, LIST }
+
+    public record Stats(boolean enabled, long local, long llmFallbacks, double localRatio, Map<String, Long> byShape) {}
+
+    /** 단위: 금액/수량/건수/인원/비율/평점/일수 */
+    enum Unit {
+        WON("원"), EA("개"), CASE("건"), PERSON("명"), PCT("%"), SCORE("점"), DAY("일");
+
+        final String suffix;
+
+        Unit(String suffix) { this.suffix = suffix; }
+
+        String format(double v) {
+            return switch (this) {
+                case PCT, SCORE -> String.format("%.1f", v) + suffix;
+                case DAY -> (v == Math.rint(v) ? String.format("%,d", (long) v) : String.format("%,.1f", v)) + suffix;
+                default -> String.format("%,d", Math.round(v)) + suffix;
+            };
+        }
+
+        String formatDelta(double d) {
+            return switch (this) {
+                case PCT -> String.format("%+.1f%%p", d);
+                case SCORE -> String.format("%+.1f", d) + suffix;
+                case DAY -> String.format("%+,.1f", d) + suffix;
+                default -> String.format("%+,d", Math.round(d)) + suffix;
+            };
+        }
+    }
+
+    record Metric(String label, Unit unit) {}
+
+    // 템플릿/생성 SQL에 자주 나오는 지표 컬럼 (대문자)
+    private static final Map<String, Metric> METRICS = new LinkedHashMap<>();
+    static {
+        for (String c : List.of("TOTAL_SALES", "TOTALSALES", "TOTAL_SALES_AMOUNT", "SALES", "SALES_AMOUNT", "REVENUE", "TOTAL_AMOUNT", "AMOUNT", "TOTAL_REVENUE"))
+            METRICS.put(c, new Metric("매출", Unit.WON));
+        for (String c : List.of("TOTAL_QUANTITY", "TOTALQUANTITY", "TOTAL_SOLD_QTY", "TOTAL_SOLD_QUANTITY", "TOTAL_SALES_QUANTITY", "QUANTITY", "QTY", "SOLD_QTY"))
+            METRICS.put(c, new Metric("판매량", Unit.EA));
+        for (String c : List.of("ORDER_COUNT", "TOTAL_ORDERS", "ORDERS", "ORDER_CNT"))
+            METRICS.put(c, new Metric("주문", Unit.CASE));
+        for (String c : List.of("CUSTOMER_COUNT", "TOTAL_CUSTOMERS", "USER_COUNT", "MEMBER_COUNT", "USERS"))
+            METRICS.put(c, new Metric("고객", Unit.PERSON));
+        for (String c : List.of("TOTAL_REVIEWS", "REVIEW_COUNT"))
+            METRICS.put(c, new Metric("리뷰", Unit.CASE));
+        METRICS.put("TOTAL_PURCHASE_AMOUNT", new Metric("누적 구매액", Unit.WON));
+        METRICS.put("TOTAL_REFUND_QTY", new Metric("환불 수량", Unit.EA));
+        METRICS.put("REFUND_RATE", new Metric("환불률", Unit.PCT));
+        METRICS.put("AVG_RATING", new Metric("평균 평점", Unit.SCORE));
+        METRICS.put("PERCENTAGE", new Metric("비율", Unit.PCT));
+        METRICS.put("PRODUCT_COUNT", new Metric("상품 수", Unit.EA));
+        METRICS.put("STOCK", new Metric("재고", Unit.EA));
+        METRICS.put("AVG_DAYS_TO_FIRST_PURCHASE", new Metric("첫 구매까지 평균", Unit.DAY));
+        METRICS.put("MIN_DAYS", new Metric("최소", Unit.DAY));
+        METRICS.put("MAX_DAYS", new Metric("최대", Unit.DAY));
+    }
+
+    // 사전에 없는 컬럼은 접미사로 추정
+    private static final Pattern SUFFIX_WON = Pattern.compile(".*(AMOUNT|SALES|PRICE|REVENUE|PAY)$");
+    private static final Pattern SUFFIX_EA = Pattern.compile(".*(QTY|QUANTITY)$");
+    private static final Pattern SUFFIX_CASE = Pattern.compile(".*(COUNT|CNT)$");
+    private static final Pattern SUFFIX_PCT = Pattern.compile(".*(RATE|RATIO|PERCENT|PCT)$");
+
+    // 지표도 라벨도 아닌 컬럼 (식별자/비교 표지)
+    private static final Pattern ID_COL = Pattern.compile("(?i)^(.*_ID|ID|USERNO|MATCHED|ROWNUM|RN)$");
+
+    // 라벨 컬럼 우선순위
+    private static final List<String> LABEL_COLS = List.of(
+            "PRODUCT_NAME", "PRODUCTNAME", "NAME", "BRANDNAME", "BRAND_NAME", "CUSTOMER_TYPE", "LABEL", "CATEGORY", "STATUS");
+
+    private static final Pattern ASKS_BOTTOM = Pattern.compile("(?i)(하위|낮은|적은|적게|꼴찌|최하|worst|bottom)");
+
+    private static final Pattern DATE_LABEL = Pattern.compile("^\\d{4}(-\\d{2}(-\\d{2})?|-W\\d{2}|-Q\\d)?([T ].*)?$");
+
+    private final boolean enabled;
+    private final AtomicLong local = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final Map<Shape, AtomicLong> byShape = new ConcurrentHashMap<>();
+
+    public ResultSummarizer(@Value("${ai.summary.local.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * 결과 모양이 정형이면 한 줄 요약, 아니면 null (LLM 요약으로)
+     * periodPrefix: "지난달 기준 " 처럼 붙일 기간 머리말 (없으면 "")
+     */
+    public String summarize(IntentFrame f, SqlPlan plan, String periodPrefix, List<Map<String, Object>> rows) {
+        if (!enabled || rows == null || rows.isEmpty()) return null;
+        String out;
+        Shape shape;
+        try {
+            Cols c = Cols.of(rows.get(0).keySet());
+            if (unknownNumeric(rows.get(0), c)) {
+                out = null;
+                shape = null;
+            } else if (c.matched) {
+                shape = Shape.PRODUCT_COMPARE;
+                out = productCompare(f, periodPrefix);
+            } else if (c.label != null && "BUCKET".equals(c.label) && isThisPrev(rows)) {
+                shape = Shape.PERIOD_COMPARE;
+                out = periodCompare(f, plan, periodPrefix, c, rows);
+            } else if (c.metrics.isEmpty()) {
+                shape = Shape.LIST;
+                out = c.label == null ? null : list(periodPrefix, c, rows);
+            } else if (c.label == null) {
+                shape = Shape.SCALAR;
+                out = rows.size() == 1 ? scalar(periodPrefix, null, c, rows.get(0)) : null;
+            } else if (rows.size() == 1) {
+                shape = Shape.SCALAR;
+                out = scalar(periodPrefix, str(val(rows.get(0), c.label)), c, rows.get(0));
+            } else if (allDates(rows, c.label)) {
+                shape = Shape.SERIES;
+                out = series(periodPrefix, c, rows);
+            } else {
+                // 3행 이상 정렬된 결과만 순위로 (오름차순은 하위 N 질문일 때만)
+                int dir = rows.size() < 3 ? 0 : rankDirection(rows, c.metrics.get(0));
+                if (dir < 0 && !ASKS_BOTTOM.matcher(f.message()).find()) dir = 0;
+                shape = dir == 0 ? Shape.BREAKDOWN : Shape.RANKING;
+                out = dir == 0 ? breakdown(periodPrefix, c, rows) : ranking(periodPrefix, c, rows, dir);
+            }
+        } catch (RuntimeException e) {
+            log.debug("[summary] 로컬 요약 실패 → LLM: {}", e.toString());
+            out = null;
+            shape = null;
+        }
+        if (out == null) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        local.incrementAndGet();
+        byShape.computeIfAbsent(shape, k -> new AtomicLong()).incrementAndGet();
+        return out;
+    }
+
+    public Stats stats() {
+        long l = local.get(), m = fallbacks.get();
+        Map<String, Long> shapes = new LinkedHashMap<>();
+        for (Shape s : Shape.values()) {
+            AtomicLong n = byShape.get(s);
+            if (n != null) shapes.put(s.name(), n.get());
+        }
+        return new Stats(enabled, l, m, (l + m) == 0 ? 0 : (double) l / (l + m), shapes);
+    }
+
+    /* ===== 컬럼 분류 ===== */
+
+    /** label: 라벨 컬럼(없으면 null), sub: 보조 라벨(브랜드), metrics: 지표 컬럼 → 이름/단위 */
+    record Cols(String label, String sub, LinkedHashMap<String, Metric> metricMap, List<String> metrics, boolean matched) {
+        static Cols of(Iterable<String> keys) {
+            List<String> strings = new ArrayList<>();
+            LinkedHashMap<String, Metric> metrics = new LinkedHashMap<>();
+            boolean matched = false;
+            List<String> all = new ArrayList<>();
+            for (String k : keys) all.add(k.toUpperCase(Locale.ROOT));
+            for (String k : all) {
+                if ("MATCHED".equals(k)) matched = true;
+                if (ID_COL.matcher(k).matches()) continue;
+                Metric m = metric(k);
+                if (m != null) metrics.put(k, m);
+                else strings.add(k);
+            }
+            String label = null;
+            if (all.contains("BUCKET")) label = "BUCKET";
+            for (String l : LABEL_COLS) {
+                if (label == null && strings.contains(l)) label = l;
+            }
+            // 날짜 버킷(MONTH/DAY/WEEK/PERIOD ...) 또는 남은 첫 문자열 컬럼
+            if (label == null) {
+                for (String s : strings) {
+                    if (!s.endsWith("_DATE") && !s.equals("EMAIL")) { label = s; break; }
+                }
+            }
+            String sub = strings.contains("BRANDNAME") && !"BRANDNAME".equals(label) ? "BRANDNAME" : null;
+            return new Cols(label, sub, metrics, new ArrayList<>(metrics.keySet()), matched);
+        }
+
+        Metric m(String col) { return metricMap.get(col); }
+    }
+
+    /** 사전 → 접미사 규칙 순, 지표가 아니면 null */
+    static Metric metric(String col) {
+        Metric m = METRICS.get(col);
+        if (m != null) return m;
+        if (col.startsWith("AVG_") && col.contains("RATING")) return new Metric("평균 평점", Unit.SCORE);
+        if (SUFFIX_PCT.matcher(col).matches()) return new Metric("비율", Unit.PCT);
+        if (SUFFIX_WON.matcher(col).matches()) return new Metric("금액", Unit.WON);
+        if (SUFFIX_EA.matcher(col).matches()) return new Metric("수량", Unit.EA);
+        if (SUFFIX_CASE.matcher(col).matches()) return new Metric("건수", Unit.CASE);
+        if (col.endsWith("DAYS")) return new Metric("일수", Unit.DAY);
+        return null;
+    }
+
+    /* ===== 모양별 문장 ===== */
+
+    private String scalar(String prefix, String label, Cols c, Map<String, Object> row) {
+        List<String> parts = new ArrayList<>();
+        for (String col : c.metrics) {
+            Double v = num(row, col);
+            if (v == null) continue;
+            Metric m = c.m(col);
+            parts.add(m.label() + " " + m.unit().format(v));
+        }
+        if (parts.isEmpty()) return null;
+        String head = label == null ? "" : quote(label) + (c.sub != null && str(val(row, c.sub)) != null ? "(" + str(val(row, c.sub)) + ")" : "") + "의 ";
+        if (parts.size() == 1) {
+            String p = parts.get(0);
+            int sp = p.indexOf(' ');
+            String name = p.substring(0, sp), value = p.substring(sp + 1);
+            return prefix + head + name + topic(name) + " " + value + copula(value) + ".";
+        }
+        String joined = String.join(", ", parts);
+        return prefix + head + joined + copula(joined) + ".";
+    }
+
+    private String ranking(String prefix, Cols c, List<Map<String, Object>> rows, int dir) {
+        String col = c.metrics.get(0);
+        Metric m = c.m(col);
+        int n = rows.size(), shown = Math.min(n, 3);
+        StringBuilder sb = new StringBuilder(prefix)
+                .append(m.label()).append(subject(m.label())).append(dir > 0 ? " 가장 높은 " : " 가장 낮은 ")
+                .append(noun(c)).append(topic(noun(c))).append(' ').append(item(rows.get(0), c, col)).append("이고");
+        for (int i = 1; i < shown; i++) {
+            sb.append(", ").append(i + 1).append("위 ").append(item(rows.get(i), c, col));
+        }
+        sb.append(" 순이에요");
+        if (n > shown) sb.append(" (총 ").append(n).append(unitNoun(c)).append(")");
+        return sb.append('.').toString();
+    }
+
+    private String series(String prefix, Cols c, List<Map<String, Object>> rows) {
+        String col = c.metrics.get(0);
+        Metric m = c.m(col);
+        List<Map<String, Object>> sorted = new ArrayList<>(rows);
+        sorted.sort((a, b) -> str(val(a, c.label)).compareTo(str(val(b, c.label))));
+        Map<String, Object> first = sorted.get(0), last = sorted.get(sorted.size() - 1);
+        double v0 = nz(num(first, col)), v1 = nz(num(last, col));
+        Map<String, Object> max = first;
+        for (Map<String, Object> r : sorted) if (nz(num(r, col)) > nz(num(max, col))) max = r;
+        String from = shortDate(str(val(first, c.label))), to = shortDate(str(val(last, c.label)));
+        return prefix + m.label() + topic(m.label()) + " " + from + " " + m.unit().format(v0)
+                + "에서 " + to + " " + m.unit().format(v1) + toward(m.unit().format(v1))
+                + trend(v1 - v0) + " (" + m.unit().formatDelta(v1 - v0) + rate(v1 - v0, v0) + "). "
+                + "가장 높았던 때는 " + shortDate(str(val(max, c.label))) + "(" + m.unit().format(nz(num(max, col))) + ")예요.";
+    }
+
+    private String periodCompare(IntentFrame f, SqlPlan plan, String prefix, Cols c, List<Map<String, Object>> rows) {
+        Map<String, Double> cur = new LinkedHashMap<>(), prev = new LinkedHashMap<>();
+        for (Map<String, Object> r : rows) {
+            String b = str(val(r, c.label));
+            Map<String, Double> acc = "THIS".equalsIgnoreCase(b) ? cur : "PREV".equalsIgnoreCase(b) ? prev : null;
+            if (acc == null) continue;
+            for (String col : c.metrics) acc.merge(col, nz(num(r, col)), Double::sum);
+        }
+        boolean yoy = (plan != null && plan.yoy()) || f.yoy();
+        String head = yoy ? "전년 동기 대비" : (plan != null && plan.mom()) || f.mom() ? "전월 대비" : "이전 기간 대비";
+        List<String> parts = new ArrayList<>();
+        for (String col : c.metrics) {
+            Metric m = c.m(col);
+            double p = prev.getOrDefault(col, 0d), t = cur.getOrDefault(col, 0d);
+            parts.add(m.label() + " " + m.unit().format(p) + " → " + m.unit().format(t)
+                    + " (" + m.unit().formatDelta(t - p) + rate(t - p, p) + ")");
+        }
+        // 맺음말은 금액 지표(없으면 첫 지표) 방향
+        String lead = c.metrics.get(0);
+        for (String col : c.metrics) if (c.m(col).unit() == Unit.WON) { lead = col; break; }
+        String leadLabel = c.m(lead).label();
+        double leadDelta = cur.getOrDefault(lead, 0d) - prev.getOrDefault(lead, 0d);
+        return prefix + head + " " + String.join(", ", parts) + ". "
+                + leadLabel + subject(leadLabel) + " " + trendPast(leadDelta) + ".";
+    }
+
+    private String productCompare(IntentFrame f, String prefix) {
+        if (f.compareA() == null || f.compareB() == null) return prefix + "두 상품 비교 결과예요.";
+        return prefix + quote(f.compareA()) + "와 " + quote(f.compareB()) + " 비교 결과예요.";
+    }
+
+    private String breakdown(String prefix, Cols c, List<Map<String, Object>> rows) {
+        if (rows.size() > 8) return null;   // 항목이 많으면 LLM 이 더 읽기 좋게 묶음
+        List<String> parts = new ArrayList<>();
+        for (Map<String, Object> r : rows) {
+            List<String> vals = new ArrayList<>();
+            for (String col : c.metrics) {
+                Double v = num(r, col);
+                if (v != null) vals.add(c.m(col).unit().format(v));
+            }
+            parts.add(str(val(r, c.label)) + " " + String.join("·", vals));
+        }
+        String joined = String.join(", ", parts);
+        return prefix + "항목별로 " + joined + copula(joined) + ".";
+    }
+
+    private String list(String prefix, Cols c, List<Map<String, Object>> rows) {
+        List<String> names = new ArrayList<>();
+        for (Map<String, Object> r : rows) {
+            String s = str(val(r, c.label));
+            if (s != null && names.size() < 3) names.add(s);
+        }
+        if (names.isEmpty()) return null;
+        String joined = String.join(", ", names) + (rows.size() > names.size() ? " 등" : "");
+        return prefix + "조회 결과 " + rows.size() + unitNoun(c) + "이고, " + joined + subject(joined) + " 있어요.";
+    }
+
+    /* ===== 보조 ===== */
+
+    /** 사전/접미사로 못 읽는 숫자 컬럼이 있으면 비정형 (라벨 컬럼의 숫자 값은 연도 등이라 허용) */
+    private static boolean unknownNumeric(Map<String, Object> row, Cols c) {
+        for (var e : row.entrySet()) {
+            String k = e.getKey().toUpperCase(Locale.ROOT);
+            if (k.equals(c.label) || c.metricMap.containsKey(k) || ID_COL.matcher(k).matches()) continue;
+            if (e.getValue() instanceof Number) return true;
+        }
+        return false;
+    }
+
+    private String item(Map<String, Object> row, Cols c, String col) {
+        String name = str(val(row, c.label));
+        String sub = c.sub == null ? null : str(val(row, c.sub));
+        Double v = num(row, col);
+        return quote(name == null ? "-" : name) + (sub != null ? "[" + sub + "]" : "")
+                + (v == null ? "" : "(" + c.m(col).unit().format(v) + ")");
+    }
+
+    private static String noun(Cols c) {
+        return switch (c.label) {
+            case "NAME" -> "고객";
+            case "CUSTOMER_TYPE" -> "유형";
+            case "BRANDNAME", "BRAND_NAME" -> "브랜드";
+            case "PRODUCT_NAME", "PRODUCTNAME" -> "상품";
+            default -> "항목";
+        };
+    }
+
+    private static String unitNoun(Cols c) {
+        return "NAME".equals(c.label) ? "명" : "개";
+    }
+
+    /** 정렬 방향: 1 내림차순(상위), -1 오름차순(하위), 0 정렬 아님 */
+    private static int rankDirection(List<Map<String, Object>> rows, String col) {
+        boolean desc = true, asc = true;
+        for (int i = 1; i < rows.size(); i++) {
+            double a = nz(num(rows.get(i - 1), col)), b = nz(num(rows.get(i), col));
+            if (b > a) desc = false;
+            if (b < a) asc = false;
+        }
+        if (desc && asc) return 0;   // 전부 같은 값
+        return desc ? 1 : asc ? -1 : 0;
+    }
+
+    private static boolean isThisPrev(List<Map<String, Object>> rows) {
+        for (Map<String, Object> r : rows) {
+            String b = str(val(r, "BUCKET"));
+            if (!"THIS".equalsIgnoreCase(b) && !"PREV".equalsIgnoreCase(b)) return false;
+        }
+        return true;
+    }
+
+    private static boolean allDates(List<Map<String, Object>> rows, String col) {
+        for (Map<String, Object> r : rows) {
+            String s = str(val(r, col));
+            if (s == null || !DATE_LABEL.matcher(s).matches()) return false;
+        }
+        return true;
+    }
+
+    private static String shortDate(String s) {
+        if (s == null) return "-";
+        int t = s.indexOf('T');
+        return t > 0 ? s.substring(0, t) : s.length() > 10 && s.charAt(10) == ' ' ? s.substring(0, 10) : s;
+    }
+
+    private static String rate(double delta, double base) {
+        return base == 0 ? "" : String.format(", %+.1f%%", delta * 100.0 / base);
+    }
+
+    private static String trend(double d) {
+        return d > 0 ? "늘었어요" : d < 0 ? "줄었어요" : "변동이 없어요";
+    }
+
+    private static String trendPast(double d) {
+        return d > 0 ? "늘었어요" : d < 0 ? "줄었어요" : "같아요";
+    }
+
+    private static String quote(String s) {
+        return "\"" + s + "\"";
+    }
+
+    /* ===== 조사 (받침 여부) ===== */
+
+    /** 마지막 글자 받침: 한글은 종성, 숫자는 읽는 소리 기준, 그 외(%, 따옴표 등)는 받침 없음 */
+    private static int jong(String s) {
+        for (int i = s.length() - 1; i >= 0; i--) {
+            char ch = s.charAt(i);
+            if (ch == '"' || ch == ')' || ch == ']' || ch == ' ') continue;
+            if (ch >= 0xAC00 && ch <= 0xD7A3) return (ch - 0xAC00) % 28;
+            if (ch >= '0' && ch <= '9') return "0136780".indexOf(ch) >= 0 ? (ch == '1' || ch == '7' || ch == '8' ? 8 : 1) : 0;
+            return 0;
+        }
+        return 0;
+    }
+
+    static String copula(String s) { return jong(s) != 0 ? "이에요" : "예요"; }
+    static String topic(String s)  { return jong(s) != 0 ? "은" : "는"; }
+    static String subject(String s) { return jong(s) != 0 ? "이" : "가"; }
+    /** (으)로: 받침 없거나 ㄹ(8) 받침이면 "로" */
+    static String toward(String s) { int j = jong(s); return j == 0 || j == 8 ? "로 " : "으로 "; }
+
+    private static String str(Object v) {
+        return v == null ? null : String.valueOf(v);
+    }
+
+    /** 컬럼명 대소문자 무시 조회 (분류는 대문자 기준) */
+    private static Object val(Map<String, Object> row, String col) {
+        Object v = row.get(col);
+        if (v != null || row.containsKey(col)) return v;
+        for (var e : row.entrySet()) {
+            if (e.getKey().equalsIgnoreCase(col)) return e.getValue();
+        }
+        return null;
+    }
+
+    private static Double num(Map<String, Object> row, String col) {
+        Object v = val(row, col);
+        if (v instanceof Number n) return n.doubleValue();
+        if (v instanceof String s) {
+            try { return Double.parseDouble(s.replace(",", "")); } catch (NumberFormatException ignore) { }
+        }
+        return null;
+    }
+
+    private static double nz(Double d) {
+        return d == null ? 0 : d;
+    }
+}
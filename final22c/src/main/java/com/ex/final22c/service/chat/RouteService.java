@@ -2,8 +2,13 @@ package com.ex.final22c.service.chat;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RouteService {
@@ -11,6 +16,15 @@ public class RouteService {
     // LLM 호출을 재사용하기 위한 ChatService (실제 모델 호출 담당)
     private final ChatService chat;
 
+    // 규칙 기반 1차 라우터 (확신도가 충분하면 LLM 호출 생략)
+    private final LocalIntentRouter localRouter;
+
+    @Value("${ai.router.local-confidence:0.7}")
+    private double localConfidence;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong llmCalls = new AtomicLong();
+
     // JSON 파싱을 위한 Jackson ObjectMapper
     private final ObjectMapper om = new ObjectMapper();
 
@@ -18,16 +32,33 @@ public class RouteService {
     public enum Mode { SQL, CHAT }
 
     // 라우팅 결과를 담는 record (Java 16+ 문법)
-    // -> 어떤 모드로 분류됐는지(mode), 그리고 이유(reason)
-    public record RouteResult(Mode mode, String reason){}
+    // -> 어떤 모드로 분류됐는지(mode), 이유(reason), 확신도(confidence, LLM 판정은 1.0)
+    public record RouteResult(Mode mode, String reason, double confidence){}
+
+    public record Stats(long localHits, long llmCalls, double localRatio, double threshold) {}
 
     /**
      * 사용자가 입력한 메시지를 기반으로
      * - DB로 처리 가능한 SQL 요청인지
      * - 일반 대화(LLM 답변)인지
-     * 를 판별하는 메서드
+     * 를 판별하는 메서드 (발화는 진입점에서 IntentAnalyzer 로 한 번 분석된 프레임)
      */
-    public RouteResult route(String userMsg){
+    public RouteResult route(IntentFrame frame){
+        return route(frame, classify(frame));
+    }
+
+    /** 이미 계산한 규칙 판정(classify)으로 라우팅 — 같은 요청에서 규칙 판정을 두 번 하지 않음 */
+    public RouteResult route(IntentFrame frame, LocalIntentRouter.Decision local){
+        String userMsg = frame.message();
+
+        // 0) 규칙 기반 판정이 충분히 확실하면 그대로 사용
+        if (local.confidence() >= localConfidence) {
+            localHits.incrementAndGet();
+            return new RouteResult(local.mode(), local.reason(), local.confidence());
+        }
+        llmCalls.incrementAndGet();
+        log.debug("[ROUTE] local 확신도 부족 → LLM 라우터: {} ({})", local.confidence(), local.reason());
+
         // 시스템 프롬프트: 라우터 역할 정의
         // 반드시 {"mode":"...","reason":"..."} JSON으로만 답하도록 강제
         String sys = """
@@ -52,11 +83,29 @@ public class RouteService {
                        ? Mode.SQL : Mode.CHAT;
 
             // 최종 결과 반환 (mode + reason)
-            return new RouteResult(mode, node.path("reason").asText());
+            return new RouteResult(mode, node.path("reason").asText(), 1.0);
 
         } catch (Exception e){
-            // 파싱 실패 시 안전하게 CHAT으로 처리
-            return new RouteResult(Mode.CHAT, "parse_failed");
+            // 파싱 실패 시: 규칙 판정이 SQL 쪽이면 그걸 따르고, 아니면 안전하게 CHAT
+            if (local.mode() == Mode.SQL && local.confidence() > 0) {
+                return new RouteResult(Mode.SQL, "parse_failed, " + local.reason(), local.confidence());
+            }
+            return new RouteResult(Mode.CHAT, "parse_failed", 0.0);
         }
     }
+
+    /** 규칙 기반 1차 판정 (route(frame, local) 과 needsLlm(local) 에 같은 결과를 넘김) */
+    public LocalIntentRouter.Decision classify(IntentFrame frame){
+        return localRouter.classify(frame);
+    }
+
+    /** 규칙 판정만으로는 부족해 LLM 라우터를 부르게 되는지 (투기 SQL 생성 여부 판단용) */
+    public boolean needsLlm(LocalIntentRouter.Decision local){
+        return local.confidence() < localConfidence;
+    }
+
+    public Stats stats() {
+        long l = localHits.get(), m = llmCalls.get();
+        return new Stats(l, m, (l + m) == 0 ? 0d : (double) l / (l + m), localConfidence);
+    }
 }
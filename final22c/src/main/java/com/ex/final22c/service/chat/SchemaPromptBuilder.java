@@ -0,0 +1,161 @@
+package com.ex.final22c.service.chat;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ex.final22c.sql.SchemaCatalog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * SQL/차트 스펙 생성 프롬프트용 스키마 문서 축약
+ * - IntentFrame 판정 + 발화 키워드로 도메인(회원/매출/리뷰/환불/발주/결제/장바구니/상품 속성)을 고르고, 테이블 합집합만 문서에 넣음
+ * - 문서 = SchemaCatalog.doc(tables): 고른 테이블 줄 + 그 사이 FK 조인 + 해당 테이블에 걸린 규칙만
+ * - 도메인을 하나도 못 고르면 전체 문서 (토큰보다 정확도 우선)
+ * - 요청마다 추정 토큰(축약본/전체)을 집계. 실제 과금 토큰은 LlmUsageMeter(응답 usage)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SchemaPromptBuilder {
+
+    private final SchemaCatalog schema;
+
+    @Value("${ai.schema.slice.enabled:true}")
+    private boolean enabled;
+
+    /** 도메인 → 필요한 테이블 (프레임 판정 또는 키워드 중 하나면 포함) */
+    enum Domain {
+        // usersRelated 는 TOP 같은 상품 질문에도 걸려서 키워드로만 판정
+        USERS(IntentFrame::vip,
+                "회원|가입|고객|성별|연령|나이|마일리지|탈퇴|정지|members?|users?|customers?",
+                "USERS"),
+        SALES(f -> f.vip() || f.ordersRelated() || f.asksSales() || f.productStats() || f.hasCompareProducts() || f.mom() || f.yoy(),
+                "매출|판매|주문|구매|구입|베스트|인기|sales|orders?|revenue",
+                "ORDERS", "ORDERDETAIL", "PRODUCT"),
+        REVIEW(f -> f.asksReview() || f.wantsTopRated(),
+                "리뷰|후기|평점|별점|reviews?|rating",
+                "REVIEW", "PRODUCT"),
+        REFUND(IntentFrame::asksRefund,
+                "환불|반품|refunds?",
+                "REFUND", "REFUNDDETAIL", "ORDERDETAIL", "ORDERS", "PRODUCT"),
+        PURCHASE(f -> false,
+                "발주|매입|원가|입고|purchases?|cogs",
+                "PURCHASE", "PURCHASEDETAIL", "PRODUCT"),
+        PAYMENT(f -> false,
+                "결제|승인|payments?",
+                "PAYMENT", "ORDERS"),
+        CART(f -> false,
+                "장바구니|카트|cart",
+                "CART", "CARTDETAIL", "PRODUCT"),
+        BRAND(f -> f.brand() != null && !f.brand().isBlank(),
+                "브랜드|brand",
+                "BRAND", "PRODUCT"),
+        ATTRIBUTE(f -> false,
+                "등급|부향|노트|계열|grade|notes?",
+                "GRADE", "MAINNOTE", "PRODUCT"),
+        PRODUCT(f -> f.productQuery() != null && !f.productQuery().isBlank(),
+                "상품|제품|재고|가격|products?|stock",
+                "PRODUCT");
+
+        final Predicate<IntentFrame> frame;
+        final Pattern keywords;
+        final List<String> tables;
+
+        Domain(Predicate<IntentFrame> frame, String keywords, String... tables) {
+            this.frame = frame;
+            this.keywords = Pattern.compile("(?i)(" + keywords + ")");
+            this.tables = List.of(tables);
+        }
+
+        boolean matches(IntentFrame f) {
+            return frame.test(f) || keywords.matcher(f.message()).find();
+        }
+    }
+
+    /** full=true 면 전체 문서(도메인 미판정 또는 비활성) */
+    public record Slice(String doc, List<String> domains, Set<String> tables,
+                        int tokens, int fullTokens, boolean full) {}
+
+    public record Stats(boolean enabled, long requests, long sliced, long fullFallbacks,
+                        double avgTokens, double avgFullTokens, double reduction) {}
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong sliced = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong fullTokens = new AtomicLong();
+    private final Map<String, Integer> tokenMemo = new ConcurrentHashMap<>();  // 문서 → 추정 토큰 (문서 종류 수만큼만)
+
+    /** 요청용 (집계 포함) */
+    public Slice build(IntentFrame f) {
+        Slice s = slice(f, enabled);
+        requests.incrementAndGet();
+        if (!s.full()) sliced.incrementAndGet();
+        tokens.addAndGet(s.tokens());
+        fullTokens.addAndGet(s.fullTokens());
+        log.debug("[schema-slice] domains={} tables={} tokens≈{}/{}", s.domains(), s.tables().size(), s.tokens(), s.fullTokens());
+        return s;
+    }
+
+    /** 집계 없는 계산 (코퍼스 평가용) */
+    public Slice slice(IntentFrame f, boolean slicing) {
+        String full = schema.doc();
+        int fullTok = tokens(full);
+        List<String> domains = new ArrayList<>();
+        Set<String> tables = new LinkedHashSet<>();
+        if (slicing) {
+            for (Domain d : Domain.values()) {
+                if (d.matches(f)) {
+                    domains.add(d.name());
+                    tables.addAll(d.tables);
+                }
+            }
+        }
+        if (tables.isEmpty()) return new Slice(full, List.of(), Set.of(), fullTok, fullTok, true);
+        String doc = schema.doc(tables);
+        return new Slice(doc, domains, tables, tokens(doc), fullTok, false);
+    }
+
+    public Stats stats() {
+        long n = requests.get();
+        long t = tokens.get(), ft = fullTokens.get();
+        return new Stats(enabled, n, sliced.get(), n - sliced.get(),
+                n == 0 ? 0 : (double) t / n, n == 0 ? 0 : (double) ft / n,
+                ft == 0 ? 0 : 1.0 - (double) t / ft);
+    }
+
+    private int tokens(String doc) {
+        if (tokenMemo.size() > 1024) tokenMemo.clear();
+        return tokenMemo.computeIfAbsent(doc, SchemaPromptBuilder::estimateTokens);
+    }
+
+    /**
+     * 토큰 수 근사치 (토크나이저 없이): ASCII 연속 구간은 4자당 1토큰, 한글/기타 문자는 1자당 1토큰
+     * 절대값보다 축약 전후 비교용
+     */
+    static int estimateTokens(String s) {
+        if (s == null) return 0;
+        int tokens = 0, ascii = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 128) {
+                ascii++;
+                continue;
+            }
+            tokens += (ascii + 3) / 4;
+            ascii = 0;
+            if (!Character.isLowSurrogate(c)) tokens++;
+        }
+        return tokens + (ascii + 3) / 4;
+    }
+}
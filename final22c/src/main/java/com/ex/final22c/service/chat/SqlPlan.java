@@ -0,0 +1,20 @@
+package com.ex.final22c.service.chat;
+
+/**
+ * 가드까지 통과한 최종 SQL 실행 계획.
+ * - sql     : 네임드 바인드(:start, :end, :q ...)가 열린 상태의 실행 SQL
+ * - aiSql   : 교정 전 원본(로그용)
+ * - 나머지  : 요약 단계에서 쓰는 템플릿 적용 여부 플래그
+ * - template: 분석 카탈로그 템플릿 id (LLM 생성 SQL이면 null)
+ */
+public record SqlPlan(
+        String sql,
+        String aiSql,
+        boolean compare,        // 두 상품 비교 템플릿
+        boolean refundCompare,  // 비교 - 환불률
+        boolean reviewCompare,  // 비교 - 리뷰/평점
+        boolean yoy,            // 전년 동기 대비 템플릿
+        boolean mom,            // 전월 대비 템플릿
+        boolean cacheable,      // 폴백 SQL로 대체된 경우 false (캐시 금지)
+        String template         // AnalyticsCatalog 템플릿 id
+) {}
@@ -0,0 +1,135 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.sql.PeriodResolver;
+import com.ex.final22c.sql.SqlGuard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 검증된 SQL 플랜 캐시
+ * - 키: 기간 표현을 제거하고 정규화한 발화 ("이번달 매출" / "지난달 매출" → "매출")
+ * - 값: 가드까지 통과한 최종 SQL(:start/:end 바인드가 열린 상태)
+ * - 히트 시 라우팅/SQL 생성 LLM 호출 없이 새 기간만 바인딩해서 재실행
+ * - 그래서 날짜 조건이 모두 :start/:end 로만 묶인 SQL만 저장 (상대 날짜/리터럴 날짜는 원래 기간에 고정됨)
+ */
+@Slf4j
+@Component
+public class SqlPlanCache {
+
+    // 날짜를 리터럴로 박아 넣은 SQL은 기간만 바꿔 재사용할 수 없으므로 캐시 제외
+    private static final Pattern DATE_LITERAL = Pattern.compile(
+            "(?i)(TO_DATE\\s*\\(|TO_TIMESTAMP\\s*\\(|\\bDATE\\s*'|\\bTIMESTAMP\\s*'|'\\d{4}[-/.]\\d{1,2})");
+    // 실행 시점 기준 상대 날짜 (지난달 = ADD_MONTHS(:currentDate, -1) …): 재실행해도 처음 물은 기간 그대로라 캐시 제외
+    private static final Pattern RELATIVE_DATE = Pattern.compile(
+            "(?i)(:currentDate\\b|\\b(SYSDATE|SYSTIMESTAMP|CURRENT_DATE|CURRENT_TIMESTAMP|LOCALTIMESTAMP)\\b"
+          + "|\\b(ADD_MONTHS|MONTHS_BETWEEN|LAST_DAY|NEXT_DAY|NUMTODSINTERVAL|NUMTOYMINTERVAL)\\s*\\(|\\bINTERVAL\\s*')");
+    private static final Pattern PERIOD_BIND = Pattern.compile("(?i):(start|end)\\b");
+    private static final Pattern PUNCT = Pattern.compile("[\\p{Punct}&&[^\"%]]|[?!~·…]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Map<String, Entry> cache;
+
+    private record Entry(SqlPlan plan, long createdAt) {}
+
+    public record Stats(long hits, long misses, double hitRatio, int size, int maxEntries) {}
+
+    public SqlPlanCache(@Value("${ai.plan-cache.max-entries:500}") int maxEntries,
+                        @Value("${ai.plan-cache.ttl-minutes:720}") long ttlMinutes) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMinutes * 60_000L;
+        // access-order LinkedHashMap → LRU
+        this.cache = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > SqlPlanCache.this.maxEntries;
+            }
+        };
+    }
+
+    /** 발화 → 캐시 키 (기간 표현 제거 + 소문자/공백/문장부호 정규화) */
+    public static String keyOf(String utterance) {
+        if (utterance == null) return "";
+        return normalize(PeriodResolver.stripPeriodPhrases(utterance));
+    }
+
+    private static String normalize(String s) {
+        s = PUNCT.matcher(s.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return SPACES.matcher(s).replaceAll(" ").trim();
+    }
+
+    public SqlPlan get(String key) {
+        if (key == null || key.isBlank()) return null;
+        Entry e;
+        synchronized (cache) {
+            e = cache.get(key);
+            if (e != null && System.currentTimeMillis() - e.createdAt() > ttlMillis) {
+                cache.remove(key);
+                e = null;
+            }
+        }
+        if (e == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        log.debug("[PLAN CACHE HIT] key={}", key);
+        return e.plan();
+    }
+
+    /** 히트/미스 집계 없이 조회 (대화 상태에 직전 플랜을 옮겨 둘 때) */
+    public SqlPlan peek(String key) {
+        if (key == null || key.isBlank()) return null;
+        synchronized (cache) {
+            Entry e = cache.get(key);
+            return e == null || System.currentTimeMillis() - e.createdAt() > ttlMillis ? null : e.plan();
+        }
+    }
+
+    /** 발화 기준 저장 (기간 표현이 있던 발화인데 SQL에 :start/:end 가 없으면 기간이 SQL에 박힌 것 → 제외) */
+    public void put(String utterance, SqlPlan plan) {
+        if (utterance == null || plan == null) return;
+        String key = keyOf(utterance);
+        if (key.isBlank() || !isReplayable(plan)) return;
+        boolean periodScoped = !key.equals(normalize(utterance));
+        if (periodScoped && !PERIOD_BIND.matcher(plan.sql()).find()) return;
+        synchronized (cache) {
+            cache.put(key, new Entry(plan, System.currentTimeMillis()));
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public Stats stats() {
+        long h = hits.get(), m = misses.get();
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(h, m, (h + m) == 0 ? 0d : (double) h / (h + m), size, maxEntries);
+    }
+
+    private static boolean isReplayable(SqlPlan plan) {
+        String sql = plan.sql();
+        if (!plan.cacheable() || sql == null || sql.isBlank()) return false;
+        if (DATE_LITERAL.matcher(sql).find() || RELATIVE_DATE.matcher(sql).find()) return false;
+        return SqlGuard.datePredicatesBound(sql);
+    }
+}
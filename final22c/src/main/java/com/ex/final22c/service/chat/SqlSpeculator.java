@@ -0,0 +1,121 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 투기적 SQL 생성: LLM 라우팅과 SQL 생성(LLM)을 동시에 시작
+ * - 라우터가 LLM 판정을 해야 하는 질문만 대상 (규칙 판정으로 끝나면 순차여도 LLM 1회라 이득 없음)
+ * - 라우터가 SQL 이면 미리 만든 SQL 사용(useful), CHAT 이면 취소하고 버림(wasted)
+ * - 동시 투기 호출 수는 ai.speculation.max-concurrent 로 제한, 넘치면 투기 없이 순차 처리
+ * - 논블로킹 generateSqlMono 로 호출 → 응답 대기 중 스레드를 잡지 않음 (DeepSeek 동시 호출 상한은 LlmBulkhead 가 그대로 적용)
+ */
+@Slf4j
+@Component
+public class SqlSpeculator {
+
+    private final ChatService chat;
+    private final SchemaPromptBuilder schemaPrompt;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong useful = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong skippedBusy = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LongAdder overlapMs = new LongAdder();   // 순차 대비 절약 추정치 = min(라우팅, SQL 생성)
+
+    public record Stats(boolean enabled, int maxConcurrent, int running, long started, long useful,
+                        long wasted, long skippedBusy, long failed, double wasteRatio, double avgSavedMs) {}
+
+    public SqlSpeculator(ChatService chat, SchemaPromptBuilder schemaPrompt,
+                         @Value("${ai.speculation.enabled:true}") boolean enabled,
+                         @Value("${ai.speculation.max-concurrent:4}") int maxConcurrent) {
+        this.chat = chat;
+        this.schemaPrompt = schemaPrompt;
+        this.enabled = enabled && maxConcurrent > 0;
+        this.maxConcurrent = Math.max(0, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent);
+    }
+
+    /** 진행 중인 투기 호출 하나 */
+    public final class Ticket {
+        private final IntentFrame frame;
+        private final AiTrace trace = AiTrace.current();   // 구독(=호출) 스레드의 trace 로 토큰이 같은 요청에 집계됨
+        private final long t0 = System.nanoTime();
+        private volatile long doneAt;
+        private final CompletableFuture<String> task;
+
+        private Ticket(IntentFrame frame) {
+            this.frame = frame;
+            // 구독은 여기서(요청 스레드) 바로, 응답은 WebClient 이벤트 루프에서 완료 → 취소하면 HTTP 요청도 끊김
+            this.task = chat.generateSqlMono(frame.message(), schemaPrompt.build(frame).doc()).toFuture();
+            this.task.whenComplete((sql, e) -> {
+                doneAt = System.nanoTime();
+                permits.release();   // 정상 종료/예외/취소 모두 한 번
+            });
+        }
+
+        /** 라우터가 SQL 로 판정: 투기 결과 사용 (실패했으면 그 자리에서 다시 생성) */
+        public String join() {
+            long routedAt = System.nanoTime();
+            try {
+                String sql = task.get();
+                useful.incrementAndGet();
+                if (trace != null) trace.count("speculation-used");
+                long gen = doneAt - t0, route = routedAt - t0;
+                overlapMs.add(Math.max(0, Math.min(gen, route)) / 1_000_000);
+                return sql;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("투기 SQL 대기 중 인터럽트", e);
+            } catch (ExecutionException | CancellationException e) {
+                failed.incrementAndGet();
+                log.warn("[speculation] 투기 SQL 생성 실패, 순차 재시도: {}", e.toString());
+                return chat.generateSql(frame.message(), schemaPrompt.build(frame).doc());
+            }
+        }
+
+        /** 라우터가 CHAT 으로 판정(또는 다른 경로로 빠짐): 취소하고 버림 */
+        public void discard() {
+            task.cancel(true);   // 이미 끝났으면 결과만 버림
+            wasted.incrementAndGet();
+        }
+    }
+
+    /** 투기 시작, 비활성/상한 초과면 null (호출 측은 기존처럼 순차 생성) */
+    public Ticket start(IntentFrame f) {
+        if (!enabled) return null;
+        if (!permits.tryAcquire()) {
+            skippedBusy.incrementAndGet();
+            return null;
+        }
+        Ticket t;
+        try {
+            t = new Ticket(f);
+        } catch (RuntimeException e) {
+            permits.release();
+            log.warn("[speculation] 시작 실패: {}", e.toString());
+            return null;
+        }
+        started.incrementAndGet();
+        return t;
+    }
+
+    public Stats stats() {
+        long u = useful.get(), w = wasted.get();
+        return new Stats(enabled, maxConcurrent, maxConcurrent - permits.availablePermits(), started.get(), u, w,
+                skippedBusy.get(), failed.get(), (u + w) == 0 ? 0 : (double) w / (u + w),
+                u == 0 ? 0 : (double) overlapMs.sum() / u);
+    }
+}
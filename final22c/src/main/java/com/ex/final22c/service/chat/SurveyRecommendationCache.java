@@ -0,0 +1,205 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * MYTYPE 설문 조합별 추천 JSON 캐시
+ * - 설문 공간이 작음: gender(2) × usage(4) × priceRange(3) × notes(6) × intensity(4) = 576 조합
+ * - 값: 검증(normalizeJson/isValidJson)까지 끝난 추천 JSON + 만들 때의 후보 지문(프롬프트에 넣은 후보 id 집합 해시)
+ * - 조회: 지문 같고 max-age 이내면 그대로(hit), 후보가 바뀌었거나 오래됐거나 폴백이면 옛 값을 주고 재생성 대기열에(stale),
+ *   없으면 null(miss → 호출 측이 폴백 JSON 응답, 재생성 대기열에)
+ * - 재생성은 SurveyRecommendationRefresher 가 정해진 속도로 (대기열 먼저, 비면 전체 조합 순회)
+ * - 알려진 5개 항목 외 값/키가 섞인 설문은 캐시하지 않음 (프롬프트가 달라짐)
+ */
+@Slf4j
+@Component
+public class SurveyRecommendationCache {
+
+    static final List<String> FIELDS = List.of("gender", "usage", "priceRange", "notes", "intensity");
+    private static final Map<String, List<String>> VALUES = new LinkedHashMap<>();
+    static {
+        // myType.html 선택지 그대로
+        VALUES.put("gender", List.of("male", "female"));
+        VALUES.put("usage", List.of("daily", "office", "special", "gift"));
+        VALUES.put("priceRange", List.of("low", "medium", "high"));
+        VALUES.put("notes", List.of("citrus", "woody", "herbal", "floral", "spicy", "fruity"));
+        VALUES.put("intensity", List.of("오드 코롱", "오드 뚜왈렛", "오드 퍼퓸", "퍼퓸"));
+    }
+
+    public enum Outcome { HIT, STALE, MISS }
+
+    /** 조회 결과 (MISS 면 json = null) */
+    public record Lookup(Outcome outcome, String json) {}
+
+    public record Stats(boolean enabled, int size, int combinations, long hits, long stale, long misses,
+                        long bypass, long regenerated, long regenFallbacks, int pending, double hitRatio) {}
+
+    private record Entry(String json, long fingerprint, boolean fallback, long createdAt) {}
+
+    private final boolean enabled;
+    private final long maxAgeMillis;
+    private final long fallbackRetryMillis;
+    private final List<String> combinations;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> pending = Collections.synchronizedSet(new LinkedHashSet<>());
+    private int sweepCursor = 0;   // synchronized(this)
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypass = new AtomicLong();
+    private final AtomicLong regenerated = new AtomicLong();
+    private final AtomicLong regenFallbacks = new AtomicLong();
+
+    public SurveyRecommendationCache(@Value("${reco.survey-cache.enabled:true}") boolean enabled,
+                                     @Value("${reco.survey-cache.max-age-minutes:1440}") long maxAgeMinutes,
+                                     @Value("${reco.survey-cache.fallback-retry-minutes:5}") long fallbackRetryMinutes) {
+        this.enabled = enabled;
+        this.maxAgeMillis = maxAgeMinutes * 60_000L;
+        this.fallbackRetryMillis = fallbackRetryMinutes * 60_000L;
+        List<String> all = new ArrayList<>(List.of(""));
+        for (String field : FIELDS) {
+            List<String> next = new ArrayList<>();
+            for (String prefix : all) {
+                for (String v : VALUES.get(field)) next.add(prefix.isEmpty() ? v : prefix + "|" + v);
+            }
+            all = next;
+        }
+        this.combinations = List.copyOf(all);
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** 캐시 키 ("male|daily|low|floral|오드 퍼퓸"), 캐시할 수 없는 설문이면 null */
+    public String keyOf(Map<String, String> survey) {
+        if (!enabled || survey == null || survey.size() != FIELDS.size()) {
+            bypass.incrementAndGet();
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String field : FIELDS) {
+            String v = survey.get(field);
+            String norm = v == null ? null : ("intensity".equals(field) ? v.trim() : v.trim().toLowerCase(Locale.ROOT));
+            if (norm == null || !VALUES.get(field).contains(norm)) {
+                bypass.incrementAndGet();
+                return null;
+            }
+            if (sb.length() > 0) sb.append('|');
+            sb.append(norm);
+        }
+        return sb.toString();
+    }
+
+    /** 키 → 설문 맵 (백그라운드 생성용) */
+    public Map<String, String> surveyOf(String key) {
+        String[] parts = key.split("\\|", -1);
+        Map<String, String> survey = new LinkedHashMap<>();
+        for (int i = 0; i < FIELDS.size(); i++) survey.put(FIELDS.get(i), parts[i]);
+        return survey;
+    }
+
+    /**
+     * 후보 지문: 후보 id 집합 해시 (순서 무관 - id 마다 섞은 해시의 합)
+     * 판매 순위만 바뀌고 같은 후보가 들어가면 같은 값, 후보가 빠지거나 새로 들어오면 다른 값
+     */
+    public static long fingerprint(List<Map<String, Object>> candidates) {
+        long h = 0;
+        for (Map<String, Object> c : candidates) {
+            h += mix(String.valueOf(c.get("id")).hashCode());
+        }
+        return mix(h + candidates.size());
+    }
+
+    /** splitmix64 마무리 단계 (비슷한 id 끼리의 합이 겹치지 않도록 비트를 고르게 퍼뜨림) */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public Lookup lookup(String key, long fingerprint) {
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses.incrementAndGet();
+            pending.add(key);
+            return new Lookup(Outcome.MISS, null);
+        }
+        if (needsRefresh(e, fingerprint)) {
+            stale.incrementAndGet();
+            pending.add(key);
+            return new Lookup(Outcome.STALE, e.json());
+        }
+        hits.incrementAndGet();
+        return new Lookup(Outcome.HIT, e.json());
+    }
+
+    public void put(String key, String json, long fingerprint, boolean fallback) {
+        entries.put(key, new Entry(json, fingerprint, fallback, System.currentTimeMillis()));
+        pending.remove(key);
+        regenerated.incrementAndGet();
+        if (fallback) regenFallbacks.incrementAndGet();
+    }
+
+    /**
+     * 다음에 재생성할 조합: 요청에서 밀려든 대기열 먼저, 비었으면 sweep=true 일 때 전체 조합을 한 바퀴 돌며
+     * 없거나 / 후보 지문이 바뀌었거나 / 오래된 조합 (한 번 호출에 최대 한 바퀴, 없으면 null)
+     */
+    public synchronized String next(boolean sweep, ToLongFunction<String> currentFingerprint) {
+        synchronized (pending) {
+            var it = pending.iterator();
+            if (it.hasNext()) {
+                String key = it.next();
+                it.remove();
+                return key;
+            }
+        }
+        if (!sweep) return null;
+        for (int i = 0; i < combinations.size(); i++) {
+            String key = combinations.get(sweepCursor);
+            sweepCursor = (sweepCursor + 1) % combinations.size();
+            Entry e = entries.get(key);
+            if (e == null || needsRefresh(e, currentFingerprint.applyAsLong(key))) return key;
+        }
+        return null;
+    }
+
+    /** 실행기 포화 등으로 못 돌린 키 되돌리기 */
+    public void requeue(String key) {
+        pending.add(key);
+    }
+
+    private boolean needsRefresh(Entry e, long fingerprint) {
+        long age = System.currentTimeMillis() - e.createdAt();
+        if (e.fallback()) return age > fallbackRetryMillis;   // AI 장애 중 재시도 폭주 방지
+        return e.fingerprint() != fingerprint || age > maxAgeMillis;
+    }
+
+    public void clear() {
+        entries.clear();
+        pending.clear();
+    }
+
+    public Stats stats() {
+        long h = hits.get(), s = stale.get(), m = misses.get();
+        return new Stats(enabled, entries.size(), combinations.size(), h, s, m, bypass.get(),
+                regenerated.get(), regenFallbacks.get(), pending.size(), (h + s + m) == 0 ? 0d : (double) h / (h + s + m));
+    }
+}
@@ -0,0 +1,73 @@
+package com.ex.final22c.service.chat;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 설문 조합 캐시 백그라운드 생성기
+ * - refresh-delay-ms 마다 조합 하나씩만 생성 (DeepSeek 호출 속도 제한, 동시에 한 건)
+ * - 순서: 요청에서 미스/오래됨으로 밀린 조합 → 없으면 576 조합 순회(후보 구성이 바뀐 조합만)
+ * - 실행은 추천용 taskExecutor (스케줄러 스레드를 LLM 대기에 묶지 않음)
+ */
+@Slf4j
+@Component
+public class SurveyRecommendationRefresher {
+
+    private final HybridRecommendationService recommendations;
+    private final SurveyRecommendationCache cache;
+    private final ProductCandidateIndex candidateIndex;
+    private final Executor executor;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SurveyRecommendationRefresher(HybridRecommendationService recommendations,
+                                         SurveyRecommendationCache cache,
+                                         ProductCandidateIndex candidateIndex,
+                                         @Qualifier("taskExecutor") Executor executor) {
+        this.recommendations = recommendations;
+        this.cache = cache;
+        this.candidateIndex = candidateIndex;
+        this.executor = executor;
+    }
+
+    @Scheduled(initialDelayString = "${reco.survey-cache.initial-delay-ms:30000}",
+               fixedDelayString = "${reco.survey-cache.refresh-delay-ms:6000}")
+    public void tick() {
+        if (!cache.enabled() || !running.compareAndSet(false, true)) return;   // 앞 생성이 아직 진행 중
+        String key;
+        try {
+            // 전체 순회는 인덱스가 준비됐을 때만 (아니면 조합마다 DB 후보 조회)
+            key = cache.next(candidateIndex.ready(), recommendations::candidateFingerprint);
+        } catch (RuntimeException e) {
+            running.set(false);
+            log.warn("[survey-cache] 다음 조합 선택 실패: {}", e.toString());
+            return;
+        }
+        if (key == null) {
+            running.set(false);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    recommendations.regenerate(key);
+                    log.debug("[survey-cache] 생성 완료 key={}", key);
+                } catch (RuntimeException e) {
+                    log.warn("[survey-cache] 생성 실패 key={}: {}", key, e.toString());
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 추천 풀이 바쁘면 다음 주기에
+            cache.requeue(key);
+            running.set(false);
+        }
+    }
+}
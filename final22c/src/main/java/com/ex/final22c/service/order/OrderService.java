@@ -18,7 +18,9 @@ import com.ex.final22c.data.user.Users;
 import com.ex.final22c.repository.order.OrderRepository;
 import com.ex.final22c.repository.orderDetail.OrderDetailRepository;
 import com.ex.final22c.repository.user.UserRepository;
+import com.ex.final22c.service.ai.QueryResultCache;
 import com.ex.final22c.service.cart.CartService;
+import com.ex.final22c.service.product.PersonalRecommendationStore;
 import com.ex.final22c.service.product.ProductService;
 
 import lombok.RequiredArgsConstructor;
@@ -32,6 +34,8 @@ public class OrderService {
     private final UserRepository usersRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final CartService cartService;
+    private final QueryResultCache resultCache;
+    private final PersonalRecommendationStore personalRecs;
 
     private static final int SHIPPING_FEE = 3000;
 
@@ -138,6 +142,11 @@ public class OrderService {
 
         // 4) PAID시 quantity만큼 confirmQuantity에 추가 (구매 확정 대비)
         orderDetailRepository.fillConfirmQtyToQuantity(orderId);
+
+        // 5) 매출 집계용 AI 결과 캐시 무효화 (커밋 후)
+        resultCache.invalidateAfterCommit("ORDERS", "ORDERDETAIL", "PAYMENT", "USERS");
+        // 구매 신호(확정 수량) 생김 → 개인화 추천 재계산 (주문 REGDATE 는 결제 전 시각이라 워터마크로는 놓칠 수 있음)
+        personalRecs.markDirtyAfterCommit(o.getUser().getUserNo());
     }
 
     /**
@@ -0,0 +1,291 @@
+package com.ex.final22c.service.product;
+
+import com.ex.final22c.repository.productMapper.ProductMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 회원별 개인화 추천 사전 계산 (personalRecoExecutor 에서 한 번에 한 실행)
+ * - 대상: 직전 실행 이후 찜/리뷰/주문이 생긴 활성 회원 + dirty 회원(찜 해제/환불 승인), 첫 실행과 full-refresh-hours 마다 전체
+ * - 신호: 찜 1.0 / 구매확정 수량 1.5~2.5 / 리뷰 (평점-3)×0.75 (낮은 평점은 비슷한 향을 깎음), 오래된 활동은 반감기로 감쇠
+ * - 점수: 신호 상품마다 ScentSimilarityIndex 이웃(fanout 개)에 신호 × 유사도를 누적, 이미 찜/구매/리뷰한 상품 제외,
+ *   브랜드당 max-per-brand 개, 상위 size 개를 PersonalRecommendationStore 에 저장 (가장 크게 기여한 신호 상품이 추천 근거)
+ * - 유사도 인덱스 준비 전에는 돌지 않음 (watermark 도 그대로)
+ */
+@Slf4j
+@Component
+public class PersonalRecommendationRefresher {
+
+    private static final int BATCH = 500;          // IN 절 상한(1000) 아래
+    private static final int MAX_SEEDS = 30;       // 회원당 이웃을 펼칠 신호 상품 수 상한
+    private static final int MAX_DIRTY = 5000;
+
+    public record Stats(boolean running, LocalDateTime watermark, long runs, long fullRuns, long failures,
+                        long usersProcessed, int lastRunUsers, long lastRunMs, double avgUserMicros) {}
+
+    private final ProductMapper productMapper;
+    private final PersonalRecommendationStore store;
+    private final ScentSimilarityIndex similarityIndex;
+    private final Executor executor;
+    private final int size;
+    private final int fanout;
+    private final int maxPerBrand;
+    private final double halfLifeDays;
+    private final long fullRefreshMillis;
+    private final long overlapMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile LocalDateTime watermark;      // 직전 성공 실행 시작 시각 (null 이면 다음 실행은 전체)
+    private volatile long lastFullRunAt;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong fullRuns = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong usersProcessed = new AtomicLong();
+    private final AtomicLong rankNanos = new AtomicLong();
+    private volatile int lastRunUsers;
+    private volatile long lastRunMs;
+
+    public PersonalRecommendationRefresher(ProductMapper productMapper,
+                                           PersonalRecommendationStore store,
+                                           ScentSimilarityIndex similarityIndex,
+                                           @Qualifier("personalRecoExecutor") Executor executor,
+                                           @Value("${reco.personal.size:12}") int size,
+                                           @Value("${reco.personal.fanout:24}") int fanout,
+                                           @Value("${reco.personal.max-per-brand:2}") int maxPerBrand,
+                                           @Value("${reco.personal.half-life-days:90}") double halfLifeDays,
+                                           @Value("${reco.personal.full-refresh-hours:24}") long fullRefreshHours,
+                                           @Value("${reco.personal.overlap-seconds:120}") long overlapSeconds) {
+        this.productMapper = productMapper;
+        this.store = store;
+        this.similarityIndex = similarityIndex;
+        this.executor = executor;
+        this.size = Math.max(1, size);
+        this.fanout = Math.max(1, fanout);
+        this.maxPerBrand = Math.max(1, maxPerBrand);
+        this.halfLifeDays = Math.max(1d, halfLifeDays);
+        this.fullRefreshMillis = fullRefreshHours * 3_600_000L;
+        this.overlapMillis = overlapSeconds * 1_000L;
+    }
+
+    @Scheduled(initialDelayString = "${reco.personal.initial-delay-ms:60000}",
+               fixedDelayString = "${reco.personal.refresh-delay-ms:60000}")
+    public void tick() {
+        if (!store.enabled() || !similarityIndex.ready() || !running.compareAndSet(false, true)) return;
+        boolean full = watermark == null || System.currentTimeMillis() - lastFullRunAt > fullRefreshMillis;
+        try {
+            executor.execute(() -> {
+                try {
+                    run(full);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+        }
+    }
+
+    /** 관리자 수동 전체 재계산 (호출 스레드에서, 이미 도는 중이면 그대로 반환) */
+    public Stats rebuildAll() {
+        if (store.enabled() && similarityIndex.ready() && running.compareAndSet(false, true)) {
+            try {
+                run(true);
+            } finally {
+                running.set(false);
+            }
+        }
+        return stats();
+    }
+
+    private void run(boolean full) {
+        long t0 = System.currentTimeMillis();
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime since = full ? null : watermark.minusNanos(overlapMillis * 1_000_000L);   // 앱/DB 시계 차이·늦은 커밋 여유
+
+        Map<Long, String> targets = new LinkedHashMap<>();
+        try {
+            for (Map<String, Object> row : productMapper.selectPersonalRecoUsers(since)) {
+                Long userNo = ScentSimilarityIndex.toLong(row.get("userNo"));
+                if (userNo != null) targets.put(userNo, (String) row.get("userName"));
+            }
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            log.warn("[personal-reco] 대상 회원 조회 실패 (다음 주기 재시도): {}", e.toString());
+            return;
+        }
+        for (Long userNo : store.drainDirty(MAX_DIRTY)) targets.putIfAbsent(userNo, null);
+
+        List<Long> users = new ArrayList<>(targets.keySet());
+        long now = System.currentTimeMillis();
+        boolean failed = false;
+        for (int from = 0; from < users.size(); from += BATCH) {
+            List<Long> batch = users.subList(from, Math.min(users.size(), from + BATCH));
+            Map<Long, List<Map<String, Object>>> byUser = new HashMap<>();
+            try {
+                for (Map<String, Object> row : productMapper.selectPersonalRecoSignals(batch)) {
+                    Long userNo = ScentSimilarityIndex.toLong(row.get("userNo"));
+                    if (userNo != null) byUser.computeIfAbsent(userNo, k -> new ArrayList<>()).add(row);
+                }
+            } catch (RuntimeException e) {
+                // watermark 는 넘어가므로 이 묶음은 dirty 로 돌려 다음 주기에
+                failed = true;
+                failures.incrementAndGet();
+                store.requeue(new ArrayList<>(batch));
+                log.warn("[personal-reco] 활동 신호 조회 실패 users={}: {}", batch.size(), e.toString());
+                continue;
+            }
+            long r0 = System.nanoTime();
+            for (Long userNo : batch) {
+                store.put(userNo, targets.get(userNo),
+                        rank(byUser.getOrDefault(userNo, List.of()), similarityIndex, size, fanout, maxPerBrand, halfLifeDays, now));
+            }
+            rankNanos.addAndGet(System.nanoTime() - r0);
+            usersProcessed.addAndGet(batch.size());
+        }
+
+        if (full) {
+            if (!failed) store.retainOnly(targets.keySet());
+            lastFullRunAt = t0;
+            fullRuns.incrementAndGet();
+        }
+        watermark = startedAt;
+        runs.incrementAndGet();
+        lastRunUsers = users.size();
+        lastRunMs = System.currentTimeMillis() - t0;
+        if (full || !users.isEmpty()) {
+            log.info("[personal-reco] {} 실행 users={} {}ms", full ? "전체" : "증분", users.size(), lastRunMs);
+        }
+    }
+
+    // ===================== 점수 계산 =====================
+
+    /** 추천 후보 누적값 */
+    private static final class Acc {
+        double score;
+        double best;
+        long anchor;
+        int kind;
+    }
+
+    /**
+     * 회원 한 명의 활동 신호 → 추천 packed 배열 ([상품 id, (근거 상품 id << 2) | 근거 종류] 반복, 점수 높은 순)
+     * 양(+) 점수 후보가 없으면 빈 배열
+     */
+    public static long[] rank(List<Map<String, Object>> signals, ScentSimilarityIndex index, int size, int fanout,
+                              int maxPerBrand, double halfLifeDays, long now) {
+        // 1) 상품별 신호 합 (종류별로 나눠 두고 근거 종류는 가장 큰 양수 쪽)
+        Map<Long, double[]> seeds = new HashMap<>();
+        for (Map<String, Object> row : signals) {
+            Long productId = ScentSimilarityIndex.toLong(row.get("productId"));
+            if (productId == null) continue;
+            String kind = String.valueOf(row.get("kind")).trim();
+            double w;
+            int k;
+            switch (kind) {
+                case "B" -> {
+                    long qty = Math.max(1L, num(row.get("qty")));
+                    w = 1.5 + 0.5 * Math.min(qty - 1, 2);
+                    k = PersonalRecommendationStore.PURCHASE;
+                }
+                case "R" -> {
+                    Object rating = row.get("rating");
+                    w = rating == null ? 0 : (num(rating) - 3) * 0.75;
+                    k = PersonalRecommendationStore.REVIEW;
+                }
+                default -> {
+                    w = 1.0;
+                    k = PersonalRecommendationStore.ZZIM;
+                }
+            }
+            double ageDays = Math.max(0, now - epochMillis(row.get("at"), now)) / 86_400_000d;
+            w *= Math.max(0.2, Math.pow(0.5, ageDays / halfLifeDays));
+            seeds.computeIfAbsent(productId, id -> new double[3])[k] += w;
+        }
+        if (seeds.isEmpty()) return new long[0];
+
+        List<Map.Entry<Long, double[]>> ordered = new ArrayList<>(seeds.entrySet());
+        ordered.sort(Comparator.comparingDouble((Map.Entry<Long, double[]> e) -> -Math.abs(sum(e.getValue()))));
+
+        // 2) 신호 상품 이웃에 신호 × 유사도 누적 (이미 찜/구매/리뷰한 상품 제외)
+        Map<Long, Acc> acc = new HashMap<>();
+        for (Map.Entry<Long, double[]> seed : ordered.subList(0, Math.min(MAX_SEEDS, ordered.size()))) {
+            double[] parts = seed.getValue();
+            double total = sum(parts);
+            if (total == 0) continue;
+            int kind = 0;
+            for (int k = 1; k < parts.length; k++) if (parts[k] > parts[kind]) kind = k;
+            for (ScentSimilarityIndex.Neighbor n : index.neighbors(seed.getKey(), fanout)) {
+                if (seeds.containsKey(n.id())) continue;
+                double c = total * n.score();
+                Acc a = acc.computeIfAbsent(n.id(), id -> new Acc());
+                a.score += c;
+                if (c > a.best) {
+                    a.best = c;
+                    a.anchor = seed.getKey();
+                    a.kind = kind;
+                }
+            }
+        }
+
+        // 3) 점수 순, 브랜드 편중 제한
+        List<Map.Entry<Long, Acc>> ranked = new ArrayList<>();
+        for (Map.Entry<Long, Acc> e : acc.entrySet()) if (e.getValue().score > 0 && e.getValue().best > 0) ranked.add(e);
+        ranked.sort(Comparator.comparingDouble((Map.Entry<Long, Acc> e) -> -e.getValue().score)
+                .thenComparing(Map.Entry::getKey));
+        long[] out = new long[Math.min(size, ranked.size()) * 2];
+        Map<Object, Integer> perBrand = new HashMap<>();
+        int n = 0;
+        for (Map.Entry<Long, Acc> e : ranked) {
+            if (n * 2 >= out.length) break;
+            Object[] card = index.cardOf(e.getKey(), true);
+            if (card == null) continue;
+            if (card[2] != null && perBrand.merge(card[2], 1, Integer::sum) > maxPerBrand) continue;
+            out[n * 2] = e.getKey();
+            out[n * 2 + 1] = (e.getValue().anchor << 2) | e.getValue().kind;
+            n++;
+        }
+        return n * 2 == out.length ? out : Arrays.copyOf(out, n * 2);
+    }
+
+    private static double sum(double[] v) {
+        double s = 0;
+        for (double x : v) s += x;
+        return s;
+    }
+
+    private static long num(Object v) {
+        return v instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private static long epochMillis(Object v, long fallback) {
+        if (v instanceof Date d) return d.getTime();   // java.sql.Timestamp 포함
+        if (v instanceof LocalDateTime t) return t.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return fallback;
+    }
+
+    public Stats stats() {
+        long users = usersProcessed.get();
+        return new Stats(running.get(), watermark, runs.get(), fullRuns.get(), failures.get(), users,
+                lastRunUsers, lastRunMs, users == 0 ? 0d : rankNanos.get() / 1e3 / users);
+    }
+}
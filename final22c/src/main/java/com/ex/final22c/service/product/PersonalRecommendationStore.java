@@ -0,0 +1,172 @@
+package com.ex.final22c.service.product;
+
+import com.ex.final22c.data.recommendation.RecommendedProduct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 회원별 개인화 추천 결과 저장소 (PersonalRecommendationRefresher 가 미리 계산해 채움)
+ * - 키: userNo, 값: 추천 순서대로 [상품 id, (근거 상품 id << 2) | 근거 종류] 를 이어 붙인 long[] (추천 1건 16바이트)
+ * - 상품명/브랜드/이미지/가격은 저장하지 않고 조회 때 ScentSimilarityIndex 카드에서 (품절/비활성은 건너뜀)
+ * - 메인 화면은 로그인 아이디로 조회 → userName → userNo 맵도 함께 유지 (DB 조회 없이 키 조회 두 번)
+ * - 찜 해제/환불처럼 시각 흔적이 남지 않는 변경은 커밋 후 dirty 표시 → 다음 주기에 해당 회원만 재계산
+ */
+@Component
+public class PersonalRecommendationStore {
+
+    /** 근거 종류 (packed 하위 2비트) */
+    public static final int ZZIM = 0, PURCHASE = 1, REVIEW = 2;
+
+    public record Stats(boolean enabled, int users, long packedBytes, long lookups, long hits, int dirty,
+                        double hitRatio) {}
+
+    private record Entry(long[] packed, long computedAt) {}
+
+    private final ScentSimilarityIndex similarityIndex;
+    private final boolean enabled;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> userNos = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    public PersonalRecommendationStore(ScentSimilarityIndex similarityIndex,
+                                       @Value("${reco.personal.enabled:true}") boolean enabled) {
+        this.similarityIndex = similarityIndex;
+        this.enabled = enabled;
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    // ===================== 조회 =====================
+
+    /** 로그인 아이디 기준 (계산된 적 없는 회원이면 빈 리스트) */
+    public List<RecommendedProduct> picksFor(String userName, int limit) {
+        Long userNo = userName == null ? null : userNos.get(userName);
+        if (userNo == null) {
+            if (enabled) lookups.incrementAndGet();
+            return List.of();
+        }
+        return picksFor(userNo, limit);
+    }
+
+    public List<RecommendedProduct> picksFor(Long userNo, int limit) {
+        if (!enabled || userNo == null) return List.of();
+        lookups.incrementAndGet();
+        Entry e = entries.get(userNo);
+        if (e == null) return List.of();
+        hits.incrementAndGet();
+
+        long[] packed = e.packed();
+        List<RecommendedProduct> out = new ArrayList<>(Math.min(limit, packed.length / 2));
+        for (int i = 0; i + 1 < packed.length && out.size() < limit; i += 2) {
+            Object[] card = similarityIndex.cardOf(packed[i], true);
+            if (card == null) continue;   // 계산 이후 품절/비활성
+            long anchorId = packed[i + 1] >>> 2;
+            Object[] anchor = similarityIndex.cardOf(anchorId, false);
+            out.add(RecommendedProduct.builder()
+                .productId(packed[i])
+                .name(str(card[1]))
+                .brandName(str(card[2]))
+                .price(card[6] instanceof Number n ? n.intValue() : null)
+                .reason(reason((int) (packed[i + 1] & 3), anchor == null ? null : str(anchor[1])))
+                .imageUrl(imageUrl(card[3], card[4]))
+                .build());
+        }
+        return out;
+    }
+
+    private static String reason(int kind, String anchorName) {
+        if (anchorName == null || anchorName.isEmpty()) return "회원님의 취향과 비슷한 향";
+        return switch (kind) {
+            case PURCHASE -> "구매하신 '" + anchorName + "'와 비슷한 향";
+            case REVIEW -> "리뷰로 높게 평가한 '" + anchorName + "'와 비슷한 향";
+            default -> "찜하신 '" + anchorName + "'와 비슷한 향";
+        };
+    }
+
+    private static String imageUrl(Object imgPath, Object imgName) {
+        String path = imgPath == null ? "" : imgPath.toString().trim();
+        String name = imgName == null ? "" : imgName.toString().trim();
+        if (path.isEmpty() || name.isEmpty()) return "/img/noimg.png";
+        return path.endsWith("/") ? path + name : path + "/" + name;
+    }
+
+    private static String str(Object v) {
+        return v == null ? "" : v.toString();
+    }
+
+    // ===================== 갱신 (PersonalRecommendationRefresher) =====================
+
+    /** 결과 저장 (빈 결과면 삭제 → 조회 측은 개인화 영역을 숨김) */
+    public void put(Long userNo, String userName, long[] packed) {
+        if (userName != null) userNos.put(userName, userNo);
+        if (packed == null || packed.length == 0) {
+            entries.remove(userNo);
+        } else {
+            entries.put(userNo, new Entry(packed, System.currentTimeMillis()));
+        }
+    }
+
+    /** 전체 재계산 후: 이번에 대상이 아니었던 회원(탈퇴/비활성/활동 삭제) 정리 */
+    public void retainOnly(Set<Long> activeUserNos) {
+        entries.keySet().retainAll(activeUserNos);
+        userNos.values().retainAll(activeUserNos);
+    }
+
+    /** 찜 해제/환불 승인 등: 트랜잭션 안이면 커밋 후(롤백 시 무시), 밖이면 즉시 dirty */
+    public void markDirtyAfterCommit(Long userNo) {
+        if (!enabled || userNo == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        dirty.add(userNo);
+                    }
+                }
+            );
+        } else {
+            dirty.add(userNo);
+        }
+    }
+
+    /** dirty 회원 꺼내기 (최대 max 명) */
+    public List<Long> drainDirty(int max) {
+        List<Long> out = dirty.stream().limit(max).toList();
+        dirty.removeAll(out);
+        return out;
+    }
+
+    /** 실패한 회원 되돌리기 */
+    public void requeue(List<Long> users) {
+        dirty.addAll(users);
+    }
+
+    public void clear() {
+        entries.clear();
+        userNos.clear();
+        dirty.clear();
+    }
+
+    public Stats stats() {
+        long bytes = 0;
+        for (Entry e : entries.values()) bytes += 16L + e.packed().length * 8L;   // 배열 헤더 + 본문
+        long l = lookups.get(), h = hits.get();
+        return new Stats(enabled, entries.size(), bytes, l, h, dirty.size(), l == 0 ? 0d : (double) h / l);
+    }
+}
@@ -14,8 +14,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.ex.final22c.DataNotFoundException;
 import com.ex.final22c.data.product.Product;
+import com.ex.final22c.data.recommendation.RecommendedProduct;
 import com.ex.final22c.repository.productMapper.ProductMapper;
 import com.ex.final22c.repository.productRepository.ProductRepository;
+import com.ex.final22c.service.ai.QueryResultCache;
+import com.ex.final22c.service.chat.ProductCandidateIndex;
 
 import lombok.RequiredArgsConstructor;
 
@@ -26,6 +29,10 @@ public class ProductService {
 
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final ProductCandidateIndex candidateIndex;
+    private final ScentSimilarityIndex similarityIndex;
+    private final PersonalRecommendationStore personalRecs;
+    private final QueryResultCache resultCache;
 
     public List<Product> showList() { return productRepository.findAll(); }
 
@@ -100,6 +107,9 @@ public class ProductService {
         if (qty <= 0) return;
         int updated = productRepository.decreaseStock(productId, qty);
         if (updated != 1) throw new IllegalStateException("재고 부족 또는 상품 없음: id=" + productId);
+        resultCache.invalidateAfterCommit("PRODUCT"); // 재고 집계용 AI 결과 캐시 무효화 (커밋 후)
+        candidateIndex.markDirtyAfterCommit(); // 추천 후보 인덱스 재고 비트 갱신 (커밋 후)
+        similarityIndex.markDirtyAfterCommit(productId); // 비슷한 향 카드 품절 여부
     }
 
     @Transactional
@@ -107,6 +117,9 @@ public class ProductService {
         if (qty <= 0) return;
         int updated = productRepository.increaseStock(productId, qty);
         if (updated != 1) throw new IllegalStateException("재고 복구 실패 또는 상품 없음: id=" + productId);
+        resultCache.invalidateAfterCommit("PRODUCT");
+        candidateIndex.markDirtyAfterCommit();
+        similarityIndex.markDirtyAfterCommit(productId);
     }
 
     // ==== DTO ====
@@ -356,6 +369,25 @@ public class ProductService {
         return productRepository.findSameBrandSoldDesc(brandId, productId, topN);
     }
 
+    /**
+     * 비슷한 향 상품 (노트 TF-IDF 코사인 top-K, 미리 계산된 이웃 목록 조회)
+     * 행: {id, name, brandName, imgPath, imgName, listPrice, sellPrice, 유사도(%)} — 같은 브랜드 추천과 같은 순서
+     * 인덱스 준비 전이면 빈 리스트
+     */
+    public List<Object[]> getSimilarScentRecommendations(Long productId, Integer limit) {
+        int topN = normalizeLimit(limit, 8, 1, 20);
+        return productId == null ? List.of() : similarityIndex.similar(productId, topN);
+    }
+
+    /**
+     * 회원 개인화 추천 (찜/구매/리뷰 기반, PersonalRecommendationRefresher 가 미리 계산한 결과 조회)
+     * 비로그인/아직 계산 전/활동 없는 회원이면 빈 리스트
+     */
+    public List<RecommendedProduct> getPersonalRecommendations(String userName, Integer limit) {
+        int topN = normalizeLimit(limit, 8, 1, 20);
+        return personalRecs.picksFor(userName, topN);
+    }
+
     /**
      * 이번 주 판매량 TOP N (4×2 캐러셀의 경우 N=8 권장)
      * - excludeId는 null 허용(현재 상품 제외 안함)
@@ -0,0 +1,522 @@
+package com.ex.final22c.service.product;
+
+import com.ex.final22c.repository.productMapper.ProductMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * "비슷한 향" 유사도 엔진 (LLM 없이 프로세스 안에서)
+ * - 상품 벡터: top/middle/base/single 노트 구절 TF-IDF (층별 가중치) + 메인노트 + 등급, L2 정규화 희소 벡터
+ * - 상품마다 코사인 top-K 이웃을 미리 계산 (노트 역색인으로 겹치는 상품끼리만 내적)
+ * - 조회는 이웃 배열을 읽고 판매 불가(비활성/품절)만 건너뜀 → 마이크로초 단위
+ * - 상품 수정/재고 변경은 커밋 후 dirty 표시 → 주기적으로 해당 상품만 다시 읽어 벡터/이웃을 증분 갱신
+ *   (증분 갱신 땐 다른 상품의 IDF 는 그대로, full-rebuild-minutes 마다 전체 재계산으로 보정)
+ */
+@Slf4j
+@Component
+public class ScentSimilarityIndex {
+
+    /** 노트 구절 구분자 ("베르가못, 레몬 / 핑크 페퍼" → 베르가못 | 레몬 | 핑크 페퍼) */
+    private static final Pattern NOTE_SPLIT = Pattern.compile("\\s*(?:[,/·|;\\n]|\\s-\\s)\\s*");
+
+    // 층별 가중치: 오래 남는 베이스/싱글 노트가 인상을 더 좌우
+    private static final double W_TOP = 1.0, W_MIDDLE = 1.2, W_BASE = 1.4, W_SINGLE = 1.5;
+    private static final double W_MAIN_NOTE = 1.6, W_GRADE = 0.4;
+
+    public record Stats(boolean ready, int products, int available, int terms, int topK, long fullBuilds,
+                        long lastFullBuildMs, long incrementalUpdates, long queries, double avgQueryMicros) {}
+
+    /** 이웃 한 건 */
+    public record Neighbor(long id, float score) {}
+
+    /**
+     * 상품 한 건
+     * card = 캐러셀 행 {id, name, brandName, imgPath, imgName, listPrice, sellPrice, 유사도(%)} (findSameBrandSoldDesc 와 같은 순서)
+     */
+    private record Item(long id, Object[] card, boolean available, int[] terms, float[] weights, Map<String, Double> tf) {}
+
+    private final ProductMapper productMapper;
+    private final boolean enabled;
+    private final int topK;
+    private final long fullRebuildMillis;
+
+    // ----- 아래 구조는 lock 으로 보호 (이웃 배열 조회만 락 없이) -----
+    private final Object lock = new Object();
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final Map<Integer, Integer> docFreq = new HashMap<>();
+    private final Map<Long, Item> items = new ConcurrentHashMap<>();
+    private final Map<Long, Neighbor[]> neighbors = new ConcurrentHashMap<>();
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean ready;
+    private volatile long lastFullBuildAt;
+    private volatile long lastFullBuildMs;
+
+    private final AtomicLong fullBuilds = new AtomicLong();
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong queryNanos = new AtomicLong();
+
+    public ScentSimilarityIndex(ProductMapper productMapper,
+                                @Value("${reco.similar.enabled:true}") boolean enabled,
+                                @Value("${reco.similar.top-k:24}") int topK,
+                                @Value("${reco.similar.full-rebuild-minutes:60}") long fullRebuildMinutes) {
+        this.productMapper = productMapper;
+        this.enabled = enabled;
+        this.topK = Math.max(4, topK);
+        this.fullRebuildMillis = fullRebuildMinutes * 60_000L;
+    }
+
+    public boolean ready() {
+        return enabled && ready;
+    }
+
+    // ===================== 조회 =====================
+
+    /**
+     * 비슷한 향 상품 (캐러셀 행, 판매 가능한 것만, 유사도 높은 순)
+     * 인덱스 준비 전/모르는 상품이면 빈 리스트
+     */
+    public List<Object[]> similar(long productId, int limit) {
+        long t0 = System.nanoTime();
+        List<Object[]> out = new ArrayList<>(limit);
+        Neighbor[] ns = ready() ? neighbors.get(productId) : null;
+        if (ns != null) {
+            for (Neighbor n : ns) {
+                if (out.size() >= limit) break;
+                Item it = items.get(n.id());
+                if (it == null || !it.available()) continue;
+                Object[] row = it.card().clone();
+                row[7] = Math.round(n.score() * 100);
+                out.add(row);
+            }
+        }
+        queries.incrementAndGet();
+        queryNanos.addAndGet(System.nanoTime() - t0);
+        return out;
+    }
+
+    /** 이웃 id/점수만 (판매 가능한 것만) */
+    public List<Neighbor> neighbors(long productId, int limit) {
+        List<Neighbor> out = new ArrayList<>(limit);
+        Neighbor[] ns = ready() ? neighbors.get(productId) : null;
+        if (ns != null) {
+            for (Neighbor n : ns) {
+                if (out.size() >= limit) break;
+                Item it = items.get(n.id());
+                if (it != null && it.available()) out.add(n);
+            }
+        }
+        return out;
+    }
+
+    /** 상품 카드 행 사본 (모르는 상품, availableOnly 인데 판매 불가면 null) */
+    public Object[] cardOf(long productId, boolean availableOnly) {
+        Item it = items.get(productId);
+        if (it == null || (availableOnly && !it.available())) return null;
+        return it.card().clone();
+    }
+
+    /** 두 상품 코사인 유사도 (모르는 상품이면 0) */
+    public double similarity(long a, long b) {
+        Item x = items.get(a), y = items.get(b);
+        return x == null || y == null ? 0d : dot(x, y);
+    }
+
+    /**
+     * 노트 구절 중 키워드를 포함하는 비중 (층별 가중 TF 기준 0~1, 메인노트/등급 가상 용어 제외)
+     * 설문 향 계열 일치도 계산용 — 모르는 상품이면 -1
+     */
+    public double noteShare(long productId, Collection<String> keywords) {
+        Item it = items.get(productId);
+        if (it == null) return -1d;
+        double hit = 0, total = 0;
+        for (Map.Entry<String, Double> e : it.tf().entrySet()) {
+            if (e.getKey().startsWith("#")) continue;
+            total += e.getValue();
+            for (String k : keywords) {
+                if (e.getKey().contains(k)) {
+                    hit += e.getValue();
+                    break;
+                }
+            }
+        }
+        return total == 0 ? 0d : hit / total;
+    }
+
+    // ===================== 변경 반영 =====================
+
+    /** 상품/재고 변경 알림: 트랜잭션 안이면 커밋 후(롤백 시 무시), 밖이면 즉시 dirty */
+    public void markDirtyAfterCommit(Collection<Long> productIds) {
+        if (!enabled || productIds == null || productIds.isEmpty()) return;
+        List<Long> ids = List.copyOf(productIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        dirty.addAll(ids);
+                    }
+                }
+            );
+        } else {
+            dirty.addAll(ids);
+        }
+    }
+
+    public void markDirtyAfterCommit(Long productId) {
+        if (productId != null) markDirtyAfterCommit(List.of(productId));
+    }
+
+    /**
+     * 첫 주기에 전체 빌드, 이후 dirty 상품만 증분 갱신, full-rebuild-minutes 마다 전체 재계산(IDF 보정)
+     * (빌드 실패로 아직 준비 전이면 1분 뒤 재시도)
+     */
+    @Scheduled(fixedDelayString = "${reco.similar.refresh-delay-ms:2000}")
+    public void refresh() {
+        if (!enabled) return;
+        if (System.currentTimeMillis() - lastFullBuildAt > (ready ? fullRebuildMillis : 60_000L)) {
+            rebuildAll();
+            return;
+        }
+        if (dirty.isEmpty()) return;
+        // IN 절 상한(1000) 아래로 끊어서, 남은 건 다음 주기에
+        List<Long> ids = dirty.stream().limit(500).toList();
+        dirty.removeAll(ids);
+        try {
+            update(productMapper.selectSimilarityRows(ids));
+        } catch (RuntimeException e) {
+            dirty.addAll(ids);
+            log.warn("[similar] 증분 갱신 실패 (다음 주기 재시도): {}", e.toString());
+        }
+    }
+
+    /**
+     * 전체 재계산 (실패 시 기존 이웃 유지)
+     * 역색인(용어 → 상품 위치/가중치)으로 노트가 겹치는 상품끼리만 내적을 누적
+     */
+    public void rebuildAll() {
+        long t0 = System.currentTimeMillis();
+        // 읽기 전에 dirty 를 비움 → 읽는 도중 들어온 변경은 남아서 다음 주기 증분 갱신 (ProductCandidateIndex 와 같은 순서)
+        List<Long> drained = List.copyOf(dirty);
+        dirty.removeAll(drained);
+        List<Map<String, Object>> rows;
+        try {
+            rows = productMapper.selectSimilarityRows(null);
+        } catch (RuntimeException e) {
+            dirty.addAll(drained);
+            log.warn("[similar] 전체 빌드 실패 (기존 인덱스 유지): {}", e.toString());
+            lastFullBuildAt = System.currentTimeMillis();   // 매 주기 재시도 폭주 방지
+            return;
+        }
+        synchronized (lock) {
+            termIds.clear();
+            docFreq.clear();
+            Map<Long, Map<String, Object>> byId = new LinkedHashMap<>();
+            Map<Long, Map<String, Double>> tfs = new HashMap<>();
+            for (Map<String, Object> row : rows) {
+                Long id = toLong(row.get("id"));
+                if (id == null || byId.containsKey(id)) continue;
+                byId.put(id, row);
+                Map<String, Double> tf = termFrequencies(row);
+                tfs.put(id, tf);
+                for (String t : tf.keySet()) docFreq.merge(termId(t), 1, Integer::sum);
+            }
+            int n = byId.size();
+            Item[] vec = new Item[n];
+            int i = 0;
+            for (Map.Entry<Long, Map<String, Object>> e : byId.entrySet()) {
+                vec[i++] = vectorize(e.getKey(), e.getValue(), tfs.get(e.getKey()), n);
+            }
+
+            // 역색인
+            int terms = termIds.size();
+            int[] len = new int[terms];
+            for (Item it : vec) for (int t : it.terms()) len[t]++;
+            int[][] postDoc = new int[terms][];
+            float[][] postWeight = new float[terms][];
+            for (int t = 0; t < terms; t++) {
+                postDoc[t] = new int[len[t]];
+                postWeight[t] = new float[len[t]];
+                len[t] = 0;
+            }
+            for (int d = 0; d < n; d++) {
+                Item it = vec[d];
+                for (int k = 0; k < it.terms().length; k++) {
+                    int t = it.terms()[k];
+                    postDoc[t][len[t]] = d;
+                    postWeight[t][len[t]++] = it.weights()[k];
+                }
+            }
+
+            // 상품마다 누적 내적 → 상위 topK
+            Map<Long, Neighbor[]> computed = new HashMap<>(n * 2);
+            float[] acc = new float[n];
+            int[] seen = new int[n];
+            int[] touched = new int[n];
+            for (int d = 0; d < n; d++) {
+                Item it = vec[d];
+                int cnt = 0;
+                for (int k = 0; k < it.terms().length; k++) {
+                    int t = it.terms()[k];
+                    float w = it.weights()[k];
+                    int[] docs = postDoc[t];
+                    float[] ws = postWeight[t];
+                    for (int p = 0; p < docs.length; p++) {
+                        int o = docs[p];
+                        if (o == d) continue;
+                        if (seen[o] != d + 1) {
+                            seen[o] = d + 1;
+                            acc[o] = 0f;
+                            touched[cnt++] = o;
+                        }
+                        acc[o] += w * ws[p];
+                    }
+                }
+                PriorityQueue<Neighbor> heap = new PriorityQueue<>(topK + 1, ScentSimilarityIndex::compare);
+                for (int c = 0; c < cnt; c++) {
+                    float sc = acc[touched[c]];
+                    // 힙이 찼으면 꼴찌보다 낮은 점수는 객체 생성 없이 건너뜀
+                    if (heap.size() >= topK && sc < heap.peek().score()) continue;
+                    offer(heap, new Neighbor(vec[touched[c]].id(), sc));
+                }
+                computed.put(it.id(), sorted(heap));
+            }
+
+            Map<Long, Item> fresh = new HashMap<>(n * 2);
+            for (Item it : vec) fresh.put(it.id(), it);
+            items.keySet().retainAll(fresh.keySet());
+            items.putAll(fresh);
+            neighbors.keySet().retainAll(computed.keySet());
+            neighbors.putAll(computed);
+        }
+        ready = true;
+        lastFullBuildAt = System.currentTimeMillis();
+        lastFullBuildMs = lastFullBuildAt - t0;
+        fullBuilds.incrementAndGet();
+        log.info("[similar] 전체 빌드 products={} terms={} {}ms", items.size(), termIds.size(), lastFullBuildMs);
+    }
+
+    /**
+     * 변경 상품 증분 갱신
+     * - 노트/메인노트/등급이 그대로면 카드(가격/재고/상태)만 교체 (재고 변경은 대부분 여기서 끝)
+     * - 바뀌었으면 벡터 재계산 → 자기 이웃 재계산, 바뀐 상품을 이웃으로 갖던 목록 재계산,
+     *   나머지 목록은 새 점수가 꼴찌보다 높을 때만 끼워 넣기 (전 상품 한 번 훑기)
+     */
+    void update(List<Map<String, Object>> rows) {
+        synchronized (lock) {
+            Set<Long> changed = new LinkedHashSet<>();
+            for (Map<String, Object> row : rows) {
+                Long id = toLong(row.get("id"));
+                if (id == null) continue;
+                Item old = items.get(id);
+                Map<String, Double> tf = termFrequencies(row);
+                if (old != null && old.tf().equals(tf)) {
+                    items.put(id, new Item(id, card(row), available(row), old.terms(), old.weights(), old.tf()));
+                    continue;
+                }
+                if (old != null) {
+                    for (String t : old.tf().keySet()) docFreq.merge(termIds.get(t), -1, Integer::sum);
+                }
+                for (String t : tf.keySet()) docFreq.merge(termId(t), 1, Integer::sum);
+                items.put(id, vectorize(id, row, tf, items.size() + (old == null ? 1 : 0)));
+                changed.add(id);
+            }
+            if (changed.isEmpty()) return;
+
+            List<Neighbor[]> inserts = new ArrayList<>();   // {대상 목록 주인, 끼워 넣을 이웃}
+            for (Long c : changed) {
+                Item ci = items.get(c);
+                PriorityQueue<Neighbor> heap = new PriorityQueue<>(topK + 1, ScentSimilarityIndex::compare);
+                for (Item o : items.values()) {
+                    if (o.id() == ci.id()) continue;
+                    float sc = dot(ci, o);
+                    if (sc <= 0f) continue;
+                    offer(heap, new Neighbor(o.id(), sc));
+                    inserts.add(new Neighbor[] { new Neighbor(o.id(), sc), new Neighbor(c, sc) });
+                }
+                neighbors.put(c, sorted(heap));
+            }
+
+            // 바뀐 상품을 이웃으로 갖던 목록: 점수가 떨어졌을 수 있어 다시 계산
+            Set<Long> affected = new HashSet<>();
+            neighbors.forEach((q, ns) -> {
+                if (changed.contains(q)) return;
+                for (Neighbor x : ns) {
+                    if (changed.contains(x.id())) {
+                        affected.add(q);
+                        return;
+                    }
+                }
+            });
+            for (Long q : affected) neighbors.put(q, scanNeighbors(items.get(q)));
+
+            // 나머지: 새로 가까워졌으면 끼워 넣기
+            for (Neighbor[] pair : inserts) {
+                long owner = pair[0].id();
+                if (changed.contains(owner) || affected.contains(owner)) continue;
+                neighbors.computeIfPresent(owner, (q, ns) -> insert(ns, pair[1]));
+            }
+            incrementalUpdates.addAndGet(changed.size());
+        }
+    }
+
+    /** 전 상품과 직접 내적 → 상위 topK (증분 갱신용) */
+    private Neighbor[] scanNeighbors(Item it) {
+        PriorityQueue<Neighbor> heap = new PriorityQueue<>(topK + 1, ScentSimilarityIndex::compare);
+        for (Item o : items.values()) {
+            if (o.id() == it.id()) continue;
+            float sc = dot(it, o);
+            if (sc > 0f) offer(heap, new Neighbor(o.id(), sc));
+        }
+        return sorted(heap);
+    }
+
+    // ===================== 벡터 =====================
+
+    /** 노트 구절 → 층별 가중 TF (+ 메인노트/등급 가상 용어) */
+    private static Map<String, Double> termFrequencies(Map<String, Object> row) {
+        Map<String, Double> tf = new TreeMap<>();
+        addNotes(tf, row.get("topNote"), W_TOP);
+        addNotes(tf, row.get("middleNote"), W_MIDDLE);
+        addNotes(tf, row.get("baseNote"), W_BASE);
+        addNotes(tf, row.get("singleNote"), W_SINGLE);
+        Long main = toLong(row.get("mainNoteNo"));
+        if (main != null) tf.merge("#main:" + main, W_MAIN_NOTE, Double::sum);
+        Long grade = toLong(row.get("gradeNo"));
+        if (grade != null) tf.merge("#grade:" + grade, W_GRADE, Double::sum);
+        return tf;
+    }
+
+    private static void addNotes(Map<String, Double> tf, Object text, double weight) {
+        if (text == null) return;
+        for (String raw : NOTE_SPLIT.split(String.valueOf(text))) {
+            String t = raw.replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT);
+            if (t.length() < 2 || t.length() > 40) continue;
+            tf.merge(t, weight, Double::sum);
+        }
+    }
+
+    /** TF × IDF, L2 정규화 (lock 안에서: docFreq = 문서 빈도) */
+    private Item vectorize(long id, Map<String, Object> row, Map<String, Double> tf, int docs) {
+        TreeMap<Integer, Double> w = new TreeMap<>();
+        double norm = 0;
+        for (Map.Entry<String, Double> e : tf.entrySet()) {
+            int tid = termId(e.getKey());
+            int df = docFreq.getOrDefault(tid, 0);
+            double v = e.getValue() * (Math.log((docs + 1.0) / (df + 1.0)) + 1.0);
+            w.put(tid, v);
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        int[] terms = new int[w.size()];
+        float[] weights = new float[w.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Double> e : w.entrySet()) {
+            terms[i] = e.getKey();
+            weights[i++] = norm == 0 ? 0f : (float) (e.getValue() / norm);
+        }
+        return new Item(id, card(row), available(row), terms, weights, Map.copyOf(tf));
+    }
+
+    private void offer(PriorityQueue<Neighbor> heap, Neighbor n) {
+        if (n.score() <= 0f) return;
+        if (heap.size() < topK) {
+            heap.add(n);
+        } else if (compare(n, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(n);
+        }
+    }
+
+    private static Neighbor[] sorted(PriorityQueue<Neighbor> heap) {
+        Neighbor[] out = heap.toArray(Neighbor[]::new);
+        Arrays.sort(out, (a, b) -> compare(b, a));
+        return out;
+    }
+
+    /** 점수 오름차순 (같으면 id 큰 쪽이 뒤) — 힙은 꼴찌가 먼저 나옴 */
+    private static int compare(Neighbor a, Neighbor b) {
+        int c = Float.compare(a.score(), b.score());
+        return c != 0 ? c : Long.compare(b.id(), a.id());
+    }
+
+    private Neighbor[] insert(Neighbor[] ns, Neighbor n) {
+        if (ns.length >= topK && compare(n, ns[ns.length - 1]) <= 0) return ns;
+        List<Neighbor> list = new ArrayList<>(Arrays.asList(ns));
+        list.removeIf(x -> x.id() == n.id());
+        list.add(n);
+        list.sort((a, b) -> compare(b, a));
+        return list.subList(0, Math.min(topK, list.size())).toArray(Neighbor[]::new);
+    }
+
+    private static float dot(Item a, Item b) {
+        float s = 0f;
+        int i = 0, j = 0;
+        while (i < a.terms().length && j < b.terms().length) {
+            int c = Integer.compare(a.terms()[i], b.terms()[j]);
+            if (c == 0) s += a.weights()[i++] * b.weights()[j++];
+            else if (c < 0) i++;
+            else j++;
+        }
+        return s;
+    }
+
+    private int termId(String term) {
+        return termIds.computeIfAbsent(term, k -> termIds.size());
+    }
+
+    // ===================== 행 변환 =====================
+
+    private static Object[] card(Map<String, Object> row) {
+        return new Object[] {
+            toLong(row.get("id")), row.get("name"), row.get("brandName"), row.get("imgPath"), row.get("imgName"),
+            toLong(row.get("listPrice")), toLong(row.get("sellPrice")), 0L
+        };
+    }
+
+    /** findSameBrandSoldDesc 와 같은 기준: status = 'active' 이고 재고 > 0 */
+    private static boolean available(Map<String, Object> row) {
+        Long count = toLong(row.get("count"));
+        return count != null && count > 0 && "active".equalsIgnoreCase(String.valueOf(row.get("status")));
+    }
+
+    public static Long toLong(Object v) {
+        if (v instanceof Number n) return n.longValue();
+        if (v != null) try { return Long.parseLong(String.valueOf(v).trim()); } catch (NumberFormatException ignore) {}
+        return null;
+    }
+
+    public Stats stats() {
+        long q = queries.get();
+        int available = (int) items.values().stream().filter(Item::available).count();
+        int terms;
+        synchronized (lock) {
+            terms = termIds.size();
+        }
+        return new Stats(ready, items.size(), available, terms, topK, fullBuilds.get(), lastFullBuildMs,
+                incrementalUpdates.get(), q, q == 0 ? 0d : queryNanos.get() / 1000.0 / q);
+    }
+}
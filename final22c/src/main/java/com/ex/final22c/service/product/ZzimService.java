@@ -22,6 +22,7 @@ public class ZzimService {
 	 private final ProductRepository productRepository;
 	    private final UserRepository userRepository;
 	    private final BookMarkRepository bookMarkRepository;
+	    private final PersonalRecommendationStore personalRecs;
 
 	    @Transactional(readOnly = true)
 	    public boolean isZzimed(String userName, Long productId) {
@@ -46,6 +47,9 @@ public class ZzimService {
 	    }
 	    public void remove(String userName, Long productId) {
 	        bookMarkRepository.deleteByUser_UserNameAndProduct_Id(userName, productId);
+	        // 찜 해제는 시각 흔적이 없어 증분 대상에 안 잡힘 → 개인화 추천 재계산 표시
+	        userRepository.findByUserName(userName)
+	                .ifPresent(u -> personalRecs.markDirtyAfterCommit(u.getUserNo()));
 	    }
 
 	    @Transactional(readOnly = true)
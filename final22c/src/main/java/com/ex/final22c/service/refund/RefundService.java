@@ -30,6 +30,8 @@ import com.ex.final22c.repository.refund.RefundRepository;
 import com.ex.final22c.repository.refundDetail.RefundDetailRepository;
 import com.ex.final22c.repository.user.UserRepository;
 import com.ex.final22c.service.KakaoApiService;
+import com.ex.final22c.service.ai.QueryResultCache;
+import com.ex.final22c.service.product.PersonalRecommendationStore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -48,6 +50,8 @@ public class RefundService {
     private static final DateTimeFormatter DF = DateTimeFormatter.ofPattern("yyyy.MM.dd HH:mm");
     private final KakaoApiService kakaoApiService;
     private final RefundSmsService refundSmsService;
+    private final QueryResultCache resultCache;
+    private final PersonalRecommendationStore personalRecs;
     private final ObjectMapper objectMapper;
 
     private static final int FIXED_SHIPPING_REFUND = 3_000;
@@ -368,7 +372,11 @@ public class RefundService {
                         rejectReason);
             }
         }
-        // 8) 결과
+        // 8) 환불 집계용 AI 결과 캐시 무효화 (커밋 후)
+        resultCache.invalidateAfterCommit("REFUND", "REFUNDDETAIL", "ORDERS", "ORDERDETAIL", "PAYMENT", "USERS");
+        personalRecs.markDirtyAfterCommit(user.getUserNo()); // 구매 신호(확정 수량) 변경 → 개인화 추천 재계산
+
+        // 9) 결과
         return ApproveRefundResult.success(
                 refund.getRefundId(),
                 refund.getStatus(), // "REFUNDED"
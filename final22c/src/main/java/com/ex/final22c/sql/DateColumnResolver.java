@@ -1,16 +1,14 @@
 package com.ex.final22c.sql;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
 public class DateColumnResolver {
-    private final JdbcTemplate jdbc;
+    private final SchemaCatalog schema;
 
     // 네가 준 스키마 기준(전부 대문자)
     private static final Map<String, List<String>> PREFERRED = Map.ofEntries(
@@ -27,32 +25,15 @@ public class DateColumnResolver {
         Map.entry("USERS",         List.of("REG"))
     );
 
-    private final Map<String, String> cache = new ConcurrentHashMap<>();
-
+    /** 선호 컬럼 중 실제 있는 것 → 없으면 첫 DATE/TIMESTAMP 컬럼 (SchemaCatalog 스냅샷 조회, DB 왕복 없음) */
     public Optional<String> resolve(String tableUpper) {
-        if (tableUpper == null) return Optional.empty();
-        String key = tableUpper.toUpperCase(Locale.ROOT);
-        if (cache.containsKey(key)) return Optional.of(cache.get(key));
-
-        Set<String> cols = new HashSet<>(jdbc.query(
-            "SELECT COLUMN_NAME FROM USER_TAB_COLUMNS WHERE TABLE_NAME = ?",
-            (rs, i) -> rs.getString(1),
-            key
-        ));
-        for (String cand : PREFERRED.getOrDefault(key, List.of())) {
-            if (cols.contains(cand)) {
-                cache.put(key, cand);
-                return Optional.of(cand);
-            }
+        SchemaCatalog.Table t = schema.snapshot().table(tableUpper);
+        if (t == null) return Optional.empty();
+        for (String cand : PREFERRED.getOrDefault(t.name(), List.of())) {
+            if (t.column(cand) != null) return Optional.of(cand);
         }
-        List<String> any = jdbc.query(
-            "SELECT COLUMN_NAME FROM USER_TAB_COLUMNS WHERE TABLE_NAME = ? AND (DATA_TYPE='DATE' OR DATA_TYPE LIKE 'TIMESTAMP%')",
-            (rs, i) -> rs.getString(1),
-            key
-        );
-        if (!any.isEmpty()) {
-            cache.put(key, any.get(0));
-            return Optional.of(any.get(0));
+        for (SchemaCatalog.Column c : t.columns()) {
+            if (c.temporal()) return Optional.of(c.name());
         }
         return Optional.empty();
     }
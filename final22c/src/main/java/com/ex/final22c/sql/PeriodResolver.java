@@ -33,6 +33,16 @@ public final class PeriodResolver {
             "(?i)(전체\\s*기간|전체|누적|전기간|all\\s*-?time|total|lifetime)"
     );
 
+    // 플랜 캐시 키용: 기간만 다르고 나머지가 같은 질문을 한 키로 묶기 위해 제거할 기간 표현
+    private static final Pattern P_PERIOD_PHRASE = Pattern.compile(
+            "(?i)(최근\\s*\\d+\\s*(?:일|주일|주|개월|달|년)"
+          + "|\\d{4}\\s*년\\s*[1-4]\\s*분기|[1-4]\\s*분기\\s*\\d{4}|\\d{4}\\s*[ -]?q[1-4]|q[1-4]\\s*\\d{4}"
+          + "|\\d{4}\\s*[./-]\\s*\\d{1,2}(?:\\s*[./-]\\s*\\d{1,2})?|\\d{4}\\s*년|(?<!\\d)\\d{1,2}\\s*월(?:\\s*\\d{1,2}\\s*일)?"
+          + "|오늘|어제|이번\\s*주|금주|지난\\s*주|저번\\s*주|이번\\s*달|이달|지난\\s*달|이번\\s*분기|지난\\s*분기"
+          + "|올해|금년|작년|지난해|ytd|today|yesterday"
+          + "|(?:this|last|previous)\\s+(?:week|month|quarter|year))"
+    );
+
     public static ResolvedPeriod resolveFromUtterance(String text){
         String t = text == null ? "" : text.toLowerCase(Locale.ROOT);
         ZonedDateTime now = ZonedDateTime.now(KST);
@@ -184,6 +194,15 @@ public final class PeriodResolver {
         return ofDateRange(end.minusDays(30), end, "최근 30일");
     }
 
+    /**
+     * 발화에서 기간 표현(이번달/지난주/최근 7일/2024년 3월 등)만 제거한다.
+     * 기간만 다른 질문을 같은 SQL 플랜으로 재사용할 때 키 정규화에 사용.
+     */
+    public static String stripPeriodPhrases(String text){
+        if (text == null) return "";
+        return P_PERIOD_PHRASE.matcher(text).replaceAll(" ");
+    }
+
     /* ===== Helpers ===== */
 
     public static ResolvedPeriod allTime() {
@@ -0,0 +1,388 @@
+package com.ex.final22c.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 화이트리스트 테이블 스키마 카탈로그
+ * - 기동 시 USER_TAB_COLUMNS(+제약조건) 1회 조회로 컬럼/타입/PK·UK·FK 스냅샷 생성, 이후엔 refresh() 때만 다시 읽음
+ * - 소비자: DateColumnResolver(날짜 컬럼), SqlGuard(테이블/컬럼 화이트리스트), LLM 프롬프트 스키마 문서(doc)
+ * - 메타데이터를 못 읽으면 classpath:ai/schema-fallback.txt 로 동작 (컬럼 존재 검사는 DB 스냅샷일 때만)
+ * - 스키마 문서 = 테이블 줄 + FK 조인(스냅샷에서 생성) + classpath:ai/schema-notes.txt (사람이 쓰는 메모/비즈니스 규칙)
+ * - doc(tables): 의도에 필요한 테이블만 담은 축약본 (해당 테이블에 걸린 규칙만 포함, 스냅샷별 메모)
+ * 스냅샷은 불변 객체 하나를 volatile 로 교체 → 읽는 쪽은 락 없음, version 으로 변경 감지
+ */
+@Slf4j
+@Component
+public class SchemaCatalog {
+
+    /** 기본 화이트리스트 (ai.schema.tables 미지정 시). DUAL 은 항상 허용 */
+    public static final List<String> DEFAULT_TABLES = List.of(
+        "USERS","ORDERS","ORDERDETAIL","PAYMENT","PRODUCT",
+        "BRAND","GRADE","MAINNOTE","VOLUME","REFUND","REFUNDDETAIL",
+        "CART","CARTDETAIL","REVIEW","PURCHASE","PURCHASEDETAIL"
+    );
+
+    /** 기본 숨김 컬럼 (ai.schema.hidden-columns 미지정 시). 스냅샷/문서에서 빠지고 SqlGuard 가 참조를 거절 */
+    public static final String DEFAULT_HIDDEN_COLUMNS = "USERS.PASSWORD,REFUND.PGPAYLOADJSON";
+
+    /** 테이블 목록 + 기본 숨김 컬럼만 있는 스냅샷 (카탈로그 없이 쓰는 정적 SqlGuard 경로용) */
+    public static final Snapshot STATIC = tablesOnly(DEFAULT_TABLES, split(DEFAULT_HIDDEN_COLUMNS));
+
+    private static final String FALLBACK = "ai/schema-fallback.txt";
+    private static final String NOTES = "ai/schema-notes.txt";
+    private static final Pattern TABLE_LINE = Pattern.compile("([A-Z_][A-Z0-9_$#]*)\\((.*)\\)");
+    private static final Pattern IDENT = Pattern.compile("[A-Za-z_][\\w$#]*");
+
+    public enum Source { STATIC, FALLBACK, DATABASE }
+
+    /** type: DATA_TYPE (정밀도 제외, 폴백에서 미기재면 빈 문자열), ref: FK 대상 "TABLE.COL" 또는 null */
+    public record Column(String name, String type, boolean pk, boolean unique, String ref) {
+        public boolean temporal() { return type.equals("DATE") || type.startsWith("TIMESTAMP"); }
+    }
+
+    public record Table(String name, List<Column> columns) {
+        public Column column(String name) {
+            for (Column c : columns) if (c.name().equals(name)) return c;
+            return null;
+        }
+    }
+
+    /** hidden: 숨김 컬럼 "TABLE.COLUMN" (tables 의 컬럼 목록에는 이미 빠져 있음) */
+    public record Snapshot(long version, Source source, long loadedAt, Map<String, Table> tables, String doc,
+                           Set<String> hidden) {
+        public boolean allowsTable(String table) {
+            return "DUAL".equals(table) || tables.containsKey(table);
+        }
+
+        public Table table(String name) {
+            return name == null ? null : tables.get(name.toUpperCase(Locale.ROOT));
+        }
+
+        public boolean hides(String table, String column) {
+            return table != null && hidden.contains(table + "." + column);
+        }
+
+        /** 이 테이블의 숨김 컬럼 이름 */
+        public Set<String> hiddenColumns(String table) {
+            if (table == null || hidden.isEmpty()) return Set.of();
+            Set<String> out = new LinkedHashSet<>();
+            for (String h : hidden) {
+                if (h.startsWith(table + ".")) out.add(h.substring(table.length() + 1));
+            }
+            return out;
+        }
+
+        /** 컬럼 존재 검사 가능 여부 (DB에서 읽은 스냅샷만 신뢰) */
+        public boolean checksColumns() {
+            return source == Source.DATABASE;
+        }
+    }
+
+    /** 문서 끝 규칙 묶음. when 이 비어 있으면 항상, 아니면 문서에 그중 한 테이블이라도 있을 때만 */
+    private record Section(Set<String> when, List<String> lines) {}
+
+    public record Stats(long version, Source source, long loadedAt, int tables, int columns, int docChars,
+                        List<String> missingTables, long refreshes, long failures, String lastError) {}
+
+    private final JdbcTemplate jdbc;
+    private final List<String> whitelist;
+    private final Set<String> hidden;
+    private final boolean loadOnStartup;
+    private final Map<String, List<String>> notes;
+    private final List<Section> tail;
+
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private final Map<String, String> slices = new ConcurrentHashMap<>();   // "v|T1,T2" → 축약 문서
+    private volatile List<String> missing = List.of();
+    private volatile String lastError;
+
+    public SchemaCatalog(JdbcTemplate jdbc,
+                         @Value("${ai.schema.tables:}") String tables,
+                         @Value("${ai.schema.hidden-columns:" + DEFAULT_HIDDEN_COLUMNS + "}") String hiddenColumns,
+                         @Value("${ai.schema.load-on-startup:true}") boolean loadOnStartup) {
+        this.jdbc = jdbc;
+        List<String> wl = split(tables);
+        for (String t : wl) {
+            if (!IDENT.matcher(t).matches()) throw new IllegalArgumentException("ai.schema.tables 형식 오류: " + t);
+        }
+        this.whitelist = wl.isEmpty() ? DEFAULT_TABLES : wl;
+        this.hidden = Set.copyOf(split(hiddenColumns));
+        this.loadOnStartup = loadOnStartup;
+
+        Map<String, List<String>> n = new LinkedHashMap<>();
+        List<Section> t = new ArrayList<>();
+        parseNotes(load(NOTES), n, t);
+        this.notes = n;
+        this.tail = t;
+        this.snapshot = build(Source.FALLBACK, parseFallback(load(FALLBACK)));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (loadOnStartup) refresh();
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /** LLM 프롬프트용 스키마 문서 */
+    public String doc() {
+        return snapshot.doc();
+    }
+
+    /** 지정한 테이블만 담은 스키마 문서 (비었거나 아는 테이블이 없으면 전체 문서) */
+    public String doc(Collection<String> tables) {
+        Snapshot s = snapshot;
+        if (tables == null || tables.isEmpty()) return s.doc();
+        Set<String> only = new LinkedHashSet<>();
+        for (String t : tables) if (s.table(t) != null) only.add(t.toUpperCase(Locale.ROOT));
+        if (only.isEmpty()) return s.doc();
+        if (slices.size() > 512) slices.clear();
+        return slices.computeIfAbsent(s.version() + "|" + String.join(",", new TreeSet<>(only)),
+                k -> renderDoc(s.tables(), only));
+    }
+
+    /** 메타데이터 다시 읽기. 실패하면 기존 스냅샷 유지 */
+    public synchronized Stats refresh() {
+        refreshes.incrementAndGet();
+        try {
+            Map<String, Table> tables = readDatabase();
+            if (tables.isEmpty()) throw new IllegalStateException("USER_TAB_COLUMNS 에서 화이트리스트 테이블을 찾지 못했습니다.");
+            List<String> miss = new ArrayList<>();
+            for (String w : whitelist) if (!tables.containsKey(w)) miss.add(w);
+            if (!miss.isEmpty()) log.warn("[schema] DB에 없는 화이트리스트 테이블 (비허용 처리): {}", miss);
+            missing = List.copyOf(miss);
+            snapshot = build(Source.DATABASE, tables);
+            slices.clear();
+            lastError = null;
+            log.info("[schema] 카탈로그 v{} 로드: 테이블 {}개, 문서 {}자",
+                    snapshot.version(), snapshot.tables().size(), snapshot.doc().length());
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            lastError = e.getMessage();
+            log.warn("[schema] 메타데이터 조회 실패 → {} 스냅샷 유지: {}", snapshot.source(), e.getMessage());
+        }
+        return stats();
+    }
+
+    public Stats stats() {
+        Snapshot s = snapshot;
+        int cols = 0;
+        for (Table t : s.tables().values()) cols += t.columns().size();
+        return new Stats(s.version(), s.source(), s.loadedAt(), s.tables().size(), cols, s.doc().length(),
+                missing, refreshes.get(), failures.get(), lastError);
+    }
+
+    /** 스냅샷을 폴백 파일과 같은 표기로 (관리자 화면 → schema-fallback.txt 갱신용) */
+    public List<String> tableLines() {
+        List<String> out = new ArrayList<>();
+        for (Table t : snapshot.tables().values()) out.add(render(t, true));
+        return out;
+    }
+
+    /* ===== DB 메타데이터 ===== */
+
+    /** 컬럼 + 제약조건을 한 번에 (제약조건마다 행이 늘어날 수 있어 컬럼 단위로 합침) */
+    private Map<String, Table> readDatabase() {
+        String in = String.join(",", Collections.nCopies(whitelist.size(), "?"));
+        String sql = """
+            SELECT c.TABLE_NAME, c.COLUMN_NAME, c.DATA_TYPE, k.CONSTRAINT_TYPE, rc.TABLE_NAME, rc.COLUMN_NAME
+              FROM USER_TAB_COLUMNS c
+              LEFT JOIN USER_CONS_COLUMNS kc
+                ON kc.TABLE_NAME = c.TABLE_NAME AND kc.COLUMN_NAME = c.COLUMN_NAME
+              LEFT JOIN USER_CONSTRAINTS k
+                ON k.CONSTRAINT_NAME = kc.CONSTRAINT_NAME AND k.CONSTRAINT_TYPE IN ('P','U','R')
+              LEFT JOIN USER_CONS_COLUMNS rc
+                ON rc.CONSTRAINT_NAME = k.R_CONSTRAINT_NAME AND rc.POSITION = kc.POSITION
+             WHERE c.TABLE_NAME IN (%s)
+             ORDER BY c.TABLE_NAME, c.COLUMN_ID
+            """.formatted(in);
+
+        Map<String, Map<String, Column>> raw = new LinkedHashMap<>();
+        jdbc.query(sql, (RowCallbackHandler) rs -> {
+            String table = rs.getString(1);
+            String name = rs.getString(2);
+            String type = baseType(rs.getString(3));
+            String kind = rs.getString(4);
+            String ref = rs.getString(5) == null ? null : rs.getString(5) + "." + rs.getString(6);
+            Map<String, Column> cols = raw.computeIfAbsent(table, k -> new LinkedHashMap<>());
+            Column prev = cols.get(name);
+            boolean pk = "P".equals(kind) || (prev != null && prev.pk());
+            boolean uk = "U".equals(kind) || (prev != null && prev.unique());
+            String fk = "R".equals(kind) ? ref : (prev != null ? prev.ref() : null);
+            cols.put(name, new Column(name, type, pk, uk, fk));
+        }, whitelist.toArray());
+
+        // 화이트리스트 순서 유지 (문서 가독성)
+        Map<String, Table> out = new LinkedHashMap<>();
+        for (String w : whitelist) {
+            Map<String, Column> cols = raw.get(w);
+            if (cols != null) out.put(w, new Table(w, List.copyOf(cols.values())));
+        }
+        return out;
+    }
+
+    private static String baseType(String dataType) {
+        if (dataType == null) return "";
+        int p = dataType.indexOf('(');
+        return (p < 0 ? dataType : dataType.substring(0, p)).toUpperCase(Locale.ROOT);
+    }
+
+    /* ===== 스냅샷/문서 ===== */
+
+    private Snapshot build(Source source, Map<String, Table> tables) {
+        Map<String, Table> visible = new LinkedHashMap<>();
+        for (Table t : tables.values()) {
+            if (!whitelist.contains(t.name())) continue;
+            List<Column> cols = new ArrayList<>(t.columns().size());
+            for (Column c : t.columns()) {
+                if (!hidden.contains(t.name() + "." + c.name())) cols.add(c);
+            }
+            visible.put(t.name(), new Table(t.name(), List.copyOf(cols)));
+        }
+        Map<String, Table> fixed = Collections.unmodifiableMap(visible);
+        return new Snapshot(versions.incrementAndGet(), source, System.currentTimeMillis(), fixed,
+                renderDoc(fixed, fixed.keySet()), hidden);
+    }
+
+    private String renderDoc(Map<String, Table> tables, Set<String> only) {
+        StringBuilder sb = new StringBuilder(4096);
+        sb.append("-- Oracle / 화이트리스트 (대문자 컬럼, 날짜 컬럼은 타입 표기)\n");
+        List<String> joins = new ArrayList<>();
+        for (Table t : tables.values()) {
+            if (!only.contains(t.name())) continue;
+            sb.append("-- ").append(render(t, false)).append('\n');
+            for (String line : notes.getOrDefault(t.name(), List.of())) sb.append(line).append('\n');
+            for (Column c : t.columns()) {
+                if (c.ref() != null && only.contains(c.ref().substring(0, c.ref().indexOf('.')))) {
+                    joins.add(t.name() + "." + c.name() + " = " + c.ref());
+                }
+            }
+        }
+        if (!joins.isEmpty()) sb.append("\n-- 🔗 조인: ").append(String.join(", ", joins)).append('\n');
+        sb.append('\n');
+        for (Section sec : tail) {
+            if (!sec.when().isEmpty() && Collections.disjoint(sec.when(), only)) continue;
+            for (String line : sec.lines()) sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** TABLE(COL [TYPE] [PK] [UK] [FK->T.C], ...). 문서에는 날짜 타입만, 폴백 표기도 동일 */
+    private static String render(Table t, boolean allTypes) {
+        StringBuilder sb = new StringBuilder(t.name()).append('(');
+        for (int i = 0; i < t.columns().size(); i++) {
+            Column c = t.columns().get(i);
+            if (i > 0) sb.append(", ");
+            sb.append(c.name());
+            if (c.temporal() || (allTypes && !c.type().isEmpty())) sb.append(' ').append(c.type());
+            if (c.pk()) sb.append(" PK");
+            if (c.unique()) sb.append(" UK");
+            if (c.ref() != null) sb.append(" FK->").append(c.ref());
+        }
+        return sb.append(')').toString();
+    }
+
+    /* ===== 리소스 ===== */
+
+    static Map<String, Table> parseFallback(String text) {
+        Map<String, Table> out = new LinkedHashMap<>();
+        for (String line : text.split("\n")) {
+            String s = line.strip();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            Matcher m = TABLE_LINE.matcher(s);
+            if (!m.matches()) throw new IllegalArgumentException("스키마 폴백 형식 오류: " + s);
+            List<Column> cols = new ArrayList<>();
+            for (String def : m.group(2).split(",")) {
+                String[] parts = def.strip().split("\\s+");
+                String type = "";
+                boolean pk = false, uk = false;
+                String ref = null;
+                for (int i = 1; i < parts.length; i++) {
+                    String p = parts[i];
+                    if (p.equals("PK")) pk = true;
+                    else if (p.equals("UK")) uk = true;
+                    else if (p.startsWith("FK->")) ref = p.substring(4);
+                    else type = baseType(p);
+                }
+                cols.add(new Column(parts[0], type, pk, uk, ref));
+            }
+            out.put(m.group(1), new Table(m.group(1), List.copyOf(cols)));
+        }
+        return out;
+    }
+
+    private static void parseNotes(String text, Map<String, List<String>> perTable, List<Section> tail) {
+        List<String> cur = null;
+        for (String line : text.split("\n", -1)) {
+            String s = line.stripTrailing();
+            if (s.startsWith("#")) continue;
+            if (s.startsWith("[") && s.endsWith("]")) {
+                String key = s.substring(1, s.length() - 1).strip().toUpperCase(Locale.ROOT);
+                if (key.equals("*") || key.startsWith("*:")) {
+                    cur = new ArrayList<>();
+                    tail.add(new Section(Set.copyOf(split(key.length() > 1 ? key.substring(2) : "")), cur));
+                } else {
+                    cur = perTable.computeIfAbsent(key, k -> new ArrayList<>());
+                }
+                continue;
+            }
+            if (cur != null) cur.add(s);
+        }
+        if (!tail.isEmpty()) {
+            List<String> last = tail.get(tail.size() - 1).lines();
+            while (!last.isEmpty() && last.get(last.size() - 1).isEmpty()) last.remove(last.size() - 1);
+        }
+        for (List<String> l : perTable.values()) l.removeIf(String::isEmpty);
+    }
+
+    private static String load(String path) {
+        try {
+            return new String(new ClassPathResource(path).getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("스키마 리소스를 읽지 못했습니다: " + path, e);
+        }
+    }
+
+    private static List<String> split(String csv) {
+        if (csv == null || csv.isBlank()) return List.of();
+        return Arrays.stream(csv.split(","))
+                .map(s -> s.strip().toUpperCase(Locale.ROOT)).filter(s -> !s.isEmpty()).toList();
+    }
+
+    private static Snapshot tablesOnly(List<String> names, List<String> hidden) {
+        Map<String, Table> m = new LinkedHashMap<>();
+        for (String n : names) m.put(n, new Table(n, List.of()));
+        return new Snapshot(0, Source.STATIC, 0, Collections.unmodifiableMap(m), "", Set.copyOf(hidden));
+    }
+}
@@ -0,0 +1,273 @@
+package com.ex.final22c.sql;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 경량 Oracle SELECT 구문 트리 (SqlParser가 생성)
+ * - 노드: 토큰 / 괄호 그룹(내용이 SELECT면 서브쿼리 블록을 가짐)
+ * - 블록(Query): 절(SELECT, FROM, WHERE ...) 단위로 노드 리스트를 나눠 보관
+ * - 식(expression) 트리까지는 만들지 않음: 재작성은 절/그룹의 노드 리스트를 직접 고치고 toSql()로 한 번만 문자열화
+ */
+public final class SqlAst {
+    private SqlAst(){}
+
+    public enum Kind { WORD, QUOTED, STRING, NUMBER, BIND, DATE_TOKEN, POSITIONAL, OP, COMMA, DOT }
+
+    public sealed interface Node permits Token, Group {}
+
+    public record Token(Kind kind, String text) implements Node {
+        public boolean isWord(String w) { return kind == Kind.WORD && text.equalsIgnoreCase(w); }
+        public boolean isOp(String op)  { return kind == Kind.OP && text.equals(op); }
+        public String upper() { return text.toUpperCase(Locale.ROOT); }
+    }
+
+    /** 괄호 묶음. (SELECT ...) 이면 sub 블록만 쓰고 items는 비움 */
+    public static final class Group implements Node {
+        final List<Node> items;
+        Query sub;
+
+        Group(List<Node> items) { this.items = items; }
+
+        public List<Node> items() { return items; }
+        public Query sub() { return sub; }
+    }
+
+    /** 절 순서 = 출력 순서 (LLM이 WHERE를 ORDER BY 뒤에 붙여도 출력 시 제자리로) */
+    public enum Clause {
+        SELECT("SELECT"), FROM("FROM"), WHERE("WHERE"), GROUP_BY("GROUP BY"), HAVING("HAVING"),
+        ORDER_BY("ORDER BY"), OFFSET("OFFSET"), FETCH("FETCH"), LIMIT("LIMIT");
+
+        final String keyword;
+        Clause(String keyword) { this.keyword = keyword; }
+    }
+
+    /** FROM 항목: 실제 테이블이면 table, 인라인 뷰면 derived. alias는 비교용 대문자, aliasText는 작성된 그대로 */
+    public record TableRef(String table, String alias, String aliasText, Query derived, String schema) {}
+
+    public static final class Query {
+        final Map<Clause, List<Node>> clauses = new EnumMap<>(Clause.class);
+        Query parent;
+        String setOp;   // UNION [ALL] / INTERSECT / MINUS
+        Query next;
+        private List<TableRef> tables;   // FROM 해석 결과 (FROM 교체 시 무효화)
+
+        Query(Query parent) { this.parent = parent; }
+
+        public List<Node> clause(Clause c) { return clauses.get(c); }
+        public boolean has(Clause c) { return clauses.containsKey(c); }
+        public void put(Clause c, List<Node> nodes) {
+            if (nodes == null || nodes.isEmpty()) clauses.remove(c);
+            else clauses.put(c, nodes);
+            if (c == Clause.FROM) tables = null;
+        }
+        public Query next() { return next; }
+
+        /** FROM의 테이블/인라인 뷰 목록 (콤마 조인, ANSI JOIN 모두) */
+        public List<TableRef> tables() {
+            if (tables == null) tables = parseFrom(clauses.get(Clause.FROM));
+            return tables;
+        }
+
+        private static List<TableRef> parseFrom(List<Node> from) {
+            List<TableRef> out = new ArrayList<>();
+            if (from == null) return out;
+            boolean expect = true;
+            for (int i = 0; i < from.size(); i++) {
+                Node n = from.get(i);
+                if (!expect) {
+                    if (n instanceof Token t && (t.kind() == Kind.COMMA || t.isWord("JOIN"))) expect = true;
+                    continue;
+                }
+                String table = null, schema = null;
+                Query derived = null;
+                if (n instanceof Token t && (t.kind() == Kind.WORD || t.kind() == Kind.QUOTED)) {
+                    if (JOIN_WORDS.contains(t.upper())) continue;
+                    table = unquote(t);
+                    // SCHEMA.TABLE → TABLE (스키마는 따로 남겨 가드가 거절)
+                    while (i + 2 < from.size() && isDot(from.get(i + 1)) && from.get(i + 2) instanceof Token nx) {
+                        schema = schema == null ? table : schema + "." + table;
+                        table = unquote(nx);
+                        i += 2;
+                    }
+                } else if (n instanceof Group g) {
+                    derived = g.sub;
+                } else {
+                    continue;
+                }
+                String alias = null, aliasText = null;
+                int j = i + 1;
+                if (j < from.size() && from.get(j) instanceof Token a && a.isWord("AS")) j++;
+                if (j < from.size() && from.get(j) instanceof Token a
+                        && (a.kind() == Kind.WORD || a.kind() == Kind.QUOTED)
+                        && !NOT_ALIAS.contains(a.upper())) {
+                    alias = unquote(a);
+                    aliasText = a.text();
+                    i = j;
+                }
+                out.add(new TableRef(table, alias, aliasText, derived, schema));
+                expect = false;
+            }
+            return out;
+        }
+
+        /** 별칭/테이블명 → 테이블명 (현재 블록 → 바깥 블록 순) */
+        public String resolve(String qualifier) {
+            String q = qualifier.toUpperCase(Locale.ROOT);
+            for (Query b = this; b != null; b = b.parent) {
+                for (TableRef r : b.tables()) {
+                    if (q.equals(r.alias())) return r.table() != null ? r.table() : q;
+                    if (r.table() != null && q.equals(r.table())) return r.table();
+                }
+            }
+            return null;
+        }
+
+        /** 이 블록과 모든 하위 블록(서브쿼리, 인라인 뷰, 집합연산 뒤쪽)을 전위 순회 */
+        public void forEachBlock(Consumer<Query> fn) {
+            fn.accept(this);
+            for (List<Node> nodes : clauses.values()) forEachSub(nodes, fn);
+            if (next != null) next.forEachBlock(fn);
+        }
+
+        /** 이 블록 소속 노드 리스트(절 + 서브쿼리가 아닌 괄호 안쪽) 순회. 하위 블록은 제외 */
+        public void forEachList(Consumer<List<Node>> fn) {
+            for (List<Node> nodes : clauses.values()) forEachOwnList(nodes, fn);
+        }
+
+        public String toSql() {
+            StringBuilder sb = new StringBuilder(256);
+            print(sb);
+            return sb.toString();
+        }
+
+        void print(StringBuilder sb) {
+            boolean first = true;
+            for (Map.Entry<Clause, List<Node>> e : clauses.entrySet()) {
+                if (!first) sb.append(' ');
+                first = false;
+                sb.append(e.getKey().keyword).append(' ');
+                printNodes(e.getValue(), sb);
+            }
+            if (next != null) {
+                sb.append(' ').append(setOp).append(' ');
+                next.print(sb);
+            }
+        }
+    }
+
+    /* ---------- 공용 헬퍼 (SqlParser / SqlRewriter / SqlGuard) ---------- */
+
+    static final Set<String> JOIN_WORDS = Set.of("JOIN", "LEFT", "RIGHT", "INNER", "FULL", "OUTER", "CROSS", "NATURAL");
+    private static final Set<String> NOT_ALIAS = Set.of(
+        "ON", "USING", "JOIN", "LEFT", "RIGHT", "INNER", "FULL", "OUTER", "CROSS", "NATURAL",
+        "WHERE", "GROUP", "ORDER", "HAVING", "UNION", "MINUS", "INTERSECT", "FETCH", "OFFSET", "LIMIT"
+    );
+    // 이 단어 뒤의 괄호는 함수 호출이 아니므로 띄어 씀
+    private static final Set<String> SPACED_BEFORE_PAREN = Set.of(
+        "IN", "AND", "OR", "NOT", "ON", "FROM", "JOIN", "WHERE", "AS", "EXISTS", "SELECT", "BY",
+        "THEN", "ELSE", "WHEN", "USING", "ALL", "ANY", "SOME", "HAVING", "DISTINCT", "CASE", "OVER"
+    );
+
+    static Token word(String w) { return new Token(Kind.WORD, w); }
+    static Token op(String o)   { return new Token(Kind.OP, o); }
+
+    static boolean isDot(Node n) { return n instanceof Token t && t.kind() == Kind.DOT; }
+
+    static String unquote(Token t) {
+        String s = t.text();
+        if (t.kind() == Kind.QUOTED) s = s.substring(1, s.length() - 1);
+        return s.toUpperCase(Locale.ROOT);
+    }
+
+    /** nodes[i..i+2] 이 alias.COLUMN 이면 {ALIAS, COLUMN}, 아니면 null (pkg.fn(...) 호출은 제외) */
+    static String[] columnRef(List<Node> nodes, int i) {
+        if (i + 2 >= nodes.size()) return null;
+        if (i > 0 && isDot(nodes.get(i - 1))) return null;
+        if (!(nodes.get(i) instanceof Token q) || (q.kind() != Kind.WORD && q.kind() != Kind.QUOTED)) return null;
+        if (!isDot(nodes.get(i + 1))) return null;
+        if (!(nodes.get(i + 2) instanceof Token c) || (c.kind() != Kind.WORD && c.kind() != Kind.QUOTED)) return null;
+        if (i + 3 < nodes.size() && (nodes.get(i + 3) instanceof Group || isDot(nodes.get(i + 3)))) return null;
+        return new String[]{ unquote(q), unquote(c) };
+    }
+
+    /** 최상위 AND 기준 분할 (BETWEEN x AND y 의 AND는 제외) */
+    static List<List<Node>> splitAnd(List<Node> nodes) {
+        List<List<Node>> out = new ArrayList<>();
+        List<Node> cur = new ArrayList<>();
+        boolean inBetween = false;
+        for (Node n : nodes) {
+            if (n instanceof Token t && t.isWord("BETWEEN")) inBetween = true;
+            if (n instanceof Token t && t.isWord("AND")) {
+                if (inBetween) { inBetween = false; }
+                else { if (!cur.isEmpty()) out.add(cur); cur = new ArrayList<>(); continue; }
+            }
+            cur.add(n);
+        }
+        if (!cur.isEmpty()) out.add(cur);
+        return out;
+    }
+
+    static boolean hasTopLevelOr(List<Node> nodes) {
+        for (Node n : nodes) if (n instanceof Token t && t.isWord("OR")) return true;
+        return false;
+    }
+
+    /** 조건들을 AND로 결합. OR가 섞인 조건은 괄호로 감싸 우선순위 보존 */
+    static List<Node> joinAnd(List<List<Node>> conjuncts) {
+        List<Node> out = new ArrayList<>();
+        for (List<Node> c : conjuncts) {
+            if (c.isEmpty()) continue;
+            if (!out.isEmpty()) out.add(word("AND"));
+            if (hasTopLevelOr(c)) out.add(new Group(new ArrayList<>(c)));
+            else out.addAll(c);
+        }
+        return out;
+    }
+
+    static void printNodes(List<Node> nodes, StringBuilder sb) {
+        Node prev = null;
+        for (Node n : nodes) {
+            if (prev != null && needsSpace(prev, n)) sb.append(' ');
+            if (n instanceof Token t) {
+                sb.append(t.text());
+            } else {
+                Group g = (Group) n;
+                sb.append('(');
+                if (g.sub != null) g.sub.print(sb);
+                else printNodes(g.items, sb);
+                sb.append(')');
+            }
+            prev = n;
+        }
+    }
+
+    private static boolean needsSpace(Node prev, Node next) {
+        if (next instanceof Token t && (t.kind() == Kind.COMMA || t.kind() == Kind.DOT)) return false;
+        if (isDot(prev)) return false;
+        if (next instanceof Group && prev instanceof Token t && t.kind() == Kind.WORD
+                && !SPACED_BEFORE_PAREN.contains(t.upper())) return false;
+        return true;
+    }
+
+    private static void forEachSub(List<Node> nodes, Consumer<Query> fn) {
+        for (Node n : nodes) {
+            if (n instanceof Group g) {
+                if (g.sub != null) g.sub.forEachBlock(fn);
+                else forEachSub(g.items, fn);
+            }
+        }
+    }
+
+    private static void forEachOwnList(List<Node> nodes, Consumer<List<Node>> fn) {
+        fn.accept(nodes);
+        for (Node n : nodes) {
+            if (n instanceof Group g && g.sub == null) forEachOwnList(g.items, fn);
+        }
+    }
+}
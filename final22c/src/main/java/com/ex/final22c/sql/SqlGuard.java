@@ -1,134 +1,266 @@
 package com.ex.final22c.sql;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.ex.final22c.sql.SqlAst.Clause;
+import com.ex.final22c.sql.SqlAst.Group;
+import com.ex.final22c.sql.SqlAst.Kind;
+import com.ex.final22c.sql.SqlAst.Node;
+import com.ex.final22c.sql.SqlAst.Query;
+import com.ex.final22c.sql.SqlAst.TableRef;
+import com.ex.final22c.sql.SqlAst.Token;
+
+/**
+ * LLM SQL 가드 (SqlParser 트리 기반)
+ * - 문자열 리터럴/주석 안의 단어에 속지 않고, 서브쿼리·콤마 조인의 테이블도 모두 화이트리스트 검사
+ * - 테이블/컬럼 화이트리스트는 SchemaCatalog 스냅샷 (컬럼 존재 검사는 DB에서 읽은 스냅샷일 때만)
+ * - 같은 SQL 반복 검증은 SqlValidator(메모이즈)를 통해 호출
+ */
 public final class SqlGuard {
     private SqlGuard(){}
 
-    private static final Set<String> ALLOWED_TABLES = Set.of(
-        "USERS","ORDERS","ORDERDETAIL","PAYMENT","PRODUCT",
-        "BRAND","GRADE","MAINNOTE","VOLUME","REFUND","REFUNDDETAIL",
-        "CART","CARTDETAIL","REVIEW","PURCHASE","PURCHASEDETAIL",
-        "DUAL"
+    private static final Set<String> BANNED_WORDS = Set.of(
+        "UPDATE","DELETE","INSERT","MERGE","DROP","ALTER","CREATE","TRUNCATE"
     );
 
-    private static final Pattern FROM_JOIN_TBL =
-        Pattern.compile("(?i)\\b(?:FROM|JOIN)\\s+([\\w\\.\\\"]+)");
-
-    private static final Pattern POS_PARAM = Pattern.compile("\\?");
-
-    private static final Pattern FENCE_SQL_START = Pattern.compile("(?is)^```sql\\s*");
-    private static final Pattern FENCE_END       = Pattern.compile("(?s)```\\s*$");
-    private static final Pattern BLOCK_COMMENT   = Pattern.compile("(?s)/\\*.*?\\*/");
-    private static final Pattern LINE_COMMENT    = Pattern.compile("(?m)^\\s*--.*?$");
-
-    private static final Pattern WHERE_BLOCK = Pattern.compile("(?is)\\bWHERE\\b([\\s\\S]*?)(?:\\bGROUP\\s+BY\\b|\\bORDER\\s+BY\\b|$)");
-    private static final Pattern TRUNC_ANY   = Pattern.compile("(?i)\\bTRUNC\\s*\\(");
-
-    private static final Pattern ALLOWED_DATE_COL =
-        Pattern.compile("\\b[a-zA-Z_][\\w]*\\.(REGDATE|ORDERDATE|CREATEDATE|UPDATEDATE|APPROVEDAT|REG)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Set<String> ALLOWED_DATE_COLS = Set.of(
+        "REGDATE","ORDERDATE","CREATEDATE","UPDATEDATE","APPROVEDAT","REG"
+    );
 
-    private static final Pattern OUTER_ALIAS_REF =
-        Pattern.compile("\\)\\s*WHERE\\s+[a-zA-Z_][\\w]*\\.", Pattern.CASE_INSENSITIVE);
+    // 스키마 목록에 없어도 alias.X 로 쓸 수 있는 의사 컬럼
+    private static final Set<String> PSEUDO_COLS = Set.of("ROWID","ROWNUM","ORA_ROWSCN");
 
-    private static final Pattern DATE_TOKEN_LEFT = Pattern.compile("\\{\\{\\s*date\\s*:\\s*[a-zA-Z_][\\w]*\\s*}}");
+    private static final Pattern WORD_TOKEN = Pattern.compile("[A-Za-z_][\\w$#]*");
 
     public static String ensureSelect(String sql){
-        if (sql == null || sql.isBlank())
-            throw new IllegalArgumentException("SQL이 비어 있습니다.");
+        return check(SqlParser.parse(sql)).toSql();
+    }
 
-        String s = stripFencesAndComments(sql).trim();
-        s = stripTrailingSemicolon(s);
-        String u = s.toUpperCase();
+    public static String ensureLimit(String sql, int maxRows){
+        return SqlRewriter.ensureRowLimit(SqlParser.parse(sql), maxRows).toSql();
+    }
 
-        if (s.indexOf(';') >= 0)
-            throw new IllegalArgumentException("세미콜론(;)이 포함된 다중 스테이트먼트는 허용되지 않습니다.");
+    /** 기본 화이트리스트(테이블만)로 트리 검증 */
+    public static Query check(Query root){
+        return check(root, SchemaCatalog.STATIC);
+    }
 
-        if (!u.startsWith("SELECT"))
-            throw new IllegalArgumentException("SELECT만 허용됩니다.");
+    /** 트리 검증. 통과하면 그대로 반환, 아니면 IllegalArgumentException */
+    public static Query check(Query root, SchemaCatalog.Snapshot schema){
+        root.forEachBlock(b -> {
+            Set<String> hiddenInScope = hiddenInScope(b, schema);
+            b.forEachList(nodes -> {
+                for (int i = 0; i < nodes.size(); i++) {
+                    if (!(nodes.get(i) instanceof Token t)) continue;
+                    if (t.kind() == Kind.WORD && BANNED_WORDS.contains(t.upper()))
+                        throw new IllegalArgumentException("금지된 문구: " + t.upper());
+                    if (t.kind() == Kind.POSITIONAL)
+                        throw new IllegalArgumentException("위치 파라미터(?)는 허용되지 않습니다. 이름 있는 바인딩을 사용하세요.");
+                    if (t.kind() == Kind.DATE_TOKEN)
+                        throw new IllegalArgumentException("치환되지 않은 날짜 토큰({{date:...}})이 남아 있습니다.");
 
-        String[] banned = {" UPDATE ", " DELETE ", " INSERT ", " MERGE ", " DROP ", " ALTER ", " CREATE ", " TRUNCATE "};
-        for (String b : banned) if (u.contains(b)) throw new IllegalArgumentException("금지된 문구: " + b.trim());
+                    String[] ref = SqlAst.columnRef(nodes, i);
+                    if (ref != null && isDateLike(ref[1]) && !ALLOWED_DATE_COLS.contains(ref[1]))
+                        throw new IllegalArgumentException("허용되지 않은 날짜 컬럼 표현: " + ref[0] + "." + ref[1]);
+                    if (ref != null && schema.hides(b.resolve(ref[0]), ref[1]))
+                        throw new IllegalArgumentException("조회할 수 없는 컬럼: " + ref[0] + "." + ref[1]);
+                    if (ref != null && schema.checksColumns() && unknownColumn(schema, b.resolve(ref[0]), ref[1]))
+                        throw new IllegalArgumentException("존재하지 않거나 허용되지 않은 컬럼: " + ref[0] + "." + ref[1]);
+                    if (ref == null && isBareIdentifier(nodes, i) && hiddenInScope.contains(SqlAst.unquote(t)))
+                        throw new IllegalArgumentException("조회할 수 없는 컬럼: " + SqlAst.unquote(t));
+                }
+            });
 
-        if (POS_PARAM.matcher(s).find())
-            throw new IllegalArgumentException("위치 파라미터(?)는 허용되지 않습니다. 이름 있는 바인딩을 사용하세요.");
+            List<Node> select = b.clause(Clause.SELECT);
+            if (select != null && starCoversHidden(b, select, schema))
+                throw new IllegalArgumentException("숨김 컬럼이 있는 테이블은 * 로 조회할 수 없습니다. 필요한 컬럼을 나열하세요.");
 
-        Matcher m = FROM_JOIN_TBL.matcher(s);
-        while (m.find()) {
-            String raw = m.group(1);
-            String norm = normalizeTableName(raw);
-            if (!ALLOWED_TABLES.contains(norm)) {
-                throw new IllegalArgumentException("허용되지 않은 테이블 접근: " + norm);
+            for (TableRef r : b.tables()) {
+                if (r.schema() != null)
+                    throw new IllegalArgumentException("스키마를 지정한 테이블 접근은 허용되지 않습니다: " + r.schema() + "." + r.table());
+                if (r.table() != null && !schema.allowsTable(r.table()))
+                    throw new IllegalArgumentException("허용되지 않은 테이블 접근: " + r.table());
             }
-        }
 
-        Matcher wm = WHERE_BLOCK.matcher(s);
-        while (wm.find()) {
-            String whereChunk = wm.group(1);
-            if (TRUNC_ANY.matcher(whereChunk).find()) {
+            List<Node> where = b.clause(Clause.WHERE);
+            if (where == null) return;
+            if (containsWord(where, "TRUNC"))
                 throw new IllegalArgumentException("WHERE 절에서 TRUNC 사용은 금지입니다. 날짜는 >= :start AND < :end 형태로 비교하세요.");
-            }
+            if (referencesUnknownAlias(b, where))
+                throw new IllegalArgumentException("서브쿼리 바깥 WHERE에서 테이블 별칭을 참조하지 마세요.");
+        });
+        return root;
+    }
+
+    /**
+     * SQL이 읽는 화이트리스트 테이블 목록(DUAL 제외).
+     * 파싱되면 모든 블록의 FROM 항목 기준, 파싱이 안 되는 SQL은 단어 토큰 전체를 화이트리스트와 대조.
+     * (결과 캐시 무효화용이라 누락보다 과포함이 안전)
+     */
+    public static Set<String> referencedTables(String sql){
+        Set<String> out = new LinkedHashSet<>();
+        if (sql == null || sql.isBlank()) return out;
+        try {
+            SqlParser.parse(sql).forEachBlock(b -> {
+                for (TableRef r : b.tables()) {
+                    if (r.table() != null && SchemaCatalog.STATIC.allowsTable(r.table()) && !"DUAL".equals(r.table())) out.add(r.table());
+                }
+            });
+            return out;
+        } catch (IllegalArgumentException e) {
+            out.clear();
+        }
+        Matcher w = WORD_TOKEN.matcher(sql);
+        while (w.find()) {
+            String tok = w.group().toUpperCase(Locale.ROOT);
+            if (SchemaCatalog.STATIC.allowsTable(tok) && !"DUAL".equals(tok)) out.add(tok);
+        }
+        return out;
+    }
+
+    /**
+     * 날짜 컬럼이 쓰인 조건(WHERE / HAVING / JOIN ON)이 모두 :start/:end 와 직접 비교되는지
+     * (o.REGDATE >= :start, :end > o.REGDATE, o.REGDATE BETWEEN :start AND :end)
+     * 함수로 감싼 날짜 컬럼, 다른 값과의 비교, 파싱 안 되는 SQL은 false — 플랜 캐시 재사용 판단용
+     */
+    public static boolean datePredicatesBound(String sql){
+        Query root;
+        try {
+            root = SqlParser.parse(sql);
+        } catch (IllegalArgumentException e) {
+            return false;
         }
+        boolean[] bound = { true };
+        root.forEachBlock(b -> {
+            for (Clause c : PREDICATE_CLAUSES) {
+                List<Node> nodes = b.clause(c);
+                if (nodes != null && !datesBound(nodes)) bound[0] = false;
+            }
+        });
+        return bound[0];
+    }
 
-        if (DATE_TOKEN_LEFT.matcher(s).find())
-            throw new IllegalArgumentException("치환되지 않은 날짜 토큰({{date:...}})이 남아 있습니다.");
+    /* helpers */
 
-        if (OUTER_ALIAS_REF.matcher(s).find())
-            throw new IllegalArgumentException("서브쿼리 바깥 WHERE에서 테이블 별칭을 참조하지 마세요.");
+    private static final List<Clause> PREDICATE_CLAUSES = List.of(Clause.FROM, Clause.WHERE, Clause.HAVING);
+    private static final Set<String> COMPARE_OPS = Set.of(">=", ">", "<=", "<", "=");
 
-        Matcher dm = Pattern.compile("\\b[a-zA-Z_][\\w]*\\.[A-Z_][A-Z0-9_]*\\b").matcher(u);
-        while (dm.find()) {
-            String token = dm.group();
-            if (token.matches(".*(DATE|REG|APPROVEDAT)\\b") && !ALLOWED_DATE_COL.matcher(token).find()) {
-                throw new IllegalArgumentException("허용되지 않은 날짜 컬럼 표현: " + token);
+    private static boolean datesBound(List<Node> nodes){
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            if (n instanceof Group g) {
+                if (g.sub() == null && !datesBound(g.items())) return false;
+                continue;
             }
+            int end;
+            String[] ref = SqlAst.columnRef(nodes, i);
+            if (ref != null) {
+                if (!isDateLike(ref[1])) continue;
+                end = i + 2;
+            } else if (n instanceof Token t && t.kind() == Kind.WORD && isDateLike(t.upper())
+                    && !(i > 0 && SqlAst.isDot(nodes.get(i - 1)))
+                    && !(i + 1 < nodes.size() && (nodes.get(i + 1) instanceof Group || SqlAst.isDot(nodes.get(i + 1))))) {
+                end = i;
+            } else {
+                continue;
+            }
+            if (!comparedToPeriodBind(nodes, i, end)) return false;
+            i = end;
         }
-        return s;
+        return true;
     }
 
-    public static String ensureLimit(String sql, int maxRows){
-        String s = stripTrailingSemicolon(stripFencesAndComments(sql).trim());
-        String u = s.toUpperCase();
+    private static boolean comparedToPeriodBind(List<Node> nodes, int start, int end){
+        // col op :start|:end
+        if (isCompareOp(nodes, end + 1) && isPeriodBind(nodes, end + 2)) return true;
+        // :start|:end op col
+        if (isCompareOp(nodes, start - 1) && isPeriodBind(nodes, start - 2)) return true;
+        // col BETWEEN :start AND :end
+        return end + 4 < nodes.size() && nodes.get(end + 1) instanceof Token b && b.isWord("BETWEEN")
+                && isPeriodBind(nodes, end + 2)
+                && nodes.get(end + 3) instanceof Token a && a.isWord("AND")
+                && isPeriodBind(nodes, end + 4);
+    }
 
-        if (u.contains(" FETCH FIRST ") || u.contains(" ROWNUM ") || u.contains(" OFFSET "))
-            return s;
+    private static boolean isCompareOp(List<Node> nodes, int i){
+        return i >= 0 && i < nodes.size() && nodes.get(i) instanceof Token t
+                && t.kind() == Kind.OP && COMPARE_OPS.contains(t.text());
+    }
 
-        s = s.replaceAll("(?i)LIMIT\\s+(\\d+)\\s*,\\s*(\\d+)", "OFFSET $1 ROWS FETCH NEXT $2 ROWS ONLY");
-        s = s.replaceAll("(?i)LIMIT\\s+(\\d+)\\s+OFFSET\\s+(\\d+)", "OFFSET $2 ROWS FETCH NEXT $1 ROWS ONLY");
-        s = s.replaceAll("(?i)LIMIT\\s+(\\d+)", "FETCH FIRST $1 ROWS ONLY");
+    private static boolean isPeriodBind(List<Node> nodes, int i){
+        return i >= 0 && i < nodes.size() && nodes.get(i) instanceof Token t && t.kind() == Kind.BIND
+                && (t.text().equalsIgnoreCase(":start") || t.text().equalsIgnoreCase(":end"));
+    }
 
-        String u2 = s.toUpperCase();
-        if (u2.contains(" FETCH FIRST ") || u2.contains(" OFFSET "))
-            return s;
+    private static boolean isDateLike(String col){
+        return col.endsWith("DATE") || col.endsWith("REG") || col.endsWith("APPROVEDAT");
+    }
 
-        return "SELECT * FROM (" + s + ") WHERE ROWNUM <= " + maxRows;
+    // 현재/바깥 블록 FROM 테이블들의 숨김 컬럼 이름 (한정자 없이 쓴 컬럼은 어느 테이블 것인지 모르니 모두 대상)
+    private static Set<String> hiddenInScope(Query b, SchemaCatalog.Snapshot schema){
+        if (schema.hidden().isEmpty()) return Set.of();
+        Set<String> out = new LinkedHashSet<>();
+        for (Query q = b; q != null; q = q.parent) {
+            for (TableRef r : q.tables()) out.addAll(schema.hiddenColumns(r.table()));
+        }
+        return out;
     }
 
-    /* helpers */
+    // 한정자 없는 식별자 (alias.X 의 X, X.Y 의 X, 함수 이름 제외)
+    private static boolean isBareIdentifier(List<Node> nodes, int i){
+        if (!(nodes.get(i) instanceof Token t) || (t.kind() != Kind.WORD && t.kind() != Kind.QUOTED)) return false;
+        if (i > 0 && SqlAst.isDot(nodes.get(i - 1))) return false;
+        return !(i + 1 < nodes.size() && (nodes.get(i + 1) instanceof Group || SqlAst.isDot(nodes.get(i + 1))));
+    }
 
-    private static String stripFencesAndComments(String s){
-        String t = s.trim();
-        t = FENCE_SQL_START.matcher(t).replaceFirst("");
-        t = FENCE_END.matcher(t).replaceFirst("");
-        t = BLOCK_COMMENT.matcher(t).replaceAll(" ");
-        t = LINE_COMMENT.matcher(t).replaceAll("");
-        return t;
-    }
-    private static String stripTrailingSemicolon(String s){
-        String t = s.trim();
-        while (t.endsWith(";")) t = t.substring(0, t.length()-1).trim();
-        return t;
-    }
-    private static String normalizeTableName(String token) {
-        String x = token.replace("\"", "");
-        int dot = x.lastIndexOf('.');
-        if (dot >= 0) x = x.substring(dot + 1);
-        int sp = x.indexOf(' ');
-        if (sp >= 0) x = x.substring(0, sp);
-        int par = x.indexOf('(');
-        if (par >= 0) x = x.substring(0, par);
-        return x.toUpperCase();
+    // SELECT 목록의 * / alias.* 가 숨김 컬럼 있는 테이블을 펼치는지 (COUNT(*), a * b 는 제외)
+    private static boolean starCoversHidden(Query b, List<Node> select, SchemaCatalog.Snapshot schema){
+        if (schema.hidden().isEmpty()) return false;
+        for (int i = 0; i < select.size(); i++) {
+            if (!(select.get(i) instanceof Token t) || t.kind() != Kind.OP || !"*".equals(t.text())) continue;
+            if (i >= 2 && SqlAst.isDot(select.get(i - 1)) && select.get(i - 2) instanceof Token q) {
+                if (!schema.hiddenColumns(b.resolve(SqlAst.unquote(q))).isEmpty()) return true;
+                continue;
+            }
+            boolean item = i == 0 || select.get(i - 1) instanceof Token p
+                    && (p.kind() == Kind.COMMA || p.isWord("DISTINCT") || p.isWord("UNIQUE") || p.isWord("ALL"));
+            if (!item) continue;
+            for (TableRef r : b.tables()) {
+                if (!schema.hiddenColumns(r.table()).isEmpty()) return true;
+            }
+        }
+        return false;
+    }
+
+    // 실제 테이블로 풀리는 별칭인데 스냅샷에 그 컬럼이 없음 (인라인 뷰 별칭/스키마.함수는 건너뜀)
+    private static boolean unknownColumn(SchemaCatalog.Snapshot schema, String table, String col){
+        SchemaCatalog.Table t = schema.table(table);
+        return t != null && t.column(col) == null && !PSEUDO_COLS.contains(col);
+    }
+
+    private static boolean containsWord(List<Node> nodes, String word){
+        for (Node n : nodes) {
+            if (n instanceof Token t && t.isWord(word)) return true;
+            if (n instanceof Group g && g.sub() == null && containsWord(g.items(), word)) return true;
+        }
+        return false;
+    }
+
+    // WHERE의 alias.col 중 현재/바깥 블록 어디에도 없는 별칭 (인라인 뷰 바깥에서 안쪽 별칭을 쓴 경우)
+    private static boolean referencesUnknownAlias(Query b, List<Node> nodes){
+        for (int i = 0; i < nodes.size(); i++) {
+            if (nodes.get(i) instanceof Group g) {
+                if (g.sub() == null && referencesUnknownAlias(b, g.items())) return true;
+                continue;
+            }
+            String[] ref = SqlAst.columnRef(nodes, i);
+            if (ref != null && b.resolve(ref[0]) == null) return true;
+        }
+        return false;
     }
 }
@@ -0,0 +1,258 @@
+package com.ex.final22c.sql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.ex.final22c.sql.SqlAst.Clause;
+import com.ex.final22c.sql.SqlAst.Group;
+import com.ex.final22c.sql.SqlAst.Kind;
+import com.ex.final22c.sql.SqlAst.Node;
+import com.ex.final22c.sql.SqlAst.Query;
+import com.ex.final22c.sql.SqlAst.Token;
+
+/**
+ * LLM SQL → SqlAst 파서 (1패스 토큰화 + 괄호 트리 + 절 분할)
+ * - 주석/코드펜스/백틱은 토큰화 단계에서 버림, 문자열 리터럴 안의 단어는 키워드로 보지 않음
+ * - SELECT 외 문장, 다중 스테이트먼트, 괄호 불일치는 IllegalArgumentException
+ */
+public final class SqlParser {
+    private SqlParser(){}
+
+    private static final Pattern FENCE_START = Pattern.compile("(?is)^```\\s*sql\\s*");
+    private static final Pattern FENCE_END   = Pattern.compile("(?s)```\\s*$");
+
+    private static final Token LPAREN = new Token(Kind.OP, "(");
+    private static final Token RPAREN = new Token(Kind.OP, ")");
+    private static final Token SEMI   = new Token(Kind.OP, ";");
+
+    public static Query parse(String sql) {
+        if (sql == null || sql.isBlank())
+            throw new IllegalArgumentException("SQL이 비어 있습니다.");
+        String s = sql.trim();
+        s = FENCE_START.matcher(s).replaceFirst("");
+        s = FENCE_END.matcher(s).replaceFirst("");
+
+        List<Token> tokens = lex(s);
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1) == SEMI) tokens.remove(tokens.size() - 1);
+        if (tokens.contains(SEMI))
+            throw new IllegalArgumentException("세미콜론(;)이 포함된 다중 스테이트먼트는 허용되지 않습니다.");
+
+        return query(group(tokens), null);
+    }
+
+    /** 재작성용 조각 파싱: "o.REGDATE >= :start" → 노드 리스트 */
+    static List<Node> fragment(String sql) {
+        return group(lex(sql));
+    }
+
+    /* ---------- 1) 토큰화 ---------- */
+
+    static List<Token> lex(String s) {
+        List<Token> out = new ArrayList<>(s.length() / 4);
+        int n = s.length();
+        int i = 0;
+        while (i < n) {
+            char c = s.charAt(i);
+            if (Character.isWhitespace(c) || c == '`') { i++; continue; }
+
+            if (c == '-' && i + 1 < n && s.charAt(i + 1) == '-') {          // -- 주석
+                while (i < n && s.charAt(i) != '\n') i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && s.charAt(i + 1) == '*') {          // /* */ 주석
+                int end = s.indexOf("*/", i + 2);
+                i = (end < 0) ? n : end + 2;
+                continue;
+            }
+            if (c == '\'') {                                                // 문자열 ('' 이스케이프)
+                int j = i + 1;
+                while (true) {
+                    if (j >= n) throw new IllegalArgumentException("닫히지 않은 문자열 리터럴이 있습니다.");
+                    if (s.charAt(j) == '\'') {
+                        if (j + 1 < n && s.charAt(j + 1) == '\'') { j += 2; continue; }
+                        break;
+                    }
+                    j++;
+                }
+                out.add(new Token(Kind.STRING, s.substring(i, j + 1)));
+                i = j + 1;
+                continue;
+            }
+            if (c == '"') {                                                 // 따옴표 식별자
+                int end = s.indexOf('"', i + 1);
+                if (end < 0) throw new IllegalArgumentException("닫히지 않은 따옴표 식별자가 있습니다.");
+                out.add(new Token(Kind.QUOTED, s.substring(i, end + 1)));
+                i = end + 1;
+                continue;
+            }
+            if (c == '{' && s.startsWith("{{", i)) {                        // {{date:o}} 토큰
+                int end = s.indexOf("}}", i + 2);
+                if (end < 0) throw new IllegalArgumentException("닫히지 않은 토큰({{...}})이 있습니다.");
+                out.add(new Token(Kind.DATE_TOKEN, s.substring(i, end + 2)));
+                i = end + 2;
+                continue;
+            }
+            if (c == ':' && i + 1 < n && isIdentPart(s.charAt(i + 1))) {   // :start, :1
+                int j = i + 1;
+                while (j < n && isIdentPart(s.charAt(j))) j++;
+                out.add(new Token(Kind.BIND, s.substring(i, j)));
+                i = j;
+                continue;
+            }
+            if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(s.charAt(i + 1)))) {
+                int j = i;
+                while (j < n && (Character.isDigit(s.charAt(j)) || s.charAt(j) == '.')) j++;
+                if (j < n && (s.charAt(j) == 'e' || s.charAt(j) == 'E')
+                        && j + 1 < n && (Character.isDigit(s.charAt(j + 1)) || s.charAt(j + 1) == '-' || s.charAt(j + 1) == '+')) {
+                    j += 2;
+                    while (j < n && Character.isDigit(s.charAt(j))) j++;
+                }
+                out.add(new Token(Kind.NUMBER, s.substring(i, j)));
+                i = j;
+                continue;
+            }
+            if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < n && isIdentPart(s.charAt(j))) j++;
+                out.add(new Token(Kind.WORD, s.substring(i, j)));
+                i = j;
+                continue;
+            }
+            switch (c) {
+                case '(' -> out.add(LPAREN);
+                case ')' -> out.add(RPAREN);
+                case ';' -> out.add(SEMI);
+                case ',' -> out.add(new Token(Kind.COMMA, ","));
+                case '.' -> out.add(new Token(Kind.DOT, "."));
+                case '?' -> out.add(new Token(Kind.POSITIONAL, "?"));
+                default -> {
+                    String two = (i + 1 < n) ? s.substring(i, i + 2) : "";
+                    if (two.equals(">=") || two.equals("<=") || two.equals("<>") || two.equals("!=")
+                            || two.equals("||") || two.equals("=>") || two.equals("^=")) {
+                        out.add(new Token(Kind.OP, two));
+                        i += 2;
+                        continue;
+                    }
+                    out.add(new Token(Kind.OP, String.valueOf(c)));
+                }
+            }
+            i++;
+        }
+        return out;
+    }
+
+    private static boolean isIdentPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#';
+    }
+
+    /* ---------- 2) 괄호 트리 ---------- */
+
+    private static List<Node> group(List<Token> tokens) {
+        Deque<List<Node>> stack = new ArrayDeque<>();
+        List<Node> cur = new ArrayList<>();
+        for (Token t : tokens) {
+            if (t == LPAREN) {
+                stack.push(cur);
+                cur = new ArrayList<>();
+            } else if (t == RPAREN) {
+                if (stack.isEmpty()) throw new IllegalArgumentException("괄호 짝이 맞지 않습니다.");
+                Group g = new Group(cur);
+                cur = stack.pop();
+                cur.add(g);
+            } else {
+                cur.add(t);
+            }
+        }
+        if (!stack.isEmpty()) throw new IllegalArgumentException("괄호 짝이 맞지 않습니다.");
+        return cur;
+    }
+
+    /* ---------- 3) 절 분할 + 서브쿼리 블록 ---------- */
+
+    private static Query query(List<Node> nodes, Query parent) {
+        if (nodes.isEmpty() || !(nodes.get(0) instanceof Token first) || !first.isWord("SELECT"))
+            throw new IllegalArgumentException("SELECT만 허용됩니다.");
+
+        Query q = new Query(parent);
+        // 같은 절이 두 번 나오면(주로 WHERE) 조각별로 모아 뒤에서 AND 결합
+        Map<Clause, List<List<Node>>> parts = new EnumMap<>(Clause.class);
+        List<Node> cur = null;
+        int i = 0;
+        while (i < nodes.size()) {
+            Node n = nodes.get(i);
+            if (n instanceof Token t && t.kind() == Kind.WORD) {
+                String u = t.upper();
+                if (u.equals("UNION") || u.equals("INTERSECT") || u.equals("MINUS") || u.equals("EXCEPT")) {
+                    int skip = 1;
+                    if (i + 1 < nodes.size() && nodes.get(i + 1) instanceof Token a && a.isWord("ALL")) {
+                        u += " ALL";
+                        skip = 2;
+                    }
+                    q.setOp = u;
+                    q.next = query(new ArrayList<>(nodes.subList(i + skip, nodes.size())), parent);
+                    break;
+                }
+                Clause c = clauseAt(nodes, i, cur == null);
+                if (c != null) {
+                    cur = new ArrayList<>();
+                    parts.computeIfAbsent(c, k -> new ArrayList<>()).add(cur);
+                    i += c.keyword.indexOf(' ') > 0 ? 2 : 1;
+                    continue;
+                }
+            }
+            cur.add(n);
+            i++;
+        }
+
+        for (Map.Entry<Clause, List<List<Node>>> e : parts.entrySet()) {
+            List<List<Node>> segs = e.getValue();
+            if (segs.size() == 1) {
+                q.clauses.put(e.getKey(), segs.get(0));
+            } else if (e.getKey() == Clause.WHERE) {
+                q.clauses.put(Clause.WHERE, SqlAst.joinAnd(segs));
+            } else {
+                throw new IllegalArgumentException("같은 절이 중복되었습니다: " + e.getKey().keyword);
+            }
+        }
+        for (List<Node> list : q.clauses.values()) attachSubqueries(list, q);
+        return q;
+    }
+
+    private static Clause clauseAt(List<Node> nodes, int i, boolean atStart) {
+        Token t = (Token) nodes.get(i);
+        boolean nextIsBy = i + 1 < nodes.size() && nodes.get(i + 1) instanceof Token b && b.isWord("BY");
+        return switch (t.upper()) {
+            case "SELECT" -> atStart ? Clause.SELECT : null;
+            case "FROM"   -> Clause.FROM;
+            case "WHERE"  -> Clause.WHERE;
+            case "GROUP"  -> nextIsBy ? Clause.GROUP_BY : null;
+            case "HAVING" -> Clause.HAVING;
+            case "ORDER"  -> nextIsBy ? Clause.ORDER_BY : null;
+            case "OFFSET" -> Clause.OFFSET;
+            case "FETCH"  -> Clause.FETCH;
+            case "LIMIT"  -> Clause.LIMIT;
+            default -> null;
+        };
+    }
+
+    private static void attachSubqueries(List<Node> nodes, Query owner) {
+        for (Node n : nodes) {
+            if (!(n instanceof Group g)) continue;
+            if (!g.items.isEmpty() && g.items.get(0) instanceof Token t) {
+                if (t.isWord("SELECT")) {
+                    g.sub = query(new ArrayList<>(g.items), owner);
+                    g.items.clear();
+                    continue;
+                }
+                if (t.isWord("WITH"))
+                    throw new IllegalArgumentException("SELECT만 허용됩니다.");
+            }
+            attachSubqueries(g.items, owner);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.ex.final22c.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ex.final22c.sql.SqlAst.Clause;
+import com.ex.final22c.sql.SqlAst.Group;
+import com.ex.final22c.sql.SqlAst.Kind;
+import com.ex.final22c.sql.SqlAst.Node;
+import com.ex.final22c.sql.SqlAst.Query;
+import com.ex.final22c.sql.SqlAst.TableRef;
+import com.ex.final22c.sql.SqlAst.Token;
+
+/**
+ * SqlAst 재작성 규칙 (예전 문자열 정규식 교정들의 트리 버전)
+ * - 별칭은 블록 스코프로 해석: o/od/p/b 같은 관습 별칭이 아니어도 실제 테이블 기준으로 교정
+ * - 모두 트리를 제자리에서 수정하고, 문자열화는 호출 측에서 toSql() 1회
+ */
+public final class SqlRewriter {
+    private SqlRewriter(){}
+
+    private static final String STATUS_FILTER = "STATUS IN ('PAID','CONFIRMED','REFUNDED')";
+
+    // 테이블별 잘못된 컬럼명 → 실제 컬럼명
+    private static final Map<String, Map<String, String>> COLUMN_FIXES = Map.of(
+        "ORDERDETAIL", Map.of("PRODUCTID", "ID"),
+        "PRODUCT",     Map.of("BRANDID", "BRAND_BRANDNO"),
+        "BRAND",       Map.of("ID", "BRANDNO")
+    );
+    // ORDERS ↔ ORDERDETAIL 조인키로 잘못 쓰이는 컬럼
+    private static final Set<String> WRONG_ORDER_KEYS = Set.of("ID", "ORDERNO");
+
+    /**
+     * LLM 생성 SQL 기본 교정 묶음 (순서 고정)
+     * 바인드 이름화 → ORDERS 기간/상태 → 나머지 WHERE TRUNC → 조인 컬럼 → (선택) 리뷰 집계 컬럼 GROUP BY 제거
+     */
+    public static Query rewriteGenerated(Query root, boolean stripReviewGroupBy) {
+        nameBinds(root);
+        ensureOrdersDateRange(root, true);
+        fixWhereTrunc(root);
+        fixJoinColumns(root);
+        if (stripReviewGroupBy) dropGroupByColumns(root, "rv", "TOTAL_REVIEWS", "AVG_RATING");
+        return root;
+    }
+
+    /** 위치 파라미터 ?를 연산자 기준 이름 바인드로, SYSDATE는 :currentDate로 */
+    public static void nameBinds(Query root) {
+        root.forEachBlock(b -> b.forEachList(nodes -> {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!(nodes.get(i) instanceof Token t)) continue;
+                if (t.isWord("SYSDATE")) {
+                    nodes.set(i, new Token(Kind.BIND, ":currentDate"));
+                } else if (t.kind() == Kind.POSITIONAL && i > 0 && nodes.get(i - 1) instanceof Token prev) {
+                    String name = prev.isOp(">=") ? ":start" : prev.isOp("<") ? ":end" : prev.isOp("=") ? ":param" : null;
+                    if (name != null) nodes.set(i, new Token(Kind.BIND, name));
+                }
+            }
+        }));
+    }
+
+    /**
+     * WHERE의 TRUNC(col, ..) = x  →  col >= :start AND col < :end
+     * WHERE의 TRUNC(col, ..) IN (...) → 제거 (기간은 바인드로만 제한)
+     */
+    public static void fixWhereTrunc(Query root) {
+        root.forEachBlock(b -> {
+            List<Node> where = b.clause(Clause.WHERE);
+            if (where == null || SqlAst.hasTopLevelOr(where)) return;
+            List<List<Node>> conj = SqlAst.splitAnd(where);
+            List<List<Node>> out = new ArrayList<>(conj.size() + 1);
+            boolean changed = false;
+            for (List<Node> c : conj) {
+                if (c.size() >= 3 && c.get(0) instanceof Token f && f.isWord("TRUNC") && c.get(1) instanceof Group g) {
+                    if (c.get(2) instanceof Token op && op.isOp("=")) {
+                        List<Node> col = firstArg(g);
+                        out.add(concat(col, SqlParser.fragment(">= :start")));
+                        out.add(concat(col, SqlParser.fragment("< :end")));
+                        changed = true;
+                        continue;
+                    }
+                    if (c.get(2) instanceof Token in && in.isWord("IN")) {
+                        changed = true;
+                        continue;
+                    }
+                }
+                out.add(c);
+            }
+            if (changed) b.put(Clause.WHERE, SqlAst.joinAnd(out));
+        });
+    }
+
+    /**
+     * ORDERS를 읽는 첫 블록에 대시보드 기간 규칙 적용
+     * - 이미 {Q}.REGDATE >= :start / < :end 가 있으면 그대로 둠
+     * - 아니면 ORDERS.REGDATE를 건드리는 WHERE 조건(BETWEEN/비교/TRUNC/EXTRACT)을 지우고 반열림 범위 + 상태 필터 추가
+     * @return 재작성 여부
+     */
+    public static boolean ensureOrdersDateRange(Query root, boolean ensureStatusFilter) {
+        Query[] target = new Query[1];
+        String[] qualifier = new String[1];
+        root.forEachBlock(b -> {
+            if (target[0] != null) return;
+            for (TableRef r : b.tables()) {
+                if ("ORDERS".equals(r.table())) {
+                    target[0] = b;
+                    qualifier[0] = r.alias() != null ? r.aliasText() : "ORDERS";
+                    return;
+                }
+            }
+        });
+        if (target[0] == null) return false;
+        Query b = target[0];
+        String q = qualifier[0];
+
+        if (hasRange(b, q)) return false;
+
+        List<Node> where = b.clause(Clause.WHERE);
+        List<List<Node>> conj = new ArrayList<>();
+        if (where != null) {
+            if (SqlAst.hasTopLevelOr(where)) {
+                conj.add(where);
+            } else {
+                for (List<Node> c : SqlAst.splitAnd(where)) {
+                    if (!touchesOrderDate(c, q)) conj.add(c);
+                }
+            }
+        }
+        if (ensureStatusFilter && !hasStatusFilter(b, q)) {
+            conj.add(SqlParser.fragment(q + "." + STATUS_FILTER));
+        }
+        conj.add(SqlParser.fragment(q + ".REGDATE >= :start"));
+        conj.add(SqlParser.fragment(q + ".REGDATE < :end"));
+        b.put(Clause.WHERE, SqlAst.joinAnd(conj));
+        return true;
+    }
+
+    /** 블록 스코프 기준 조인/컬럼명 교정 (od.PRODUCTID → od.ID, o.ID = od.ORDERID → o.ORDERID = od.ORDERID ...) */
+    public static void fixJoinColumns(Query root) {
+        root.forEachBlock(b -> b.forEachList(nodes -> {
+            for (int i = 0; i < nodes.size(); i++) {
+                String[] ref = SqlAst.columnRef(nodes, i);
+                if (ref == null) continue;
+                String table = b.resolve(ref[0]);
+                if (table == null) continue;
+
+                // ORDERS ↔ ORDERDETAIL 조인키: 좌/우 어느 쪽이든 ORDERID로 통일
+                String[] rhs = (i + 4 < nodes.size() && nodes.get(i + 3) instanceof Token eq && eq.isOp("="))
+                        ? SqlAst.columnRef(nodes, i + 4) : null;
+                if (rhs != null) {
+                    String rTable = b.resolve(rhs[0]);
+                    if (isOrderJoinPair(table, ref[1], rTable, rhs[1])) {
+                        nodes.set(i + 2, SqlAst.word("ORDERID"));
+                        nodes.set(i + 6, SqlAst.word("ORDERID"));
+                        i += 6;
+                        continue;
+                    }
+                }
+
+                String fixed = COLUMN_FIXES.getOrDefault(table, Map.of()).get(ref[1]);
+                if (fixed != null) nodes.set(i + 2, SqlAst.word(fixed));
+                i += 2;
+            }
+        }));
+    }
+
+    /** GROUP BY에서 qualifier.column 항목 제거 (집계 서브쿼리 컬럼이 GROUP BY에 끼어든 경우) */
+    public static void dropGroupByColumns(Query root, String qualifier, String... columns) {
+        Set<String> drop = Set.of(columns);
+        String q = qualifier.toUpperCase(java.util.Locale.ROOT);
+        root.forEachBlock(b -> {
+            List<Node> gb = b.clause(Clause.GROUP_BY);
+            if (gb == null) return;
+            List<List<Node>> items = splitComma(gb);
+            boolean removed = items.removeIf(it -> {
+                String[] ref = it.size() == 3 ? SqlAst.columnRef(it, 0) : null;
+                return ref != null && ref[0].equals(q) && drop.contains(ref[1]);
+            });
+            if (!removed) return;
+            List<Node> out = new ArrayList<>();
+            for (List<Node> it : items) {
+                if (!out.isEmpty()) out.add(new Token(Kind.COMMA, ","));
+                out.addAll(it);
+            }
+            b.put(Clause.GROUP_BY, out);
+        });
+    }
+
+    /**
+     * 최종 결과 행 상한 보장 (Oracle 12c+ row limiting)
+     * - MySQL식 LIMIT은 Oracle FETCH로 변환
+     * - 바깥 블록 FETCH의 숫자 상한이 max보다 크면 max로 낮춤
+     * - 상한이 없으면 FETCH FIRST max ROWS ONLY (OFFSET만 있으면 FETCH NEXT) 추가
+     * - ROWNUM으로 직접 자르는 SQL은 그대로
+     * @return 바깥 블록
+     */
+    public static Query ensureRowLimit(Query root, int maxRows) {
+        return ensureRowLimit(root, maxRows, SqlParser.fragment(String.valueOf(maxRows)));
+    }
+
+    /** 상한을 바인드(:limit 등)로 거는 버전. 기존 FETCH 숫자는 건드리지 않음 */
+    public static Query ensureRowLimit(Query root, String limitBind) {
+        return ensureRowLimit(root, 0, SqlParser.fragment(limitBind));
+    }
+
+    private static Query ensureRowLimit(Query root, int maxRows, List<Node> cap) {
+        Query last = root;
+        while (last.next != null) last = last.next;
+
+        List<Node> limit = last.clause(Clause.LIMIT);
+        if (limit != null) {
+            List<List<Node>> args = splitComma(limit);
+            List<Node> count;
+            List<Node> offset = null;
+            if (args.size() == 2) {                 // LIMIT off, cnt
+                offset = args.get(0);
+                count = args.get(1);
+            } else {                                // LIMIT cnt [OFFSET off]
+                count = args.get(0);
+                offset = last.clause(Clause.OFFSET);
+            }
+            last.put(Clause.LIMIT, null);
+            if (offset != null) {
+                last.put(Clause.OFFSET, concat(offset, SqlParser.fragment("ROWS")));
+                last.put(Clause.FETCH, concat(SqlParser.fragment("NEXT"), count, SqlParser.fragment("ROWS ONLY")));
+            } else {
+                last.put(Clause.FETCH, concat(SqlParser.fragment("FIRST"), count, SqlParser.fragment("ROWS ONLY")));
+            }
+        }
+
+        List<Node> fetch = last.clause(Clause.FETCH);
+        if (fetch != null) {
+            clampFetch(fetch, maxRows);
+            return root;
+        }
+        if (mentionsRownum(root)) return root;
+
+        String lead = last.has(Clause.OFFSET) ? "NEXT" : "FIRST";
+        last.put(Clause.FETCH, concat(SqlParser.fragment(lead), cap, SqlParser.fragment("ROWS ONLY")));
+        return root;
+    }
+
+    // FETCH FIRST|NEXT n ROWS ONLY 의 n이 상한보다 크면 낮춤 (PERCENT/바인드/식은 그대로)
+    private static void clampFetch(List<Node> fetch, int maxRows) {
+        if (maxRows <= 0 || fetch.size() < 2) return;
+        if (!(fetch.get(1) instanceof Token n) || n.kind() != Kind.NUMBER) return;
+        if (fetch.size() > 2 && fetch.get(2) instanceof Token t && t.isWord("PERCENT")) return;
+        try {
+            if (Double.parseDouble(n.text()) > maxRows) fetch.set(1, new Token(Kind.NUMBER, String.valueOf(maxRows)));
+        } catch (NumberFormatException ignore) {
+            // 숫자 토큰 형식이 특이하면 그대로 둠
+        }
+    }
+
+    /* ---------- helpers ---------- */
+
+    private static boolean isOrderJoinPair(String lTable, String lCol, String rTable, String rCol) {
+        if ("ORDERS".equals(lTable) && "ORDERDETAIL".equals(rTable))
+            return isWrongOrderKey(lCol, rCol);
+        if ("ORDERDETAIL".equals(lTable) && "ORDERS".equals(rTable))
+            return isWrongOrderKey(rCol, lCol);
+        return false;
+    }
+
+    // o.ID = od.ORDERID / o.ORDERID = od.ID / o.ORDERNO = od.ORDERNO
+    private static boolean isWrongOrderKey(String ordersCol, String detailCol) {
+        if (ordersCol.equals("ORDERID") && detailCol.equals("ORDERID")) return false;
+        return (WRONG_ORDER_KEYS.contains(ordersCol) && (detailCol.equals("ORDERID") || detailCol.equals(ordersCol)))
+            || (ordersCol.equals("ORDERID") && detailCol.equals("ID"));
+    }
+
+    private static boolean hasRange(Query b, String q) {
+        boolean[] ge = new boolean[1], lt = new boolean[1];
+        b.forEachList(nodes -> {
+            for (int i = 0; i + 4 < nodes.size(); i++) {
+                String[] ref = SqlAst.columnRef(nodes, i);
+                if (ref == null || !ref[1].equals("REGDATE") || !isOrdersQualifier(ref[0], q)) continue;
+                if (!(nodes.get(i + 3) instanceof Token op) || !(nodes.get(i + 4) instanceof Token v)) continue;
+                boolean bind = v.kind() == Kind.POSITIONAL || v.kind() == Kind.BIND;
+                if (bind && (op.isOp(">=") || op.isOp("=")) && (v.kind() == Kind.POSITIONAL || v.text().equalsIgnoreCase(":start"))) ge[0] = true;
+                if (bind && op.isOp("<") && (v.kind() == Kind.POSITIONAL || v.text().equalsIgnoreCase(":end"))) lt[0] = true;
+            }
+        });
+        return ge[0] && lt[0];
+    }
+
+    private static boolean hasStatusFilter(Query b, String q) {
+        boolean[] found = new boolean[1];
+        b.forEachList(nodes -> {
+            for (int i = 0; i + 3 < nodes.size(); i++) {
+                String[] ref = SqlAst.columnRef(nodes, i);
+                if (ref != null && ref[1].equals("STATUS") && isOrdersQualifier(ref[0], q)
+                        && nodes.get(i + 3) instanceof Token in && in.isWord("IN")) found[0] = true;
+            }
+        });
+        return found[0];
+    }
+
+    // ORDERS.REGDATE(별칭/테이블명) 또는 단독 REGDATE를 참조하는 조건인지 (서브쿼리 내부는 제외)
+    private static boolean touchesOrderDate(List<Node> nodes, String q) {
+        for (int i = 0; i < nodes.size(); i++) {
+            Node n = nodes.get(i);
+            if (n instanceof Group g) {
+                if (g.sub == null && touchesOrderDate(g.items, q)) return true;
+                continue;
+            }
+            String[] ref = SqlAst.columnRef(nodes, i);
+            if (ref != null) {
+                if (ref[1].equals("REGDATE") && isOrdersQualifier(ref[0], q)) return true;
+                i += 2;
+                continue;
+            }
+            if (n instanceof Token t && t.isWord("REGDATE") && !(i > 0 && SqlAst.isDot(nodes.get(i - 1)))) return true;
+        }
+        return false;
+    }
+
+    private static boolean isOrdersQualifier(String qualifier, String q) {
+        return qualifier.equalsIgnoreCase(q) || qualifier.equals("ORDERS");
+    }
+
+    private static boolean mentionsRownum(Query root) {
+        boolean[] found = new boolean[1];
+        root.forEachList(nodes -> {
+            for (Node n : nodes) if (n instanceof Token t && t.isWord("ROWNUM")) found[0] = true;
+        });
+        return found[0];
+    }
+
+    private static List<Node> firstArg(Group g) {
+        List<Node> out = new ArrayList<>();
+        for (Node n : g.items) {
+            if (n instanceof Token t && t.kind() == Kind.COMMA) break;
+            out.add(n);
+        }
+        return out;
+    }
+
+    private static List<List<Node>> splitComma(List<Node> nodes) {
+        List<List<Node>> out = new ArrayList<>();
+        List<Node> cur = new ArrayList<>();
+        for (Node n : nodes) {
+            if (n instanceof Token t && t.kind() == Kind.COMMA) { out.add(cur); cur = new ArrayList<>(); continue; }
+            cur.add(n);
+        }
+        out.add(cur);
+        return out;
+    }
+
+    @SafeVarargs
+    private static List<Node> concat(List<Node>... parts) {
+        List<Node> out = new ArrayList<>();
+        for (List<Node> p : parts) out.addAll(p);
+        return out;
+    }
+}
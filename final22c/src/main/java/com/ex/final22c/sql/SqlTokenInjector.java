@@ -1,9 +1,14 @@
 package com.ex.final22c.sql;
 
+import com.ex.final22c.sql.SqlAst.Kind;
+import com.ex.final22c.sql.SqlAst.Node;
+import com.ex.final22c.sql.SqlAst.Query;
+import com.ex.final22c.sql.SqlAst.Token;
+
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.*;
+import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,36 +17,38 @@ import java.util.regex.Pattern;
 public class SqlTokenInjector {
     private final DateColumnResolver dateResolver;
 
-    private static final Pattern DATE_TOKEN = Pattern.compile("\\{\\{date:([a-zA-Z0-9_]+)\\}\\}");
-    // ex) FROM ORDERS o / JOIN REVIEW r / FROM SCHEMA.ORDERS O
-    private static final Pattern TBL_ALIAS = Pattern.compile("(?:FROM|JOIN)\\s+([A-Z0-9_\\.]+)\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DATE_TOKEN = Pattern.compile("\\{\\{\\s*date\\s*:\\s*([a-zA-Z0-9_]+)\\s*\\}\\}");
 
     public String inject(String sql) {
         if (sql == null) return null;
+        Query q = SqlParser.parse(sql);
+        inject(q);
+        return q.toSql();
+    }
 
-        Map<String, String> aliasToTable = new LinkedHashMap<>();
-        Matcher tj = TBL_ALIAS.matcher(sql);
-        while (tj.find()) {
-            String table = tj.group(1);
-            String alias = tj.group(2);
-            String tableOnly = table.contains(".") ? table.substring(table.lastIndexOf('.') + 1) : table;
-            aliasToTable.put(alias.toUpperCase(Locale.ROOT), tableOnly.toUpperCase(Locale.ROOT));
-        }
-
-        Matcher m = DATE_TOKEN.matcher(sql);
-        StringBuffer sb = new StringBuffer();
-        while (m.find()) {
-            String aliasRaw = m.group(1);
-            String tableUpper = aliasToTable.get(aliasRaw.toUpperCase(Locale.ROOT));
-            if (tableUpper == null) {
-                throw new IllegalArgumentException("날짜 토큰 alias를 테이블로 매핑하지 못했습니다: " + aliasRaw);
+    /** {{date:o}} → o.REGDATE. 별칭은 토큰이 놓인 블록(→ 바깥 블록) 스코프에서 테이블로 해석 */
+    public void inject(Query root) {
+        root.forEachBlock(b -> b.forEachList(nodes -> {
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!(nodes.get(i) instanceof Token t) || t.kind() != Kind.DATE_TOKEN) continue;
+                Matcher m = DATE_TOKEN.matcher(t.text());
+                if (!m.matches()) continue; // 형식이 다르면 가드에서 거절
+                String aliasRaw = m.group(1);
+                String tableUpper = b.resolve(aliasRaw);
+                if (tableUpper == null) {
+                    throw new IllegalArgumentException("날짜 토큰 alias를 테이블로 매핑하지 못했습니다: " + aliasRaw);
+                }
+                String dateCol = dateResolver.resolve(tableUpper)
+                        .orElseThrow(() -> new IllegalArgumentException("날짜 컬럼을 찾지 못했습니다: table=" + tableUpper));
+                replace(nodes, i, aliasRaw, dateCol); // 원래 대소문자 보존
+                i += 2;
             }
-            String dateCol = dateResolver.resolve(tableUpper)
-                    .orElseThrow(() -> new IllegalArgumentException("날짜 컬럼을 찾지 못했습니다: table=" + tableUpper));
-            String replacement = aliasRaw + "." + dateCol; // 원래 대소문자 보존
-            m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
-        }
-        m.appendTail(sb);
-        return sb.toString();
+        }));
+    }
+
+    private static void replace(List<Node> nodes, int i, String alias, String col) {
+        nodes.set(i, new Token(Kind.WORD, alias));
+        nodes.add(i + 1, new Token(Kind.DOT, "."));
+        nodes.add(i + 2, new Token(Kind.WORD, col));
     }
 }
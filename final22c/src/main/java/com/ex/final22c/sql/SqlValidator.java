@@ -0,0 +1,116 @@
+package com.ex.final22c.sql;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.ex.final22c.sql.SqlAst.Query;
+
+/**
+ * SqlGuard 검증 + 행 상한 결과 메모이즈
+ * - 키: (스키마 버전, 행 상한, 재작성 규칙, 원본 SQL) 해시 → 카탈로그 refresh 후엔 새 키로 다시 검증 → 같은 템플릿/반복 SQL은 파싱·재작성·검증 없이 조회 1회
+ * - 거절 결과도 기억해서 같은 잘못된 SQL을 다시 검사하지 않음
+ * - 상한: 항목 수 LRU
+ */
+@Component
+public class SqlValidator {
+
+    private final int maxEntries;
+    private final Supplier<SchemaCatalog.Snapshot> schema;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final LinkedHashMap<String, Verdict> memo = new LinkedHashMap<>(256, 0.75f, true);
+
+    private record Verdict(String sql, String error) {}
+
+    public record Stats(long hits, long misses, double hitRatio, int size, int maxEntries) {}
+
+    @Autowired
+    public SqlValidator(@Value("${ai.sql-validator.memo-size:1024}") int maxEntries, SchemaCatalog catalog) {
+        this(maxEntries, catalog::snapshot);
+    }
+
+    /** 카탈로그 없이 기본 화이트리스트로 (측정용) */
+    public SqlValidator(int maxEntries) {
+        this(maxEntries, () -> SchemaCatalog.STATIC);
+    }
+
+    private SqlValidator(int maxEntries, Supplier<SchemaCatalog.Snapshot> schema) {
+        this.maxEntries = maxEntries;
+        this.schema = schema;
+    }
+
+    /** 문자열 SQL 검증 (maxRows <= 0 이면 행 상한 없이 가드만) */
+    public String validate(String sql, int maxRows) {
+        return validate(sql, maxRows, "", SqlParser::parse);
+    }
+
+    /**
+     * 재작성 + 검증 결과를 원본 SQL 기준으로 메모이즈
+     * - variant: 재작성 규칙 구분자 (같은 원본이라도 규칙이 다르면 다른 키)
+     * - prepare: 원본 → 재작성된 트리 (미스일 때만 호출, 히트면 파싱도 생략)
+     */
+    public String validate(String sql, int maxRows, String variant, Function<String, Query> prepare) {
+        SchemaCatalog.Snapshot snap = schema.get();
+        String key = snap.version() + "\u0000" + maxRows + "\u0000" + variant + "\u0000" + sql;
+        Verdict v = lookup(key);
+        if (v == null) {
+            v = compute(() -> prepare.apply(sql), maxRows, snap);
+            store(key, v);
+        }
+        return unwrap(v);
+    }
+
+    public Stats stats() {
+        long h = hits.get(), m = misses.get();
+        int size;
+        synchronized (memo) { size = memo.size(); }
+        return new Stats(h, m, (h + m) == 0 ? 0.0 : (double) h / (h + m), size, maxEntries);
+    }
+
+    public void clear() {
+        synchronized (memo) { memo.clear(); }
+    }
+
+    /* helpers */
+
+    private Verdict compute(Supplier<Query> tree, int maxRows, SchemaCatalog.Snapshot snap) {
+        try {
+            Query q = SqlGuard.check(tree.get(), snap);
+            if (maxRows > 0) q = SqlRewriter.ensureRowLimit(q, maxRows);
+            return new Verdict(q.toSql(), null);
+        } catch (IllegalArgumentException e) {
+            return new Verdict(null, e.getMessage());
+        }
+    }
+
+    private Verdict lookup(String key) {
+        Verdict v;
+        synchronized (memo) { v = memo.get(key); }
+        if (v != null) hits.incrementAndGet();
+        else misses.incrementAndGet();
+        return v;
+    }
+
+    private void store(String key, Verdict v) {
+        synchronized (memo) {
+            memo.put(key, v);
+            if (memo.size() > maxEntries) {
+                var it = memo.entrySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private static String unwrap(Verdict v) {
+        if (v.error() != null) throw new IllegalArgumentException(v.error());
+        return v.sql();
+    }
+}
@@ -0,0 +1,23 @@
+-- title: 브랜드별 매출/판매량/평점
+-- columns: BRANDNAME, PRODUCT_COUNT, TOTAL_SALES, TOTAL_QUANTITY, AVG_RATING
+SELECT
+  b.BRANDNAME,
+  COUNT(DISTINCT p.ID)                     AS product_count,
+  SUM(od.CONFIRMQUANTITY * od.SELLPRICE)   AS total_sales,
+  SUM(od.CONFIRMQUANTITY)                  AS total_quantity,
+  (SELECT ROUND(AVG(r.RATING), 1)
+   FROM REVIEW r
+   JOIN PRODUCT p2 ON r.PRODUCT_ID = p2.ID
+  WHERE p2.BRAND_BRANDNO = b.BRANDNO
+    AND r.CREATEDATE >= :start
+    AND r.CREATEDATE <  :end
+) AS avg_rating
+FROM BRAND b
+LEFT JOIN PRODUCT p      ON b.BRANDNO = p.BRAND_BRANDNO
+LEFT JOIN ORDERDETAIL od ON p.ID       = od.ID
+LEFT JOIN ORDERS o       ON od.ORDERID = o.ORDERID
+                        AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+                        AND o.REGDATE >= :start
+                        AND o.REGDATE <  :end
+GROUP BY b.BRANDNO, b.BRANDNAME
+ORDER BY total_sales DESC NULLS LAST
@@ -0,0 +1,16 @@
+-- title: 브랜드별 매출/판매량/주문수
+-- columns: BRANDNAME, TOTAL_SALES, TOTAL_QUANTITY, ORDER_COUNT
+SELECT
+    b.BRANDNAME,
+    SUM(od.CONFIRMQUANTITY * od.SELLPRICE) AS total_sales,
+    SUM(od.CONFIRMQUANTITY)                AS total_quantity,
+    COUNT(DISTINCT o.ORDERID)              AS order_count
+FROM BRAND b
+LEFT JOIN PRODUCT p      ON b.BRANDNO = p.BRAND_BRANDNO
+LEFT JOIN ORDERDETAIL od ON p.ID       = od.ID
+LEFT JOIN ORDERS o       ON od.ORDERID = o.ORDERID
+                        AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+                        AND o.REGDATE >= :start
+                        AND o.REGDATE <  :end
+GROUP BY b.BRANDNO, b.BRANDNAME
+ORDER BY total_sales DESC NULLS LAST
@@ -0,0 +1,36 @@
+-- title: 두 상품 리뷰/평점 비교
+-- columns: MATCHED, MATCHED_QUERY, PRODUCT_ID, PRODUCT_NAME, TOTAL_REVIEWS, AVG_RATING
+WITH S AS (
+  SELECT 1 AS MATCHED, :q1 AS Q FROM DUAL
+  UNION ALL
+  SELECT 2 AS MATCHED, :q2 AS Q FROM DUAL
+),
+P AS (
+  SELECT
+    s.MATCHED,
+    s.Q,
+    p.ID   AS PRODUCT_ID,
+    NVL(p.NAME, s.Q) AS PRODUCT_NAME
+  FROM S
+  LEFT JOIN PRODUCT p
+    ON UPPER(REPLACE(p.NAME,' ','')) LIKE UPPER('%' || REPLACE(s.Q,' ','') || '%')
+)
+SELECT
+  p.MATCHED,
+  p.Q                 AS MATCHED_QUERY,
+  p.PRODUCT_ID,
+  p.PRODUCT_NAME,
+  NVL(rv.TOTAL_REVIEWS, 0) AS TOTAL_REVIEWS,
+  NVL(rv.AVG_RATING,  0)  AS AVG_RATING
+FROM P p
+LEFT JOIN (
+  SELECT PRODUCT_ID,
+         COUNT(*)              AS TOTAL_REVIEWS,
+         ROUND(AVG(RATING),1)  AS AVG_RATING
+  FROM REVIEW
+  WHERE CREATEDATE >= :start AND CREATEDATE < :end
+  GROUP BY PRODUCT_ID
+) rv
+  ON rv.PRODUCT_ID = p.PRODUCT_ID
+ORDER BY p.MATCHED, AVG_RATING DESC, TOTAL_REVIEWS DESC
+FETCH FIRST 2000 ROWS ONLY
@@ -0,0 +1,35 @@
+-- title: 두 상품 매출 비교
+-- columns: MATCHED, MATCHED_QUERY, PRODUCT_ID, PRODUCT_NAME, TOTAL_SOLD_QTY, TOTAL_SALES_AMOUNT
+WITH S AS (
+  SELECT 1 AS MATCHED, :q1 AS Q FROM DUAL
+  UNION ALL
+  SELECT 2 AS MATCHED, :q2 AS Q FROM DUAL
+),
+P AS (
+  SELECT
+    s.MATCHED,
+    s.Q,
+    p.ID   AS PRODUCT_ID,
+    NVL(p.NAME, s.Q) AS PRODUCT_NAME
+  FROM S
+  LEFT JOIN PRODUCT p
+    ON UPPER(REPLACE(p.NAME,' ','')) LIKE UPPER('%' || REPLACE(s.Q,' ','') || '%')
+)
+SELECT
+  p.MATCHED,
+  p.Q                 AS MATCHED_QUERY,
+  p.PRODUCT_ID,
+  p.PRODUCT_NAME,
+  NVL(SUM(od.CONFIRMQUANTITY), 0)                AS TOTAL_SOLD_QTY,
+  NVL(SUM(od.CONFIRMQUANTITY * od.SELLPRICE), 0) AS TOTAL_SALES_AMOUNT
+FROM P p
+LEFT JOIN ORDERDETAIL od
+       ON od.ID = p.PRODUCT_ID
+LEFT JOIN ORDERS o
+       ON o.ORDERID = od.ORDERID
+      AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+      AND o.REGDATE >= :start
+      AND o.REGDATE <  :end
+GROUP BY p.MATCHED, p.Q, p.PRODUCT_ID, p.PRODUCT_NAME
+ORDER BY p.MATCHED, TOTAL_SALES_AMOUNT DESC NULLS LAST
+FETCH FIRST 2000 ROWS ONLY
@@ -0,0 +1,17 @@
+-- title: 가입 후 첫 구매까지 걸린 기간
+-- columns: AVG_DAYS_TO_FIRST_PURCHASE, MIN_DAYS, MAX_DAYS, TOTAL_CUSTOMERS
+SELECT
+    ROUND(AVG(EXTRACT(DAY FROM (first_purchase_date - join_date))), 1) as avg_days_to_first_purchase,
+    MIN(EXTRACT(DAY FROM (first_purchase_date - join_date))) as min_days,
+    MAX(EXTRACT(DAY FROM (first_purchase_date - join_date))) as max_days,
+    COUNT(*) as total_customers
+FROM (
+SELECT u.USERNO,
+           CAST(u.REG AS DATE) as join_date,
+           MIN(o.REGDATE) as first_purchase_date
+    FROM USERS u
+    JOIN ORDERS o ON u.USERNO = o.USERNO
+    WHERE o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+      AND u.REG >= :start AND u.REG < :end
+    GROUP BY u.USERNO, u.REG
+)
@@ -0,0 +1,32 @@
+-- title: 전월 대비 당월 주문/매출
+-- columns: BUCKET, MONTH, ORDER_COUNT, TOTAL_SALES
+WITH B AS (
+  SELECT
+    TRUNC(:currentDate,'MM')                           AS THIS_START,
+    ADD_MONTHS(TRUNC(:currentDate,'MM'), 1)           AS THIS_END,
+    ADD_MONTHS(TRUNC(:currentDate,'MM'),-1)           AS PREV_START,
+    TRUNC(:currentDate,'MM')                          AS PREV_END
+  FROM DUAL
+)
+-- 당월
+SELECT
+  'THIS' AS BUCKET,
+  TO_CHAR(B.THIS_START,'YYYY-MM')        AS MONTH,
+  COUNT(DISTINCT o.ORDERID)              AS ORDER_COUNT,
+  NVL(SUM(od.CONFIRMQUANTITY*od.SELLPRICE),0) AS TOTAL_SALES
+FROM B
+JOIN ORDERS o      ON o.REGDATE >= B.THIS_START AND o.REGDATE < B.THIS_END
+                  AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+JOIN ORDERDETAIL od ON od.ORDERID = o.ORDERID
+UNION ALL
+-- 전월
+SELECT
+  'PREV',
+  TO_CHAR(B.PREV_START,'YYYY-MM'),
+  COUNT(DISTINCT o.ORDERID),
+  NVL(SUM(od.CONFIRMQUANTITY*od.SELLPRICE),0)
+FROM B
+JOIN ORDERS o      ON o.REGDATE >= B.PREV_START AND o.REGDATE < B.PREV_END
+                  AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+JOIN ORDERDETAIL od ON od.ORDERID = o.ORDERID
+FETCH FIRST 2000 ROWS ONLY
@@ -0,0 +1,31 @@
+-- title: 상품 판매/환불/리뷰 통계 (매출순)
+-- columns: PRODUCT_ID, PRODUCT_NAME, TOTAL_SOLD_QTY, TOTAL_SALES_AMOUNT, TOTAL_REFUND_QTY, REFUND_RATE, TOTAL_REVIEWS, AVG_RATING
+SELECT
+    p.ID   AS PRODUCT_ID,
+    p.NAME AS PRODUCT_NAME,
+    SUM(od.CONFIRMQUANTITY)                             AS TOTAL_SOLD_QTY,
+    SUM(od.CONFIRMQUANTITY * od.SELLPRICE)              AS TOTAL_SALES_AMOUNT,
+    NVL(SUM(rd.REFUNDQTY), 0)                           AS TOTAL_REFUND_QTY,
+    CASE WHEN SUM(od.CONFIRMQUANTITY) > 0
+         THEN ROUND(NVL(SUM(rd.REFUNDQTY), 0) / SUM(od.CONFIRMQUANTITY) * 100, 2)
+         ELSE 0 END                                     AS REFUND_RATE,
+    NVL(rv.TOTAL_REVIEWS, 0)                            AS TOTAL_REVIEWS,
+    NVL(rv.AVG_RATING, 0)                               AS AVG_RATING
+FROM PRODUCT p
+JOIN ORDERDETAIL od ON p.ID = od.ID
+JOIN ORDERS o       ON od.ORDERID = o.ORDERID
+LEFT JOIN REFUND rf       ON o.ORDERID = rf.ORDERID
+LEFT JOIN REFUNDDETAIL rd ON rf.REFUNDID = rd.REFUND_REFUNDID
+                          AND rd.ORDERDETAILID = od.ORDERDETAILID
+LEFT JOIN (
+    SELECT PRODUCT_ID, COUNT(*) AS TOTAL_REVIEWS, ROUND(AVG(RATING), 1) AS AVG_RATING
+    FROM REVIEW
+    GROUP BY PRODUCT_ID
+) rv ON p.ID = rv.PRODUCT_ID
+WHERE UPPER(REPLACE(p.NAME,' ','')) LIKE UPPER('%' || REPLACE(NVL(:q,''),' ','') || '%')
+  AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+  AND o.REGDATE >= :start
+  AND o.REGDATE <  :end
+GROUP BY p.ID, p.NAME, rv.TOTAL_REVIEWS, rv.AVG_RATING
+ORDER BY TOTAL_SALES_AMOUNT DESC NULLS LAST
+FETCH FIRST 2000 ROWS ONLY
@@ -0,0 +1,26 @@
+-- title: 재구매/일회성 구매 고객 비율
+-- columns: CUSTOMER_TYPE, CUSTOMER_COUNT, PERCENTAGE
+SELECT
+    customer_type,
+    customer_count,
+    ROUND(customer_count * 100.0 / SUM(customer_count) OVER(), 2) as percentage
+FROM (
+SELECT
+        CASE WHEN order_count = 1 THEN '일회성 구매 고객'
+             WHEN order_count >= 2 THEN '재구매 고객'
+             ELSE '미구매 고객' END as customer_type,
+        COUNT(*) as customer_count
+    FROM (
+        SELECT u.USERNO,
+               COUNT(o.ORDERID) as order_count
+        FROM USERS u
+        LEFT JOIN ORDERS o ON u.USERNO = o.USERNO
+                           AND o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+        WHERE u.STATUS = 'active'
+        GROUP BY u.USERNO
+    )
+    GROUP BY CASE WHEN order_count = 1 THEN '일회성 구매 고객'
+                  WHEN order_count >= 2 THEN '재구매 고객'
+                  ELSE '미구매 고객' END
+)
+ORDER BY customer_count DESC
@@ -0,0 +1,22 @@
+-- title: 평점 상위 상품
+-- columns: PRODUCT_ID, PRODUCT_NAME, TOTAL_REVIEWS, AVG_RATING
+SELECT *
+FROM (
+  SELECT
+    p.ID   AS PRODUCT_ID,
+    p.NAME AS PRODUCT_NAME,
+    NVL(rv.TOTAL_REVIEWS, 0) AS TOTAL_REVIEWS,
+    NVL(rv.AVG_RATING , 0)  AS AVG_RATING
+  FROM PRODUCT p
+  LEFT JOIN (
+    SELECT PRODUCT_ID,
+           COUNT(*)              AS TOTAL_REVIEWS,
+           ROUND(AVG(RATING),1)  AS AVG_RATING
+    FROM REVIEW
+    WHERE CREATEDATE >= :start AND CREATEDATE < :end
+    GROUP BY PRODUCT_ID
+  ) rv ON rv.PRODUCT_ID = p.ID
+  WHERE NVL(rv.TOTAL_REVIEWS, 0) >= :minReviews
+  ORDER BY rv.AVG_RATING DESC, rv.TOTAL_REVIEWS DESC, p.ID
+)
+FETCH FIRST :topN ROWS ONLY
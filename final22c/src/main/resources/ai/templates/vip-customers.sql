@@ -0,0 +1,19 @@
+-- title: 누적 구매 100만원 이상 VIP 고객
+-- columns: USERNO, NAME, EMAIL, TOTAL_PURCHASE_AMOUNT, TOTAL_ORDERS, FIRST_PURCHASE_DATE, LAST_PURCHASE_DATE
+SELECT
+  u.USERNO, u.NAME, u.EMAIL,
+  SUM(od.CONFIRMQUANTITY * od.SELLPRICE)          AS total_purchase_amount,
+  COUNT(DISTINCT o.ORDERID)                        AS total_orders,
+  TO_CHAR(MIN(o.REGDATE),'YYYY-MM-DD HH24:MI:SS')  AS first_purchase_date,
+  TO_CHAR(MAX(o.REGDATE),'YYYY-MM-DD HH24:MI:SS')  AS last_purchase_date
+FROM USERS u
+JOIN ORDERS o      ON u.USERNO = o.USERNO
+JOIN ORDERDETAIL od ON od.ORDERID = o.ORDERID
+WHERE o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+  AND u.STATUS = 'active'
+  AND o.REGDATE >= :start
+  AND o.REGDATE <  :end
+GROUP BY u.USERNO, u.NAME, u.EMAIL
+HAVING SUM(od.CONFIRMQUANTITY * od.SELLPRICE) >= 1000000
+ORDER BY total_purchase_amount DESC
+FETCH FIRST 50 ROWS ONLY
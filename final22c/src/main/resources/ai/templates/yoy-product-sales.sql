@@ -0,0 +1,31 @@
+-- title: 상품 판매량/매출 전년 동기 대비
+-- columns: BUCKET, TOTAL_SOLD_QTY, TOTAL_SALES_AMOUNT
+WITH P AS (
+  SELECT p.ID
+  FROM PRODUCT p
+  WHERE (
+    (REGEXP_LIKE(:q, '\d+\s*ml', 'i')
+     AND UPPER(REPLACE(p.NAME,' ','')) = UPPER(REPLACE(:q,' ','')))
+    OR
+    (NOT REGEXP_LIKE(:q, '\d+\s*ml', 'i')
+     AND UPPER(REPLACE(p.NAME,' ','')) LIKE UPPER('%' || REPLACE(:q,' ','') || '%'))
+  )
+)
+SELECT 'THIS' AS BUCKET,
+       NVL(SUM(od.CONFIRMQUANTITY),0)                AS TOTAL_SOLD_QTY,
+       NVL(SUM(od.CONFIRMQUANTITY * od.SELLPRICE),0) AS TOTAL_SALES_AMOUNT
+FROM ORDERS o
+JOIN ORDERDETAIL od ON o.ORDERID = od.ORDERID
+JOIN P             ON P.ID = od.ID
+WHERE o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+  AND o.REGDATE >= :start AND o.REGDATE < :end
+UNION ALL
+SELECT 'PREV',
+       NVL(SUM(od.CONFIRMQUANTITY),0),
+       NVL(SUM(od.CONFIRMQUANTITY * od.SELLPRICE),0)
+FROM ORDERS o
+JOIN ORDERDETAIL od ON o.ORDERID = od.ORDERID
+JOIN P             ON P.ID = od.ID
+WHERE o.STATUS IN ('PAID','CONFIRMED','REFUNDED')
+  AND o.REGDATE >= :start_prev AND o.REGDATE < :end_prev
+FETCH FIRST 2000 ROWS ONLY
@@ -0,0 +1,32 @@
+package com.ex.final22c.bench;
+
+import java.io.IOException;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 벤치마크 실행 (bench 프로필에서만 등록)
+ * 예) GET /bench/run?concurrency=16&requests=1000&warmup=100&cold=true
+ */
+@Profile("bench")
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/bench/")
+public class BenchController {
+
+	private final ChatBenchmark benchmark;
+
+	@GetMapping("run")
+	public ChatBenchmark.Report run(@RequestParam(name = "concurrency", defaultValue = "8") int concurrency,
+			@RequestParam(name = "requests", defaultValue = "600") int requests,
+			@RequestParam(name = "warmup", defaultValue = "50") int warmup,
+			@RequestParam(name = "cold", defaultValue = "false") boolean cold) throws IOException, InterruptedException {
+		return benchmark.run(concurrency, requests, warmup, cold);
+	}
+}
@@ -0,0 +1,206 @@
+package com.ex.final22c.bench;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 벤치마크용 합성 데이터 적재 (bench 프로필 전용, 인메모리 H2)
+ * - 테이블은 Hibernate(ddl-auto=create)가 엔티티 그대로 만들고 여기서는 행만 넣음
+ * - 시드 고정(ai.bench.seed.random)이라 실행마다 같은 데이터 → 결과 비교 가능
+ * - 주문은 최근 ai.bench.seed.days 일에 고르게 흩뿌리되 주말/연말 가중치를 줘서 추이 질문이 평평하지 않게 함
+ */
+@Slf4j
+@Profile("bench")
+@Component
+@RequiredArgsConstructor
+public class BenchDataSeeder implements ApplicationRunner {
+
+    private static final String[] BRANDS = {"샤넬", "디올", "조말론", "바이레도", "딥티크", "르라보", "톰포드", "크리드", "메종마르지엘라", "이솝"};
+    private static final String[] GRADES = {"오 드 코롱", "오 드 뚜왈렛", "오 드 퍼퓸", "퍼퓸"};
+    private static final String[] MAINNOTES = {"시트러스", "플로럴", "우디", "머스크", "스파이시", "아쿠아", "파우더리", "프루티"};
+    private static final String[] VOLUMES = {"30ml", "50ml", "75ml", "100ml"};
+    private static final String[] NAME_WORDS = {"블랑", "누아", "로즈", "베티버", "앰버", "솔레일", "미드나잇", "가든", "벨벳", "시더"};
+    private static final String[] ORDER_STATUS = {"CONFIRMED", "CONFIRMED", "CONFIRMED", "PAID", "PAID", "REFUNDED", "CANCELED", "PENDING"};
+    private static final int BATCH = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${ai.bench.seed.products:60}")
+    private int products;
+
+    @Value("${ai.bench.seed.users:500}")
+    private int users;
+
+    @Value("${ai.bench.seed.orders:20000}")
+    private int orders;
+
+    @Value("${ai.bench.seed.days:400}")
+    private int days;
+
+    @Value("${ai.bench.seed.random:22}")
+    private long seed;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long t0 = System.currentTimeMillis();
+        Random rnd = new Random(seed);
+        seedLookups();
+        int[] prices = seedProducts(rnd);
+        seedUsers(rnd);
+        int details = seedOrders(rnd, prices);
+        log.info("[bench-seed] 상품 {} / 회원 {} / 주문 {} / 주문상세 {} ({}ms)",
+                products, users, orders, details, System.currentTimeMillis() - t0);
+    }
+
+    private void seedLookups() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < BRANDS.length; i++) rows.add(new Object[]{i + 1, BRANDS[i]});
+        jdbc.batchUpdate("INSERT INTO BRAND (BRANDNO, BRANDNAME) VALUES (?, ?)", rows);
+        rows.clear();
+        for (int i = 0; i < GRADES.length; i++) rows.add(new Object[]{i + 1, GRADES[i]});
+        jdbc.batchUpdate("INSERT INTO GRADE (GRADENO, GRADENAME) VALUES (?, ?)", rows);
+        rows.clear();
+        for (int i = 0; i < MAINNOTES.length; i++) rows.add(new Object[]{i + 1, MAINNOTES[i]});
+        jdbc.batchUpdate("INSERT INTO MAINNOTE (MAINNOTENO, MAINNOTENAME) VALUES (?, ?)", rows);
+        rows.clear();
+        for (int i = 0; i < VOLUMES.length; i++) rows.add(new Object[]{i + 1, VOLUMES[i]});
+        jdbc.batchUpdate("INSERT INTO VOLUME (VOLUMENO, VOLUMENAME) VALUES (?, ?)", rows);
+    }
+
+    /** 상품별 판매가 반환 (주문상세 단가 스냅샷용, 인덱스 = 상품 ID) */
+    private int[] seedProducts(Random rnd) {
+        int[] sellPrices = new int[products + 1];
+        List<Object[]> rows = new ArrayList<>();
+        for (int id = 1; id <= products; id++) {
+            int brand = rnd.nextInt(BRANDS.length);
+            int note = rnd.nextInt(MAINNOTES.length);
+            int volume = rnd.nextInt(VOLUMES.length);
+            int price = (80 + rnd.nextInt(300)) * 1000;
+            double discount = rnd.nextInt(4) * 5.0;
+            int sellPrice = (int) Math.round(price * (1 - discount / 100) / 100) * 100;
+            sellPrices[id] = sellPrice;
+            String name = BRANDS[brand] + " " + NAME_WORDS[rnd.nextInt(NAME_WORDS.length)] + " " + MAINNOTES[note] + " " + VOLUMES[volume];
+            rows.add(new Object[]{id, name, price, 5 + rnd.nextInt(200), "sale", sellPrice, discount, price / 2,
+                    brand + 1, volume + 1, rnd.nextInt(GRADES.length) + 1, note + 1, "N"});
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO PRODUCT (ID, NAME, PRICE, COUNT, STATUS, SELLPRICE, DISCOUNT, COSTPRICE,
+                                     BRAND_BRANDNO, VOLUME_VOLUMENO, GRADE_GRADENO, MAINNOTE_MAINNOTENO, ISPICKED)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""", rows);
+        return sellPrices;
+    }
+
+    private void seedUsers(Random rnd) {
+        LocalDate today = LocalDate.now();
+        List<Object[]> rows = new ArrayList<>();
+        for (int no = 1; no <= users; no++) {
+            int age = 15 + rnd.nextInt(45);
+            LocalDate reg = today.minusDays(rnd.nextInt(days + 200));
+            rows.add(new Object[]{no, "bench" + no, "{noop}bench", "bench" + no + "@example.com", "회원" + no,
+                    Date.valueOf(today.minusYears(age).minusDays(rnd.nextInt(365))), rnd.nextBoolean() ? "M" : "F",
+                    String.format("010-%04d-%04d", no / 10000, no % 10000), Date.valueOf(reg), "active", "user",
+                    rnd.nextInt(5000), age});
+        }
+        jdbc.batchUpdate("""
+                INSERT INTO USERS (USERNO, USERNAME, PASSWORD, EMAIL, NAME, BIRTH, GENDER, PHONE, REG, STATUS, ROLE, MILEAGE, AGE)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""", rows);
+    }
+
+    /** 주문 + 주문상세 + 결제 + 리뷰 + 환불, 반환값 = 주문상세 행 수 */
+    private int seedOrders(Random rnd, int[] sellPrices) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> orderRows = new ArrayList<>(BATCH);
+        List<Object[]> detailRows = new ArrayList<>(BATCH * 2);
+        List<Object[]> paymentRows = new ArrayList<>(BATCH);
+        List<Object[]> reviewRows = new ArrayList<>();
+        List<Object[]> refundRows = new ArrayList<>();
+        long detailId = 0, reviewId = 0, refundId = 0;
+
+        for (int orderId = 1; orderId <= orders; orderId++) {
+            LocalDateTime at = orderTime(rnd, now);
+            String status = ORDER_STATUS[rnd.nextInt(ORDER_STATUS.length)];
+            boolean paid = !"PENDING".equals(status) && !"CANCELED".equals(status);
+            int userNo = 1 + rnd.nextInt(users);
+            int total = 0;
+            int lines = 1 + rnd.nextInt(3);
+            for (int l = 0; l < lines; l++) {
+                int productId = popularProduct(rnd);
+                int qty = 1 + (rnd.nextInt(10) == 0 ? rnd.nextInt(3) : 0);
+                int price = sellPrices[productId];
+                int confirmQty = "CONFIRMED".equals(status) || "PAID".equals(status) || "REFUNDED".equals(status) ? qty : 0;
+                detailRows.add(new Object[]{++detailId, orderId, productId, qty, price, price * qty, confirmQty});
+                total += price * qty;
+                if ("CONFIRMED".equals(status) && rnd.nextInt(4) == 0) {
+                    reviewRows.add(new Object[]{++reviewId, productId, userNo, "벤치 리뷰 " + reviewId,
+                            Timestamp.valueOf(at.plusDays(3 + rnd.nextInt(10))), "ACTIVE", 2 + rnd.nextInt(4)});
+                }
+            }
+            orderRows.add(new Object[]{orderId, userNo, 0, total, status, Timestamp.valueOf(at),
+                    paid ? "DELIVERED" : "ORDERED", total / 100});
+            if (paid) {
+                paymentRows.add(new Object[]{orderId, orderId, total, "SUCCESS", "T" + orderId,
+                        Timestamp.valueOf(at.plusMinutes(1)), Date.valueOf(at.toLocalDate())});
+            }
+            if ("REFUNDED".equals(status)) {
+                refundRows.add(new Object[]{++refundId, orderId, userNo, "REFUNDED", total, "단순 변심", orderId, 0, 0,
+                        Timestamp.valueOf(at.plusDays(2)), Timestamp.valueOf(at.plusDays(4))});
+            }
+            if (orderRows.size() >= BATCH) flushOrders(orderRows, detailRows, paymentRows);
+        }
+        flushOrders(orderRows, detailRows, paymentRows);
+        jdbc.batchUpdate("""
+                INSERT INTO REVIEW (REVIEWID, PRODUCT_ID, WRITER_USERNO, CONTENT, CREATEDATE, STATUS, RATING)
+                VALUES (?, ?, ?, ?, ?, ?, ?)""", reviewRows);
+        jdbc.batchUpdate("""
+                INSERT INTO REFUND (REFUNDID, ORDERID, USERNO, STATUS, TOTALREFUNDAMOUNT, REQUESTEDREASON, PAYMENTID,
+                                    REFUNDMILEAGE, CONFIRMMILEAGE, CREATEDATE, UPDATEDATE)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)""", refundRows);
+        return (int) detailId;
+    }
+
+    private void flushOrders(List<Object[]> orderRows, List<Object[]> detailRows, List<Object[]> paymentRows) {
+        jdbc.batchUpdate("""
+                INSERT INTO ORDERS (ORDERID, USERNO, USEDPOINT, TOTALAMOUNT, STATUS, REGDATE, DELIVERYSTATUS, CONFIRMMILEAGE)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?)""", orderRows);
+        jdbc.batchUpdate("""
+                INSERT INTO ORDERDETAIL (ORDERDETAILID, ORDERID, ID, QUANTITY, SELLPRICE, TOTALPRICE, CONFIRMQUANTITY)
+                VALUES (?, ?, ?, ?, ?, ?, ?)""", detailRows);
+        jdbc.batchUpdate("""
+                INSERT INTO PAYMENT (PAYMENTID, ORDERID, AMOUNT, STATUS, TID, APPROVEDAT, REG)
+                VALUES (?, ?, ?, ?, ?, ?, ?)""", paymentRows);
+        orderRows.clear();
+        detailRows.clear();
+        paymentRows.clear();
+    }
+
+    /** 주말·12월은 주문이 더 몰리도록 거절 샘플링 */
+    private LocalDateTime orderTime(Random rnd, LocalDateTime now) {
+        while (true) {
+            LocalDateTime at = now.minusDays(rnd.nextInt(days)).withHour(rnd.nextInt(24)).withMinute(rnd.nextInt(60));
+            double weight = 0.6;
+            if (at.getDayOfWeek().getValue() >= 6) weight += 0.3;
+            if (at.getMonthValue() == 12) weight += 0.1;
+            if (rnd.nextDouble() < weight) return at;
+        }
+    }
+
+    /** 앞쪽 상품일수록 많이 팔리게 (순위 질문 결과가 고르게 나오지 않도록) */
+    private int popularProduct(Random rnd) {
+        double u = rnd.nextDouble();
+        return 1 + (int) (products * u * u);
+    }
+}
@@ -0,0 +1,184 @@
+package com.ex.final22c.bench;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import com.ex.final22c.controller.chat.AiResult;
+import com.ex.final22c.service.ai.QueryResultCache;
+import com.ex.final22c.service.chat.ChatOrchestratorService;
+import com.ex.final22c.service.chat.LlmResponseCache;
+import com.ex.final22c.service.chat.SqlPlanCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 채팅 파이프라인 오프라인 부하 측정 (bench 프로필 전용)
+ * - classpath:bench/admin-utterances.txt 발화를 concurrency 개 스레드가 돌아가며 orchestrator.handle 호출
+ * - LLM 은 DeepSeekStubController(고정 지연), DB 는 BenchDataSeeder 가 채운 H2 → 네트워크/운영 DB 없이 반복 측정
+ * - cold=true 면 측정 전에 계획/결과/LLM 응답 캐시를 비워 캐시 미스 경로를 잼
+ * - 지연은 요청 단위 벽시계 시간 (단계 분해는 /actuator/metrics/ai.pipeline.stage 참고)
+ */
+@Slf4j
+@Profile("bench")
+@Component
+@RequiredArgsConstructor
+public class ChatBenchmark {
+
+    private static final String CORPUS = "bench/admin-utterances.txt";
+
+    private final ChatOrchestratorService orchestrator;
+    private final SqlPlanCache planCache;
+    private final QueryResultCache resultCache;
+    private final LlmResponseCache llmCache;
+    private final DeepSeekStubController stub;
+
+    @Value("${ai.bench.autorun:false}")
+    private boolean autorun;
+
+    @Value("${ai.bench.concurrency:8}")
+    private int defaultConcurrency;
+
+    @Value("${ai.bench.requests:600}")
+    private int defaultRequests;
+
+    @Value("${ai.bench.warmup:50}")
+    private int defaultWarmup;
+
+    public record Report(int concurrency, int requests, int errors, long elapsedMs, double rps,
+                         double p50Ms, double p95Ms, double p99Ms, double maxMs, double meanMs,
+                         Map<String, Integer> paths, Map<String, Long> stubCalls, List<String> sampleErrors) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void autorun() {
+        if (!autorun) return;
+        try {
+            log.info("[bench] {}", run(defaultConcurrency, defaultRequests, defaultWarmup, true));
+        } catch (Exception e) {
+            log.error("[bench] 실행 실패: {}", e.toString(), e);
+        }
+    }
+
+    public synchronized Report run(int concurrency, int requests, int warmup, boolean cold)
+            throws IOException, InterruptedException {
+        List<String> corpus = load();
+        if (corpus.isEmpty()) throw new IllegalStateException(CORPUS + " 비어 있음");
+        concurrency = Math.max(1, concurrency);
+
+        // 워밍업은 JIT/커넥션 풀용, cold 면 그 뒤에 캐시만 비움
+        if (warmup > 0) drive(corpus, concurrency, warmup, null, null, null);
+        if (cold) clearCaches();
+        Map<String, Long> stubBefore = stub.calls();
+
+        long[] nanos = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        Map<String, Integer> paths = new ConcurrentHashMap<>();
+        List<String> sampleErrors = new ArrayList<>();
+        long t0 = System.nanoTime();
+        drive(corpus, concurrency, requests, nanos, errors, (path, err) -> {
+            paths.merge(path, 1, Integer::sum);
+            if (err != null) synchronized (sampleErrors) {
+                if (sampleErrors.size() < 10) sampleErrors.add(err);
+            }
+        });
+        long elapsed = System.nanoTime() - t0;
+
+        Map<String, Long> stubCalls = new LinkedHashMap<>();
+        stub.calls().forEach((op, n) -> stubCalls.put(op, n - stubBefore.getOrDefault(op, 0L)));
+
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1e6;
+        return new Report(concurrency, requests, errors.get(), elapsed / 1_000_000,
+                requests == 0 ? 0 : requests / (elapsed / 1e9),
+                pct(nanos, 0.50), pct(nanos, 0.95), pct(nanos, 0.99),
+                nanos.length == 0 ? 0 : nanos[nanos.length - 1] / 1e6, mean,
+                new LinkedHashMap<>(paths), stubCalls, sampleErrors);
+    }
+
+    private interface Outcome { void accept(String path, String error); }
+
+    /** 발화를 순서대로 돌려가며 requests 건 실행, nanos 가 null 이면 워밍업 */
+    private void drive(List<String> corpus, int concurrency, int requests, long[] nanos,
+                       AtomicInteger errors, Outcome outcome) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        LongAdder done = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            for (int w = 0; w < concurrency; w++) {
+                pool.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        String msg = corpus.get(i % corpus.size());
+                        long t = System.nanoTime();
+                        String path, error = null;
+                        try {
+                            path = pathOf(orchestrator.handle(msg, null));
+                        } catch (RuntimeException e) {
+                            path = "error";
+                            error = msg + " → " + e;
+                            if (errors != null) errors.incrementAndGet();
+                        }
+                        if (nanos != null) nanos[i] = System.nanoTime() - t;
+                        if (outcome != null) outcome.accept(path, error);
+                        done.increment();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+        }
+        if (!pool.awaitTermination(30, TimeUnit.MINUTES)) {
+            pool.shutdownNow();
+            throw new IllegalStateException("벤치마크 시간 초과 (" + done.sum() + "/" + requests + ")");
+        }
+    }
+
+    private static String pathOf(AiResult r) {
+        if (r.chart() != null) return "chart";
+        if (r.sql() != null) return "sql";
+        return "chat";
+    }
+
+    private void clearCaches() {
+        planCache.clear();
+        resultCache.clear();
+        llmCache.clear();
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * p) - 1)] / 1e6;
+    }
+
+    private List<String> load() throws IOException {
+        List<String> out = new ArrayList<>();
+        try (var in = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(CORPUS).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                out.add(line.trim());
+            }
+        }
+        return out;
+    }
+}
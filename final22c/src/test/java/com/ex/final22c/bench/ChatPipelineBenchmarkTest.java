@@ -0,0 +1,51 @@
+package com.ex.final22c.bench;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * 채팅 파이프라인 오프라인 부하 측정 (./gradlew benchmark --tests '*ChatPipelineBenchmarkTest')
+ * - bench 프로필: H2 + BenchDataSeeder 합성 데이터, DeepSeekStubController 가 LLM 대역
+ * - 스텁은 같은 서버의 /bench/deepseek 이라 실제 포트(server.port, 기본 8080)로 띄움
+ * - cold(캐시 비운 뒤) → warm(계획/결과/LLM 캐시 채워진 상태) 순서로 같은 코퍼스를 돌림
+ */
+@Tag("benchmark")
+@ActiveProfiles("bench")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
+class ChatPipelineBenchmarkTest {
+
+    @Autowired
+    private ChatBenchmark benchmark;
+
+    @Value("${ai.bench.concurrency:8}")
+    private int concurrency;
+
+    @Value("${ai.bench.requests:600}")
+    private int requests;
+
+    @Value("${ai.bench.warmup:50}")
+    private int warmup;
+
+    @Test
+    void coldThenWarm() throws Exception {
+        ChatBenchmark.Report cold = benchmark.run(concurrency, requests, warmup, true);
+        ChatBenchmark.Report warm = benchmark.run(concurrency, requests, 0, false);
+        System.out.println("[bench] cold " + cold);
+        System.out.println("[bench] warm " + warm);
+
+        assertEquals(0, cold.errors(), () -> String.valueOf(cold.sampleErrors()));
+        assertEquals(0, warm.errors(), () -> String.valueOf(warm.sampleErrors()));
+        // 캐시가 채워진 뒤에는 스텁(LLM) 호출이 줄고 지연도 줄어야 함
+        long coldCalls = cold.stubCalls().values().stream().mapToLong(Long::longValue).sum();
+        long warmCalls = warm.stubCalls().values().stream().mapToLong(Long::longValue).sum();
+        assertTrue(warmCalls < coldCalls, warmCalls + " vs " + coldCalls);
+        assertTrue(warm.p50Ms() <= cold.p50Ms(), warm.p50Ms() + " vs " + cold.p50Ms());
+    }
+}
@@ -0,0 +1,217 @@
+package com.ex.final22c.bench;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.ex.final22c.service.chat.IntentAnalyzer;
+import com.ex.final22c.service.chat.LocalIntentRouter;
+import com.ex.final22c.service.chat.RouteService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 벤치마크용 DeepSeek 대역 (bench 프로필 전용, deepseek.api.base-url 을 여기로 돌림)
+ * - POST {base}/chat/completions: 시스템 프롬프트로 호출 종류(라우터/SQL/차트/요약/일반)를 가려
+ *   classpath:bench/stub-completions.tsv 의 준비된 응답을 돌려줌 (질문 키워드 정규식으로 선택)
+ * - 지연: ai.bench.stub.latency-ms ± jitter-ms (논블로킹 delay, 서블릿 스레드 안 붙잡음)
+ * - stream=true(Accept: text/event-stream) 면 SSE 로 몇 글자씩 나눠 보내고 [DONE]
+ * - usage 는 글자 수 기반 추정치 (LlmUsageMeter/AiTrace 토큰 집계 경로 확인용)
+ */
+@Slf4j
+@Profile("bench")
+@RestController
+@RequestMapping("/bench/deepseek")
+public class DeepSeekStubController {
+
+    private static final String FILE = "bench/stub-completions.tsv";
+
+    enum Op { ROUTE, SQL, CHART, SUMMARIZE, ASK }
+
+    record Canned(Pattern when, String content) {}
+
+    private static final Pattern[] QUESTION_MARKERS = {
+            Pattern.compile("(?s)질문:\\n(.*?)(?:\\n\\n|$)"),
+            Pattern.compile("(?s)\\[사용자 요청]\\n(.*?)(?:\\n\\n|$)"),
+            Pattern.compile("(?s)\\nUser: (.*)$")
+    };
+
+    private final LocalIntentRouter localRouter;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final long tokenDelayMs;
+    private final Map<Op, List<Canned>> canned = new EnumMap<>(Op.class);
+    private final ObjectMapper om = new ObjectMapper();
+    private final Map<Op, AtomicLong> calls = new EnumMap<>(Op.class);
+
+    public DeepSeekStubController(LocalIntentRouter localRouter,
+                                  @Value("${ai.bench.stub.latency-ms:800}") long latencyMs,
+                                  @Value("${ai.bench.stub.jitter-ms:200}") long jitterMs,
+                                  @Value("${ai.bench.stub.token-delay-ms:15}") long tokenDelayMs) {
+        this.localRouter = localRouter;
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.tokenDelayMs = tokenDelayMs;
+        for (Op op : Op.values()) {
+            canned.put(op, new ArrayList<>());
+            calls.put(op, new AtomicLong());
+        }
+        load();
+    }
+
+    @PostMapping(value = "/chat/completions", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<Map<String, Object>> completions(@RequestBody Map<String, Object> body) {
+        String system = message(body, "system");
+        String user = message(body, "user");
+        String content = answer(system, user);
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("id", "stub-" + Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        resp.put("object", "chat.completion");
+        resp.put("model", body.getOrDefault("model", "deepseek-chat"));
+        resp.put("choices", List.of(Map.of("index", 0,
+                "message", Map.of("role", "assistant", "content", content), "finish_reason", "stop")));
+        resp.put("usage", Map.of("prompt_tokens", estimateTokens(system) + estimateTokens(user),
+                "completion_tokens", estimateTokens(content)));
+        return Mono.delay(delay()).thenReturn(resp);
+    }
+
+    /** stream=true 호출 (ChatService.callStream 은 Accept: text/event-stream 으로 보냄) */
+    @PostMapping(value = "/chat/completions", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> completionsStream(@RequestBody Map<String, Object> body) {
+        String content = answer(message(body, "system"), message(body, "user"));
+        List<String> chunks = new ArrayList<>();
+        for (int i = 0; i < content.length(); i += 6) chunks.add(content.substring(i, Math.min(content.length(), i + 6)));
+        return Mono.delay(delay()).thenMany(Flux.fromIterable(chunks)
+                .delayElements(Duration.ofMillis(tokenDelayMs))
+                .map(this::chunk)
+                .concatWith(Mono.just("[DONE]"))
+                .map(data -> ServerSentEvent.<String>builder().data(data).build()));
+    }
+
+    /** 호출 종류별 호출 수 (벤치 리포트에 포함) */
+    public Map<String, Long> calls() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        calls.forEach((op, n) -> out.put(op.name(), n.get()));
+        return out;
+    }
+
+    /* ===== 응답 선택 ===== */
+
+    private String answer(String system, String user) {
+        Op op = opOf(system, user);
+        calls.get(op).incrementAndGet();
+        String question = question(user);
+        return op == Op.ROUTE ? route(question) : pick(op, question);
+    }
+
+    private Duration delay() {
+        long jitter = jitterMs <= 0 ? 0 : ThreadLocalRandom.current().nextLong(-jitterMs, jitterMs + 1);
+        return Duration.ofMillis(Math.max(0, latencyMs + jitter));
+    }
+
+    static Op opOf(String system, String user) {
+        if (user.contains("You are a router")) return Op.ROUTE;   // RouteService 는 ask() 로 user 에 합쳐 보냄
+        if (system.contains("SQL 생성기")) return Op.SQL;
+        if (system.contains("데이터시각화")) return Op.CHART;
+        if (system.contains("결과를 한 줄로")) return Op.SUMMARIZE;
+        return Op.ASK;
+    }
+
+    /** 라우터 판정은 규칙 라우터 결과를 그대로 (신뢰도와 무관하게 모드만) */
+    private String route(String question) {
+        var d = localRouter.classify(IntentAnalyzer.analyze(question));
+        try {
+            return om.writeValueAsString(Map.of("mode", d.mode() == RouteService.Mode.SQL ? "SQL" : "CHAT", "reason", "stub " + d.reason()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String pick(Op op, String question) {
+        Canned fallback = null;
+        for (Canned c : canned.get(op)) {
+            if (c.when() == null) {
+                if (fallback == null) fallback = c;
+            } else if (c.when().matcher(question).find()) {
+                return c.content();
+            }
+        }
+        return fallback == null ? "" : fallback.content();
+    }
+
+    private String chunk(String text) {
+        try {
+            return om.writeValueAsString(Map.of("choices", List.of(Map.of("index", 0, "delta", Map.of("content", text)))));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* ===== 요청 파싱 ===== */
+
+    private static String message(Map<String, Object> body, String role) {
+        if (!(body.get("messages") instanceof List<?> msgs)) return "";
+        String out = "";
+        for (Object m : msgs) {
+            if (m instanceof Map<?, ?> mm && role.equals(mm.get("role")) && mm.get("content") instanceof String s) out = s;
+        }
+        return out;
+    }
+
+    private static String question(String user) {
+        for (Pattern p : QUESTION_MARKERS) {
+            Matcher m = p.matcher(user);
+            if (m.find()) return m.group(1).trim();
+        }
+        return user;
+    }
+
+    private static int estimateTokens(String s) {
+        return s == null ? 0 : Math.max(1, s.length() / 3);
+    }
+
+    /** 형식: OP<TAB>키워드 정규식(- 면 기본 응답)<TAB>응답 (\n 은 줄바꿈) */
+    private void load() {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(FILE).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] cols = line.split("\t", 3);
+                if (cols.length < 3) continue;
+                Op op = Op.valueOf(cols[0].trim());
+                Pattern when = "-".equals(cols[1].trim()) ? null : Pattern.compile(cols[1].trim());
+                canned.get(op).add(new Canned(when, cols[2].replace("\\n", "\n")));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(FILE + " 읽기 실패", e);
+        }
+        log.info("[bench-stub] 준비된 응답 {}개, 지연 {}±{}ms", canned.values().stream().mapToInt(List::size).sum(), latencyMs, jitterMs);
+    }
+}
@@ -0,0 +1,45 @@
+package com.ex.final22c.bench;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 테스트 전용 마이크로벤치마크 도우미 (@Tag("benchmark") 테스트에서 사용, ./gradlew benchmark)
+ * - 워밍업 라운드 후 측정 라운드마다 시간을 재서 op당 평균/중앙값 ns 계산
+ * - 결과값은 sink 에 섞어 JIT 가 호출을 지우지 못하게 함
+ */
+public final class MicroBench {
+    private MicroBench() {}
+
+    private static volatile int sink;
+
+    public record Result(String name, int opsPerRound, double avgNsPerOp, double p50NsPerOp) {
+        @Override
+        public String toString() {
+            return String.format("%s: avg %.1f ns/op, p50 %.1f ns/op (%d ops/round)", name, avgNsPerOp, p50NsPerOp, opsPerRound);
+        }
+    }
+
+    /** round 한 번 = opsPerRound 번 호출하는 body 실행 */
+    public static Result measure(String name, int warmupRounds, int rounds, int opsPerRound, Supplier<?> round) {
+        int h = 0;
+        for (int i = 0; i < warmupRounds; i++) h += hash(round.get());
+        long[] nanos = new long[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            h += hash(round.get());
+            nanos[i] = System.nanoTime() - t0;
+        }
+        sink += h;
+        Arrays.sort(nanos);
+        double avg = Arrays.stream(nanos).average().orElse(0) / opsPerRound;
+        double p50 = nanos[rounds / 2] / (double) opsPerRound;
+        Result r = new Result(name, opsPerRound, avg, p50);
+        System.out.println("[bench] " + r);
+        return r;
+    }
+
+    private static int hash(Object o) {
+        return o == null ? 0 : o.hashCode();
+    }
+}
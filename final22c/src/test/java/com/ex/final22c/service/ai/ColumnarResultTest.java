@@ -0,0 +1,242 @@
+package com.ex.final22c.service.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 컬럼형 결과 (ColumnarResult + ColumnarResultSerializer)
+ * - ResultSet 읽기: 자릿수 미확정 NUMBER 의 정수 축소(2^53 경계), 숫자 컬럼 null 비트셋, 날짜/LOB 정리
+ * - JSON 은 같은 값의 List<Map> 을 Jackson 이 쓴 것과 글자 그대로 같아야 함
+ * - of()/asRows() 왕복, topN 동률 순서
+ */
+class ColumnarResultTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** 컬럼 메타 (label, java.sql.Types, precision, scale) */
+    private record Col(String label, int type, int precision, int scale) {}
+
+    /** 고정 행으로 ResultSet/메타데이터 흉내 (ColumnarResult.read 가 쓰는 메서드만) */
+    private static ResultSet resultSet(List<Col> cols, Object[]... rows) {
+        ResultSetMetaData md = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class },
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getColumnCount" -> cols.size();
+                    case "getColumnLabel", "getColumnName" -> cols.get((Integer) args[0] - 1).label();
+                    case "getColumnType" -> cols.get((Integer) args[0] - 1).type();
+                    case "getPrecision" -> cols.get((Integer) args[0] - 1).precision();
+                    case "getScale" -> cols.get((Integer) args[0] - 1).scale();
+                    default -> throw new UnsupportedOperationException(m.getName());
+                });
+        int[] cursor = { -1 };
+        boolean[] wasNull = { false };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                (proxy, m, args) -> {
+                    switch (m.getName()) {
+                        case "getMetaData": return md;
+                        case "next": return ++cursor[0] < rows.length;
+                        case "wasNull": return wasNull[0];
+                        default: break;
+                    }
+                    Object v = rows[cursor[0]][(Integer) args[0] - 1];
+                    wasNull[0] = v == null;
+                    return switch (m.getName()) {
+                        case "getLong" -> v == null ? 0L : ((Number) v).longValue();
+                        case "getDouble" -> v == null ? 0d : ((Number) v).doubleValue();
+                        case "getString" -> v == null ? null : v.toString();
+                        case "getObject" -> v;
+                        default -> throw new UnsupportedOperationException(m.getName());
+                    };
+                });
+    }
+
+    private static Map<String, Object> row(Object... kv) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < kv.length; i += 2) m.put((String) kv[i], kv[i + 1]);
+        return m;
+    }
+
+    @Test
+    void numberExpressionsNarrowToLongOnlyWhenEveryValueIsAnExactInteger() throws SQLException {
+        double twoTo53 = 9.007199254740992E15;
+        ColumnarResult t = ColumnarResult.read(resultSet(List.of(
+                new Col("CNT", Types.NUMERIC, 0, -127),          // COUNT(*) → 자릿수 미확정
+                new Col("AVG_PRICE", Types.NUMERIC, 0, -127),    // 소수 섞임
+                new Col("EDGE", Types.NUMERIC, 0, -127),         // 2^53 까지는 정수
+                new Col("OVER", Types.NUMERIC, 0, -127),         // 2^53 넘으면 double 유지
+                new Col("ID", Types.NUMERIC, 10, 0),             // NUMBER(10) → 바로 LONG
+                new Col("RATE", Types.NUMERIC, 5, 2)),           // NUMBER(5,2) → DOUBLE
+                new Object[] { 3, 1.5, twoTo53, twoTo53 + 2, 1L, 0.25 },
+                new Object[] { null, 2.0, -twoTo53, 1.0, null, null },
+                new Object[] { 7, null, 0.0, 2.0, 3L, 1.0 }));
+
+        assertEquals(List.of(
+                new ColumnarResult.Column("CNT", ColumnarResult.Type.LONG),
+                new ColumnarResult.Column("AVG_PRICE", ColumnarResult.Type.DOUBLE),
+                new ColumnarResult.Column("EDGE", ColumnarResult.Type.LONG),
+                new ColumnarResult.Column("OVER", ColumnarResult.Type.DOUBLE),
+                new ColumnarResult.Column("ID", ColumnarResult.Type.LONG),
+                new ColumnarResult.Column("RATE", ColumnarResult.Type.DOUBLE)), t.columns());
+        assertEquals(3, t.rowCount());
+        assertEquals(9_007_199_254_740_992L, t.getLong(2, 0));
+        assertEquals(-9_007_199_254_740_992L, t.getLong(2, 1));
+        assertEquals(twoTo53 + 2, t.getDouble(3, 0));
+
+        // null 은 비트셋으로: 배열 값(0)과 무관하게 null, 같은 행 다른 컬럼은 영향 없음
+        assertTrue(t.isNull(0, 1));
+        assertNull(t.get(0, 1));
+        assertEquals(0L, t.getLong(0, 1));
+        assertFalse(t.isNull(0, 0));
+        assertEquals(3L, t.get(0, 0));
+        assertTrue(t.isNull(1, 2));
+        assertTrue(t.isNull(4, 1));
+        assertTrue(t.isNull(5, 1));
+        assertEquals(0.0, t.number(1, 2));
+        assertEquals(3L, t.firstNonNull(0));
+        assertEquals(1.5, t.firstNonNull(1));
+
+        // null 비트셋은 부분 결과에서도 새 행 번호로 따라감
+        ColumnarResult picked = t.select(new int[] { 1, 0 });
+        assertTrue(picked.isNull(0, 0));
+        assertFalse(picked.isNull(0, 1));
+        assertEquals(row("CNT", null, "AVG_PRICE", 2.0, "EDGE", -9_007_199_254_740_992L, "OVER", 1.0,
+                "ID", null, "RATE", null), picked.asRows().get(0));
+    }
+
+    @Test
+    void temporalAndLobValuesAreNormalized() throws SQLException {
+        Timestamp ts = Timestamp.valueOf("2025-03-01 13:45:10");
+        String iso = OffsetDateTime.ofInstant(ts.toInstant(), ZoneId.systemDefault()).toString();
+        ColumnarResult t = ColumnarResult.read(resultSet(List.of(
+                new Col("REGDATE", Types.TIMESTAMP, 0, 0),
+                new Col("PAYDAY", Types.DATE, 0, 0),
+                new Col("MEMO", Types.CLOB, 0, 0),
+                new Col("IMG", Types.BLOB, 0, 0),
+                new Col("TZ", -101, 0, 0)),                       // Oracle TIMESTAMP WITH TIME ZONE
+                new Object[] { ts, Date.valueOf("2025-03-01"), "긴 메모", new byte[] { 1, 2, 3 }, ts },
+                new Object[] { null, null, null, null, null }));
+
+        assertEquals(ColumnarResult.Type.STRING, t.columns().get(0).type());
+        assertEquals(ColumnarResult.Type.STRING, t.columns().get(1).type());
+        assertEquals(ColumnarResult.Type.STRING, t.columns().get(2).type());
+        assertEquals(ColumnarResult.Type.OBJECT, t.columns().get(3).type());   // BigDecimal 스케일 유지
+        assertEquals(ColumnarResult.Type.STRING, t.columns().get(4).type());
+
+        assertEquals(iso, t.get(0, 0));
+        assertEquals("2025-03-01", t.get(1, 0));
+        assertEquals("긴 메모", t.get(2, 0));
+        assertEquals("(bytes:3)", t.get(3, 0));
+        assertEquals(iso, t.get(4, 0));
+        for (int c = 0; c < t.columnCount(); c++) assertTrue(t.isNull(c, 1), t.columns().get(c).name());
+    }
+
+    @Test
+    void serializedJsonMatchesJacksonOnTheEquivalentRowMaps() throws Exception {
+        List<Map<String, Object>> expected = List.of(
+                row("NAME", "샤넬 \"No.5\"\n", "CNT", 12L, "AVG_PRICE", 1.5, "PRICE", new BigDecimal("129000.50"),
+                        "MAX \"ID\"", 9_007_199_254_740_993L),
+                row("NAME", null, "CNT", null, "AVG_PRICE", 1e-7, "PRICE", null, "MAX \"ID\"", -1L),
+                row("NAME", "딥티크\t", "CNT", 0L, "AVG_PRICE", null, "PRICE", new BigDecimal("0"),
+                        "MAX \"ID\"", Long.MAX_VALUE));
+        ColumnarResult t = ColumnarResult.of(expected);
+        assertEquals(ColumnarResult.Type.STRING, t.columns().get(0).type());
+        assertEquals(ColumnarResult.Type.LONG, t.columns().get(1).type());
+        assertEquals(ColumnarResult.Type.DOUBLE, t.columns().get(2).type());
+        assertEquals(ColumnarResult.Type.OBJECT, t.columns().get(3).type());   // BigDecimal 스케일 유지
+
+        String jackson = JSON.writeValueAsString(expected);
+        assertEquals(jackson, JSON.writeValueAsString(t));
+        assertEquals(jackson, JSON.writeValueAsString(t.asRows()));        // RowList 뷰도 같은 직렬화기
+
+        // ResultSet 경로로 읽은 결과(축소된 LONG 포함)도 같은 모양
+        ColumnarResult read = ColumnarResult.read(resultSet(List.of(
+                new Col("CNT", Types.NUMERIC, 0, -127), new Col("RATIO", Types.DOUBLE, 0, 0),
+                new Col("D", Types.TIMESTAMP, 0, 0)),
+                new Object[] { 4.0, 0.5, null }, new Object[] { null, null, null }));
+        assertEquals(JSON.writeValueAsString(List.of(row("CNT", 4L, "RATIO", 0.5, "D", null),
+                row("CNT", null, "RATIO", null, "D", null))), JSON.writeValueAsString(read));
+
+        assertEquals("[]", JSON.writeValueAsString(ColumnarResult.of(List.of())));
+    }
+
+    @Test
+    void asRowsAndOfRoundTrip() {
+        List<Map<String, Object>> src = List.of(
+                row("BRAND", "샤넬", "QTY", 3L, "AMOUNT", 10.5),
+                row("BRAND", null, "QTY", null, "AMOUNT", 2L),      // Long/Double 섞이면 DOUBLE
+                row("BRAND", "딥티크", "QTY", 8L, "AMOUNT", null));
+        ColumnarResult t = ColumnarResult.of(src);
+        List<Map<String, Object>> rows = t.asRows();
+
+        assertSame(t, ColumnarResult.of(rows));                      // 뷰면 원본 그대로
+        assertEquals(List.of("BRAND", "QTY", "AMOUNT"), t.columnNames());
+        assertEquals(3, rows.size());
+        assertEquals(src.get(0), rows.get(0));
+        assertEquals(src.get(2), rows.get(2));
+        assertEquals(row("BRAND", null, "QTY", null, "AMOUNT", 2.0), rows.get(1));
+        assertEquals(List.of("BRAND", "QTY", "AMOUNT"), new ArrayList<>(rows.get(0).keySet()));
+
+        // 대소문자 무시 조회, 없는 키
+        assertEquals(8L, rows.get(2).get("qty"));
+        assertTrue(rows.get(2).containsKey("Brand"));
+        assertFalse(rows.get(2).containsKey("PRICE"));
+        assertNull(rows.get(2).get("PRICE"));
+
+        // 뷰를 일반 List<Map> 으로 복사해 다시 만들어도 같은 값
+        List<Map<String, Object>> copied = new ArrayList<>();
+        for (Map<String, Object> r : rows) copied.add(new LinkedHashMap<>(r));
+        assertEquals(rows, ColumnarResult.of(copied).asRows());
+        assertEquals(t.columns(), ColumnarResult.of(copied).columns());
+    }
+
+    @Test
+    void topNKeepsOriginalOrderAmongTies() {
+        long[] sales = { 5, 9, 5, 7, 9, 1, 7 };
+        List<Map<String, Object>> src = new ArrayList<>();
+        for (int i = 0; i < sales.length; i++) src.add(row("ID", (long) i, "SALES", sales[i]));
+        ColumnarResult t = ColumnarResult.of(src);
+        int col = t.indexOf("SALES");
+
+        assertEquals(List.of(1L, 4L, 3L), ids(t.topN(col, 3)));
+        assertEquals(List.of(1L, 4L, 3L, 6L, 0L), ids(t.topN(col, 5)));
+        assertEquals(List.of(1L, 4L, 3L, 6L, 0L, 2L, 5L), ids(t.topN(col, 100)));
+        assertEquals(List.of(), ids(t.topN(col, 0)));
+
+        // null 은 0 으로 취급되어 맨 뒤
+        List<Map<String, Object>> withNull = new ArrayList<>(src);
+        withNull.add(1, row("ID", 99L, "SALES", null));
+        ColumnarResult n = ColumnarResult.of(withNull);
+        assertEquals(List.of(1L, 4L, 3L, 6L, 0L, 2L, 5L, 99L), ids(n.topN(col, 8)));
+        assertTrue(n.topN(col, 8).isNull(col, 7));
+    }
+
+    private static List<Long> ids(ColumnarResult t) {
+        Long[] out = new Long[t.rowCount()];
+        for (int r = 0; r < out.length; r++) out[r] = t.getLong(0, r);
+        return Arrays.asList(out);
+    }
+}
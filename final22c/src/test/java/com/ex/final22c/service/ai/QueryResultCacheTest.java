@@ -0,0 +1,129 @@
+package com.ex.final22c.service.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class QueryResultCacheTest {
+
+    private static final String ORDERS_SQL = "SELECT COUNT(*) AS CNT FROM ORDERS o WHERE o.REGDATE >= :start";
+    private static final String PRODUCT_SQL = "SELECT p.NAME, p.COUNT FROM PRODUCT p";
+    private static final String JOIN_SQL = "SELECT p.NAME, SUM(od.CONFIRMQUANTITY) AS QTY FROM ORDERDETAIL od "
+            + "JOIN PRODUCT p ON p.ID = od.ID GROUP BY p.NAME";
+    private static final List<Map<String, Object>> ROWS = List.of(Map.of("CNT", 3L));
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static QueryResultCache cache(String tableTtls) {
+        return new QueryResultCache(100, 1 << 20, 120, tableTtls);
+    }
+
+    private static void put(QueryResultCache cache, String sql) {
+        cache.put(QueryResultCache.keyOf(sql, Map.of()), sql, ROWS);
+    }
+
+    private static List<Map<String, Object>> get(QueryResultCache cache, String sql) {
+        return cache.get(QueryResultCache.keyOf(sql, Map.of()));
+    }
+
+    @Test
+    void keyIgnoresBindOrderButNotBindValues() {
+        Map<String, Object> ab = new LinkedHashMap<>();
+        ab.put("start", "2025-01-01");
+        ab.put("end", "2025-02-01");
+        Map<String, Object> ba = new LinkedHashMap<>();
+        ba.put("end", "2025-02-01");
+        ba.put("start", "2025-01-01");
+
+        assertEquals(QueryResultCache.keyOf(ORDERS_SQL, ab), QueryResultCache.keyOf(ORDERS_SQL, ba));
+        assertNotEquals(QueryResultCache.keyOf(ORDERS_SQL, ab),
+                QueryResultCache.keyOf(ORDERS_SQL, Map.of("start", "2025-01-01", "end", "2025-03-01")));
+        assertNotEquals(QueryResultCache.keyOf(ORDERS_SQL, ab), QueryResultCache.keyOf(PRODUCT_SQL, ab));
+        assertEquals(QueryResultCache.keyOf(ORDERS_SQL, null), QueryResultCache.keyOf(ORDERS_SQL, Map.of()));
+    }
+
+    @Test
+    void ttlIsTheShortestAmongReadTables() throws InterruptedException {
+        // PRODUCT:0 → PRODUCT 를 읽는 쿼리는 캐시하지 않음, ORDERDETAIL 과 조인해도 마찬가지
+        QueryResultCache zero = cache("PRODUCT:0");
+        put(zero, ORDERS_SQL);
+        put(zero, JOIN_SQL);
+        assertNotNull(get(zero, ORDERS_SQL));
+        assertNull(get(zero, JOIN_SQL));
+
+        // ORDERDETAIL:1 이면 PRODUCT(기본 120초)와 조인한 쿼리도 1초 뒤 만료
+        QueryResultCache shortTtl = cache("ORDERDETAIL:1");
+        put(shortTtl, JOIN_SQL);
+        put(shortTtl, PRODUCT_SQL);
+        Thread.sleep(1_100);
+        assertNull(get(shortTtl, JOIN_SQL));
+        assertNotNull(get(shortTtl, PRODUCT_SQL));
+    }
+
+    @Test
+    void invalidationRemovesOnlyEntriesReadingTheTable() {
+        QueryResultCache cache = cache("");
+        put(cache, ORDERS_SQL);
+        put(cache, PRODUCT_SQL);
+        put(cache, JOIN_SQL);
+
+        assertEquals(2, cache.invalidateTables("product"));
+        assertNotNull(get(cache, ORDERS_SQL));
+        assertNull(get(cache, PRODUCT_SQL));
+        assertNull(get(cache, JOIN_SQL));
+    }
+
+    @Test
+    void invalidateAfterCommitWaitsForCommit() {
+        QueryResultCache cache = cache("");
+        put(cache, PRODUCT_SQL);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit("PRODUCT");
+        assertNotNull(get(cache, PRODUCT_SQL));   // 커밋 전에는 그대로
+
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) s.afterCommit();
+        TransactionSynchronizationManager.clearSynchronization();
+        assertNull(get(cache, PRODUCT_SQL));
+    }
+
+    @Test
+    void rollbackKeepsTheEntry() {
+        QueryResultCache cache = cache("");
+        put(cache, PRODUCT_SQL);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidateAfterCommit("PRODUCT");
+        for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+            s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertNotNull(get(cache, PRODUCT_SQL));
+    }
+
+    @Test
+    void outsideTransactionInvalidatesImmediately() {
+        QueryResultCache cache = cache("");
+        put(cache, PRODUCT_SQL);
+
+        cache.invalidateAfterCommit("PRODUCT");
+
+        assertNull(get(cache, PRODUCT_SQL));
+    }
+}
@@ -0,0 +1,192 @@
+package com.ex.final22c.service.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * SqlCostGuard 를 메모리 대체 플랜 테이블로 검증 (DB 불필요)
+ * - EXPLAIN PLAN 은 SQL 안의 표식 문자열('cost=.. card=.. step=..')을 읽어 단계 행을 플랜 테이블에 넣음
+ * - plan-table 설정으로 대체 테이블 이름(AI_PLAN_STANDIN)을 쓰는지, 읽은 뒤 지우는지 확인
+ */
+class SqlCostGuardTest {
+
+    private static final String PLAN_TABLE = "AI_PLAN_STANDIN";
+    private static final Pattern EXPLAIN = Pattern.compile("EXPLAIN PLAN SET STATEMENT_ID = '([^']+)' FOR (.*)", Pattern.DOTALL);
+    private static final Pattern HINT = Pattern.compile("cost=(\\d+) card=(\\d+)(?: step=(\\d+))?");
+
+    private StandInPlanTable table;
+
+    @BeforeEach
+    void setUp() {
+        table = new StandInPlanTable();
+    }
+
+    private SqlCostGuard guard(boolean failOpen) {
+        return new SqlCostGuard(table, true, failOpen, 1_000, 10_000, 2000, PLAN_TABLE, 600, 16, 1000, 10);
+    }
+
+    @Test
+    void cheapPlanPassesIsCappedAndCached() {
+        SqlCostGuard g = guard(true);
+        String sql = "SELECT 'cost=10 card=5' AS plan, p.NAME FROM PRODUCT p";
+
+        SqlCostGuard.Checked c = g.check(sql);
+        assertNotNull(c.plan());
+        assertEquals(10, c.plan().cost(), 0.0);
+        assertTrue(c.capped());
+        assertTrue(c.sql().contains("FETCH FIRST 2000 ROWS ONLY"), c.sql());
+        assertTrue(table.rows.isEmpty(), "읽은 뒤 플랜 행은 지워야 함");
+
+        g.check(sql);
+        assertEquals(1, table.explains);
+        assertEquals(1, g.stats().planHits());
+    }
+
+    @Test
+    void costOrIntermediateCardinalityOverLimitIsRejected() {
+        SqlCostGuard g = guard(true);
+        assertThrows(SqlCostGuard.CostLimitException.class,
+                () -> g.check("SELECT 'cost=5000 card=5' AS plan, COUNT(*) FROM ORDERS"));
+        // 루트는 작아도 중간 단계 카디널리티가 크면 거절
+        assertThrows(SqlCostGuard.CostLimitException.class,
+                () -> g.check("SELECT 'cost=10 card=1 step=50000' AS plan, COUNT(*) FROM ORDERDETAIL"));
+        assertEquals(2, g.stats().rejected());
+        // 거절된 플랜도 기억 → 다시 EXPLAIN 하지 않음
+        assertThrows(SqlCostGuard.CostLimitException.class,
+                () -> g.check("SELECT 'cost=5000 card=5' AS plan, COUNT(*) FROM ORDERS"));
+        assertEquals(2, table.explains);
+    }
+
+    @Test
+    void failOpenExplainErrorIsNotCached() {
+        SqlCostGuard g = guard(true);
+        String sql = "SELECT 'cost=5000 card=5' AS plan, COUNT(*) FROM ORDERS";
+
+        table.failing = true;
+        SqlCostGuard.Checked c = g.check(sql);
+        assertNull(c.plan());
+        assertEquals(1, g.stats().explainErrors());
+
+        // 플랜 테이블이 돌아오면 같은 SQL을 다시 EXPLAIN 해서 비용 상한이 적용돼야 함
+        table.failing = false;
+        assertThrows(SqlCostGuard.CostLimitException.class, () -> g.check(sql));
+        assertEquals(1, g.stats().explained());
+        assertEquals(0, g.stats().planHits());
+    }
+
+    @Test
+    void failClosedExplainErrorRejects() {
+        SqlCostGuard g = guard(false);
+        table.failing = true;
+        assertThrows(SqlCostGuard.CostLimitException.class,
+                () -> g.check("SELECT 'cost=1 card=1' AS plan, COUNT(*) FROM ORDERS"));
+    }
+
+    @Test
+    void planTableNameMustBeAnIdentifier() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SqlCostGuard(table, true, true, 1, 1, 1, "PLAN_TABLE; DROP TABLE USERS", 1, 1, 1, 1));
+    }
+
+    /** ConnectionCallback 만 받는 JdbcTemplate. 커넥션은 메모리 플랜 테이블을 흉내내는 프록시 */
+    static final class StandInPlanTable extends JdbcTemplate {
+        final List<Object[]> rows = new ArrayList<>();   // { STATEMENT_ID, ID, COST, CARDINALITY }
+        int explains;
+        boolean failing;
+
+        @Override
+        public <T> T execute(ConnectionCallback<T> action) {
+            try {
+                return action.doInConnection(connection());
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (name, args) -> switch (name) {
+                case "createStatement" -> statement();
+                case "prepareStatement" -> prepared((String) args[0]);
+                default -> null;
+            });
+        }
+
+        private Statement statement() {
+            return proxy(Statement.class, (name, args) -> {
+                if (!"execute".equals(name)) return null;
+                if (failing) throw new SQLException("ORA-02404: specified plan table not found");
+                Matcher m = EXPLAIN.matcher((String) args[0]);
+                if (!m.matches()) throw new SQLException("EXPLAIN 아님: " + args[0]);
+                Matcher h = HINT.matcher(m.group(2));
+                if (!h.find()) throw new SQLException("표식 없음: " + m.group(2));
+                explains++;
+                double card = Double.parseDouble(h.group(2));
+                rows.add(new Object[] { m.group(1), 0, Double.parseDouble(h.group(1)), card });
+                rows.add(new Object[] { m.group(1), 1, 1d, h.group(3) == null ? card : Double.parseDouble(h.group(3)) });
+                return true;
+            });
+        }
+
+        private PreparedStatement prepared(String sql) throws SQLException {
+            if (!sql.contains(" FROM " + PLAN_TABLE + " ")) throw new SQLException("ORA-00942: " + sql);
+            Map<Integer, Object> params = new HashMap<>();
+            return proxy(PreparedStatement.class, (name, args) -> switch (name) {
+                case "setString" -> params.put((Integer) args[0], args[1]);
+                case "executeQuery" -> resultSet(params.get(1));
+                case "executeUpdate" -> {
+                    int n = 0;
+                    for (Iterator<Object[]> it = rows.iterator(); it.hasNext(); ) {
+                        if (it.next()[0].equals(params.get(1))) { it.remove(); n++; }
+                    }
+                    yield n;
+                }
+                default -> null;
+            });
+        }
+
+        private ResultSet resultSet(Object id) {
+            List<Object[]> hit = rows.stream().filter(r -> r[0].equals(id)).toList();
+            int[] at = { -1 };
+            return proxy(ResultSet.class, (name, args) -> switch (name) {
+                case "next" -> ++at[0] < hit.size();
+                case "getInt" -> (Integer) hit.get(at[0])[(Integer) args[0]];
+                case "getDouble" -> (Double) hit.get(at[0])[(Integer) args[0]];
+                default -> null;
+            });
+        }
+
+        interface Handler { Object on(String name, Object[] args) throws SQLException; }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Handler h) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, m, args) -> {
+                Object r = h.on(m.getName(), args);
+                if (r == null && m.getReturnType() == boolean.class) return false;
+                if (r == null && m.getReturnType() == int.class) return 0;
+                return r;
+            });
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import com.ex.final22c.controller.chat.AiResult;
+
+class AiJobServiceTest {
+
+    private final CountDownLatch proceed = new CountDownLatch(1);
+    private ThreadPoolTaskExecutor executor;
+    private AiJobService jobs;
+
+    /** routed 단계를 낸 뒤 proceed 까지 멈췄다가 sql-ready 를 내고 끝나는 파이프라인 */
+    private final class StubOrchestrator extends ChatOrchestratorService {
+        StubOrchestrator() {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public AiResult handle(String userMsg, Principal principal, AiStreamSink sink) {
+            sink.stage("routed", 1);
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sink.stage("sql-ready", 2);
+            return new AiResult("ok", null, List.of(), null);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+        jobs = new AiJobService(new StubOrchestrator(), executor, 10, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        proceed.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void stalledSubscriberDoesNotBlockPipelineOrStatus() throws Exception {
+        String id = jobs.submit("이번달 매출", null).jobId();
+        awaitStage(id, "routed");
+
+        // 재생 첫 이벤트에서 멈추는 구독자 (응답을 읽지 않는 SSE 클라이언트)
+        CountDownLatch replaying = new CountDownLatch(1), release = new CountDownLatch(1);
+        List<String> got = Collections.synchronizedList(new ArrayList<>());
+        Consumer<AiJobService.Event> stalled = e -> {
+            got.add(e.name());
+            replaying.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        Thread client = new Thread(() -> jobs.subscribe(id, null, stalled));
+        client.start();
+        assertTrue(replaying.await(2, TimeUnit.SECONDS));
+
+        // 구독자가 재생 중에 멈춰 있어도 파이프라인은 끝까지 가고 상태 조회도 바로 응답
+        proceed.countDown();
+        awaitStatus(id, AiJobService.Status.DONE);
+        assertEquals("done", jobs.get(id, null).lastStage());
+
+        release.countDown();
+        client.join(2_000);
+        assertEquals(List.of("routed", "sql-ready", "done"), got);
+    }
+
+    @Test
+    void lateSubscriberGetsFullReplayOnce() throws Exception {
+        String id = jobs.submit("이번달 매출", null).jobId();
+        proceed.countDown();
+        awaitStatus(id, AiJobService.Status.DONE);
+
+        List<String> got = new ArrayList<>();
+        assertFalse(jobs.subscribe(id, null, e -> got.add(e.name())));
+        assertEquals(List.of("routed", "sql-ready", "done"), got);
+    }
+
+    private void awaitStage(String id, String stage) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (!stage.equals(jobs.get(id, null).lastStage())) {
+            assertTrue(System.currentTimeMillis() < deadline, "단계 대기 시간 초과: " + stage);
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitStatus(String id, AiJobService.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (jobs.get(id, null).status() != status) {
+            assertTrue(System.currentTimeMillis() < deadline, "상태 대기 시간 초과: " + status);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 관리자 질문 샘플(ai/catalog-questions.tsv)로 AnalyticsCatalog 커버리지 측정
+ * - coverage: 템플릿으로 처리돼 LLM SQL 생성을 건너뛴 비율
+ * - accuracy: 기대 템플릿(또는 LLM 경로 "-")과 일치한 비율
+ * - perTemplate: 템플릿별 매칭 수 (0이면 샘플에 안 잡히는 템플릿)
+ */
+class AnalyticsCatalogCoverageTest {
+
+    private static final String CORPUS = "ai/catalog-questions.tsv";
+    private static final String LLM = "-";
+
+    private final AnalyticsCatalog catalog = new AnalyticsCatalog();
+
+    @Test
+    void templatesCoverSampleQuestions() throws IOException {
+        List<String[]> corpus = load();
+        assertFalse(corpus.isEmpty());
+        Map<String, Integer> perTemplate = new LinkedHashMap<>();
+        for (AnalyticsCatalog.Entry e : catalog.entries()) perTemplate.put(e.id(), 0);
+
+        int matched = 0, ok = 0;
+        List<String> misses = new ArrayList<>();
+        for (String[] c : corpus) {
+            String expected = c[0], question = c[1];
+            AnalyticsCatalog.Template t = catalog.find(IntentAnalyzer.analyze(question));
+            String actual = t == null ? LLM : t.id();
+            if (t != null) {
+                matched++;
+                perTemplate.merge(t.id(), 1, Integer::sum);
+            }
+            if (actual.equals(expected)) ok++;
+            else misses.add(expected + " → " + actual + " " + question);
+        }
+
+        int n = corpus.size();
+        double coverage = (double) matched / n, accuracy = (double) ok / n;
+        System.out.printf("[catalog] total=%d coverage=%.3f accuracy=%.3f perTemplate=%s%n", n, coverage, accuracy, perTemplate);
+        misses.forEach(m -> System.out.println("  miss: " + m));
+
+        // 라벨이 템플릿 id 그대로라 전부 맞아야 함 (틀리면 엉뚱한 템플릿 SQL이 실행됨)
+        assertEquals(1.0, accuracy, 0.0, () -> "misses=" + misses);
+        assertTrue(coverage >= 0.5, () -> "coverage " + coverage);
+        perTemplate.forEach((id, hits) -> assertTrue(hits > 0, () -> "샘플에 안 잡히는 템플릿: " + id));
+    }
+
+    private static List<String[]> load() throws IOException {
+        List<String[]> out = new ArrayList<>();
+        try (InputStream in = AnalyticsCatalogCoverageTest.class.getClassLoader().getResourceAsStream(CORPUS);
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] kv = line.split("\t", 2);
+                if (kv.length == 2) out.add(new String[]{ kv[0].trim(), kv[1].trim() });
+            }
+        }
+        return out;
+    }
+}
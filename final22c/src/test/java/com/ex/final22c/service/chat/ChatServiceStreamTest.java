@@ -0,0 +1,195 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * ChatService 스트리밍 호출(stream=true)과 논블로킹(Mono) 호출 — 로컬 스텁 서버(DeepSeek chat/completions 형식)로 검증
+ */
+class ChatServiceStreamTest {
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile Handler handler;
+    private LlmResponseCache responseCache;
+    private ChatService chat;
+
+    interface Handler {
+        void handle(HttpExchange ex) throws Exception;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", ex -> {
+            requests.incrementAndGet();
+            requestBodies.add(new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            try {
+                handler.handle(ex);
+            } catch (Exception e) {
+                throw new IOException(e);
+            } finally {
+                ex.close();
+            }
+        });
+        server.start();
+
+        responseCache = new LlmResponseCache(true, cacheDir.toString(), 0.3, 1 << 20, 1);
+        responseCache.open();
+        WebClient client = WebClient.create("http://127.0.0.1:" + server.getAddress().getPort());
+        chat = new ChatService(client, new LlmBulkhead(2, 4), new LlmUsageMeter(), responseCache);
+        ReflectionTestUtils.setField(chat, "model", "deepseek-chat");
+        ReflectionTestUtils.setField(chat, "path", "/chat/completions");
+        ReflectionTestUtils.setField(chat, "streamTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(chat, "sqlTimeoutMs", 5_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        responseCache.close();
+    }
+
+    private static void startSse(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream");
+        ex.sendResponseHeaders(200, 0);
+    }
+
+    private static void sendChunk(OutputStream out, String token) throws IOException {
+        String json = "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + token + "\"}}]}";
+        out.write(("data: " + json + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendDone(OutputStream out) throws IOException {
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendCompletion(HttpExchange ex, String content) throws IOException {
+        byte[] body = ("{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\""
+                + content + "\"},\"finish_reason\":\"stop\"}]}").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(200, body.length);
+        ex.getResponseBody().write(body);
+    }
+
+    @Test
+    void generateSqlMonoDoesNotHoldTheCallerAndSharesTheCache() throws Exception {
+        // 서버가 응답을 미루는 동안에도 호출 측은 바로 돌아와야 함 (스레드를 잡고 기다리지 않음)
+        CountDownLatch respond = new CountDownLatch(1);
+        handler = ex -> {
+            respond.await(3, TimeUnit.SECONDS);
+            sendCompletion(ex, "SELECT 1 FROM DUAL");
+        };
+
+        CompletableFuture<String> sql = chat.generateSqlMono("이번달 매출", "ORDERS(...)").toFuture();
+        assertFalse(sql.isDone());
+        respond.countDown();
+        assertEquals("SELECT 1 FROM DUAL", sql.get(3, TimeUnit.SECONDS));
+
+        // 블로킹 버전과 같은 요청 본문 → 디스크 캐시 히트 (HTTP 요청 1번)
+        assertEquals("SELECT 1 FROM DUAL", chat.generateSql("이번달 매출", "ORDERS(...)"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void tokensArriveBeforeTheStreamEnds() {
+        // 첫 토큰이 호출자에게 전달돼야 나머지를 보냄 → 응답 전체를 모았다가 넘기면 타임아웃
+        CountDownLatch firstTokenSeen = new CountDownLatch(1);
+        handler = ex -> {
+            startSse(ex);
+            OutputStream out = ex.getResponseBody();
+            sendChunk(out, "이번달 ");
+            if (!firstTokenSeen.await(3, TimeUnit.SECONDS)) return;
+            sendChunk(out, "매출은 ");
+            sendChunk(out, "1,200,000원이에요.");
+            sendDone(out);
+        };
+
+        List<String> tokens = new ArrayList<>();
+        String full = chat.summarizeStream("이번달 매출", "SELECT 1 FROM DUAL", "| 1 |", t -> {
+            tokens.add(t);
+            firstTokenSeen.countDown();
+        });
+
+        assertEquals(List.of("이번달 ", "매출은 ", "1,200,000원이에요."), tokens);
+        assertEquals("이번달 매출은 1,200,000원이에요.", full);
+        assertTrue(requestBodies.get(0).contains("\"stream\":true"), requestBodies.get(0));
+    }
+
+    @Test
+    void completedStreamIsServedFromCacheNextTime() {
+        handler = ex -> {
+            startSse(ex);
+            OutputStream out = ex.getResponseBody();
+            sendChunk(out, "안녕하세요");
+            sendDone(out);
+        };
+
+        assertEquals("안녕하세요", chat.summarizeStream("q", "SELECT 1 FROM DUAL", "t", t -> {}));
+        List<String> tokens = new ArrayList<>();
+        assertEquals("안녕하세요", chat.summarizeStream("q", "SELECT 1 FROM DUAL", "t", tokens::add));
+
+        assertEquals(1, requests.get());
+        assertEquals(List.of("안녕하세요"), tokens);
+    }
+
+    @Test
+    void httpErrorBecomesApiErrorText() {
+        handler = ex -> {
+            byte[] body = "{\"error\":\"rate limited\"}".getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(429, body.length);
+            ex.getResponseBody().write(body);
+        };
+
+        List<String> tokens = new ArrayList<>();
+        String full = chat.askStream("안녕", tokens::add);
+
+        assertTrue(full.startsWith("(API 오류)"), full);
+        assertTrue(tokens.isEmpty());
+    }
+
+    @Test
+    void partialStreamKeepsReceivedTokensAndIsNotCached() {
+        handler = ex -> {
+            startSse(ex);
+            OutputStream out = ex.getResponseBody();
+            sendChunk(out, "부분 ");
+            sendChunk(out, "응답");
+            // [DONE] 없이 연결 종료
+        };
+
+        assertEquals("부분 응답", chat.askStream("끊기는 질문", t -> {}));
+        chat.askStream("끊기는 질문", t -> {});
+        assertEquals(2, requests.get());
+    }
+}
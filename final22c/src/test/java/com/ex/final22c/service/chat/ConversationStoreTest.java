@@ -0,0 +1,147 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 멀티턴 후속 질문 해석 (직전 턴 1개 → 이번 발화)
+ * - 표: 직전 질문, 후속 발화, 기대 Kind, 기대 독립 질문(CONTEXT 는 접두 맥락 포함 여부만)
+ * - 기간만 바뀐 경우만 직전 플랜을 넘기고 나머지는 plan=null
+ * - 오래된 턴 압축, 세션 TTL/LRU
+ */
+class ConversationStoreTest {
+
+    private static final SqlPlan PLAN = new SqlPlan("SELECT 1 FROM DUAL", "SELECT 1 FROM DUAL",
+            false, false, false, false, false, true, null);
+
+    private record Case(String previous, String followUp, ConversationStore.Kind kind, String expected) {}
+
+    private static final List<Case> CASES = List.of(
+        new Case("이번달 상품별 매출", "그럼 지난달은?", ConversationStore.Kind.PERIOD, "지난달 상품별 매출"),
+        new Case("이번달 상품별 매출", "작년은?", ConversationStore.Kind.PERIOD, "작년 상품별 매출"),
+        new Case("이번달 판매량 상위 5개 상품", "그럼 상위 10개는?", ConversationStore.Kind.TOP_N, "이번달 판매량 상위 10개 상품"),
+        new Case("브랜드별 매출 순위", "20개", ConversationStore.Kind.TOP_N, "브랜드별 매출 순위 상위 20개"),
+        new Case("월별 매출 추이", "차트로 보여줘", ConversationStore.Kind.CHART, "월별 매출 추이 차트로 보여줘"),
+        new Case("샤넬 브랜드 매출", "그럼 딥티크는?", ConversationStore.Kind.BRAND, "딥티크 브랜드 매출"),
+        new Case("이번달 상품별 매출", "그럼 환불은 어때?", ConversationStore.Kind.CONTEXT, "(이전 대화 직전 질문: 상품별 매출) 그럼 환불은 어때?"),
+        new Case("샤넬 브랜드 매출", "그럼 리뷰는?", ConversationStore.Kind.CONTEXT, "(이전 대화 직전 질문: 샤넬 브랜드 매출) 그럼 리뷰는?"),
+        new Case("이번달 상품별 매출", "신규 회원 수 알려줘", ConversationStore.Kind.NEW, "신규 회원 수 알려줘")
+    );
+
+    private static ConversationStore store(int maxSessions, long ttlMinutes, int maxTurns) {
+        return new ConversationStore(maxSessions, ttlMinutes, maxTurns, 400);
+    }
+
+    private static void record(ConversationStore store, String session, String message, SqlPlan plan) {
+        ConversationStore.Resolution r = store.resolve(session, message);
+        store.record(session, r, IntentAnalyzer.analyze(r.message()), plan);
+    }
+
+    @Test
+    void followUpsAreRewrittenAgainstThePreviousTurn() {
+        for (Case c : CASES) {
+            ConversationStore store = store(10, 30, 4);
+            record(store, "s", c.previous(), PLAN);
+
+            ConversationStore.Resolution r = store.resolve("s", c.followUp());
+
+            String row = c.previous() + " → " + c.followUp();
+            assertEquals(c.kind(), r.kind(), row);
+            assertEquals(c.expected(), r.message(), row);
+            if (c.kind() == ConversationStore.Kind.PERIOD) assertSame(PLAN, r.plan(), row);
+            else assertNull(r.plan(), row);
+        }
+    }
+
+    @Test
+    void withoutHistoryEverythingIsNew() {
+        ConversationStore store = store(10, 30, 4);
+        for (Case c : CASES) {
+            ConversationStore.Resolution r = store.resolve("s", c.followUp());
+            assertEquals(ConversationStore.Kind.NEW, r.kind(), c.followUp());
+            assertEquals(c.followUp().trim(), r.message());
+        }
+        assertEquals(ConversationStore.Kind.NEW, store.resolve(null, "그럼 지난달은?").kind());
+    }
+
+    @Test
+    void chartTurnDoesNotHandItsPlanToAPeriodFollowUp() {
+        ConversationStore store = store(10, 30, 4);
+        record(store, "s", "월별 매출 추이 차트로 보여줘", PLAN);
+
+        ConversationStore.Resolution r = store.resolve("s", "그럼 작년은?");
+
+        assertEquals(ConversationStore.Kind.PERIOD, r.kind());
+        assertNull(r.plan());
+    }
+
+    @Test
+    void contextTurnsAreNotRecordedAsTheNextBase() {
+        ConversationStore store = store(10, 30, 4);
+        record(store, "s", "이번달 상품별 매출", PLAN);
+        record(store, "s", "그럼 환불은 어때?", null);   // CONTEXT → 기록 안 함
+
+        ConversationStore.Resolution r = store.resolve("s", "그럼 지난달은?");
+
+        assertEquals("지난달 상품별 매출", r.message());
+    }
+
+    @Test
+    void oldTurnsAreCompactedIntoTheContextDigest() {
+        ConversationStore store = store(10, 30, 2);
+        record(store, "s", "브랜드별 매출 순위", null);
+        record(store, "s", "신규 회원 수", null);
+        record(store, "s", "환불 많은 상품 목록", null);
+        record(store, "s", "리뷰 평점 높은 상품", null);
+
+        assertEquals(2, store.stats().compactions());
+        ConversationStore.Resolution r = store.resolve("s", "그럼 이유는?");
+        assertEquals(ConversationStore.Kind.CONTEXT, r.kind());
+        assertTrue(r.message().startsWith("(이전 대화 요약: 브랜드별 매출 순위 / 신규 회원 수; 직전 질문: 리뷰 평점 높은 상품)"),
+                r.message());
+    }
+
+    @Test
+    void longHistoryStaysWithinContextChars() {
+        ConversationStore store = store(10, 30, 1);
+        for (int i = 0; i < 50; i++) {
+            record(store, "s", "상품 " + i + "번 상세 판매 현황과 재고 수량, 리뷰 평점까지 전부 정리해서 보여주는 질문", null);
+        }
+        ConversationStore.Resolution r = store.resolve("s", "그럼 이유는?");
+
+        String context = r.message().substring(0, r.message().lastIndexOf(')') + 1);
+        assertTrue(context.length() <= 400, context.length() + ": " + context);
+        assertTrue(context.contains("49번"), context);
+    }
+
+    @Test
+    void expiredSessionStartsOver() throws InterruptedException {
+        ConversationStore store = store(10, 0, 4);   // TTL 0분 → 마지막 접근 이후 바로 만료
+        record(store, "s", "이번달 상품별 매출", PLAN);
+        Thread.sleep(5);
+
+        ConversationStore.Resolution r = store.resolve("s", "그럼 지난달은?");
+
+        assertEquals(ConversationStore.Kind.NEW, r.kind());
+        assertEquals(0, store.stats().sessions());
+    }
+
+    @Test
+    void leastRecentlyUsedSessionIsEvicted() {
+        ConversationStore store = store(2, 30, 4);
+        record(store, "a", "이번달 상품별 매출", PLAN);
+        record(store, "b", "이번달 상품별 매출", PLAN);
+        store.resolve("a", "그럼 지난달은?");          // a 를 최근으로
+        record(store, "c", "이번달 상품별 매출", PLAN);
+
+        assertEquals(2, store.stats().sessions());
+        assertEquals(ConversationStore.Kind.PERIOD, store.resolve("a", "그럼 지난달은?").kind());
+        assertEquals(ConversationStore.Kind.NEW, store.resolve("b", "그럼 지난달은?").kind());
+    }
+}
@@ -0,0 +1,86 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.bench.MicroBench;
+
+/**
+ * 발화 분석 마이크로벤치마크 (./gradlew benchmark)
+ * - 프레임 1회: 진입점에서 analyze 한 번 → 라우터/코얼레서 키/플랜 캐시 키가 같은 프레임 사용
+ * - 기준선: IntentFrame 도입 전 헬퍼 체인 사본(LegacyIntentChain) — handle/라우터/buildSqlPlan/buildFlexibleParams 가
+ *   같은 발화를 헬퍼마다 다시 스캔하고 일부 패턴은 호출마다 컴파일, PeriodResolver 를 두 번 통과
+ * 코퍼스: 라우터 라벨 발화 + 관리자 질문 샘플
+ */
+@Tag("benchmark")
+class IntentAnalyzerBenchmarkTest {
+
+    private final LocalIntentRouter router = new LocalIntentRouter();
+
+    @Test
+    void frameOnceVersusLegacyHelperChain() throws IOException {
+        List<String> corpus = new ArrayList<>();
+        corpus.addAll(column("ai/router-corpus.tsv", 1));
+        corpus.addAll(column("ai/catalog-questions.tsv", 1));
+        assertFalse(corpus.isEmpty());
+        int n = corpus.size();
+
+        // 기준선 사본이 지금 분석기와 같은 기간을 고르는지 (사본이 어긋나면 비교 의미 없음)
+        for (String q : corpus) {
+            assertEquals(IntentAnalyzer.analyze(q).period().label(), LegacyIntentChain.run(q).period().label(), q);
+        }
+
+        MicroBench.Result once = MicroBench.measure("analyze once + consumers", 200, 300, n, () -> {
+            int h = 0;
+            for (String q : corpus) {
+                IntentFrame f = IntentAnalyzer.analyze(q);
+                h += RequestCoalescer.keyOf(f, null).hashCode();
+                h += router.classify(f).mode().ordinal();
+                h += SqlPlanCache.keyOf(f.message()).hashCode();
+            }
+            return h;
+        });
+        MicroBench.Result legacy = MicroBench.measure("legacy helper chain", 200, 300, n, () -> {
+            int h = 0;
+            for (String q : corpus) {
+                LegacyIntentChain.Outcome o = LegacyIntentChain.run(q);
+                h += o.sink() + o.mode().ordinal() + (o.planKey() == null ? 0 : o.planKey().hashCode());
+            }
+            return h;
+        });
+        MicroBench.measure("analyze only", 200, 300, n, () -> {
+            int h = 0;
+            for (String q : corpus) h += IntentAnalyzer.analyze(q).topN();
+            return h;
+        });
+
+        assertTrue(once.p50NsPerOp() < legacy.p50NsPerOp(), once + " vs " + legacy);
+    }
+
+    private static List<String> column(String resource, int col) throws IOException {
+        List<String> out = new ArrayList<>();
+        InputStream in = IntentAnalyzerBenchmarkTest.class.getClassLoader().getResourceAsStream(resource);
+        assertTrue(in != null, resource);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] cols = line.split("\t");
+                if (cols.length > col) out.add(cols[col].trim());
+            }
+        }
+        return out;
+    }
+}
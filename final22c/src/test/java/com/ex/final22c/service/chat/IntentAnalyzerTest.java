@@ -0,0 +1,55 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class IntentAnalyzerTest {
+
+    @Test
+    void twoProductCompareExtractsBothNames() {
+        IntentFrame f = IntentAnalyzer.analyze("\"블랑쉬 50ml\" vs \"집시워터 100ml\" 판매량 비교");
+        assertTrue(f.twoProductCompare());
+        assertEquals("블랑쉬 50ml", f.compareA());
+        assertEquals("집시워터 100ml", f.compareB());
+        assertTrue(f.productStats());
+    }
+
+    @Test
+    void metricListWithSlashIsNotACompare() {
+        IntentFrame f = IntentAnalyzer.analyze("이번달 매출/주문 건수 알려줘");
+        assertFalse(f.twoProductCompare());
+        assertEquals("", f.compareA());
+        assertEquals("", f.compareB());
+        assertTrue(f.ordersRelated());
+    }
+
+    @Test
+    void extractedValuesAndFlags() {
+        IntentFrame f = IntentAnalyzer.analyze("샤넬 브랜드 리뷰 20건 이상 상위 10개 작년 대비 월별 차트");
+        assertEquals(10, f.topN());
+        assertEquals(20, f.minReviews());
+        assertEquals("샤넬", f.brand());
+        assertTrue(f.yoy());
+        assertTrue(f.monthly());
+        assertTrue(f.chart());
+        assertTrue(f.asksReview());
+    }
+
+    @Test
+    void productPhraseIsQuotedOnce() {
+        IntentFrame f = IntentAnalyzer.analyze("블랑쉬 50ml 환불률");
+        assertEquals("블랑쉬 50ml", f.productQuery());
+        assertEquals(1, f.message().chars().filter(c -> c == '"').count() / 2);
+    }
+
+    @Test
+    void ordersQuestionDefaultsToLast30Days() {
+        IntentFrame f = IntentAnalyzer.analyze("주문 몇 건이야");
+        assertEquals("최근 30일", f.period().label());
+        assertNull(f.brand());
+    }
+}
@@ -0,0 +1,401 @@
+package com.ex.final22c.service.chat;
+
+import com.ex.final22c.sql.PeriodResolver;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * IntentFrame 도입 전 오케스트레이터의 헬퍼 체인 사본 (벤치마크 기준선, 9e15791 직전 ChatOrchestratorService)
+ * - keepMlPhrase/extractProductQuery/extractBrandName/extractMonthsFromMessage 는 호출마다 Pattern.compile
+ * - mentionsThisWeekStrict 는 String.matches/replaceAll
+ * - handle → 라우터 → 기간 결정 → buildSqlPlan → buildFlexibleParams 순서로 같은 발화를 헬퍼마다 다시 스캔,
+ *   플랜 캐시 키(PeriodResolver.stripPeriodPhrases)와 기간 결정(PeriodResolver.resolveFromUtterance)이 따로 돎
+ * 로그 출력(isUsersRelatedQuery 의 log.info)만 뺐음
+ */
+final class LegacyIntentChain {
+    private LegacyIntentChain(){}
+
+    /** 체인 결과 (벤치마크가 최적화로 지워지지 않게 + 새 분석기와 기간 비교용) */
+    record Outcome(String planKey, RouteService.Mode mode, PeriodResolver.ResolvedPeriod period, int sink) {}
+
+    /** 옛 handle(SQL 경로) 이 실행 전까지 부르던 헬퍼 순서 그대로 */
+    static Outcome run(String userMsg) {
+        // 0) 메시지 전처리
+        String msg = (userMsg == null ? "" : userMsg);
+        msg = autoQuoteProductName(msg);
+        if (!msg.contains("\"")) {
+            Matcher m = P_PRODUCT_NAME_WITH_ML.matcher(msg);
+            if (m.find()) {
+                String phrase = m.group(0).trim();
+                msg = msg.replace(phrase, "\"" + phrase + "\"");
+            }
+        }
+        boolean asksReview = (msg.contains("리뷰") || msg.contains("평점") || msg.contains("별점"));
+        boolean wantsTopRated = asksReview && (containsAny(msg, "top", "TOP", "상위", "최고", "베스트"));
+
+        // 0-1) 플랜 캐시 키 (PeriodResolver 1차, 차트 요청은 조회 안 함)
+        String planKey = SqlPlanCache.keyOf(msg);
+        if (isChartIntent(msg)) planKey = null;
+
+        // 1) 강제 SQL 판정, 아니면 라우터가 같은 헬퍼를 다시 호출
+        boolean forceSql = isProductStatsIntent(msg)
+                || isUsersRelatedQuery(msg)
+                || isTwoProductCompare(msg)
+                || wantsTopRated;
+        RouteService.Mode mode = forceSql ? RouteService.Mode.SQL : classify(msg);
+
+        // 2) 기간 결정 (PeriodResolver 2차)
+        PeriodResolver.ResolvedPeriod period;
+        boolean vipMode = msg.toUpperCase(Locale.ROOT).contains("VIP")
+                || (msg.contains("누적") && (msg.contains("구매") || msg.contains("구매액")));
+        if (vipMode) {
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간(VIP)");
+        } else if (mentionsThisWeek(msg)) {
+            var range = weekRangeKST();
+            period = new PeriodResolver.ResolvedPeriod(
+                    range[0].toLocalDateTime(),
+                    range[1].toLocalDateTime(),
+                    "이번 주"
+            );
+        } else if (hasExplicitPeriodWords(msg)) {
+            period = PeriodResolver.resolveFromUtterance(msg);
+        } else if (isAllTimeQuery(msg)) {
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간");
+        } else if (isTwoProductCompare(msg)) {
+            LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+            LocalDateTime endTime   = LocalDateTime.now()
+                    .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+            period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간(비교)");
+        } else {
+            if ((isOrdersRelatedQuery(msg, null) && !isProductStatsIntent(msg)) || isUsersRelatedQuery(msg)) {
+                LocalDateTime endTime   = LocalDateTime.now()
+                        .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+                LocalDateTime startTime = endTime.minusDays(30);
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "최근 30일");
+            } else {
+                LocalDateTime startTime = LocalDateTime.of(2020, 1, 1, 0, 0);
+                LocalDateTime endTime   = LocalDateTime.now()
+                        .plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "전체 기간");
+            }
+        }
+        if (isUsersRelatedQuery(msg) && saysMonthly(msg)) {
+            long days = Duration.between(period.start(), period.end()).toDays();
+            if (days <= 40) {
+                LocalDate today = LocalDate.now();
+                LocalDateTime startTime = today.minusMonths(11).withDayOfMonth(1).atStartOfDay();
+                LocalDateTime endTime   = today.withDayOfMonth(1).plusMonths(1).atStartOfDay();
+                period = new PeriodResolver.ResolvedPeriod(startTime, endTime, "최근 12개월");
+            }
+        }
+        // 3) 차트 의도 재확인
+        int sink = isChartIntent(msg) ? 1 : 0;
+
+        // 5) buildSqlPlan 의 의도 판정/추출
+        boolean yoy = isYoY(msg);
+        boolean mom = isMoM(msg);
+        if (mom && !isTwoProductCompare(msg)) sink++;
+        TwoProducts tpProbe = extractTwoProducts(msg);
+        boolean wantCompare = isTwoProductCompare(msg) && !tpProbe.a().isBlank() && !tpProbe.b().isBlank();
+        if (wantCompare) sink++;
+        if (yoy && !isTwoProductCompare(msg) && extractProductQuery(msg) != null) sink++;
+        sink += extractTopN(msg, 5) + extractMinReviews(msg, 3);
+        if (isProductStatsIntent(msg)) sink++;
+
+        // 8) buildFlexibleParams 의 :q / 브랜드 / 휴면 개월
+        String q = extractProductQuery(msg);
+        if (q != null) sink += q.length();
+        String brand = extractBrandName(msg);
+        if (brand != null) sink += brand.length();
+        if (msg.contains("휴면") || msg.contains("미구매")) sink += extractMonthsFromMessage(msg);
+
+        return new Outcome(planKey, mode, period, sink);
+    }
+
+    // === 옛 LocalIntentRouter.classify(String): 오케스트레이터 정적 헬퍼를 신호로 재호출 ===
+    private static final Pattern ENTITY_WORDS =
+            Pattern.compile("(?i)(상품|제품|브랜드|리뷰|후기|평점|별점|환불|재고|발주|입고|노트|용량|장바구니|배송|\\bproducts?\\b|\\bbrands?\\b|\\breviews?\\b|\\brefunds?\\b)");
+    private static final Pattern AGG_WORDS =
+            Pattern.compile("(?i)(몇\\s*(개|명|건|원)|얼마|합계|총합|평균|순위|랭킹|내역|명단|구매액|환불률|휴면|미구매|\\d+\\s*(명|개|건)|\\bTOP\\s*\\d*|상위|하위|건수|개수|추이|집계|조회|목록|리스트|가장\\s*(많|적|높|낮)|\\bcount\\b|\\bsum\\b|\\bavg\\b)");
+    private static final Pattern SMALL_TALK =
+            Pattern.compile("(?i)(안녕|반가|고마|감사|수고|ㅋㅋ|ㅎㅎ|농담|심심|날씨|기분|너는|넌\\s|누구야|이름이|뭐\\s*해|\\bhello\\b|\\bhi\\b|\\bthanks?\\b|\\bjoke\\b|how\\s+are\\s+you)");
+    private static final Pattern OPINION =
+            Pattern.compile("(?i)(어떻게\\s*생각|어떻게\\s*(쓰|하|해)|좋을까|의견|조언|팁|방법|전략|아이디어|왜\\s|설명해|뜻이|의미가|차이가\\s*뭐|마케팅|문구|카피|써\\s*줘|작성해|추천해)");
+
+    private static RouteService.Mode classify(String msg) {
+        if (msg == null || msg.isBlank()) return RouteService.Mode.CHAT;
+        double sqlMiss = 1.0;
+        if (isProductStatsIntent(msg))        sqlMiss *= 1 - 0.90;
+        if (isTwoProductCompare(msg))         sqlMiss *= 1 - 0.85;
+        if (isOrdersRelatedQuery(msg, null))  sqlMiss *= 1 - 0.65;
+        if (isUsersRelatedQuery(msg))         sqlMiss *= 1 - 0.50;
+        if (isMoM(msg) || isYoY(msg))         sqlMiss *= 1 - 0.50;
+        if (isChartIntent(msg))               sqlMiss *= 1 - 0.50;
+        if (hasExplicitPeriodWords(msg))      sqlMiss *= 1 - 0.30;
+        if (saysMonthly(msg))                 sqlMiss *= 1 - 0.30;
+        if (AGG_WORDS.matcher(msg).find())    sqlMiss *= 1 - 0.50;
+        if (ENTITY_WORDS.matcher(msg).find()) sqlMiss *= 1 - 0.40;
+        double chatMiss = 1.0;
+        if (SMALL_TALK.matcher(msg).find()) chatMiss *= 1 - 0.80;
+        if (OPINION.matcher(msg).find())    chatMiss *= 1 - 0.70;
+        double sql = 1 - sqlMiss, chat = 1 - chatMiss;
+        return (sql >= chat && sql > 0) ? RouteService.Mode.SQL : RouteService.Mode.CHAT;
+    }
+
+    // === 이하 옛 ChatOrchestratorService 헬퍼 (원문 그대로) ===
+    private static final Pattern MOM_KEYWORDS =
+           Pattern.compile("(?i)(전월\\s*대비|MoM|month\\s*over\\s*month|월\\s*대비|달\\s*대비)");
+
+    static boolean isMoM(String msg){
+        return msg != null && MOM_KEYWORDS.matcher(msg).find();
+    }
+    private static final Pattern PRODUCT_PHRASE =
+            Pattern.compile("([\\p{L}\\p{N}][\\p{L}\\p{N}\\s\\-·’'()]+?\\s*\\d+\\s*ml)\\b",
+                    Pattern.CASE_INSENSITIVE);
+    private static String keepMlPhrase(String s){
+        if (s == null) return "";
+        Matcher m = Pattern.compile(
+            "([\\p{L}\\p{N}][\\p{L}\\p{N}\\s\\-·’'()]+?\\s*\\d+\\s*ml)",
+            Pattern.CASE_INSENSITIVE
+        ).matcher(s);
+        return m.find() ? m.group(1).trim() : s.trim();
+    }
+    private static boolean mentionsThisWeek(String msg){
+        return mentionsThisWeekStrict(msg);
+    }
+
+    private static final Pattern TOPN_PATTERN =
+           Pattern.compile("(?i)(?:top\\s*(\\d+)|상위\\s*(\\d+))");
+    private static final Pattern MIN_REVIEW_PATTERN =
+           Pattern.compile("(?:리뷰|후기)\\s*(\\d+)\\s*건\\s*이상");
+
+    private static int extractTopN(String msg, int def) {
+        if (msg == null) return def;
+        Matcher m = TOPN_PATTERN.matcher(msg);
+        if (m.find()) {
+            for (int i=1;i<=m.groupCount();i++) {
+                String g = m.group(i);
+                if (g!=null) try { return Math.max(1, Math.min(Integer.parseInt(g), 100)); } catch (Exception ignore) {}
+            }
+        }
+        return def;
+    }
+    private static int extractMinReviews(String msg, int def) {
+        if (msg == null) return def;
+        Matcher m = MIN_REVIEW_PATTERN.matcher(msg);
+        if (m.find()) try { return Math.max(1, Integer.parseInt(m.group(1))); } catch (Exception ignore) {}
+        return def;
+    }
+
+    private static String autoQuoteProductName(String msg) {
+        if (msg == null) return null;
+        if (msg.contains("\"")) return msg;
+        Matcher m = PRODUCT_PHRASE.matcher(msg);
+        StringBuffer sb = new StringBuffer();
+        boolean quoted = false;
+        while (m.find()) {
+            String phrase = m.group(1).trim();
+            if (phrase.matches(".*\\d+\\s*ml.*")) {
+                m.appendReplacement(sb, "\"" + Matcher.quoteReplacement(phrase) + "\"");
+                quoted = true;
+            }
+        }
+        m.appendTail(sb);
+        return quoted ? sb.toString() : msg;
+    }
+
+    private record TwoProducts(String a, String b) {}
+
+    private static final Pattern YOY_KEYWORDS =
+           Pattern.compile("(?i)(전년\\s*동기|전년\\s*동기간|전년\\s*대비|작년\\s*동기|작년\\s*동기간|작년\\s*대비|YoY|year\\s*over\\s*year|yoy)");
+
+    static boolean isYoY(String msg){
+        return msg != null && YOY_KEYWORDS.matcher(msg).find();
+    }
+
+    private static TwoProducts extractTwoProducts(String msg) {
+        if (msg == null) return new TwoProducts("", "");
+
+        Matcher m = TWO_QUOTED.matcher(msg);
+        if (m.find()) return new TwoProducts(keepMlPhrase(m.group(1)), keepMlPhrase(m.group(2)));
+
+        m = TWO_ML.matcher(msg);
+        if (m.find()) return new TwoProducts(keepMlPhrase(m.group(1)), keepMlPhrase(m.group(2)));
+
+        String cleaned = msg.replaceAll("[\"'`]", " ").trim();
+        String[] parts = P_VS.split(cleaned);
+        if (parts.length >= 2) {
+            String a = parts[0].trim(), b = parts[1].trim();
+            if (looksLikeProduct(a) && looksLikeProduct(b)) {
+                return new TwoProducts(keepMlPhrase(a), keepMlPhrase(b));
+            }
+        }
+        return new TwoProducts("", "");
+    }
+    private static String extractProductQuery(String msg) {
+        if (msg == null) return null;
+        Matcher quoted = Pattern.compile("\"([^\"]{2,80}?)\"").matcher(msg);
+        if (quoted.find()) return quoted.group(1);
+        Matcher m = PRODUCT_PHRASE.matcher(msg);
+        if (m.find()) return m.group(1);
+        return null;
+    }
+
+    private static int extractMonthsFromMessage(String msg) {
+        Pattern monthPattern = Pattern.compile("(\\d+)개월");
+        Matcher m = monthPattern.matcher(msg);
+        if (m.find()) {
+            return Integer.parseInt(m.group(1));
+        }
+        return 3;
+    }
+
+    private static final Pattern USERS_RELATED_KEYWORDS =
+           Pattern.compile("(?i)(회원|가입|신규|고객|사용자|마일리지|\\bTOP\\b|\\bVIP\\b|\\bmembers?\\b|\\busers?\\b|\\bcustomers?\\b)");
+
+    static boolean isUsersRelatedQuery(String userMsg) {
+        return userMsg != null && USERS_RELATED_KEYWORDS.matcher(userMsg).find();
+    }
+
+    static boolean saysMonthly(String msg){
+        return containsAny(msg, "월별", "monthly", "month");
+    }
+    private static final Pattern INTENT_ANY_CHART =
+           Pattern.compile("(차트|그래프|분포|비율|파이|도넛|chart|distribution)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern ORDERS_RELATED_KEYWORDS =
+           Pattern.compile("(?i)(매출|주문|결제|판매량|매출액|\\brevenue\\b|\\bsales\\b|\\borders?\\b|\\bpayments?\\b)");
+
+    private static final Pattern ALL_TIME_KEYWORDS =
+            Pattern.compile("(?i)(전체|전체기간|누적|전기간|모든|총|all\\s*time|total|cumulative)");
+
+    private static final Pattern EXPLICIT_PERIOD_KEYWORDS =
+           Pattern.compile("(?i)(오늘|어제|이번|지난|작년|올해|전년|전월|월별|주별|일별|분기|상반기|하반기"
+               + "|최근\\s*\\d+\\s*(일|주|개월|달|년)"
+               + "|(일주일|1주일|한\\s*주|한주)"
+               + "|\\bQ[1-4]\\b|\\d{4}\\s*년|\\d{1,2}\\s*월|this|last|previous)");
+
+    private static String extractBrandName(String msg){
+        if (msg == null) return null;
+        Matcher m1 = Pattern.compile("([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{0,40}?)\\s*브랜드").matcher(msg);
+        if (m1.find()) return m1.group(1).trim();
+        Matcher m2 = Pattern.compile("브랜드\\s*([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{0,40})").matcher(msg);
+        if (m2.find()) return m2.group(1).trim();
+        return null;
+    }
+    private static boolean isAllTimeQuery(String userMsg) {
+        if (userMsg == null) return false;
+        return ALL_TIME_KEYWORDS.matcher(userMsg).find();
+    }
+    static boolean hasExplicitPeriodWords(String msg){
+        return msg != null && EXPLICIT_PERIOD_KEYWORDS.matcher(msg).find();
+    }
+    private static boolean mentionsThisWeekStrict(String msg){
+        if (msg == null) return false;
+
+        String s = msg.toLowerCase();
+        String sNoSpace = s.replaceAll("\\s+", "");
+
+        boolean hasThisWeek =
+                s.contains("이번 주") || sNoSpace.contains("이번주")
+             || s.contains("금주")   || s.contains("this week");
+
+        boolean looksLikeWeekCompare =
+                s.contains("지난주") || s.contains("지난 주") || s.contains("전주")
+             || s.matches(".*이번\\s*주\\s*(vs|대비|비교).*");
+
+        boolean hasAbsoluteDate =
+                s.matches(".*\\d{4}\\s*[-/.년]\\s*\\d{1,2}(\\s*[-/.월]\\s*\\d{1,2}(\\s*일)?)?.*")
+             || s.matches(".*\\d{1,2}\\s*월\\s*\\d{1,2}\\s*일.*");
+
+        return hasThisWeek && !looksLikeWeekCompare && !hasAbsoluteDate;
+    }
+
+    static boolean isOrdersRelatedQuery(String userMsg, String generatedSql) {
+        if (generatedSql != null && generatedSql.toUpperCase().contains("ORDERS")) return true;
+        if (userMsg != null && ORDERS_RELATED_KEYWORDS.matcher(userMsg).find()) return true;
+        return false;
+    }
+
+    private static final Pattern P_PRODUCT_NAME_WITH_ML =
+            Pattern.compile("(?i)([\\p{L}\\p{N}][\\p{L}\\p{N}\\s]{1,80})\\s*([0-9]{1,4})\\s*m\\s*l");
+
+    private static final Pattern P_METRIC_KEYWORDS =
+            Pattern.compile("(?i)(환불|환불률|리뷰|평점|별점|판매|판매량|매출|주문|통계|누적|총계)");
+
+    static boolean isProductStatsIntent(String msg) {
+        if (msg == null) return false;
+        return P_PRODUCT_NAME_WITH_ML.matcher(msg).find()
+                && P_METRIC_KEYWORDS.matcher(msg).find();
+    }
+
+    private static final Pattern P_VS =
+            Pattern.compile("(?i)\\s*(?:vs\\.?|대비|비교|그리고|&|/|,)\\s*");
+    private static final Pattern TWO_QUOTED =
+            Pattern.compile("\"([^\"]{2,80})\".*?\"([^\"]{2,80})\"");
+    private static final Pattern TWO_ML =
+            Pattern.compile("([\\p{L}\\p{N} ].*?\\d+\\s*m\\s*l).*?([\\p{L}\\p{N} ].*?\\d+\\s*m\\s*l)",
+                    Pattern.CASE_INSENSITIVE);
+    static boolean isTwoProductCompare(String msg) {
+        if (msg == null) return false;
+        if (TWO_QUOTED.matcher(msg).find()) return true;
+        if (TWO_ML.matcher(msg).find()) return true;
+
+        if (msg.contains("/") && METRIC_WORDS.matcher(msg).find()
+            && !PRODUCT_PHRASE.matcher(msg).find()) return false;
+
+        String cleaned = msg.replaceAll("[\"'`]", " ").trim();
+        String[] parts = P_VS.split(cleaned);
+        if (parts.length >= 2) {
+            String a = parts[0].trim(), b = parts[1].trim();
+            return looksLikeProduct(a) && looksLikeProduct(b);
+        }
+        return false;
+    }
+
+    static boolean isChartIntent(String msg){
+        if (msg == null) return false;
+        return INTENT_ANY_CHART.matcher(msg).find();
+    }
+
+    private static Timestamp[] weekRangeKST() {
+        ZoneId KST = ZoneId.of("Asia/Seoul");
+        LocalDate today = LocalDate.now(KST);
+        WeekFields wf = WeekFields.ISO;
+        LocalDate monday = today.with(wf.dayOfWeek(), 1);
+        LocalDate nextMonday = monday.plusWeeks(1);
+        return new Timestamp[]{
+                Timestamp.valueOf(monday.atStartOfDay()),
+                Timestamp.valueOf(nextMonday.atStartOfDay())
+        };
+    }
+
+    private static boolean containsAny(String s, String... ks){
+        if (s==null) return false;
+        String t = s.toLowerCase(Locale.ROOT);
+        for (String k: ks) if (t.contains(k.toLowerCase(Locale.ROOT))) return true;
+        return false;
+    }
+
+    private static final Pattern METRIC_WORDS =
+           Pattern.compile("(?i)(판매|매출|환불|리뷰|평점|별점|주문|통계|수량|금액|sales?|revenue|refunds?|reviews?|ratings?|orders?)");
+
+    private static boolean looksLikeProduct(String t){
+        if (t == null) return false;
+        return PRODUCT_PHRASE.matcher(t).find();
+    }
+}
@@ -0,0 +1,220 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * LLM 응답 디스크 캐시
+ * - 재기동(close → 새 인스턴스 open) 후에도 같은 키로 히트
+ * - 로그 끝이 잘리거나 CRC 가 틀린 레코드는 open 때 잘라내고 그 앞까지만 복원
+ * - 살아 있는 바이트 기준 LRU 제거, 덮어쓰기로 파일이 불어나면 압축
+ * - temperature > 0.3 인 요청은 키 자체가 없음(캐시 우회)
+ */
+class LlmResponseCacheTest {
+
+    private static final String LOG = "responses.log";
+
+    @TempDir
+    Path dir;
+
+    private final List<LlmResponseCache> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(LlmResponseCache::close);
+    }
+
+    private LlmResponseCache open(long maxBytes) {
+        LlmResponseCache cache = new LlmResponseCache(true, dir.toString(), 0.3, maxBytes, 1);
+        cache.open();
+        opened.add(cache);
+        return cache;
+    }
+
+    private static Map<String, Object> body(String question, double temperature) {
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("model", "deepseek-chat");
+        b.put("temperature", temperature);
+        b.put("messages", List.of(Map.of("role", "user", "content", question)));
+        return b;
+    }
+
+    private static Map<String, Object> resp(String content) {
+        return Map.of("choices", List.of(Map.of("message", Map.of("role", "assistant", "content", content))));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static String content(Map resp) {
+        return (String) ((Map) ((Map) ((List) resp.get("choices")).get(0)).get("message")).get("content");
+    }
+
+    private long logSize() throws IOException {
+        return Files.size(dir.resolve(LOG));
+    }
+
+    @Test
+    void entriesSurviveReopen() {
+        LlmResponseCache first = open(1 << 20);
+        for (int i = 0; i < 3; i++) {
+            first.put(first.keyOf(body("질문 " + i, 0.0)), resp("SELECT " + i + " FROM DUAL"));
+        }
+        first.close();
+
+        LlmResponseCache second = open(1 << 20);
+        assertEquals(3, second.stats().entries());
+        for (int i = 0; i < 3; i++) {
+            Map<String, Object> b = body("질문 " + i, 0.0);
+            b.put("stream", true);                       // stream 플래그는 키에서 빠짐
+            assertEquals("SELECT " + i + " FROM DUAL", content(second.get(second.keyOf(b), "sql")));
+        }
+        assertNull(second.get(second.keyOf(body("처음 보는 질문", 0.0)), "sql"));
+
+        LlmResponseCache.Stats s = second.stats();
+        assertEquals(3, s.hits());
+        assertEquals(1, s.misses());
+        assertEquals(Map.of("sql", 3L), s.callsAvoided());
+    }
+
+    @Test
+    void truncatedTailIsCutOnOpen() throws IOException {
+        LlmResponseCache cache = open(1 << 20);
+        cache.put(cache.keyOf(body("a", 0.0)), resp("A"));
+        cache.put(cache.keyOf(body("b", 0.0)), resp("B"));
+        cache.close();
+        long valid = logSize();
+
+        // 세 번째 레코드를 쓰다 죽은 것처럼 앞부분만 남김
+        cache = open(1 << 20);
+        cache.put(cache.keyOf(body("c", 0.0)), resp("C"));
+        cache.close();
+        long full = logSize();
+        try (FileChannel ch = FileChannel.open(dir.resolve(LOG), StandardOpenOption.WRITE)) {
+            ch.truncate(valid + (full - valid) / 2);
+        }
+
+        LlmResponseCache reopened = open(1 << 20);
+        assertEquals(valid, logSize());
+        assertEquals(2, reopened.stats().entries());
+        assertEquals("B", content(reopened.get(reopened.keyOf(body("b", 0.0)), "sql")));
+        assertNull(reopened.get(reopened.keyOf(body("c", 0.0)), "sql"));
+
+        // 잘라낸 자리부터 이어 쓰고 다시 열어도 정상
+        reopened.put(reopened.keyOf(body("d", 0.0)), resp("D"));
+        reopened.close();
+        assertEquals(3, open(1 << 20).stats().entries());
+    }
+
+    @Test
+    void badCrcRecordAndEverythingAfterItAreCutOnOpen() throws IOException {
+        LlmResponseCache cache = open(1 << 20);
+        cache.put(cache.keyOf(body("a", 0.0)), resp("A"));
+        long afterFirst = logSize();
+        cache.put(cache.keyOf(body("b", 0.0)), resp("B"));
+        cache.put(cache.keyOf(body("c", 0.0)), resp("C"));
+        cache.close();
+
+        // 두 번째 레코드 본문 1바이트 변조 → CRC 불일치
+        try (FileChannel ch = FileChannel.open(dir.resolve(LOG), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            long at = afterFirst + 4 + 32 + 8 + 4 + 2;
+            ch.read(one, at);
+            one.put(0, (byte) (one.get(0) ^ 0x01)).rewind();
+            ch.write(one, at);
+        }
+
+        LlmResponseCache reopened = open(1 << 20);
+        assertEquals(afterFirst, logSize());
+        assertEquals(1, reopened.stats().entries());
+        assertEquals("A", content(reopened.get(reopened.keyOf(body("a", 0.0)), "sql")));
+        assertNull(reopened.get(reopened.keyOf(body("b", 0.0)), "sql"));
+        assertNull(reopened.get(reopened.keyOf(body("c", 0.0)), "sql"));
+    }
+
+    @Test
+    void liveBytesAreBoundedByLeastRecentlyUsedEviction() {
+        LlmResponseCache cache = open(4096);
+        String pad = "x".repeat(900);                      // 레코드 하나 ≈ 1KB → 4개까지
+        for (int i = 0; i < 4; i++) cache.put(cache.keyOf(body("q" + i, 0.0)), resp(i + pad));
+        assertEquals(4, cache.stats().entries());
+
+        assertNotNull(cache.get(cache.keyOf(body("q0", 0.0)), "sql"));   // q0 을 최근으로 → 다음 제거 대상은 q1
+        cache.put(cache.keyOf(body("q4", 0.0)), resp(4 + pad));
+
+        LlmResponseCache.Stats s = cache.stats();
+        assertEquals(4, s.entries());
+        assertEquals(1, s.evictions());
+        assertTrue(s.liveBytes() <= 4096, String.valueOf(s.liveBytes()));
+        assertNull(cache.get(cache.keyOf(body("q1", 0.0)), "sql"));
+        assertNotNull(cache.get(cache.keyOf(body("q0", 0.0)), "sql"));
+        assertNotNull(cache.get(cache.keyOf(body("q4", 0.0)), "sql"));
+
+        // 상한보다 큰 응답 하나는 저장하지 않음 (다른 항목을 다 밀어내지 않도록)
+        cache.put(cache.keyOf(body("huge", 0.0)), resp("y".repeat(5000)));
+        assertNull(cache.get(cache.keyOf(body("huge", 0.0)), "sql"));
+        assertEquals(4, cache.stats().entries());
+    }
+
+    @Test
+    void overwritesAreCompactedAndCompactedLogReopens() throws IOException {
+        LlmResponseCache cache = open(1 << 16);
+        String pad = "z".repeat(500);
+        cache.put(cache.keyOf(body("keep", 0.0)), resp("keep" + pad));
+        String hot = cache.keyOf(body("hot", 0.0));
+        for (int i = 0; i < 200; i++) cache.put(hot, resp(i + pad));
+
+        LlmResponseCache.Stats s = cache.stats();
+        assertTrue(s.compactions() > 0, s.toString());
+        assertEquals(2, s.entries());
+        assertTrue(s.fileBytes() <= Math.max(2 * s.liveBytes(), (1 << 16) / 4), s.toString());
+        assertEquals(s.fileBytes(), logSize());
+        assertEquals("199" + pad, content(cache.get(hot, "sql")));
+        assertFalse(Files.exists(dir.resolve(LOG + ".tmp")));
+        cache.close();
+
+        LlmResponseCache reopened = open(1 << 16);
+        assertEquals(2, reopened.stats().entries());
+        assertEquals("keep" + pad, content(reopened.get(reopened.keyOf(body("keep", 0.0)), "sql")));
+        assertEquals("199" + pad, content(reopened.get(hot, "sql")));
+    }
+
+    @Test
+    void creativeTemperaturesBypassTheCache() {
+        LlmResponseCache cache = open(1 << 20);
+
+        assertNull(cache.keyOf(body("페르소나 추천", 0.7)));
+        assertNull(cache.keyOf(body("페르소나 추천", 0.31)));
+        Map<String, Object> noTemperature = body("온도 없음", 0.0);
+        noTemperature.remove("temperature");
+        assertNull(cache.keyOf(noTemperature));
+        assertNotNull(cache.keyOf(body("SQL 생성", 0.3)));
+        assertNotNull(cache.keyOf(body("SQL 생성", 0.0)));
+
+        // 키가 없으면 get/put 은 아무 것도 하지 않음
+        cache.put(null, resp("무시"));
+        assertNull(cache.get(null, "persona"));
+
+        LlmResponseCache.Stats s = cache.stats();
+        assertEquals(3, s.skipped());
+        assertEquals(0, s.writes());
+        assertEquals(0, s.hits() + s.misses());
+        assertEquals(0, s.entries());
+    }
+}
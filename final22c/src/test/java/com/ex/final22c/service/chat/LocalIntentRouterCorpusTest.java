@@ -0,0 +1,100 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 라벨 발화 코퍼스(ai/router-corpus.tsv)로 LocalIntentRouter 정확도/지연 측정
+ * - coverage: 임계값 이상이라 LLM 없이 끝난 비율
+ * - confidentAccuracy: 그중 정답 비율 (여기가 틀리면 LLM 확인 없이 잘못 라우팅된 것)
+ * - overallAccuracy: 확신도 무시하고 규칙 판정만 봤을 때의 정답 비율
+ */
+class LocalIntentRouterCorpusTest {
+
+    private static final String CORPUS = "ai/router-corpus.tsv";
+    // ai.router.local-confidence 기본값
+    private static final double THRESHOLD = 0.7;
+
+    private final LocalIntentRouter router = new LocalIntentRouter();
+
+    @Test
+    void corpusAccuracyAndLatency() throws IOException {
+        List<String[]> corpus = load();
+        assertFalse(corpus.isEmpty());
+        // 워밍업 (정규식/JIT) 후 측정
+        for (int i = 0; i < 20; i++) for (String[] c : corpus) router.classify(IntentAnalyzer.analyze(c[1]));
+
+        long[] nanos = new long[corpus.size()];
+        int confident = 0, confidentOk = 0, ok = 0;
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < corpus.size(); i++) {
+            String expected = corpus.get(i)[0], utterance = corpus.get(i)[1];
+            long t0 = System.nanoTime();
+            LocalIntentRouter.Decision d = router.classify(IntentAnalyzer.analyze(utterance));
+            nanos[i] = System.nanoTime() - t0;
+
+            boolean correct = d.mode().name().equals(expected);
+            if (correct) ok++;
+            if (d.confidence() >= THRESHOLD) {
+                confident++;
+                if (correct) confidentOk++;
+            }
+            if (!correct) misses.add(expected + " → " + d.mode() + " (" + d.confidence() + ", " + d.reason() + ") " + utterance);
+        }
+
+        Arrays.sort(nanos);
+        int n = corpus.size();
+        double coverage = (double) confident / n;
+        double confidentAccuracy = confident == 0 ? 0 : (double) confidentOk / confident;
+        double overallAccuracy = (double) ok / n;
+        System.out.printf("[router-corpus] n=%d coverage=%.3f confidentAccuracy=%.3f overallAccuracy=%.3f "
+                        + "p50=%.1fus p99=%.1fus%n", n, coverage, confidentAccuracy, overallAccuracy,
+                pct(nanos, 0.50), pct(nanos, 0.99));
+        misses.forEach(m -> System.out.println("[router-corpus] miss " + m));
+
+        // 확신 구간에서 틀리면 LLM 확인 없이 잘못 라우팅되므로 가장 엄격하게
+        assertEquals(1.0, confidentAccuracy, 1e-9, () -> "confident misses: " + misses);
+        assertTrue(coverage >= 0.8, () -> "coverage " + coverage);
+        assertTrue(overallAccuracy >= 0.9, () -> "overall " + overallAccuracy);
+        // LLM 라우터 왕복(1~3초) 대비 무시할 수준인지만 확인 (CI 장비 편차 감안해 느슨하게)
+        assertTrue(pct(nanos, 0.50) < 5_000, "p50 under 5ms");
+    }
+
+    @Test
+    void blankUtteranceFallsThroughToLlm() {
+        LocalIntentRouter.Decision d = router.classify(IntentAnalyzer.analyze(" "));
+        assertEquals(RouteService.Mode.CHAT, d.mode());
+        assertTrue(d.confidence() < THRESHOLD);
+    }
+
+    private static double pct(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * p) - 1)] / 1000.0;
+    }
+
+    private static List<String[]> load() throws IOException {
+        List<String[]> out = new ArrayList<>();
+        InputStream in = LocalIntentRouterCorpusTest.class.getClassLoader().getResourceAsStream(CORPUS);
+        assertTrue(in != null, CORPUS);
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] kv = line.split("\t", 2);
+                if (kv.length == 2) out.add(new String[]{ kv[0].trim(), kv[1].trim() });
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,127 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.bench.MicroBench;
+
+/**
+ * 추천 후보 인덱스 검증 + 마이크로벤치마크 (DB 불필요)
+ * - 합성 상품 n개(등급 4 / 메인노트 7 / 가격 5만~50만 / 품절 10% / 성별 판매량 편중)로 Snapshot 빌드
+ * - 비교 기준: 같은 행 목록을 매번 필터 + 정렬 + 200개 자르기
+ *   (selectProductsForRecommendation 의 WHERE/ORDER BY 를 메모리에서, 운영은 여기에 DB 왕복이 더해짐)
+ * - 두 방식의 결과 id 순서가 같아야 함
+ */
+class ProductCandidateIndexTest {
+
+    private static final String[] GENDERS = { null, "male", "female" };
+    private static final String[] PRICES = { "low", "medium", "high" };
+    private static final List<List<Integer>> GRADES = List.of(List.of(2), List.of(4), List.of(3), List.of(1), List.of(3, 4));
+
+    private record Survey(String gender, String priceRange, List<Integer> gradeIds, List<Integer> mainNoteIds) {}
+
+    private record Fixture(List<Map<String, Object>> products, Map<Long, Map<String, Long>> sales,
+                           ProductCandidateIndex.Snapshot index, List<Survey> surveys) {}
+
+    @Test
+    void selectMatchesLinearScan() {
+        Fixture f = fixture(10_000, 2_000);
+        for (Survey s : f.surveys()) {
+            assertEquals(ids(scan(f.products(), f.sales(), s)),
+                    ids(f.index().select(s.gender(), s.priceRange(), s.gradeIds(), s.mainNoteIds(), 200)), s.toString());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void indexVersusScan() {
+        Fixture f = fixture(100_000, 1_000);
+        int n = f.surveys().size();
+
+        MicroBench.Result viaIndex = MicroBench.measure("candidate index", 5, 20, n, () -> {
+            int h = 0;
+            for (Survey s : f.surveys()) {
+                h += f.index().select(s.gender(), s.priceRange(), s.gradeIds(), s.mainNoteIds(), 200).size();
+            }
+            return h;
+        });
+        MicroBench.Result viaScan = MicroBench.measure("candidate scan", 2, 5, n, () -> {
+            int h = 0;
+            for (Survey s : f.surveys()) h += scan(f.products(), f.sales(), s).size();
+            return h;
+        });
+
+        assertTrue(viaIndex.avgNsPerOp() < viaScan.avgNsPerOp(), viaIndex + " vs " + viaScan);
+    }
+
+    private static Fixture fixture(int n, int queries) {
+        Random rnd = new Random(n);
+        List<Map<String, Object>> products = new ArrayList<>(n);
+        Map<Long, Map<String, Long>> sales = new HashMap<>();
+        for (long id = 1; id <= n; id++) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("id", id);
+            p.put("name", "향수 " + id);
+            p.put("brandName", "브랜드 " + (id % 40));
+            p.put("sellPrice", 50_000L + rnd.nextInt(90) * 5_000L);
+            p.put("count", rnd.nextInt(10) == 0 ? 0L : 1L + rnd.nextInt(30));
+            p.put("gradeName", "등급");
+            p.put("mainNoteName", "노트");
+            p.put("gradeNo", 1 + rnd.nextInt(4));
+            p.put("mainNoteNo", 1 + rnd.nextInt(7));
+            products.add(p);
+            if (rnd.nextInt(3) == 0) {   // 1/3 만 판매 이력, 판매량은 한쪽으로 쏠리게
+                long m = (long) (Math.pow(rnd.nextDouble(), 3) * 500), w = (long) (Math.pow(rnd.nextDouble(), 3) * 500);
+                sales.put(id, Map.of("", m + w, "MALE", m, "FEMALE", w));
+            }
+        }
+        ProductCandidateIndex.Snapshot index = ProductCandidateIndex.Snapshot.build(products, sales);
+
+        List<Survey> surveys = new ArrayList<>(queries);
+        for (int i = 0; i < queries; i++) {
+            surveys.add(new Survey(GENDERS[rnd.nextInt(GENDERS.length)], PRICES[rnd.nextInt(PRICES.length)],
+                    GRADES.get(rnd.nextInt(GRADES.size())), List.of(1 + rnd.nextInt(7))));
+        }
+        return new Fixture(products, sales, index, surveys);
+    }
+
+    /** 인덱스 없는 기준선 */
+    private static List<Map<String, Object>> scan(List<Map<String, Object>> products,
+                                                  Map<Long, Map<String, Long>> sales, Survey s) {
+        String key = s.gender() == null ? "" : s.gender().toUpperCase();
+        List<Map<String, Object>> hit = new ArrayList<>();
+        for (Map<String, Object> p : products) {
+            if ((long) p.get("count") <= 0) continue;
+            if (!s.gradeIds().contains((Integer) p.get("gradeNo"))) continue;
+            if (!s.mainNoteIds().contains((Integer) p.get("mainNoteNo"))) continue;
+            long price = (long) p.get("sellPrice");
+            boolean inRange = switch (s.priceRange()) {
+                case "low" -> price < 150_000;
+                case "medium" -> price >= 150_000 && price <= 300_000;
+                default -> price > 300_000;
+            };
+            if (inRange) hit.add(p);
+        }
+        Comparator<Map<String, Object>> bySales = Comparator.comparingLong(
+                p -> sales.getOrDefault((Long) p.get("id"), Map.of()).getOrDefault(key, 0L));
+        hit.sort(bySales.reversed().thenComparing(Comparator.<Map<String, Object>>comparingLong(p -> (Long) p.get("id")).reversed()));
+        return hit.size() > 200 ? hit.subList(0, 200) : hit;
+    }
+
+    private static List<Object> ids(List<Map<String, Object>> rows) {
+        List<Object> out = new ArrayList<>(rows.size());
+        for (Map<String, Object> r : rows) out.add(r.get("id"));
+        return out;
+    }
+}
@@ -0,0 +1,190 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.bench.MicroBench;
+import com.ex.final22c.repository.productMapper.ProductMapper;
+import com.ex.final22c.service.product.ScentSimilarityIndex;
+
+/**
+ * MYTYPE 후보 사전 순위 검증 + 마이크로벤치마크 (DB/DeepSeek 불필요)
+ * - 합성 상품(향 계열별 노트 / 가격 / 판매량 / 재고)으로 ScentSimilarityIndex 를 빌드하고,
+ *   설문마다 후보(계열·가격대 필터, 판매량 순 최대 200개)를 만들어 기존 프롬프트 표 vs 사전 순위 표를 비교
+ * - 스텁 모델: 보이는 후보 중 "숨은 적합도"(노트 일치 + 인기 + 농도 + 사전 순위가 모르는 취향 값)가 가장 높은
+ *   3개를 브랜드 중복 없이 고름 → 전체 후보를 본 선택 대비 품질 비율로 품질 유지 확인
+ */
+class RecommendationPreRankerTest {
+
+    private static final Map<String, List<String>> FAMILY_NOTES = Map.of(
+        "citrus", List.of("베르가못", "레몬", "자몽", "만다린", "네롤리"),
+        "woody", List.of("샌달우드", "시더우드", "베티버", "패출리", "오우드"),
+        "herbal", List.of("라벤더", "로즈마리", "세이지", "민트", "녹차"),
+        "floral", List.of("장미", "자스민", "아이리스", "바이올렛", "튜베로즈"),
+        "spicy", List.of("핑크 페퍼", "시나몬", "카다멈", "정향", "사프란"),
+        "fruity", List.of("복숭아", "블랙커런트", "라즈베리", "무화과", "사과")
+    );
+    private static final List<String> NEUTRAL = List.of("머스크", "앰버", "바닐라", "통카빈", "알데하이드");
+    private static final String[] FAMILIES = { "citrus", "woody", "herbal", "floral", "spicy", "fruity" };
+    private static final String[] PRICES = { "low", "medium", "high" };
+    private static final String[] GRADES = { "오드 코롱", "오드 뚜왈렛", "오드 퍼퓸", "퍼퓸" };
+    private static final int TOP_K = 30;
+
+    private record Case(Map<String, String> survey, List<Map<String, Object>> candidates) {}
+
+    private record Fixture(ScentSimilarityIndex notes, Map<Long, Double> taste, List<Case> cases) {}
+
+    @Test
+    void shortlistKeepsStubModelQualityWithFewerTokens() {
+        Fixture f = fixture(5_000, 300);
+        double legacyTok = 0, compactTok = 0, quality = 0;
+        for (Case c : f.cases()) {
+            List<Map<String, Object>> picked = RecommendationPreRanker.rank(c.survey(), c.candidates(), TOP_K, 3, f.notes());
+            legacyTok += RecommendationPreRanker.estimateTokens(RecommendationPreRanker.legacyTable(c.candidates()));
+            compactTok += RecommendationPreRanker.estimateTokens(RecommendationPreRanker.compactTable(c.survey(), picked, f.notes()));
+
+            double uf = 0, up = 0;
+            for (Map<String, Object> p : stubModel(c.candidates(), c.survey(), f)) uf += utility(p, c.survey(), f);
+            for (Map<String, Object> p : stubModel(picked, c.survey(), f)) up += utility(p, c.survey(), f);
+            quality += uf == 0 ? 1 : up / uf;
+        }
+        double reduction = 1 - compactTok / legacyTok;
+        double ratio = quality / f.cases().size();
+        System.out.printf("[prerank] tokens %.0f → %.0f (-%.0f%%), quality %.3f%n",
+                legacyTok / f.cases().size(), compactTok / f.cases().size(), reduction * 100, ratio);
+
+        assertTrue(reduction >= 0.7, "token reduction " + reduction);
+        assertTrue(ratio >= 0.95, "quality ratio " + ratio);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void rankLatency() {
+        Fixture f = fixture(5_000, 500);
+        int n = f.cases().size();
+
+        MicroBench.Result rank = MicroBench.measure("prerank rank", 20, 100, n, () -> {
+            int h = 0;
+            for (Case c : f.cases()) h += RecommendationPreRanker.rank(c.survey(), c.candidates(), TOP_K, 3, f.notes()).size();
+            return h;
+        });
+        MicroBench.measure("prerank compact table", 20, 100, n, () -> {
+            int h = 0;
+            for (Case c : f.cases()) {
+                List<Map<String, Object>> picked = RecommendationPreRanker.rank(c.survey(), c.candidates(), TOP_K, 3, f.notes());
+                h += RecommendationPreRanker.compactTable(c.survey(), picked, f.notes()).length();
+            }
+            return h;
+        });
+
+        assertTrue(rank.p50NsPerOp() < 1_000_000, rank.toString());   // 설문 한 건당 1ms 미만
+    }
+
+    private static Fixture fixture(int n, int surveys) {
+        Random rnd = new Random(n);
+        List<Map<String, Object>> catalog = new ArrayList<>(n);
+        Map<Long, Double> taste = new HashMap<>();   // 사전 순위가 볼 수 없는 값 (모델의 취향)
+        Map<Long, String> family = new HashMap<>();
+        for (long id = 1; id <= n; id++) {
+            String fam = FAMILIES[rnd.nextInt(FAMILIES.length)];
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("id", id);
+            p.put("name", "향수 " + id);
+            p.put("brandName", "브랜드 " + rnd.nextInt(60));
+            p.put("sellPrice", 40_000L + rnd.nextInt(100) * 5_000L);
+            p.put("count", rnd.nextInt(10) == 0 ? 0L : 1L + rnd.nextInt(30));
+            p.put("gradeName", GRADES[rnd.nextInt(GRADES.length)]);
+            p.put("status", "active");
+            p.put("mainNoteNo", Arrays.asList(FAMILIES).indexOf(fam) + 1);
+            p.put("topNote", notes(rnd, fam));
+            p.put("middleNote", notes(rnd, fam));
+            p.put("baseNote", notes(rnd, fam));
+            p.put("sales", (long) (Math.pow(rnd.nextDouble(), 3) * 500));
+            catalog.add(p);
+            taste.put(id, rnd.nextDouble());
+            family.put(id, fam);
+        }
+        ProductMapper stub = (ProductMapper) Proxy.newProxyInstance(ProductMapper.class.getClassLoader(),
+                new Class<?>[] { ProductMapper.class },
+                (proxy, m, args) -> "selectSimilarityRows".equals(m.getName()) ? catalog : null);
+        ScentSimilarityIndex notes = new ScentSimilarityIndex(stub, true, 24, 60);
+        notes.rebuildAll();
+
+        List<Case> cases = new ArrayList<>();
+        for (int q = 0; q < surveys; q++) {
+            String fam = FAMILIES[rnd.nextInt(FAMILIES.length)];
+            String price = PRICES[rnd.nextInt(PRICES.length)];
+            Map<String, String> survey = Map.of("notes", fam, "priceRange", price,
+                    "intensity", GRADES[rnd.nextInt(GRADES.length)], "usage", "daily", "gender", "female");
+            List<Map<String, Object>> cands = candidates(catalog, family, fam, price);
+            if (cands.size() >= 3) cases.add(new Case(survey, cands));
+        }
+        return new Fixture(notes, taste, cases);
+    }
+
+    /** 운영 후보 선별과 같은 모양: 메인노트(계열)·가격대·재고 필터, 판매량 순 200개 */
+    private static List<Map<String, Object>> candidates(List<Map<String, Object>> catalog, Map<Long, String> family,
+                                                        String fam, String price) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Map<String, Object> p : catalog) {
+            if (!fam.equals(family.get((Long) p.get("id"))) || (long) p.get("count") <= 0) continue;
+            long v = (long) p.get("sellPrice");
+            boolean in = switch (price) {
+                case "low" -> v < 150_000;
+                case "medium" -> v >= 150_000 && v <= 300_000;
+                default -> v > 300_000;
+            };
+            if (in) out.add(p);
+        }
+        out.sort(Comparator.<Map<String, Object>>comparingLong(p -> (long) p.get("sales")).reversed());
+        return out.size() > 200 ? new ArrayList<>(out.subList(0, 200)) : out;
+    }
+
+    /** 스텁 모델: 보이는 후보 중 숨은 적합도 상위 3개 (브랜드 중복 없이) */
+    private static List<Map<String, Object>> stubModel(List<Map<String, Object>> visible, Map<String, String> survey,
+                                                       Fixture f) {
+        List<Map<String, Object>> order = new ArrayList<>(visible);
+        order.sort(Comparator.<Map<String, Object>>comparingDouble(p -> utility(p, survey, f)).reversed());
+        List<Map<String, Object>> out = new ArrayList<>();
+        Set<Object> brands = new HashSet<>();
+        for (Map<String, Object> p : order) {
+            if (out.size() >= 3) break;
+            if (brands.add(p.get("brandName"))) out.add(p);
+        }
+        return out;
+    }
+
+    private static double utility(Map<String, Object> p, Map<String, String> survey, Fixture f) {
+        long id = (Long) p.get("id");
+        double share = Math.max(0, f.notes().noteShare(id, FAMILY_NOTES.get(survey.get("notes"))));
+        double popular = Math.min(1d, (long) p.get("sales") / 200.0);
+        return 0.35 * share + 0.2 * popular + 0.15 * (survey.get("intensity").equals(p.get("gradeName")) ? 1 : 0)
+                + 0.3 * f.taste().get(id);
+    }
+
+    private static String notes(Random rnd, String fam) {
+        StringJoiner j = new StringJoiner(", ");
+        for (int i = 0; i < 3; i++) {
+            // 계열 노트 60%, 다른 계열/공통 노트 40%
+            List<String> pool = rnd.nextInt(10) < 6 ? FAMILY_NOTES.get(fam)
+                    : rnd.nextBoolean() ? NEUTRAL : FAMILY_NOTES.get(FAMILIES[rnd.nextInt(FAMILIES.length)]);
+            j.add(pool.get(rnd.nextInt(pool.size())));
+        }
+        return j.toString();
+    }
+}
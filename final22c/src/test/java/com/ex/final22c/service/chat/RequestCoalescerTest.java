@@ -0,0 +1,30 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.security.Principal;
+
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+
+    private static Principal user(String name) {
+        return () -> name;
+    }
+
+    @Test
+    void sameUserParaphrasesShareAKey() {
+        IntentFrame a = IntentAnalyzer.analyze("이번달 매출");
+        IntentFrame b = IntentAnalyzer.analyze("이번달  매출?");
+        assertEquals(RequestCoalescer.keyOf(a, user("admin1")), RequestCoalescer.keyOf(b, user("admin1")));
+    }
+
+    @Test
+    void differentUsersNeverShareAKey() {
+        // 요청자 기준 파라미터(userNo 등)가 들어가는 질문은 다른 사용자 결과를 받으면 안 됨
+        IntentFrame f = IntentAnalyzer.analyze("이번달 매출");
+        assertNotEquals(RequestCoalescer.keyOf(f, user("admin1")), RequestCoalescer.keyOf(f, user("admin2")));
+        assertNotEquals(RequestCoalescer.keyOf(f, user("admin1")), RequestCoalescer.keyOf(f, null));
+    }
+}
@@ -0,0 +1,111 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.sql.SchemaCatalog;
+
+/**
+ * 스키마 축약 — 폴백 스키마(ai/schema-fallback.txt) 기준
+ * - 도메인별로 필요한 테이블만 들어가는지, 도메인을 못 고르면 전체 문서인지
+ * - 관리자 질문 샘플(ai/catalog-questions.tsv 의 질문 열) 전체의 추정 토큰 절감
+ */
+class SchemaPromptBuilderTest {
+
+    static SchemaPromptBuilder builder() {
+        SchemaCatalog catalog = new SchemaCatalog(null, "", SchemaCatalog.DEFAULT_HIDDEN_COLUMNS, false);
+        return new SchemaPromptBuilder(catalog);
+    }
+
+    static List<String> questions() throws IOException {
+        List<String> out = new ArrayList<>();
+        try (InputStream in = SchemaPromptBuilderTest.class.getClassLoader().getResourceAsStream("ai/catalog-questions.tsv");
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] kv = line.split("\t", 2);
+                if (kv.length == 2) out.add(kv[1].trim());
+            }
+        }
+        return out;
+    }
+
+    private final SchemaPromptBuilder builder = builder();
+
+    private SchemaPromptBuilder.Slice slice(String question) {
+        return builder.slice(IntentAnalyzer.analyze(question), true);
+    }
+
+    @Test
+    void sliceKeepsOnlyTheTablesOfTheDetectedDomains() {
+        SchemaPromptBuilder.Slice users = slice("이번달 신규 가입 회원 수");
+        assertFalse(users.full());
+        assertTrue(users.tables().contains("USERS"), users.tables()::toString);
+        assertFalse(users.tables().contains("REFUND"), users.tables()::toString);
+        assertTrue(users.doc().contains("USERS("), users::doc);
+        assertFalse(users.doc().contains("REFUNDDETAIL("), users::doc);
+        assertTrue(users.tokens() < users.fullTokens());
+
+        SchemaPromptBuilder.Slice refund = slice("지난달 환불 건수 알려줘");
+        assertTrue(refund.tables().containsAll(List.of("REFUND", "REFUNDDETAIL", "ORDERDETAIL")), refund.tables()::toString);
+        assertFalse(refund.tables().contains("USERS"), refund.tables()::toString);
+
+        SchemaPromptBuilder.Slice review = slice("리뷰 평점 높은 상품 보여줘");
+        assertTrue(review.tables().containsAll(List.of("REVIEW", "PRODUCT")), review.tables()::toString);
+    }
+
+    @Test
+    void unknownDomainFallsBackToTheFullDocument() {
+        SchemaPromptBuilder.Slice s = slice("안녕 오늘 뭐해?");
+        assertTrue(s.full());
+        assertEquals(s.fullTokens(), s.tokens());
+        assertTrue(s.tables().isEmpty());
+    }
+
+    @Test
+    void slicingDisabledAlwaysSendsTheFullDocument() {
+        SchemaPromptBuilder.Slice s = builder.slice(IntentAnalyzer.analyze("이번달 신규 가입 회원 수"), false);
+        assertTrue(s.full());
+    }
+
+    @Test
+    void hiddenColumnsNeverReachThePrompt() throws IOException {
+        for (String q : questions()) {
+            String doc = slice(q).doc();
+            assertFalse(doc.contains("PASSWORD"), q);
+            assertFalse(doc.contains("PGPAYLOADJSON"), q);
+        }
+    }
+
+    @Test
+    void sampleQuestionsUseFewerPromptTokens() throws IOException {
+        List<String> questions = questions();
+        assertFalse(questions.isEmpty());
+        long tok = 0, full = 0;
+        int sliced = 0;
+        for (String q : questions) {
+            SchemaPromptBuilder.Slice s = slice(q);
+            assertTrue(s.tokens() <= s.fullTokens(), q);
+            if (!s.full()) sliced++;
+            tok += s.tokens();
+            full += s.fullTokens();
+        }
+        double reduction = 1.0 - (double) tok / full;
+        System.out.printf("[schema-slice] total=%d sliced=%d avgTokens=%.0f avgFullTokens=%.0f reduction=%.3f%n",
+                questions.size(), sliced, (double) tok / questions.size(), (double) full / questions.size(), reduction);
+        assertTrue(sliced >= questions.size() * 0.8, () -> "sliced " + questions.size());
+        assertTrue(reduction >= 0.3, () -> "reduction " + reduction);
+    }
+}
@@ -0,0 +1,112 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.ex.final22c.bench.MicroBench;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 스키마 축약 전/후 SQL 생성 호출 벤치마크 (./gradlew benchmark)
+ * - 스텁 모델 서버: 요청 본문 글자 수에 비례해 지연(프롬프트 처리 시간 흉내) 후 고정 SQL 응답
+ * - 같은 질문을 전체 문서 / 축약 문서로 ChatService.generateSql 호출 → 요청 크기, 호출 지연 비교
+ */
+@Tag("benchmark")
+class SchemaSliceBenchmarkTest {
+
+    // 프롬프트 1글자당 스텁 모델 지연
+    private static final long NANOS_PER_CHAR = 2_000;
+
+    @TempDir
+    Path cacheDir;
+
+    private HttpServer server;
+    private LlmResponseCache responseCache;
+    private ChatService chat;
+    private final AtomicLong requestChars = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", ex -> {
+            String body = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.incrementAndGet();
+            requestChars.addAndGet(body.length());
+            LockSupport.parkNanos(body.length() * NANOS_PER_CHAR);
+            byte[] out = ("{\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":"
+                    + "\"```sql\\nSELECT COUNT(*) FROM USERS\\n```\"},\"finish_reason\":\"stop\"}],"
+                    + "\"usage\":{\"prompt_tokens\":" + body.length() / 2 + ",\"completion_tokens\":8,\"total_tokens\":"
+                    + (body.length() / 2 + 8) + "}}").getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, out.length);
+            ex.getResponseBody().write(out);
+            ex.close();
+        });
+        server.start();
+
+        // 결정적 요청이라 캐시가 켜져 있으면 두 번째부터 서버를 안 부름
+        responseCache = new LlmResponseCache(false, cacheDir.toString(), 0.3, 1 << 20, 1);
+        responseCache.open();
+        WebClient client = WebClient.create("http://127.0.0.1:" + server.getAddress().getPort());
+        chat = new ChatService(client, new LlmBulkhead(2, 4), new LlmUsageMeter(), responseCache);
+        ReflectionTestUtils.setField(chat, "model", "deepseek-chat");
+        ReflectionTestUtils.setField(chat, "path", "/chat/completions");
+        ReflectionTestUtils.setField(chat, "sqlTimeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        responseCache.close();
+    }
+
+    @Test
+    void slicedPromptIsSmallerAndFasterOnStubModel() throws IOException {
+        SchemaPromptBuilder builder = SchemaPromptBuilderTest.builder();
+        List<String> questions = SchemaPromptBuilderTest.questions();
+        List<String> full = new ArrayList<>(), sliced = new ArrayList<>();
+        for (String q : questions) {
+            IntentFrame f = IntentAnalyzer.analyze(q);
+            full.add(builder.slice(f, false).doc());
+            sliced.add(builder.slice(f, true).doc());
+        }
+        int n = questions.size();
+
+        requestChars.set(0);
+        requests.set(0);
+        MicroBench.Result before = MicroBench.measure("generateSql full schema", 1, 3, n, () -> run(questions, full));
+        double fullChars = (double) requestChars.get() / requests.get();
+
+        requestChars.set(0);
+        requests.set(0);
+        MicroBench.Result after = MicroBench.measure("generateSql sliced schema", 1, 3, n, () -> run(questions, sliced));
+        double slicedChars = (double) requestChars.get() / requests.get();
+
+        System.out.printf("[bench] request chars/call: full %.0f → sliced %.0f%n", fullChars, slicedChars);
+        assertTrue(slicedChars < fullChars, slicedChars + " vs " + fullChars);
+        assertTrue(after.avgNsPerOp() < before.avgNsPerOp(), after + " vs " + before);
+    }
+
+    private int run(List<String> questions, List<String> docs) {
+        int h = 0;
+        for (int i = 0; i < questions.size(); i++) h += chat.generateSql(questions.get(i), docs.get(i)).length();
+        return h;
+    }
+}
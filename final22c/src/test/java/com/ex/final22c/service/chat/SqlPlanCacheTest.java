@@ -0,0 +1,85 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SqlPlanCacheTest {
+
+    private SqlPlanCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SqlPlanCache(100, 60);
+    }
+
+    private static SqlPlan plan(String sql) {
+        return new SqlPlan(sql, sql, false, false, false, false, false, true, null);
+    }
+
+    @Test
+    void relativeDatePlanIsNotReplayedForAnotherPeriod() {
+        // "지난달" 을 ADD_MONTHS 로 SQL에 박아 넣은 플랜 → "이번달" 질문에 재사용되면 지난달 숫자가 나감
+        SqlPlan lastMonth = plan("SELECT COUNT(*) AS CNT FROM REVIEW r "
+                + "WHERE r.CREATEDATE >= ADD_MONTHS(TRUNC(:currentDate, 'MM'), -1) "
+                + "AND r.CREATEDATE < TRUNC(:currentDate, 'MM')");
+        cache.put("지난달 리뷰 수", lastMonth);
+
+        assertEquals(SqlPlanCache.keyOf("지난달 리뷰 수"), SqlPlanCache.keyOf("이번달 리뷰 수"));
+        assertNull(cache.get(SqlPlanCache.keyOf("이번달 리뷰 수")));
+        assertEquals(0, cache.stats().size());
+    }
+
+    @Test
+    void periodBoundPlanIsReplayedWithNewPeriod() {
+        SqlPlan bound = plan("SELECT COUNT(*) AS CNT FROM REVIEW r "
+                + "WHERE r.CREATEDATE >= :start AND r.CREATEDATE < :end");
+        cache.put("지난달 리뷰 수", bound);
+
+        assertSame(bound, cache.get(SqlPlanCache.keyOf("이번달 리뷰 수")));
+    }
+
+    @Test
+    void onlyPlansWithEveryDatePredicateBoundAreStored() {
+        String[][] cases = {
+            // { 기대(Y=저장), SQL }
+            { "Y", "SELECT COUNT(*) FROM REVIEW r WHERE r.CREATEDATE BETWEEN :start AND :end" },
+            { "Y", "SELECT COUNT(*) FROM ORDERS o WHERE :start <= o.REGDATE AND o.REGDATE < :end AND o.STATUS = 'PAID'" },
+            { "Y", "SELECT u.NAME, COUNT(*) FROM ORDERS o JOIN USERS u ON u.USERNO = o.USERNO "
+                 + "WHERE (o.REGDATE >= :start AND o.REGDATE < :end) GROUP BY u.NAME" },
+            { "Y", "SELECT COUNT(*) FROM REFUND r WHERE r.STATUS = 'REQUESTED'" },
+            { "N", "SELECT COUNT(*) FROM REVIEW r WHERE r.CREATEDATE >= SYSDATE - 30" },
+            { "N", "SELECT COUNT(*) FROM REVIEW r WHERE r.CREATEDATE >= :currentDate - 7" },
+            { "N", "SELECT COUNT(*) FROM REFUND r WHERE r.REGDATE >= ADD_MONTHS(:start, -1) AND r.REGDATE < :end" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= TO_DATE('2025-01-01', 'YYYY-MM-DD')" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE TRUNC(o.REGDATE) >= :start" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE TO_CHAR(o.REGDATE, 'YYYY') = '2025'" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= o.UPDATEDATE" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= :start "
+                 + "AND o.USERNO IN (SELECT r.USERNO FROM REVIEW r WHERE r.CREATEDATE > :since)" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o JOIN PAYMENT p ON p.ORDERID = o.ORDERID "
+                 + "AND p.APPROVEDAT > SYSTIMESTAMP WHERE o.REGDATE >= :start" },
+            { "N", "DELETE FROM ORDERS" },
+        };
+        for (String[] c : cases) {
+            cache.clear();
+            cache.put("리뷰 수", plan(c[1]));
+            if ("Y".equals(c[0])) assertNotNull(cache.peek("리뷰 수"), c[1]);
+            else assertNull(cache.peek("리뷰 수"), c[1]);
+        }
+    }
+
+    @Test
+    void periodPhraseWithoutPeriodBindIsNotStored() {
+        // 기간을 물었는데 SQL에 기간 바인드가 없으면 기간 조건이 빠졌거나 다른 방식으로 박힌 것
+        cache.put("이번달 리뷰 수", plan("SELECT COUNT(*) FROM REVIEW r"));
+        assertNull(cache.peek(SqlPlanCache.keyOf("이번달 리뷰 수")));
+
+        cache.put("전체 리뷰 수", plan("SELECT COUNT(*) FROM REVIEW r"));
+        assertNotNull(cache.peek(SqlPlanCache.keyOf("전체 리뷰 수")));
+    }
+}
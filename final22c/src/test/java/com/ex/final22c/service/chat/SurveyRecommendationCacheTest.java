@@ -0,0 +1,53 @@
+package com.ex.final22c.service.chat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SurveyRecommendationCacheTest {
+
+    private static List<Map<String, Object>> ids(long... ids) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (long id : ids) out.add(Map.of("id", id));
+        return out;
+    }
+
+    @Test
+    void fingerprintIgnoresOrder() {
+        List<Map<String, Object>> a = ids(3, 17, 42, 101, 7);
+        List<Map<String, Object>> b = new ArrayList<>(a);
+        Collections.shuffle(b, new Random(1));
+
+        assertEquals(SurveyRecommendationCache.fingerprint(a), SurveyRecommendationCache.fingerprint(b));
+    }
+
+    @Test
+    void fingerprintChangesWithTheSet() {
+        long base = SurveyRecommendationCache.fingerprint(ids(1, 2, 3));
+
+        assertNotEquals(base, SurveyRecommendationCache.fingerprint(ids(1, 2, 4)));
+        assertNotEquals(base, SurveyRecommendationCache.fingerprint(ids(1, 2)));
+        assertNotEquals(base, SurveyRecommendationCache.fingerprint(ids(1, 2, 3, 3)));
+        assertNotEquals(SurveyRecommendationCache.fingerprint(ids(1, 4)), SurveyRecommendationCache.fingerprint(ids(2, 3)));
+    }
+
+    @Test
+    void reorderedShortlistStaysAHit() {
+        SurveyRecommendationCache cache = new SurveyRecommendationCache(true, 1440, 5);
+        String key = cache.keyOf(Map.of("gender", "male", "usage", "daily", "priceRange", "low",
+                "notes", "floral", "intensity", "오드 퍼퓸"));
+        cache.put(key, "{}", SurveyRecommendationCache.fingerprint(ids(5, 6, 7)), false);
+
+        assertEquals(SurveyRecommendationCache.Outcome.HIT,
+                cache.lookup(key, SurveyRecommendationCache.fingerprint(ids(7, 5, 6))).outcome());
+        assertEquals(SurveyRecommendationCache.Outcome.STALE,
+                cache.lookup(key, SurveyRecommendationCache.fingerprint(ids(7, 5, 8))).outcome());
+    }
+}
@@ -0,0 +1,198 @@
+package com.ex.final22c.service.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.bench.MicroBench;
+import com.ex.final22c.data.recommendation.RecommendedProduct;
+import com.ex.final22c.repository.productMapper.ProductMapper;
+
+/**
+ * 회원 개인화 추천 사전 계산 검증 + 마이크로벤치마크 (DB 불필요)
+ * - 합성 상품(향 계열별 노트)으로 ScentSimilarityIndex 빌드, 회원마다 선호 계열 2개에서 찜/구매/리뷰 활동 생성
+ * - 품질: 회원마다 선호 계열 찜 하나를 숨기고 상위 SIZE 개에 들어오는지 (판매량 상위 고정 추천과 비교),
+ *   추천 중 선호 계열 비율
+ * - 벤치마크: 회원 한 명 계산 시간, 저장소 키 조회 지연
+ */
+class PersonalRecommendationRefresherTest {
+
+    private static final Map<String, List<String>> FAMILY_NOTES = Map.of(
+        "citrus", List.of("베르가못", "레몬", "자몽", "만다린", "네롤리"),
+        "woody", List.of("샌달우드", "시더우드", "베티버", "패출리", "오우드"),
+        "herbal", List.of("라벤더", "로즈마리", "세이지", "민트", "녹차"),
+        "floral", List.of("장미", "자스민", "아이리스", "바이올렛", "튜베로즈"),
+        "spicy", List.of("핑크 페퍼", "시나몬", "카다멈", "정향", "사프란"),
+        "fruity", List.of("복숭아", "블랙커런트", "라즈베리", "무화과", "사과")
+    );
+    private static final List<String> NEUTRAL = List.of("머스크", "앰버", "바닐라", "통카빈", "알데하이드");
+    private static final String[] FAMILIES = { "citrus", "woody", "herbal", "floral", "spicy", "fruity" };
+    private static final int SIZE = 12;
+
+    private record Fixture(ScentSimilarityIndex index, int[] family, Set<Long> popular,
+                           List<List<Map<String, Object>>> signals, long[] heldOut, int[][] liked, long now) {}
+
+    @Test
+    void picksFollowMemberTasteBetterThanBestSellers() {
+        Fixture f = fixture(3_000, 2_000);
+        PersonalRecommendationStore store = new PersonalRecommendationStore(f.index(), true);
+        int users = f.signals().size();
+        for (int u = 0; u < users; u++) {
+            store.put((long) u, "user" + u, rank(f, u));
+        }
+
+        int hit = 0, popHit = 0, picks = 0, inFamily = 0;
+        for (int u = 0; u < users; u++) {
+            for (RecommendedProduct r : store.picksFor("user" + u, SIZE)) {
+                if (r.getProductId() == f.heldOut()[u]) hit++;
+                int fam = f.family()[r.getProductId().intValue()];
+                if (fam == f.liked()[u][0] || fam == f.liked()[u][1]) inFamily++;
+                picks++;
+            }
+            if (f.popular().contains(f.heldOut()[u])) popHit++;
+        }
+        double hitRate = (double) hit / users, popRate = (double) popHit / users;
+        double precision = picks == 0 ? 0 : (double) inFamily / picks;
+        double bytesPerUser = (double) store.stats().packedBytes() / Math.max(1, store.stats().users());
+        System.out.printf("[personal] held-out hit %.3f (best sellers %.3f), family precision %.3f, %.0f B/user%n",
+                hitRate, popRate, precision, bytesPerUser);
+
+        assertTrue(hitRate > popRate, hitRate + " vs " + popRate);
+        assertTrue(precision >= 0.7, "family precision " + precision);
+        assertTrue(bytesPerUser <= SIZE * 16 + 64, "bytes per user " + bytesPerUser);
+    }
+
+    @Test
+    void markDirtyOutsideTransactionIsImmediate() {
+        PersonalRecommendationStore store = new PersonalRecommendationStore(fixture(200, 0).index(), true);
+        store.markDirtyAfterCommit(7L);
+        store.markDirtyAfterCommit(null);
+
+        assertEquals(List.of(7L), store.drainDirty(10));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void rankAndLookup() {
+        Fixture f = fixture(5_000, 2_000);
+        int users = f.signals().size();
+        PersonalRecommendationStore store = new PersonalRecommendationStore(f.index(), true);
+
+        MicroBench.measure("personal rank", 2, 10, users, () -> {
+            int h = 0;
+            for (int u = 0; u < users; u++) {
+                long[] packed = rank(f, u);
+                store.put((long) u, "user" + u, packed);
+                h += packed.length;
+            }
+            return h;
+        });
+        MicroBench.Result lookup = MicroBench.measure("personal lookup", 20, 100, users, () -> {
+            int h = 0;
+            for (int u = 0; u < users; u++) h += store.picksFor("user" + u, SIZE).size();
+            return h;
+        });
+
+        assertTrue(lookup.p50NsPerOp() < 100_000, lookup.toString());   // 키 조회는 0.1ms 미만
+    }
+
+    private static long[] rank(Fixture f, int u) {
+        return PersonalRecommendationRefresher.rank(f.signals().get(u), f.index(), SIZE, 24, 2, 90, f.now());
+    }
+
+    private static Fixture fixture(int n, int users) {
+        Random rnd = new Random(n + users);
+        List<Map<String, Object>> catalog = new ArrayList<>(n);
+        int[] family = new int[n + 1];
+        long[] sales = new long[n + 1];
+        List<List<Long>> byFamily = new ArrayList<>();
+        for (int f = 0; f < FAMILIES.length; f++) byFamily.add(new ArrayList<>());
+        for (long id = 1; id <= n; id++) {
+            int fam = rnd.nextInt(FAMILIES.length);
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("id", id);
+            p.put("name", "향수 " + id);
+            p.put("brandName", "브랜드 " + rnd.nextInt(60));
+            p.put("sellPrice", 40_000L + rnd.nextInt(100) * 5_000L);
+            p.put("count", rnd.nextInt(10) == 0 ? 0L : 1L + rnd.nextInt(30));
+            p.put("status", "active");
+            p.put("mainNoteNo", fam + 1);
+            p.put("topNote", notes(rnd, FAMILIES[fam]));
+            p.put("middleNote", notes(rnd, FAMILIES[fam]));
+            p.put("baseNote", notes(rnd, FAMILIES[fam]));
+            catalog.add(p);
+            family[(int) id] = fam;
+            sales[(int) id] = (long) (Math.pow(rnd.nextDouble(), 3) * 500);
+            byFamily.get(fam).add(id);
+        }
+        ProductMapper stub = (ProductMapper) Proxy.newProxyInstance(ProductMapper.class.getClassLoader(),
+                new Class<?>[] { ProductMapper.class },
+                (proxy, m, args) -> "selectSimilarityRows".equals(m.getName()) ? catalog : null);
+        ScentSimilarityIndex index = new ScentSimilarityIndex(stub, true, 24, 60);
+        index.rebuildAll();
+
+        // 판매량 상위 고정 추천 (비교 기준)
+        Long[] ids = new Long[n];
+        for (int i = 0; i < n; i++) ids[i] = i + 1L;
+        Arrays.sort(ids, (a, b) -> Long.compare(sales[b.intValue()], sales[a.intValue()]));
+        Set<Long> popular = new HashSet<>(Arrays.asList(ids).subList(0, Math.min(SIZE, n)));
+
+        // 회원 활동 생성 (선호 계열 80%), 선호 계열 찜 하나는 숨겨 둠
+        long now = System.currentTimeMillis();
+        List<List<Map<String, Object>>> signals = new ArrayList<>(users);
+        long[] heldOut = new long[users];
+        int[][] liked = new int[users][];
+        for (int u = 0; u < users; u++) {
+            int a = rnd.nextInt(FAMILIES.length), b = rnd.nextInt(FAMILIES.length);
+            liked[u] = new int[] { a, b };
+            List<Long> pool = byFamily.get(a);
+            heldOut[u] = pool.get(rnd.nextInt(pool.size()));
+            List<Map<String, Object>> rows = new ArrayList<>();
+            int k = 3 + rnd.nextInt(13);
+            for (int i = 0; i < k; i++) {
+                int fam = rnd.nextInt(10) < 8 ? liked[u][rnd.nextInt(2)] : rnd.nextInt(FAMILIES.length);
+                List<Long> fp = byFamily.get(fam);
+                long pid = fp.get(rnd.nextInt(fp.size()));
+                if (pid == heldOut[u]) continue;
+                int kindRoll = rnd.nextInt(10);
+                String kind = kindRoll < 5 ? "Z" : kindRoll < 8 ? "B" : "R";
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("userNo", (long) u);
+                row.put("productId", pid);
+                row.put("kind", kind);
+                row.put("qty", 1 + rnd.nextInt(2));
+                // 리뷰 평점: 선호 계열이면 4~5, 아니면 1~3
+                row.put("rating", "R".equals(kind) ? (fam == a || fam == b ? 4 + rnd.nextInt(2) : 1 + rnd.nextInt(3)) : null);
+                row.put("at", new Timestamp(now - (long) (rnd.nextDouble() * 365 * 86_400_000L)));
+                rows.add(row);
+            }
+            signals.add(rows);
+        }
+        return new Fixture(index, family, popular, signals, heldOut, liked, now);
+    }
+
+    private static String notes(Random rnd, String fam) {
+        StringJoiner j = new StringJoiner(", ");
+        for (int i = 0; i < 3; i++) {
+            // 계열 노트 60%, 다른 계열/공통 노트 40%
+            List<String> pool = rnd.nextInt(10) < 6 ? FAMILY_NOTES.get(fam)
+                    : rnd.nextBoolean() ? NEUTRAL : FAMILY_NOTES.get(FAMILIES[rnd.nextInt(FAMILIES.length)]);
+            j.add(pool.get(rnd.nextInt(pool.size())));
+        }
+        return j.toString();
+    }
+}
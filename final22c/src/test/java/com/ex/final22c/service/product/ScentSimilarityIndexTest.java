@@ -0,0 +1,107 @@
+package com.ex.final22c.service.product;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.repository.productMapper.ProductMapper;
+
+/**
+ * 전체 빌드와 dirty 표시가 겹칠 때 변경이 사라지지 않는지
+ * - 전체 빌드가 읽는 도중 들어온 변경 → 다음 주기 증분 갱신 대상으로 남음
+ * - 전체 빌드 실패 → 그 전에 쌓인 dirty 를 되돌려 둠
+ */
+class ScentSimilarityIndexTest {
+
+    private final List<List<Long>> incrementalReads = new ArrayList<>();
+    private Supplier<List<Map<String, Object>>> fullRead = ScentSimilarityIndexTest::catalog;
+
+    private final ScentSimilarityIndex index = new ScentSimilarityIndex(mapper(), true, 8, 60);
+
+    @SuppressWarnings("unchecked")
+    private ProductMapper mapper() {
+        return (ProductMapper) Proxy.newProxyInstance(ProductMapper.class.getClassLoader(),
+                new Class<?>[] { ProductMapper.class },
+                (proxy, m, args) -> {
+                    if (!"selectSimilarityRows".equals(m.getName())) return null;
+                    List<Long> ids = (List<Long>) args[0];
+                    if (ids == null) return fullRead.get();
+                    incrementalReads.add(ids);
+                    return catalog().stream().filter(r -> ids.contains(r.get("id"))).toList();
+                });
+    }
+
+    @Test
+    void changeDuringFullBuildIsKeptForTheNextCycle() {
+        fullRead = () -> {
+            index.markDirtyAfterCommit(3L);   // 전체 빌드가 읽는 사이 커밋된 재고 변경
+            return catalog();
+        };
+        index.rebuildAll();
+        assertTrue(index.ready());
+
+        fullRead = ScentSimilarityIndexTest::catalog;
+        index.refresh();
+
+        assertEquals(List.of(List.of(3L)), incrementalReads);
+    }
+
+    @Test
+    void dirtyBeforeFullBuildIsClearedByIt() {
+        index.markDirtyAfterCommit(List.of(1L, 2L));
+        index.rebuildAll();
+        index.refresh();
+
+        assertEquals(List.of(), incrementalReads);
+    }
+
+    @Test
+    void failedFullBuildPutsDrainedIdsBack() {
+        index.markDirtyAfterCommit(List.of(2L, 4L));
+        fullRead = () -> { throw new IllegalStateException("db down"); };
+        index.rebuildAll();
+        assertFalse(index.ready());
+
+        // 전체 빌드는 1분 뒤 재시도, 그 사이 주기는 되돌린 dirty 로 증분 갱신
+        fullRead = ScentSimilarityIndexTest::catalog;
+        index.refresh();
+
+        assertEquals(1, incrementalReads.size());
+        assertEquals(List.of(2L, 4L), incrementalReads.get(0).stream().sorted().toList());
+    }
+
+    private static List<Map<String, Object>> catalog() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String[][] notes = {
+            { "베르가못, 레몬", "네롤리", "머스크" },
+            { "레몬, 자몽", "네롤리", "머스크" },
+            { "장미", "자스민", "머스크, 앰버" },
+            { "장미", "아이리스", "앰버" },
+            { "라벤더", "세이지", "샌달우드" },
+        };
+        for (int i = 0; i < notes.length; i++) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("id", i + 1L);
+            p.put("name", "향수 " + (i + 1));
+            p.put("brandName", "브랜드");
+            p.put("sellPrice", 50_000L);
+            p.put("count", 5L);
+            p.put("status", "active");
+            p.put("mainNoteNo", i / 2 + 1);
+            p.put("topNote", notes[i][0]);
+            p.put("middleNote", notes[i][1]);
+            p.put("baseNote", notes[i][2]);
+            rows.add(p);
+        }
+        return rows;
+    }
+}
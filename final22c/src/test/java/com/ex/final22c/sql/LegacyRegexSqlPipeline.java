@@ -0,0 +1,409 @@
+package com.ex.final22c.sql;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 파서 도입 전 정규식 SQL 파이프라인 사본 (벤치마크 기준선, 4235a6c 직전)
+ * - 옛 SqlGuard.ensureSelect/ensureLimit, SqlNormalizer.enforceDateRangeWhere, SqlTokenInjector.inject
+ * - 오케스트레이터 문자열 교정: smartSqlPostprocess, hasOrdersDateRange, fixMisplacedDateWhere,
+ *   fixWhereClauseTrunc, fixCommonJoinMistakes, stripReviewColsFromGroupBy
+ * fixProductStatsQuery/fixUsersDateQuery 는 지금도 파싱 전에 같은 문자열 교정으로 돌아서 양쪽 모두 뺐음
+ */
+final class LegacyRegexSqlPipeline {
+    private LegacyRegexSqlPipeline(){}
+
+    /** 옛 buildSqlPlan 의 생성 SQL 경로 (리뷰 GROUP BY 정리 포함, 거절이면 null) */
+    static String generated(String ai, int maxRows) {
+        try {
+            String normalized = smartSqlPostprocess(ai);
+            if (!hasOrdersDateRange(normalized)) {
+                normalized = Normalizer.enforceDateRangeWhere(normalized, true);
+            }
+            normalized = fixMisplacedDateWhere(normalized);
+            normalized = fixWhereClauseTrunc(normalized);
+            normalized = fixCommonJoinMistakes(normalized);
+            normalized = stripReviewColsFromGroupBy(normalized);
+            String safe = Guard.ensureSelect(normalized);
+            return Guard.ensureLimit(safe, maxRows);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** 옛 handleChartGeneric 경로 (행 상한 없음, 거절이면 null) */
+    static String chart(String sql, DateColumnResolver dates) {
+        try {
+            String normalized = sql.trim();
+            if (!hasOrdersDateRange(normalized)) {
+                normalized = Normalizer.enforceDateRangeWhere(normalized, true);
+            }
+            normalized = fixMisplacedDateWhere(normalized);
+            normalized = TokenInjector.inject(normalized, dates);
+            normalized = fixCommonJoinMistakes(normalized);
+            return Guard.ensureSelect(normalized);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // ===================== 옛 오케스트레이터 교정 =====================
+
+    private static final Pattern P_ORDERS_RANGE_GE =
+            Pattern.compile("(?is)\\bo\\s*\\.\\s*regdate\\s*>?=\\s*(?:\\?|:start)");
+    private static final Pattern P_ORDERS_RANGE_LT =
+            Pattern.compile("(?is)\\bo\\s*\\.\\s*regdate\\s*<\\s*(?:\\?|:end)");
+    private static boolean hasOrdersDateRange(String sql){
+        if (sql == null) return false;
+        return P_ORDERS_RANGE_GE.matcher(sql).find() && P_ORDERS_RANGE_LT.matcher(sql).find();
+    }
+
+    private static final Pattern P_MISPLACED_DATE_WHERE = Pattern.compile(
+            "(?is)(ORDER\\s+BY[\\s\\S]*?)\\s*"
+          + "(WHERE\\s+1\\s*=\\s*1\\s+AND\\s+O\\.REGDATE\\s*>?=\\s*(?:\\?|:start)\\s+AND\\s+O\\.REGDATE\\s*<\\s*(?:\\?|:end))"
+    );
+    private static String fixMisplacedDateWhere(String sql){
+        if (sql == null) return null;
+        Matcher m = P_MISPLACED_DATE_WHERE.matcher(sql);
+        if (m.find()){
+            return sql.substring(0, m.start(1)) + m.group(2) + " " + m.group(1) + sql.substring(m.end(2));
+        }
+        return sql;
+    }
+
+    private static String fixWhereClauseTrunc(String sql) {
+        if (sql == null) return null;
+        String fixed = sql;
+        fixed = fixed.replaceAll("(?i)WHERE\\s+TRUNC\\s*\\([^)]+\\)\\s*=\\s*[^\\s]+",
+                "WHERE o.REGDATE >= :start AND o.REGDATE < :end");
+        fixed = fixed.replaceAll("(?i)AND\\s+TRUNC\\s*\\([^)]+\\)\\s+IN\\s*\\([^)]+\\)", "");
+        return fixed;
+    }
+
+    private static String fixCommonJoinMistakes(String sql) {
+        if (sql == null) return null;
+        String s = sql;
+        s = s.replaceAll("JOIN\\s+ORDERDETAIL\\s+od\\s+ON\\s+o\\.ID\\s*=\\s*od\\.ORDERID",
+                "JOIN ORDERDETAIL od ON o.ORDERID = od.ORDERID");
+        s = s.replaceAll("JOIN\\s+ORDERDETAIL\\s+od\\s+ON\\s+od\\.ID\\s*=\\s*o\\.ORDERID",
+                "JOIN ORDERDETAIL od ON o.ORDERID = od.ORDERID");
+        s = s.replaceAll("(?i)JOIN\\s+ORDERDETAIL\\s+od\\s+ON\\s+o\\.ORDERNO\\s*=\\s*od\\.ORDERNO",
+                "JOIN ORDERDETAIL od ON o.ORDERID = od.ORDERID");
+
+        s = s.replaceAll("(?i)JOIN\\s+PRODUCT\\s+p\\s+ON\\s+od\\.PRODUCTID\\s*=\\s*p\\.ID",
+                "JOIN PRODUCT p ON od.ID = p.ID");
+        s = s.replaceAll("(?i)JOIN\\s+PRODUCT\\s+p\\s+ON\\s+p\\.ID\\s*=\\s*od\\.PRODUCTID",
+                "JOIN PRODUCT p ON p.ID = od.ID");
+
+        s = s.replaceAll("(?i)JOIN\\s+BRAND\\s+b\\s+ON\\s+p\\.BRANDID\\s*=\\s*b\\.ID",
+                "JOIN BRAND b ON p.BRAND_BRANDNO = b.BRANDNO");
+        s = s.replaceAll("(?i)JOIN\\s+BRAND\\s+b\\s+ON\\s+b\\.ID\\s*=\\s*p\\.BRANDID",
+                "JOIN BRAND b ON b.BRANDNO = p.BRAND_BRANDNO");
+
+        s = s.replaceAll("(?i)\\bod\\.PRODUCTID\\b", "od.ID");
+        s = s.replaceAll("(?i)\\bp\\.BRANDID\\b", "p.BRAND_BRANDNO");
+        s = s.replaceAll("(?i)\\bb\\.ID\\b", "b.BRANDNO");
+        return s;
+    }
+
+    private static final Pattern P_GROUP_BY_EXPR =
+            Pattern.compile("(?is)GROUP\\s+BY\\s+(.*?)(?=(ORDER\\s+BY|FETCH\\b|\\)\\s*WHERE|\\)\\s*ORDER|\\)\\s*FETCH|$))");
+    private static String stripReviewColsFromGroupBy(String sql) {
+        if (sql == null) return null;
+        Matcher m = P_GROUP_BY_EXPR.matcher(sql);
+        StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            String groupExpr = m.group(1);
+            String cleaned = groupExpr
+                    .replaceAll("(?i)\\brv\\.TOTAL_REVIEWS\\b\\s*,?\\s*", "")
+                    .replaceAll("(?i)\\brv\\.AVG_RATING\\b\\s*,?\\s*", "")
+                    .replaceAll("(?i),\\s*(?=$)", "");
+            m.appendReplacement(sb, "GROUP BY " + Matcher.quoteReplacement(cleaned));
+        }
+        m.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static String smartSqlPostprocess(String sql) {
+        if (sql == null) return null;
+        String processed = sql;
+        processed = processed.replaceAll("\\s*>=\\s*\\?", " >= :start");
+        processed = processed.replaceAll("\\s*<\\s*\\?",  " < :end");
+        processed = processed.replaceAll("\\s*=\\s*\\?",  " = :param");
+        processed = processed.replaceAll("\\bO\\.REGDATE\\b", "o.REGDATE");
+        processed = processed.replaceAll("TRUNC\\(SYSDATE,\\s*'IW'\\)", "TRUNC(:currentDate, 'IW')");
+        processed = processed.replaceAll("TRUNC\\(SYSDATE\\s*-\\s*7,\\s*'IW'\\)", "TRUNC(:currentDate - 7, 'IW')");
+        processed = processed.replaceAll("SYSDATE", ":currentDate");
+        return balanceParentheses(processed);
+    }
+
+    private static String balanceParentheses(String sql) {
+        int open=0, close=0;
+        for (char c : sql.toCharArray()) { if (c=='(') open++; else if (c==')') close++; }
+        return sql; // 옛 코드도 경고 로그만 남기고 그대로 반환
+    }
+
+    // ===================== 옛 SqlGuard =====================
+
+    static final class Guard {
+        private Guard(){}
+
+        private static final Set<String> ALLOWED_TABLES = Set.of(
+            "USERS","ORDERS","ORDERDETAIL","PAYMENT","PRODUCT",
+            "BRAND","GRADE","MAINNOTE","VOLUME","REFUND","REFUNDDETAIL",
+            "CART","CARTDETAIL","REVIEW","PURCHASE","PURCHASEDETAIL",
+            "DUAL"
+        );
+
+        private static final Pattern FROM_JOIN_TBL =
+            Pattern.compile("(?i)\\b(?:FROM|JOIN)\\s+([\\w\\.\\\"]+)");
+
+        private static final Pattern POS_PARAM = Pattern.compile("\\?");
+
+        private static final Pattern FENCE_SQL_START = Pattern.compile("(?is)^```sql\\s*");
+        private static final Pattern FENCE_END       = Pattern.compile("(?s)```\\s*$");
+        private static final Pattern BLOCK_COMMENT   = Pattern.compile("(?s)/\\*.*?\\*/");
+        private static final Pattern LINE_COMMENT    = Pattern.compile("(?m)^\\s*--.*?$");
+
+        private static final Pattern WHERE_BLOCK = Pattern.compile("(?is)\\bWHERE\\b([\\s\\S]*?)(?:\\bGROUP\\s+BY\\b|\\bORDER\\s+BY\\b|$)");
+        private static final Pattern TRUNC_ANY   = Pattern.compile("(?i)\\bTRUNC\\s*\\(");
+
+        private static final Pattern ALLOWED_DATE_COL =
+            Pattern.compile("\\b[a-zA-Z_][\\w]*\\.(REGDATE|ORDERDATE|CREATEDATE|UPDATEDATE|APPROVEDAT|REG)\\b", Pattern.CASE_INSENSITIVE);
+
+        private static final Pattern OUTER_ALIAS_REF =
+            Pattern.compile("\\)\\s*WHERE\\s+[a-zA-Z_][\\w]*\\.", Pattern.CASE_INSENSITIVE);
+
+        private static final Pattern DATE_TOKEN_LEFT = Pattern.compile("\\{\\{\\s*date\\s*:\\s*[a-zA-Z_][\\w]*\\s*}}");
+
+        static String ensureSelect(String sql){
+            if (sql == null || sql.isBlank())
+                throw new IllegalArgumentException("SQL이 비어 있습니다.");
+
+            String s = stripFencesAndComments(sql).trim();
+            s = stripTrailingSemicolon(s);
+            String u = s.toUpperCase();
+
+            if (s.indexOf(';') >= 0)
+                throw new IllegalArgumentException("세미콜론(;)이 포함된 다중 스테이트먼트는 허용되지 않습니다.");
+
+            if (!u.startsWith("SELECT"))
+                throw new IllegalArgumentException("SELECT만 허용됩니다.");
+
+            String[] banned = {" UPDATE ", " DELETE ", " INSERT ", " MERGE ", " DROP ", " ALTER ", " CREATE ", " TRUNCATE "};
+            for (String b : banned) if (u.contains(b)) throw new IllegalArgumentException("금지된 문구: " + b.trim());
+
+            if (POS_PARAM.matcher(s).find())
+                throw new IllegalArgumentException("위치 파라미터(?)는 허용되지 않습니다. 이름 있는 바인딩을 사용하세요.");
+
+            Matcher m = FROM_JOIN_TBL.matcher(s);
+            while (m.find()) {
+                String norm = normalizeTableName(m.group(1));
+                if (!ALLOWED_TABLES.contains(norm)) {
+                    throw new IllegalArgumentException("허용되지 않은 테이블 접근: " + norm);
+                }
+            }
+
+            Matcher wm = WHERE_BLOCK.matcher(s);
+            while (wm.find()) {
+                if (TRUNC_ANY.matcher(wm.group(1)).find()) {
+                    throw new IllegalArgumentException("WHERE 절에서 TRUNC 사용은 금지입니다. 날짜는 >= :start AND < :end 형태로 비교하세요.");
+                }
+            }
+
+            if (DATE_TOKEN_LEFT.matcher(s).find())
+                throw new IllegalArgumentException("치환되지 않은 날짜 토큰({{date:...}})이 남아 있습니다.");
+
+            if (OUTER_ALIAS_REF.matcher(s).find())
+                throw new IllegalArgumentException("서브쿼리 바깥 WHERE에서 테이블 별칭을 참조하지 마세요.");
+
+            Matcher dm = Pattern.compile("\\b[a-zA-Z_][\\w]*\\.[A-Z_][A-Z0-9_]*\\b").matcher(u);
+            while (dm.find()) {
+                String token = dm.group();
+                if (token.matches(".*(DATE|REG|APPROVEDAT)\\b") && !ALLOWED_DATE_COL.matcher(token).find()) {
+                    throw new IllegalArgumentException("허용되지 않은 날짜 컬럼 표현: " + token);
+                }
+            }
+            return s;
+        }
+
+        static String ensureLimit(String sql, int maxRows){
+            String s = stripTrailingSemicolon(stripFencesAndComments(sql).trim());
+            String u = s.toUpperCase();
+
+            if (u.contains(" FETCH FIRST ") || u.contains(" ROWNUM ") || u.contains(" OFFSET "))
+                return s;
+
+            s = s.replaceAll("(?i)LIMIT\\s+(\\d+)\\s*,\\s*(\\d+)", "OFFSET $1 ROWS FETCH NEXT $2 ROWS ONLY");
+            s = s.replaceAll("(?i)LIMIT\\s+(\\d+)\\s+OFFSET\\s+(\\d+)", "OFFSET $2 ROWS FETCH NEXT $1 ROWS ONLY");
+            s = s.replaceAll("(?i)LIMIT\\s+(\\d+)", "FETCH FIRST $1 ROWS ONLY");
+
+            String u2 = s.toUpperCase();
+            if (u2.contains(" FETCH FIRST ") || u2.contains(" OFFSET "))
+                return s;
+
+            return "SELECT * FROM (" + s + ") WHERE ROWNUM <= " + maxRows;
+        }
+
+        private static String stripFencesAndComments(String s){
+            String t = s.trim();
+            t = FENCE_SQL_START.matcher(t).replaceFirst("");
+            t = FENCE_END.matcher(t).replaceFirst("");
+            t = BLOCK_COMMENT.matcher(t).replaceAll(" ");
+            t = LINE_COMMENT.matcher(t).replaceAll("");
+            return t;
+        }
+        private static String stripTrailingSemicolon(String s){
+            String t = s.trim();
+            while (t.endsWith(";")) t = t.substring(0, t.length()-1).trim();
+            return t;
+        }
+        private static String normalizeTableName(String token) {
+            String x = token.replace("\"", "");
+            int dot = x.lastIndexOf('.');
+            if (dot >= 0) x = x.substring(dot + 1);
+            int sp = x.indexOf(' ');
+            if (sp >= 0) x = x.substring(0, sp);
+            int par = x.indexOf('(');
+            if (par >= 0) x = x.substring(0, par);
+            return x.toUpperCase();
+        }
+    }
+
+    // ===================== 옛 SqlNormalizer =====================
+
+    static final class Normalizer {
+        private Normalizer(){}
+
+        private static final Pattern FENCE_START   = Pattern.compile("(?is)^```\\s*sql\\s*");
+        private static final Pattern FENCE_END     = Pattern.compile("(?s)```\\s*$");
+        private static final Pattern ANY_BACKTICKS = Pattern.compile("`+");
+
+        private static final Pattern WHERE_BLOCK = Pattern.compile("(?is)\\bWHERE\\b([\\s\\S]*?)(?=\\bGROUP\\s+BY\\b|\\bORDER\\s+BY\\b|$)");
+
+        private static final Pattern ORDERS_ALIAS_FROM = Pattern.compile("(?is)\\bFROM\\s+ORDERS\\s+(?:AS\\s+)?([A-Z_][\\w$]*)\\b");
+        private static final Pattern ORDERS_ALIAS_JOIN = Pattern.compile("(?is)\\bJOIN\\s+ORDERS\\s+(?:AS\\s+)?([A-Z_][\\w$]*)\\b");
+
+        private static final Pattern ORDERS_TABLE_CHECK = Pattern.compile("(?is)\\b(?:FROM|JOIN)\\s+ORDERS\\b");
+
+        private static boolean hasOrdersTable(String sql) {
+            if (sql == null) return false;
+            return ORDERS_TABLE_CHECK.matcher(sql).find();
+        }
+
+        private static String detectOrdersQualifier(String sqlUpper) {
+            Matcher m1 = ORDERS_ALIAS_FROM.matcher(sqlUpper);
+            if (m1.find()) return m1.group(1).toUpperCase();
+            Matcher m2 = ORDERS_ALIAS_JOIN.matcher(sqlUpper);
+            if (m2.find()) return m2.group(1).toUpperCase();
+            if (sqlUpper.contains("ORDERS.")) return "ORDERS";
+            return "O";
+        }
+
+        private static boolean hasStatusFilter(String sUpper, String qualifier){
+            String q = Pattern.quote(qualifier.toUpperCase());
+            return Pattern.compile("(?is)\\b" + q + "\\.STATUS\\s+IN\\s*\\(").matcher(sUpper).find()
+                || Pattern.compile("(?is)\\bORDERS\\.STATUS\\s+IN\\s*\\(").matcher(sUpper).find();
+        }
+
+        static String enforceDateRangeWhere(String sql, boolean ensureStatusFilter) {
+            if (sql == null) return "";
+
+            String s = sql.trim();
+            s = FENCE_START.matcher(s).replaceFirst("");
+            s = FENCE_END.matcher(s).replaceFirst("");
+            s = ANY_BACKTICKS.matcher(s).replaceAll("");
+            String sUpper = s.toUpperCase();
+
+            if (!hasOrdersTable(s)) {
+                return s;
+            }
+
+            String qualifier = detectOrdersQualifier(sUpper);
+            String qQuoted  = Pattern.quote(qualifier);
+
+            Matcher m = WHERE_BLOCK.matcher(s);
+            if (!m.find()) {
+                StringBuilder out = new StringBuilder(s);
+                out.append(" WHERE 1=1");
+                if (ensureStatusFilter && !hasStatusFilter(sUpper, qualifier)) {
+                    out.append(" AND ").append(qualifier).append(" STATUS".replace(" ", "."))
+                       .append(" IN ('PAID','CONFIRMED','REFUNDED')");
+                }
+                out.append(" AND ").append(qualifier).append(" REGDATE".replace(" ", "."))
+                   .append(" >= :start AND ").append(qualifier).append(" REGDATE".replace(" ", "."))
+                   .append(" < :end");
+                return out.toString();
+            }
+
+            String whereBody = m.group(1);
+
+            String regdatePrefix = "(?:(?:" + qQuoted + ")|ORDERS)\\.";
+            whereBody = whereBody.replaceAll("(?is)\\b(?:AND|OR)?\\s*"+regdatePrefix+"REGDATE\\s+BETWEEN[\\s\\S]*?(?=(?:\\bAND\\b|\\bOR\\b|$))", "");
+            whereBody = whereBody.replaceAll("(?is)\\b(?:AND|OR)?\\s*"+regdatePrefix+"REGDATE\\s*[=><]{1,2}\\s*[\\s\\S]*?(?=(?:\\bAND\\b|\\bOR\\b|$))", "");
+            whereBody = whereBody.replaceAll("(?is)\\b(?:AND|OR)?\\s*TRUNC\\s*\\(\\s*"+regdatePrefix+"REGDATE[\\s\\S]*?\\)\\s*[=><]{1,2}[\\s\\S]*?(?=(?:\\bAND\\b|\\bOR\\b|$))", "");
+            whereBody = whereBody.replaceAll("(?is)\\b(?:AND|OR)?\\s*[^\\)]*EXTRACT\\s*\\([^)]*\\)[\\s\\S]*?(?=(?:\\bAND\\b|\\bOR\\b|$))", "");
+
+            whereBody = whereBody.replaceAll(",\\s*\\)", ")");
+
+            if (ensureStatusFilter && !hasStatusFilter(whereBody.toUpperCase(), qualifier) && !hasStatusFilter(sUpper, qualifier)) {
+                whereBody += " AND " + qualifier + ".STATUS IN ('PAID','CONFIRMED','REFUNDED')";
+            }
+
+            whereBody += " AND " + qualifier + ".REGDATE >= :start AND " + qualifier + ".REGDATE < :end";
+
+            whereBody = whereBody
+                    .replaceAll("(?i)\\bAND\\s*(?:AND|OR)\\b", " AND ")
+                    .replaceAll("(?i)\\bOR\\s*(?:AND|OR)\\b", " OR ")
+                    .replaceAll("\\(\\s*\\)", "")
+                    .replaceAll("\\s{2,}", " ")
+                    .trim()
+                    .replaceAll("(?i)^(?:AND|OR)\\s+", "");
+
+            StringBuilder out = new StringBuilder(s);
+            out.replace(m.start(1), m.end(1), " " + whereBody + " ");
+            return out.toString();
+        }
+    }
+
+    // ===================== 옛 SqlTokenInjector =====================
+
+    static final class TokenInjector {
+        private TokenInjector(){}
+
+        private static final Pattern DATE_TOKEN = Pattern.compile("\\{\\{date:([a-zA-Z0-9_]+)\\}\\}");
+        private static final Pattern TBL_ALIAS = Pattern.compile("(?:FROM|JOIN)\\s+([A-Z0-9_\\.]+)\\s+([A-Z0-9_]+)", Pattern.CASE_INSENSITIVE);
+
+        static String inject(String sql, DateColumnResolver dateResolver) {
+            if (sql == null) return null;
+
+            Map<String, String> aliasToTable = new LinkedHashMap<>();
+            Matcher tj = TBL_ALIAS.matcher(sql);
+            while (tj.find()) {
+                String table = tj.group(1);
+                String alias = tj.group(2);
+                String tableOnly = table.contains(".") ? table.substring(table.lastIndexOf('.') + 1) : table;
+                aliasToTable.put(alias.toUpperCase(Locale.ROOT), tableOnly.toUpperCase(Locale.ROOT));
+            }
+
+            Matcher m = DATE_TOKEN.matcher(sql);
+            StringBuffer sb = new StringBuffer();
+            while (m.find()) {
+                String aliasRaw = m.group(1);
+                String tableUpper = aliasToTable.get(aliasRaw.toUpperCase(Locale.ROOT));
+                if (tableUpper == null) {
+                    throw new IllegalArgumentException("날짜 토큰 alias를 테이블로 매핑하지 못했습니다: " + aliasRaw);
+                }
+                String dateCol = dateResolver.resolve(tableUpper)
+                        .orElseThrow(() -> new IllegalArgumentException("날짜 컬럼을 찾지 못했습니다: table=" + tableUpper));
+                m.appendReplacement(sb, Matcher.quoteReplacement(aliasRaw + "." + dateCol));
+            }
+            m.appendTail(sb);
+            return sb.toString();
+        }
+    }
+}
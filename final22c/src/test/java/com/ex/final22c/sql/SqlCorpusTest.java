@@ -0,0 +1,92 @@
+package com.ex.final22c.sql;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * LLM 생성 SQL 코퍼스(ai/sql-corpus.txt)로 파서 파이프라인 검증
+ * - 모든 항목이 통과하거나 IllegalArgumentException 으로만 거절 (다른 예외로 터지지 않음)
+ * - 통과한 SQL은 행 상한이 붙고, 다시 파싱/가드해도 통과
+ * - 메모(SqlValidator) 경로와 cold 경로의 판정이 같음
+ */
+class SqlCorpusTest {
+
+    static final int MAX_ROWS = 2000;
+
+    static List<String> corpus() throws IOException {
+        List<String> out = new ArrayList<>();
+        try (InputStream in = SqlCorpusTest.class.getClassLoader().getResourceAsStream("ai/sql-corpus.txt");
+             BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                out.add(line.trim());
+            }
+        }
+        return out;
+    }
+
+    static SqlAst.Query rewrite(String sql) {
+        return SqlRewriter.rewriteGenerated(SqlParser.parse(sql), true);
+    }
+
+    /** 파싱 → 기본 재작성 → 가드 → 행 상한 → 문자열화 (거절이면 null) */
+    static String cold(String sql) {
+        try {
+            return SqlRewriter.ensureRowLimit(SqlGuard.check(rewrite(sql)), MAX_ROWS).toSql();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Test
+    void everyCorpusEntryIsAcceptedOrCleanlyRejected() throws IOException {
+        List<String> corpus = corpus();
+        assertFalse(corpus.isEmpty());
+
+        int accepted = 0;
+        for (String sql : corpus) {
+            String out = cold(sql);
+            if (out == null) continue;
+            accepted++;
+            assertTrue(out.contains("FETCH FIRST") || out.contains("ROWNUM"), out);
+            // 재작성 결과는 다시 넣어도 같은 판정
+            String again = cold(out);
+            assertTrue(again != null, () -> "재검증 실패: " + out);
+        }
+        int rejected = corpus.size() - accepted;
+        System.out.printf("[sql-corpus] total=%d accepted=%d rejected=%d%n", corpus.size(), accepted, rejected);
+        assertTrue(accepted > 0);
+        assertTrue(rejected > 0, "코퍼스에는 거절돼야 하는 항목(위치 파라미터 등)이 있음");
+    }
+
+    @Test
+    void memoizedVerdictMatchesColdPath() throws IOException {
+        List<String> corpus = corpus();
+        SqlValidator memo = new SqlValidator(corpus.size() * 2);
+        for (int round = 0; round < 2; round++) {
+            for (String sql : corpus) {
+                String expected = cold(sql);
+                String actual;
+                try {
+                    actual = memo.validate(sql, MAX_ROWS, "gen", SqlCorpusTest::rewrite);
+                } catch (IllegalArgumentException e) {
+                    actual = null;
+                }
+                assertEquals(expected, actual, sql);
+            }
+        }
+        assertEquals(corpus.size(), memo.stats().hits());
+    }
+}
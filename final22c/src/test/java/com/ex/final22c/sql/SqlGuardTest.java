@@ -0,0 +1,183 @@
+package com.ex.final22c.sql;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * SqlParser + SqlGuard 보안 경계 테이블 테스트
+ * - 각 표는 { 기대(Y=통과, N=거절), SQL } 형태
+ */
+class SqlGuardTest {
+
+    private static void check(String[][] cases) {
+        for (String[] c : cases) {
+            if ("Y".equals(c[0])) {
+                assertDoesNotThrow(() -> SqlGuard.check(SqlParser.parse(c[1])), c[1]);
+            } else {
+                assertThrows(IllegalArgumentException.class, () -> SqlGuard.check(SqlParser.parse(c[1])), c[1]);
+            }
+        }
+    }
+
+    @Test
+    void bannedDmlIsRejectedAnywhereInTheTree() {
+        check(new String[][] {
+            { "N", "DELETE FROM ORDERS" },
+            { "N", "UPDATE USERS SET MILEAGE = 0" },
+            { "N", "SELECT * FROM ORDERS o WHERE o.ORDERID IN (DELETE FROM ORDERS RETURNING ORDERID)" },
+            { "N", "SELECT p.NAME FROM PRODUCT p WHERE EXISTS (SELECT 1 FROM ORDERS o WHERE o.ORDERID = (UPDATE ORDERS SET STATUS = 'PAID'))" },
+            { "N", "SELECT x.CNT FROM (SELECT COUNT(*) AS CNT FROM ORDERS MERGE INTO ORDERS) x" },
+            { "N", "WITH d AS (DELETE FROM ORDERS RETURNING *) SELECT * FROM d" },
+            { "N", "WITH t AS (SELECT 1 AS N FROM DUAL) SELECT * FROM t; DROP TABLE USERS" },
+            { "N", "SELECT * FROM (WITH t AS (SELECT 1 FROM DUAL) SELECT * FROM t)" },
+            { "N", "SELECT p.NAME FROM PRODUCT p UNION ALL SELECT 'x' FROM DUAL WHERE 1 = (TRUNCATE TABLE USERS)" },
+            { "N", "INSERT INTO USERS (NAME) SELECT NAME FROM USERS" },
+            // WITH 로 시작하는 문장 자체를 받지 않음
+            { "N", "WITH t AS (SELECT o.USERNO FROM ORDERS o) SELECT COUNT(*) FROM t" },
+            { "Y", "SELECT p.NAME FROM PRODUCT p WHERE p.ID IN (SELECT od.ID FROM ORDERDETAIL od)" },
+        });
+    }
+
+    @Test
+    void multiStatementInputIsRejected() {
+        check(new String[][] {
+            { "N", "SELECT 1 FROM DUAL; SELECT 2 FROM DUAL" },
+            { "N", "SELECT COUNT(*) FROM ORDERS; DELETE FROM ORDERS" },
+            { "N", "SELECT COUNT(*) FROM ORDERS /* 주석 */ ; DROP TABLE USERS" },
+            // 끝의 세미콜론 하나는 LLM 출력 습관이라 허용
+            { "Y", "SELECT COUNT(*) FROM ORDERS;" },
+            // 문자열 안의 세미콜론은 구분자가 아님
+            { "Y", "SELECT COUNT(*) FROM ORDERS o WHERE o.STATUS = 'A;B'" },
+        });
+    }
+
+    @Test
+    void commentsAndStringLiteralsDoNotFoolTheGuard() {
+        check(new String[][] {
+            // 리터럴/주석 안의 금지어는 통과
+            { "Y", "SELECT 'UPDATE 예정' AS note, COUNT(*) AS cnt FROM PRODUCT" },
+            { "Y", "SELECT COUNT(*) FROM ORDERS -- DELETE FROM ORDERS" },
+            { "Y", "SELECT /* DROP TABLE USERS */ COUNT(*) FROM ORDERS" },
+            { "Y", "SELECT COUNT(*) FROM ORDERS o WHERE o.STATUS = 'it''s; DELETE'" },
+            // 주석으로 단어를 쪼개거나 주석 뒤에 숨긴 문장은 거절
+            { "N", "SELECT COUNT(*) FROM ORDERS /* x */ WHERE 1 = 1 /* y */ ; DELETE FROM ORDERS" },
+            { "N", "SELECT COUNT(*) FROM ORDERS --\n; DELETE FROM ORDERS" },
+            { "N", "SELECT COUNT(*) FROM USERS/**/UNION/**/SELECT 1 FROM SECRET_TABLE" },
+            // 닫히지 않은 문자열
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.STATUS = 'PAID" },
+            // 주석으로 시작을 숨긴 DML
+            { "N", "/* SELECT */ DELETE FROM ORDERS" },
+        });
+    }
+
+    @Test
+    void schemaQualifiedAndUnknownTablesAreRejected() {
+        check(new String[][] {
+            { "N", "SELECT * FROM SYS.X" },
+            { "N", "SELECT * FROM SYS.USERS" },
+            { "N", "SELECT u.NAME FROM OTHER_SCHEMA.USERS u" },
+            { "N", "SELECT * FROM \"SYS\".\"USERS\"" },
+            { "N", "SELECT * FROM DBA_USERS" },
+            { "N", "SELECT * FROM ORDERS o, ALL_TABLES t" },
+            { "N", "SELECT p.NAME FROM PRODUCT p WHERE p.ID IN (SELECT x.ID FROM V$SESSION x)" },
+            // 따옴표로 감싼 대문자 이름은 같은 테이블
+            { "Y", "SELECT COUNT(*) FROM \"USERS\"" },
+            { "Y", "SELECT COUNT(*) FROM \"USERS\" u WHERE u.STATUS = 'active'" },
+            { "Y", "SELECT SYSDATE FROM DUAL" },
+        });
+    }
+
+    @Test
+    void truncInWhereAndUnknownAliasAreRejected() {
+        check(new String[][] {
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE TRUNC(o.REGDATE) = TRUNC(SYSDATE)" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE (o.STATUS = 'PAID' AND TRUNC(o.REGDATE) >= :start)" },
+            { "N", "SELECT p.NAME FROM PRODUCT p WHERE p.ID IN (SELECT od.ID FROM ORDERDETAIL od WHERE TRUNC(od.REGDATE) = :start)" },
+            // 인라인 뷰 안쪽 별칭을 바깥 WHERE에서 참조
+            { "N", "SELECT x.NAME FROM (SELECT p.NAME, p.ID FROM PRODUCT p) x WHERE p.ID = 1" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE z.STATUS = 'PAID'" },
+            // SELECT 절의 TRUNC, 상관 서브쿼리의 바깥 별칭은 허용
+            { "Y", "SELECT TRUNC(o.REGDATE) AS d, COUNT(*) FROM ORDERS o WHERE o.REGDATE >= :start AND o.REGDATE < :end GROUP BY TRUNC(o.REGDATE)" },
+            { "Y", "SELECT p.NAME FROM PRODUCT p WHERE NOT EXISTS (SELECT 1 FROM ORDERDETAIL od WHERE od.ID = p.ID)" },
+        });
+    }
+
+    @Test
+    void hiddenColumnsAreRejectedInEveryForm() {
+        // 기본 숨김 컬럼: USERS.PASSWORD, REFUND.PGPAYLOADJSON
+        check(new String[][] {
+            { "N", "SELECT u.PASSWORD FROM USERS u" },
+            { "N", "SELECT PASSWORD FROM USERS" },
+            { "N", "SELECT NAME FROM USERS WHERE PASSWORD IS NOT NULL" },
+            { "N", "SELECT \"PASSWORD\" FROM USERS" },
+            { "N", "SELECT SUBSTR(PASSWORD, 1, 3) AS p FROM USERS" },
+            { "N", "SELECT x.NAME FROM (SELECT NAME, PASSWORD FROM USERS) x" },
+            { "N", "SELECT o.ORDERID FROM ORDERS o WHERE EXISTS (SELECT 1 FROM USERS u WHERE u.USERNO = o.USERNO AND PASSWORD LIKE 'a%')" },
+            { "N", "SELECT PGPAYLOADJSON FROM REFUND" },
+            { "N", "SELECT * FROM USERS" },
+            { "N", "SELECT DISTINCT * FROM REFUND" },
+            { "N", "SELECT u.* FROM USERS u" },
+            { "N", "SELECT o.ORDERID, u.* FROM ORDERS o JOIN USERS u ON u.USERNO = o.USERNO" },
+            { "N", "SELECT * FROM ORDERS o JOIN USERS u ON u.USERNO = o.USERNO" },
+            { "N", "SELECT x.* FROM (SELECT * FROM USERS) x" },
+            // 숨김 컬럼 없는 테이블의 *, COUNT(*), 곱셈, 인라인 뷰 별칭.* 는 허용
+            { "Y", "SELECT * FROM ORDERS" },
+            { "Y", "SELECT o.* FROM ORDERS o JOIN USERS u ON u.USERNO = o.USERNO" },
+            { "Y", "SELECT COUNT(*) FROM USERS" },
+            { "Y", "SELECT u.NAME, u.MILEAGE * 2 AS m FROM USERS u" },
+            { "Y", "SELECT x.* FROM (SELECT u.NAME FROM USERS u) x" },
+            { "Y", "SELECT 'PASSWORD' AS label, COUNT(*) FROM USERS" },
+            // PASSWORD 는 USERS 에만 숨김
+            { "Y", "SELECT p.NAME FROM PRODUCT p WHERE p.NAME = 'PASSWORD'" },
+        });
+    }
+
+    @Test
+    void positionalBindsAndDateTokensAreRejected() {
+        check(new String[][] {
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= ? AND o.REGDATE < ?" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= {{date:start}}" },
+            { "N", "SELECT COUNT(*) FROM ORDERS o WHERE o.ORDER_DATE >= :start" },
+            { "Y", "SELECT COUNT(*) FROM ORDERS o WHERE o.REGDATE >= :start AND o.REGDATE < :end" },
+        });
+    }
+
+    @Test
+    void rowLimitOverUnionWrapsOnlyTheLastBlock() {
+        String sql = SqlRewriter.ensureRowLimit(SqlParser.parse(
+                "SELECT p.NAME FROM PRODUCT p UNION ALL SELECT b.BRANDNAME FROM BRAND b"), 2000).toSql();
+        assertEquals(1, count(sql, "FETCH FIRST"), sql);
+        assertTrue(sql.trim().endsWith("FETCH FIRST 2000 ROWS ONLY"), sql);
+
+        // 마지막 블록의 큰 FETCH 는 상한으로 줄이고, 앞 블록은 건드리지 않음
+        String clamped = SqlRewriter.ensureRowLimit(SqlParser.parse(
+                "SELECT p.NAME FROM PRODUCT p UNION SELECT b.BRANDNAME FROM BRAND b FETCH FIRST 50000 ROWS ONLY"), 2000).toSql();
+        assertEquals(1, count(clamped, "FETCH FIRST"), clamped);
+        assertTrue(clamped.contains("2000"), clamped);
+        assertFalse(clamped.contains("50000"), clamped);
+
+        // LIMIT 는 FETCH 로 바꾸고, 상한보다 작으면 그대로
+        String limited = SqlRewriter.ensureRowLimit(SqlParser.parse(
+                "SELECT p.NAME FROM PRODUCT p UNION SELECT b.BRANDNAME FROM BRAND b LIMIT 5"), 2000).toSql();
+        assertFalse(limited.toUpperCase().contains("LIMIT"), limited);
+        assertTrue(limited.contains("FETCH FIRST 5 ROWS ONLY"), limited);
+        assertEquals(1, count(limited, "FETCH FIRST"), limited);
+
+        // 세 블록 UNION 도 한 번만
+        String three = SqlRewriter.ensureRowLimit(SqlParser.parse(
+                "SELECT 1 FROM DUAL UNION SELECT 2 FROM DUAL UNION SELECT 3 FROM DUAL"), 10).toSql();
+        assertEquals(1, count(three, "FETCH FIRST"), three);
+        assertTrue(three.trim().endsWith("FETCH FIRST 10 ROWS ONLY"), three);
+    }
+
+    private static int count(String s, String needle) {
+        int n = 0;
+        for (int i = s.indexOf(needle); i >= 0; i = s.indexOf(needle, i + 1)) n++;
+        return n;
+    }
+}
@@ -0,0 +1,109 @@
+package com.ex.final22c.sql;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import com.ex.final22c.bench.MicroBench;
+
+/**
+ * SQL 파서 파이프라인 마이크로벤치마크 (./gradlew benchmark)
+ * - legacy: 파서 도입 전 정규식 체인 사본(LegacyRegexSqlPipeline) — 오케스트레이터 교정 → 정규화 → 가드 → 상한
+ * - cold: 파싱 → 기본 재작성 → 가드 → 행 상한 → 문자열화 (메모 미스 경로)
+ * - memo: 같은 SQL을 SqlValidator로 다시 검증 (메모 히트 경로)
+ * - chart: 차트 경로(날짜 범위 → 날짜 토큰 치환 → 조인 교정 → 가드)도 옛 체인과 비교
+ */
+@Tag("benchmark")
+class SqlPipelineBenchmarkTest {
+
+    private static final Map<String, String> DATE_COLUMNS = Map.of(
+            "ORDERS", "REGDATE", "ORDERDETAIL", "REGDATE", "PAYMENT", "APPROVEDAT",
+            "REVIEW", "CREATEDATE", "REFUND", "CREATEDATE", "USERS", "REG", "PURCHASE", "REG");
+
+    /** DB 스키마 없이 선호 날짜 컬럼만 돌려주는 리졸버 (양쪽 경로 공통) */
+    private static final DateColumnResolver DATES = new DateColumnResolver(null) {
+        @Override
+        public Optional<String> resolve(String tableUpper) {
+            return Optional.ofNullable(DATE_COLUMNS.get(tableUpper));
+        }
+    };
+
+    @Test
+    void legacyRegexVersusColdVersusMemoHit() throws IOException {
+        List<String> corpus = SqlCorpusTest.corpus();
+        int n = corpus.size();
+
+        MicroBench.Result legacy = MicroBench.measure("sql legacy regex", 50, 200, n, () -> {
+            int h = 0;
+            for (String sql : corpus) {
+                String out = LegacyRegexSqlPipeline.generated(sql, SqlCorpusTest.MAX_ROWS);
+                h += out == null ? 1 : out.length();
+            }
+            return h;
+        });
+
+        MicroBench.Result cold = MicroBench.measure("sql cold", 50, 200, n, () -> {
+            int h = 0;
+            for (String sql : corpus) {
+                String out = SqlCorpusTest.cold(sql);
+                h += out == null ? 1 : out.length();
+            }
+            return h;
+        });
+
+        SqlValidator memo = new SqlValidator(n * 2);
+        MicroBench.Result hit = MicroBench.measure("sql memo hit", 50, 200, n, () -> {
+            int h = 0;
+            for (String sql : corpus) {
+                try {
+                    h += memo.validate(sql, SqlCorpusTest.MAX_ROWS, "gen", SqlCorpusTest::rewrite).length();
+                } catch (IllegalArgumentException e) {
+                    h++;
+                }
+            }
+            return h;
+        });
+
+        assertTrue(cold.avgNsPerOp() < legacy.avgNsPerOp(), cold + " vs " + legacy);
+        assertTrue(hit.avgNsPerOp() < cold.avgNsPerOp(), hit + " vs " + cold);
+    }
+
+    @Test
+    void chartPathLegacyRegexVersusTree() throws IOException {
+        List<String> corpus = SqlCorpusTest.corpus();
+        int n = corpus.size();
+        SqlTokenInjector injector = new SqlTokenInjector(DATES);
+
+        MicroBench.Result legacy = MicroBench.measure("chart legacy regex", 50, 200, n, () -> {
+            int h = 0;
+            for (String sql : corpus) {
+                String out = LegacyRegexSqlPipeline.chart(sql, DATES);
+                h += out == null ? 1 : out.length();
+            }
+            return h;
+        });
+        MicroBench.Result tree = MicroBench.measure("chart tree", 50, 200, n, () -> {
+            int h = 0;
+            for (String sql : corpus) {
+                try {
+                    SqlAst.Query q = SqlParser.parse(sql);
+                    SqlRewriter.ensureOrdersDateRange(q, true);
+                    injector.inject(q);
+                    SqlRewriter.fixJoinColumns(q);
+                    h += SqlGuard.check(q).toSql().length();
+                } catch (IllegalArgumentException e) {
+                    h++;
+                }
+            }
+            return h;
+        });
+
+        assertTrue(tree.avgNsPerOp() < legacy.avgNsPerOp(), tree + " vs " + legacy);
+    }
+}